@@ -100,6 +100,60 @@ import java.util.List;
     project = true,
     global = false,
     category = CoreProperties.CATEGORY_GENERAL),
+  @Property(
+    key = CoreProperties.DECORATORS_THREADS,
+    defaultValue = "" + CoreProperties.DECORATORS_THREADS_DEFAULT_VALUE,
+    name = "Number of threads for decorators",
+    description = "Number of threads used to decorate independent subtrees of resources. Only decorators, which are declared thread-safe," +
+      " are executed concurrently, others are still executed one at a time. Event handlers for decorators, which are provided by plugins," +
+      " must be thread-safe to use value greater than 1.",
+    project = true,
+    module = false,
+    global = true,
+    category = CoreProperties.CATEGORY_GENERAL,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = CoreProperties.SENSORS_THREADS,
+    defaultValue = "" + CoreProperties.SENSORS_THREADS_DEFAULT_VALUE,
+    name = "Number of threads for sensors",
+    description = "Number of threads used to execute sensors, which do not depend on each other. Only sensors, which are declared thread-safe," +
+      " are executed concurrently, others are still executed one at a time. Event handlers for sensors, which are provided by plugins," +
+      " must be thread-safe to use value greater than 1.",
+    project = true,
+    module = false,
+    global = true,
+    category = CoreProperties.CATEGORY_GENERAL,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = CoreProperties.MEASURES_BATCH_SIZE,
+    defaultValue = "" + CoreProperties.MEASURES_BATCH_SIZE_DEFAULT_VALUE,
+    name = "Size of batches of measures",
+    description = "Number of measures inserted in database in a single batch at the end of analysis.",
+    project = false,
+    module = false,
+    global = true,
+    category = CoreProperties.CATEGORY_GENERAL,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = CoreProperties.VIOLATIONS_BATCH_SIZE,
+    defaultValue = "" + CoreProperties.VIOLATIONS_BATCH_SIZE_DEFAULT_VALUE,
+    name = "Size of batches of violations",
+    description = "Number of violations inserted in database in a single batch.",
+    project = false,
+    module = false,
+    global = true,
+    category = CoreProperties.CATEGORY_GENERAL,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = CoreProperties.PROFILING_REPORT,
+    defaultValue = "" + CoreProperties.PROFILING_REPORT_DEFAULT_VALUE,
+    name = "Profiling report",
+    description = "Write the wall time, CPU time and memory allocated by each sensor, decorator and post-job in the file profiling.json of the working directory.",
+    project = true,
+    module = false,
+    global = true,
+    category = CoreProperties.CATEGORY_GENERAL,
+    type = PropertyType.BOOLEAN),
   @Property(
     key = CoreProperties.CORE_FORCE_AUTHENTICATION_PROPERTY,
     defaultValue = "" + CoreProperties.CORE_FORCE_AUTHENTICATION_DEFAULT_VALUE,
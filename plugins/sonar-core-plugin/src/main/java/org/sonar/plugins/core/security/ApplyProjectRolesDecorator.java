@@ -19,12 +19,15 @@
  */
 package org.sonar.plugins.core.security;
 
+import org.sonar.api.batch.DecoratedResources;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
 
+@DecoratedResources(qualifiers = {Qualifiers.PROJECT, Qualifiers.VIEW, Qualifiers.SUBVIEW})
 public class ApplyProjectRolesDecorator implements Decorator {
 
   private RoleManager roleManager;
@@ -28,11 +28,13 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.profiles.Alert;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.ResourceUtils;
 
 import java.util.List;
 
+@DecoratedResources(qualifiers = Qualifiers.PROJECT)
 public class CheckAlertThresholds implements Decorator {
 
   private final RulesProfile profile;
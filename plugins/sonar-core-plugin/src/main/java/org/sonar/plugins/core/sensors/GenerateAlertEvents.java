@@ -25,11 +25,13 @@ import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.ResourceUtils;
 
 import java.util.List;
 
+@DecoratedResources(qualifiers = Qualifiers.PROJECT)
 public class GenerateAlertEvents implements Decorator {
 
   private final RulesProfile profile;
@@ -37,6 +37,7 @@ import java.util.List;
 import java.util.Map;
 
 @DependsUpon(DecoratorBarriers.END_OF_VIOLATION_TRACKING)
+@ThreadSafeExtension
 public class ViolationsDecorator implements Decorator {
 
   public boolean shouldExecuteOnProject(Project project) {
@@ -19,12 +19,15 @@
  */
 package org.sonar.plugins.core.timemachine;
 
+import org.sonar.api.batch.DecoratedResources;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Scopes;
 import org.sonar.batch.components.TimeMachineConfiguration;
 
 import java.util.List;
 
+@DecoratedResources(scopes = Scopes.FILE)
 public class NewCoverageFileAnalyzer extends AbstractNewCoverageFileAnalyzer {
 
   public NewCoverageFileAnalyzer(TimeMachineConfiguration timeMachineConfiguration) {
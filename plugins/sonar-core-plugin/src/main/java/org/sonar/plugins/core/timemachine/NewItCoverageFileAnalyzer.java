@@ -19,10 +19,13 @@
  */
 package org.sonar.plugins.core.timemachine;
 
+import org.sonar.api.batch.DecoratedResources;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Scopes;
 import org.sonar.batch.components.TimeMachineConfiguration;
 
+@DecoratedResources(scopes = Scopes.FILE)
 public class NewItCoverageFileAnalyzer extends AbstractNewCoverageFileAnalyzer {
 
   public NewItCoverageFileAnalyzer(TimeMachineConfiguration timeMachineConfiguration) {
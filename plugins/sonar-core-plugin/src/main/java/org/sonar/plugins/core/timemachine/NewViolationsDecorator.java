@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
+import org.sonar.api.batch.DecoratedResources;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorBarriers;
 import org.sonar.api.batch.DecoratorContext;
@@ -56,6 +57,7 @@ import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Sets;
 
 @DependsUpon(DecoratorBarriers.END_OF_VIOLATION_TRACKING)
+@DecoratedResources(scopes = {Scopes.PROJECT, Scopes.DIRECTORY, Scopes.FILE})
 public class NewViolationsDecorator implements Decorator {
 
   private TimeMachineConfiguration timeMachineConfiguration;
@@ -19,28 +19,50 @@
  */
 package org.sonar.plugins.core.timemachine;
 
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.model.ResourceModel;
 import org.sonar.api.database.model.RuleFailureModel;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.database.model.SnapshotSource;
+import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.Scopes;
 
 import javax.persistence.Query;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Violations and sources of the last analysis. Those of the resources of the current module are loaded with a few queries
+ * on first access, instead of several queries per resource, and are evicted as soon as they are read.
+ * Sources are loaded only for resources, which had violations.
+ */
 public class ReferenceAnalysis implements BatchExtension {
 
   private DatabaseSession session;
+  private Project project;
+  private ListMultimap<String, RuleFailureModel> violationsByKey;
+  private Map<String, String> sourcesByKey;
 
-  public ReferenceAnalysis(DatabaseSession session) {
+  public ReferenceAnalysis(DatabaseSession session, Project project) {
     this.session = session;
+    this.project = project;
+  }
+
+  public ReferenceAnalysis(DatabaseSession session) {
+    this(session, null);
   }
 
   public List<RuleFailureModel> getViolations(Resource resource) {
+    if (isLoadedWithModule(resource)) {
+      return violationsByKey.removeAll(resource.getEffectiveKey());
+    }
     Snapshot snapshot = getSnapshot(resource);
     if (snapshot != null) {
       return session.getResults(RuleFailureModel.class, "snapshotId", snapshot.getId());
@@ -49,6 +71,10 @@ public class ReferenceAnalysis implements BatchExtension {
   }
 
   public String getSource(Resource resource) {
+    if (isLoadedWithModule(resource)) {
+      String source = sourcesByKey.remove(resource.getEffectiveKey());
+      return source != null ? source : "";
+    }
     Snapshot snapshot = getSnapshot(resource);
     if (snapshot != null) {
       SnapshotSource source = session.getSingleResult(SnapshotSource.class, "snapshotId", snapshot.getId());
@@ -59,6 +85,45 @@ public class ReferenceAnalysis implements BatchExtension {
     return "";
   }
 
+  /**
+   * Resources of module are attached to the module by their root id, which is up-to-date when decorators are executed.
+   * Modules themselves are attached to the root project, so they are loaded one by one.
+   */
+  private boolean isLoadedWithModule(Resource resource) {
+    if (project == null || project.getId() == null || Scopes.PROJECT.equals(resource.getScope())) {
+      return false;
+    }
+    if (violationsByKey == null) {
+      loadModule(project.getId());
+    }
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void loadModule(Integer moduleId) {
+    violationsByKey = ArrayListMultimap.create();
+    Query query = session.createQuery("SELECT r.key, f FROM " + RuleFailureModel.class.getSimpleName() + " f, " + Snapshot.class.getSimpleName() + " s, "
+      + ResourceModel.class.getSimpleName() + " r WHERE f.snapshotId=s.id AND s.resourceId=r.id AND s.last=:last AND r.rootId=:rootId");
+    query.setParameter("last", Boolean.TRUE);
+    query.setParameter("rootId", moduleId);
+    for (Object[] row : (List<Object[]>) query.getResultList()) {
+      violationsByKey.put((String) row[0], (RuleFailureModel) row[1]);
+    }
+
+    sourcesByKey = Maps.newHashMap();
+    query = session.createQuery("SELECT r.key, ss.data FROM " + SnapshotSource.class.getSimpleName() + " ss, " + Snapshot.class.getSimpleName() + " s, "
+      + ResourceModel.class.getSimpleName() + " r WHERE ss.snapshotId=s.id AND s.resourceId=r.id AND s.last=:last AND r.rootId=:rootId"
+      + " AND EXISTS (SELECT f.id FROM " + RuleFailureModel.class.getSimpleName() + " f WHERE f.snapshotId=s.id)");
+    query.setParameter("last", Boolean.TRUE);
+    query.setParameter("rootId", moduleId);
+    for (Object[] row : (List<Object[]>) query.getResultList()) {
+      sourcesByKey.put((String) row[0], (String) row[1]);
+    }
+
+    // the session is cleared on commit, so that loaded violations are detached and never flushed
+    session.commit();
+  }
+
   private Snapshot getSnapshot(Resource resource) {
     Query query = session.createQuery("from " + Snapshot.class.getSimpleName() + " s where s.last=:last and s.resourceId=(select r.id from "
       + ResourceModel.class.getSimpleName() + " r where r.key=:key)");
@@ -23,12 +23,22 @@ import com.google.common.collect.Lists;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 
+import java.util.Arrays;
 import java.util.List;
 
 public final class SourceChecksum {
 
   private static final String SPACE_CHARS = "\t\n\r ";
 
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /**
+   * Length of the hexadecimal MD5 checksums stored before the introduction of 64-bit line hashes.
+   */
+  private static final int LEGACY_CHECKSUM_LENGTH = 32;
+  private static final int CHECKSUM_LENGTH = 16;
+
   private SourceChecksum() {
     // only static methods
   }
@@ -44,13 +54,94 @@ public final class SourceChecksum {
     return checksums.get(line - 1);
   }
 
+  /**
+   * @param line line number (first line has number 1)
+   * @return checksum or null if checksum not exists for line
+   * @since 2.15
+   */
+  public static String getChecksumForLine(long[] hashes, Integer line) {
+    if (line == null || line < 1 || line > hashes.length) {
+      return null;
+    }
+    return toChecksum(hashes[line - 1]);
+  }
+
+  /**
+   * Computes the 64-bit hash of each line of the file, ignoring whitespaces. The source is read once,
+   * without splitting it into lines.
+   *
+   * @since 2.15
+   */
+  public static long[] lineHashesOfFile(String file) {
+    if (file == null) {
+      return new long[0];
+    }
+    long[] hashes = new long[16];
+    int lines = 0;
+    long hash = FNV_OFFSET_BASIS;
+    int length = file.length();
+    for (int i = 0; i < length; i++) {
+      char c = file.charAt(i);
+      if (c == '\n' || c == '\r') {
+        if (c == '\r' && i + 1 < length && file.charAt(i + 1) == '\n') {
+          i++;
+        }
+        if (lines == hashes.length) {
+          hashes = Arrays.copyOf(hashes, lines * 2);
+        }
+        hashes[lines++] = hash;
+        hash = FNV_OFFSET_BASIS;
+      } else if (c != ' ' && c != '\t') {
+        hash = (hash ^ c) * FNV_PRIME;
+      }
+    }
+    hashes = Arrays.copyOf(hashes, lines + 1);
+    hashes[lines] = hash;
+    return hashes;
+  }
+
+  /**
+   * Format of the line hash stored in database
+   *
+   * @since 2.15
+   */
+  public static String toChecksum(long hash) {
+    return StringUtils.leftPad(Long.toHexString(hash), CHECKSUM_LENGTH, '0');
+  }
+
+  /**
+   * Checksums computed by {@link #lineChecksumsOfFile(String)} are still stored in database until
+   * the next analysis of the resource.
+   *
+   * @since 2.15
+   */
+  public static boolean isLegacyChecksum(String checksum) {
+    return checksum != null && checksum.length() == LEGACY_CHECKSUM_LENGTH;
+  }
+
+  /**
+   * MD5 checksums of lines, only required to compare with legacy checksums.
+   *
+   * @see #lineHashesOfFile(String)
+   */
   public static List<String> lineChecksumsOfFile(String file) {
     List<String> result = Lists.newArrayList();
     if (file != null) {
-      String[] lines = file.split("\r?\n|\r", -1);
-      for (String line : lines) {
-        result.add(lineChecksum(line));
+      StringBuilder reducedLine = new StringBuilder();
+      int length = file.length();
+      for (int i = 0; i < length; i++) {
+        char c = file.charAt(i);
+        if (c == '\n' || c == '\r') {
+          if (c == '\r' && i + 1 < length && file.charAt(i + 1) == '\n') {
+            i++;
+          }
+          result.add(DigestUtils.md5Hex(reducedLine.toString()));
+          reducedLine.setLength(0);
+        } else if (c != ' ' && c != '\t') {
+          reducedLine.append(c);
+        }
       }
+      result.add(DigestUtils.md5Hex(reducedLine.toString()));
     }
     return result;
   }
@@ -31,13 +31,18 @@ import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.Scopes;
+import org.sonar.batch.components.PastMeasuresLoader;
 import org.sonar.batch.components.TimeMachineConfiguration;
 import org.sonar.core.NotDryRun;
 
+import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 @NotDryRun
 @DependedUpon(DecoratorBarriers.END_OF_TIME_MACHINE)
+@DecoratedResources(scopes = {Scopes.PROJECT, Scopes.DIRECTORY})
 public class TendencyDecorator implements Decorator {
 
   public static final String PROP_DAYS_DESCRIPTION = "Number of days the tendency should be calculated on.";
@@ -47,9 +52,26 @@ public class TendencyDecorator implements Decorator {
   private TendencyAnalyser analyser;
   private TimeMachineConfiguration configuration;
   private List<Metric> metrics;
+  private PastMeasuresLoader pastMeasuresLoader;
+  private Project project;
+
+  /**
+   * Values of the measures of the module and of its directories, by resource id and metric id. Loaded on first use.
+   */
+  private Map<Integer, Map<Integer, double[]>> valuesOfModule;
 
   public TendencyDecorator(TimeMachine timeMachine, MetricFinder metricFinder, TimeMachineConfiguration configuration) {
+    this(timeMachine, metricFinder, configuration, null, null);
+  }
+
+  /**
+   * @since 2.15
+   */
+  public TendencyDecorator(TimeMachine timeMachine, MetricFinder metricFinder, TimeMachineConfiguration configuration,
+      PastMeasuresLoader pastMeasuresLoader, Project project) {
     this.timeMachine = timeMachine;
+    this.pastMeasuresLoader = pastMeasuresLoader;
+    this.project = project;
     this.analyser = new TendencyAnalyser();
     this.configuration = configuration;
     this.metrics = Lists.newLinkedList();
@@ -67,6 +89,15 @@ public class TendencyDecorator implements Decorator {
     this.configuration = configuration;
   }
 
+  TendencyDecorator(PastMeasuresLoader pastMeasuresLoader, Project project, List<Metric> metrics, TendencyAnalyser analyser,
+      TimeMachineConfiguration configuration) {
+    this.pastMeasuresLoader = pastMeasuresLoader;
+    this.project = project;
+    this.metrics = metrics;
+    this.analyser = analyser;
+    this.configuration = configuration;
+  }
+
   @DependsUpon
   public List<Metric> dependsUponMetrics() {
     return metrics;
@@ -95,7 +126,10 @@ public class TendencyDecorator implements Decorator {
   }
 
   public void decorate(Resource resource, DecoratorContext context) {
-    if (shouldDecorateResource(resource)) {
+    if (shouldDecorateResource(resource) && isLoadedWithModule(resource)) {
+      decorateWithValuesOfModule(resource, context);
+
+    } else if (shouldDecorateResource(resource)) {
       resetQuery(context.getProject(), resource);
       List<Object[]> fields = timeMachine.getMeasuresFields(query);
       ListMultimap<Metric, Double> valuesPerMetric = ArrayListMultimap.create();
@@ -116,6 +150,37 @@ public class TendencyDecorator implements Decorator {
     }
   }
 
+  private boolean isLoadedWithModule(Resource resource) {
+    return pastMeasuresLoader != null && project != null && project.getId() != null && resource.getId() != null;
+  }
+
+  /**
+   * Values of all the resources of the module are loaded at once, instead of executing a time machine query on each resource.
+   */
+  private void decorateWithValuesOfModule(Resource resource, DecoratorContext context) {
+    if (valuesOfModule == null) {
+      Date to = project.getAnalysisDate();
+      Date from = DateUtils.addDays(to, -configuration.getTendencyPeriodInDays());
+      valuesOfModule = pastMeasuresLoader.getMeasuresOfModule(project.getId(), from, to);
+    }
+    // resources are decorated only once, so values are released as soon as possible
+    Map<Integer, double[]> valuesByMetric = valuesOfModule.remove(resource.getId());
+    for (Metric metric : metrics) {
+      Measure measure = context.getMeasure(metric);
+      if (measure != null) {
+        double[] pastValues = (valuesByMetric != null ? valuesByMetric.get(metric.getId()) : null);
+        if (pastValues == null) {
+          pastValues = new double[0];
+        }
+        double[] values = Arrays.copyOf(pastValues, pastValues.length + 1);
+        values[pastValues.length] = (measure.getValue() != null ? measure.getValue() : Double.NaN);
+
+        measure.setTendency(analyser.analyseLevel(values));
+        context.saveMeasure(measure);
+      }
+    }
+  }
+
   private boolean shouldDecorateResource(Resource resource) {
     return StringUtils.equals(Scopes.PROJECT, resource.getScope()) || StringUtils.equals(Scopes.DIRECTORY, resource.getScope());
   }
@@ -19,11 +19,13 @@
  */
 package org.sonar.plugins.core.timemachine;
 
+import org.sonar.api.batch.DecoratedResources;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.ResourceUtils;
 import org.sonar.batch.components.PastSnapshot;
@@ -33,6 +35,7 @@ import org.sonar.core.NotDryRun;
 import java.util.List;
 
 @NotDryRun
+@DecoratedResources(qualifiers = {Qualifiers.PROJECT, Qualifiers.MODULE})
 public final class TimeMachineConfigurationPersister implements Decorator {
 
   private TimeMachineConfiguration configuration;
@@ -19,7 +19,7 @@
  */
 package org.sonar.plugins.core.timemachine;
 
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.*;
@@ -28,6 +28,7 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.Scopes;
+import org.sonar.batch.components.PastMeasureTable;
 import org.sonar.batch.components.PastMeasuresLoader;
 import org.sonar.batch.components.PastSnapshot;
 import org.sonar.batch.components.TimeMachineConfiguration;
@@ -37,23 +38,43 @@ import java.util.List;
 import java.util.Map;
 
 @DependedUpon(DecoratorBarriers.END_OF_TIME_MACHINE)
+@DecoratedResources(scopes = {Scopes.PROJECT, Scopes.DIRECTORY, Scopes.FILE})
 public class VariationDecorator implements Decorator {
 
   private List<PastSnapshot> projectPastSnapshots;
   private MetricFinder metricFinder;
   private PastMeasuresLoader pastMeasuresLoader;
   private final boolean enabledFileVariation;
+  private final Project project;
+
+  /**
+   * Past measures of the module and of its directories, for each past snapshot. Loaded on first use.
+   */
+  private List<Map<Integer, PastMeasureTable>> pastMeasuresOfModule;
 
 
   public VariationDecorator(PastMeasuresLoader pastMeasuresLoader, MetricFinder metricFinder, TimeMachineConfiguration configuration) {
-    this(pastMeasuresLoader, metricFinder, configuration.getProjectPastSnapshots(), configuration.isFileVariationEnabled());
+    this(pastMeasuresLoader, metricFinder, configuration, null);
+  }
+
+  /**
+   * @since 2.15
+   */
+  public VariationDecorator(PastMeasuresLoader pastMeasuresLoader, MetricFinder metricFinder, TimeMachineConfiguration configuration, Project project) {
+    this(pastMeasuresLoader, metricFinder, configuration.getProjectPastSnapshots(), configuration.isFileVariationEnabled(), project);
   }
 
   VariationDecorator(PastMeasuresLoader pastMeasuresLoader, MetricFinder metricFinder, List<PastSnapshot> projectPastSnapshots, boolean enabledFileVariation) {
+    this(pastMeasuresLoader, metricFinder, projectPastSnapshots, enabledFileVariation, null);
+  }
+
+  VariationDecorator(PastMeasuresLoader pastMeasuresLoader, MetricFinder metricFinder, List<PastSnapshot> projectPastSnapshots, boolean enabledFileVariation,
+      Project project) {
     this.pastMeasuresLoader = pastMeasuresLoader;
     this.projectPastSnapshots = projectPastSnapshots;
     this.metricFinder = metricFinder;
     this.enabledFileVariation = enabledFileVariation;
+    this.project = project;
   }
 
   public boolean shouldExecuteOnProject(Project project) {
@@ -66,9 +87,10 @@ public class VariationDecorator implements Decorator {
   }
 
   public void decorate(Resource resource, DecoratorContext context) {
-    for (PastSnapshot projectPastSnapshot : projectPastSnapshots) {
+    for (int i = 0; i < projectPastSnapshots.size(); i++) {
+      PastSnapshot projectPastSnapshot = projectPastSnapshots.get(i);
       if (shouldComputeVariation(projectPastSnapshot.getMode(), resource)) {
-        computeVariation(resource, context, projectPastSnapshot);
+        compareWithPastMeasures(context, projectPastSnapshot.getIndex(), getPastMeasures(resource, i));
       }
     }
   }
@@ -82,17 +104,34 @@ public class VariationDecorator implements Decorator {
     return StringUtils.equals(Scopes.PROJECT, resource.getScope()) || StringUtils.equals(Scopes.DIRECTORY, resource.getScope());
   }
 
-  private void computeVariation(Resource resource, DecoratorContext context, PastSnapshot pastSnapshot) {
-    List<Object[]> pastMeasures = pastMeasuresLoader.getPastMeasures(resource, pastSnapshot);
-    compareWithPastMeasures(context, pastSnapshot.getIndex(), pastMeasures);
+  /**
+   * Past measures of the module and of its directories are loaded at once for all the resources. Other ones, like files,
+   * are loaded on demand.
+   */
+  private PastMeasureTable getPastMeasures(Resource resource, int pastSnapshotPosition) {
+    if (isLoadedWithModule(resource)) {
+      if (pastMeasuresOfModule == null) {
+        pastMeasuresOfModule = Lists.newArrayList();
+        for (PastSnapshot projectPastSnapshot : projectPastSnapshots) {
+          pastMeasuresOfModule.add(pastMeasuresLoader.getPastMeasuresOfModule(project.getId(), projectPastSnapshot));
+        }
+      }
+      // resources are decorated only once, so measures are released as soon as possible
+      PastMeasureTable pastMeasures = pastMeasuresOfModule.get(pastSnapshotPosition).remove(resource.getId());
+      return pastMeasures != null ? pastMeasures : new PastMeasureTable();
+    }
+    return PastMeasureTable.of(pastMeasuresLoader.getPastMeasures(resource, projectPastSnapshots.get(pastSnapshotPosition)));
   }
 
-  void compareWithPastMeasures(DecoratorContext context, int index, List<Object[]> pastMeasures) {
-    Map<MeasureKey, Object[]> pastMeasuresByKey = Maps.newHashMap();
-    for (Object[] pastMeasure : pastMeasures) {
-      pastMeasuresByKey.put(new MeasureKey(pastMeasure), pastMeasure);
-    }
+  private boolean isLoadedWithModule(Resource resource) {
+    return project != null && project.getId() != null && resource.getId() != null
+      && (StringUtils.equals(Scopes.PROJECT, resource.getScope()) || StringUtils.equals(Scopes.DIRECTORY, resource.getScope()));
+  }
 
+  void compareWithPastMeasures(DecoratorContext context, int index, PastMeasureTable pastMeasures) {
+    if (pastMeasures.size() == 0) {
+      return;
+    }
     // for each measure, search equivalent past measure
     for (Measure measure : context.getMeasures(MeasuresFilters.all())) {
       // compare with past measure
@@ -101,16 +140,16 @@ public class VariationDecorator implements Decorator {
       Integer personId = measure.getPersonId();
       Integer ruleId =  (measure instanceof RuleMeasure ? ((RuleMeasure)measure).getRule().getId() : null);
 
-      Object[] pastMeasure = pastMeasuresByKey.get(new MeasureKey(metricId, characteristicId, personId, ruleId));
-      if (updateVariation(measure, pastMeasure, index)) {
+      double pastValue = pastMeasures.get(metricId, characteristicId, personId, ruleId);
+      if (updateVariation(measure, pastValue, index)) {
         context.saveMeasure(measure);
       }
     }
   }
 
-  boolean updateVariation(Measure measure, Object[] pastMeasure, int index) {
-    if (pastMeasure != null && PastMeasuresLoader.hasValue(pastMeasure) && measure.getValue() != null) {
-      double variation = (measure.getValue().doubleValue() - PastMeasuresLoader.getValue(pastMeasure));
+  boolean updateVariation(Measure measure, double pastValue, int index) {
+    if (!Double.isNaN(pastValue) && measure.getValue() != null) {
+      double variation = (measure.getValue().doubleValue() - pastValue);
       measure.setVariation(index, variation);
       return true;
     }
@@ -121,58 +160,4 @@ public class VariationDecorator implements Decorator {
   public String toString() {
     return getClass().getSimpleName();
   }
-
-  static final class MeasureKey {
-    int metricId;
-    Integer characteristicId;
-    Integer personId;
-    Integer ruleId;
-
-    MeasureKey(Object[] pastFields) {
-      metricId = PastMeasuresLoader.getMetricId(pastFields);
-      characteristicId = PastMeasuresLoader.getCharacteristicId(pastFields);
-      personId = PastMeasuresLoader.getPersonId(pastFields);
-      ruleId = PastMeasuresLoader.getRuleId(pastFields);
-    }
-
-    MeasureKey(int metricId, Integer characteristicId, Integer personId, Integer ruleId) {
-      this.metricId = metricId;
-      this.characteristicId = characteristicId;
-      this.personId = personId;
-      this.ruleId = ruleId;
-    }
-
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) {
-        return true;
-      }
-      if (o == null || getClass() != o.getClass()) {
-        return false;
-      }
-      MeasureKey that = (MeasureKey) o;
-      if (metricId != that.metricId) {
-        return false;
-      }
-      if (characteristicId != null ? !characteristicId.equals(that.characteristicId) : that.characteristicId != null) {
-        return false;
-      }
-      if (personId != null ? !personId.equals(that.personId) : that.personId != null) {
-        return false;
-      }
-      if (ruleId != null ? !ruleId.equals(that.ruleId) : that.ruleId != null) {
-        return false;
-      }
-      return true;
-    }
-
-    @Override
-    public int hashCode() {
-      int result = metricId;
-      result = 31 * result + (characteristicId != null ? characteristicId.hashCode() : 0);
-      result = 31 * result + (personId != null ? personId.hashCode() : 0);
-      result = 31 * result + (ruleId != null ? ruleId.hashCode() : 0);
-      return result;
-    }
-  }
 }
@@ -19,21 +19,30 @@
  */
 package org.sonar.plugins.core.timemachine;
 
+import com.google.common.collect.Lists;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.*;
-import org.sonar.api.database.DatabaseSession;
+import org.sonar.api.config.Settings;
 import org.sonar.api.database.model.RuleFailureModel;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.ResourceUtils;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.Violation;
 import org.sonar.api.violations.ViolationQuery;
 import org.sonar.batch.index.ResourcePersister;
 import org.sonar.core.NotDryRun;
+import org.sonar.core.violation.ViolationDao;
+import org.sonar.core.violation.ViolationDto;
 
 import java.util.List;
 
+/**
+ * Violations are not inserted resource by resource, but in JDBC batches when enough of them were collected
+ * and at the end of the decoration of each module.
+ */
 @NotDryRun
 @DependsUpon({ DecoratorBarriers.END_OF_VIOLATION_TRACKING, DecoratorBarriers.START_VIOLATION_PERSISTENCE })
 @DependedUpon(DecoratorBarriers.END_OF_VIOLATION_PERSISTENCE)
@@ -42,13 +51,17 @@ public class ViolationPersisterDecorator implements Decorator {
   private ViolationTrackingDecorator tracker;
   private ResourcePersister persister;
   private RuleFinder ruleFinder;
-  private DatabaseSession session;
+  private ViolationDao violationDao;
+  private Settings settings;
+  private List<ViolationDto> unsavedViolations = Lists.newArrayList();
 
-  public ViolationPersisterDecorator(ViolationTrackingDecorator tracker, ResourcePersister persister, RuleFinder ruleFinder, DatabaseSession session) {
+  public ViolationPersisterDecorator(ViolationTrackingDecorator tracker, ResourcePersister persister, RuleFinder ruleFinder,
+                                     ViolationDao violationDao, Settings settings) {
     this.tracker = tracker;
     this.persister = persister;
     this.ruleFinder = ruleFinder;
-    this.session = session;
+    this.violationDao = violationDao;
+    this.settings = settings;
   }
 
   public boolean shouldExecuteOnProject(Project project) {
@@ -57,46 +70,56 @@ public class ViolationPersisterDecorator implements Decorator {
 
   public void decorate(Resource resource, DecoratorContext context) {
     saveViolations(context.getProject(), context.getViolations(ViolationQuery.create().forResource(resource).setSwitchMode(ViolationQuery.SwitchMode.BOTH)));
+    if (ResourceUtils.isSet(resource)) {
+      // end of module
+      flush();
+    }
   }
 
   void saveViolations(Project project, List<Violation> violations) {
+    Resource resource = null;
+    Snapshot snapshot = null;
     for (Violation violation : violations) {
+      if (snapshot == null || violation.getResource() != resource) {
+        resource = violation.getResource();
+        snapshot = persister.saveResource(project, resource);
+      }
       RuleFailureModel referenceViolation = tracker.getReferenceViolation(violation);
-      save(project, violation, referenceViolation);
+      unsavedViolations.add(createDto(violation, snapshot, referenceViolation));
     }
-    session.commit();
-  }
-
-  public void save(Project project, Violation violation, RuleFailureModel referenceViolation) {
-    Snapshot snapshot = persister.saveResource(project, violation.getResource());
-
-    RuleFailureModel model = createModel(violation);
-    if (referenceViolation != null) {
-      model.setPermanentId(referenceViolation.getPermanentId());
+    if (unsavedViolations.size() >= getBatchSize()) {
+      flush();
     }
-    model.setSnapshotId(snapshot.getId());
-    session.saveWithoutFlush(model);
+  }
 
-    if (model.getPermanentId() == null) {
-      model.setPermanentId(model.getId());
-      session.saveWithoutFlush(model);
+  void flush() {
+    if (!unsavedViolations.isEmpty()) {
+      violationDao.insert(unsavedViolations, getBatchSize());
+      unsavedViolations = Lists.newArrayList();
     }
-    violation.setMessage(model.getMessage());// the message can be changed in the class RuleFailure (truncate + trim)
   }
 
+  private int getBatchSize() {
+    int size = settings.getInt(CoreProperties.VIOLATIONS_BATCH_SIZE);
+    return size > 0 ? size : CoreProperties.VIOLATIONS_BATCH_SIZE_DEFAULT_VALUE;
+  }
 
-  private RuleFailureModel createModel(Violation violation) {
-    RuleFailureModel model = new RuleFailureModel();
+  private ViolationDto createDto(Violation violation, Snapshot snapshot, RuleFailureModel referenceViolation) {
     Rule rule = ruleFinder.findByKey(violation.getRule().getRepositoryKey(), violation.getRule().getKey());
-    model.setRuleId(rule.getId());
-    model.setPriority(violation.getSeverity());
-    model.setLine(violation.getLineId());
-    model.setMessage(violation.getMessage());
-    model.setCost(violation.getCost());
-    model.setChecksum(violation.getChecksum());
-    model.setCreatedAt(violation.getCreatedAt());
-    model.setSwitchedOff(violation.isSwitchedOff());
-    model.setPersonId(violation.getPersonId());
-    return model;
+    // the message can be changed (truncate + trim)
+    violation.setMessage(RuleFailureModel.abbreviateMessage(violation.getMessage()));
+    return new ViolationDto()
+      .setSnapshotId(snapshot.getId())
+      .setRuleId(rule.getId())
+      .setPriority(violation.getSeverity() != null ? violation.getSeverity().ordinal() : null)
+      .setLine(violation.getLineId())
+      .setMessage(violation.getMessage())
+      .setCost(violation.getCost())
+      .setChecksum(violation.getChecksum())
+      .setCreatedAt(violation.getCreatedAt())
+      .setSwitchedOff(violation.isSwitchedOff())
+      .setPersonId(violation.getPersonId())
+      // new violations get their own id as permanent id when inserted
+      .setPermanentId(referenceViolation != null ? referenceViolation.getPermanentId() : null);
   }
 }
@@ -49,6 +49,26 @@ public class ViolationTrackingBlocksRecognizer {
     return new HashedSequence<StringText>(seq, hashes);
   }
 
+  /**
+   * A block can only contain lines with same hash, so hashes can be used to find candidates for {@link #computeLengthOfMaximalBlock(int, int)}.
+   *
+   * @return hash of the line of reference source, or null if there is no such line
+   */
+  public Integer getReferenceLineHash(int line) {
+    return hash(a, line);
+  }
+
+  /**
+   * @return hash of the line of source, or null if there is no such line
+   */
+  public Integer getLineHash(int line) {
+    return hash(b, line);
+  }
+
+  private Integer hash(HashedSequence<StringText> seq, int line) {
+    return line >= 0 && line < seq.length() ? cmp.hash(seq, line) : null;
+  }
+
   public int computeLengthOfMaximalBlock(int startA, int startB) {
     if (!cmp.equals(a, startA, b, startB)) {
       return 0;
@@ -21,8 +21,6 @@ package org.sonar.plugins.core.timemachine;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.*;
-import org.apache.commons.lang.ObjectUtils;
-import org.apache.commons.lang.StringUtils;
 import org.sonar.api.batch.*;
 import org.sonar.api.database.model.RuleFailureModel;
 import org.sonar.api.resources.Project;
@@ -35,6 +33,9 @@ import java.util.*;
 @DependsUpon({DecoratorBarriers.END_OF_VIOLATIONS_GENERATION, DecoratorBarriers.START_VIOLATION_TRACKING})
 @DependedUpon(DecoratorBarriers.END_OF_VIOLATION_TRACKING)
 public class ViolationTrackingDecorator implements Decorator {
+
+  static final int MAX_CANDIDATES_IN_BLOCKS = 100;
+
   private ReferenceAnalysis referenceAnalysis;
   private Map<Violation, RuleFailureModel> referenceViolationsMap = Maps.newIdentityHashMap();
   private SonarIndex index;
@@ -59,7 +60,6 @@ public class ViolationTrackingDecorator implements Decorator {
     }
 
     String source = index.getSource(resource);
-    String referenceSource = referenceAnalysis.getSource(resource);
 
     // Load new violations
     List<Violation> newViolations = prepareNewViolations(context, source);
@@ -67,21 +67,39 @@ public class ViolationTrackingDecorator implements Decorator {
     // Load reference violations
     List<RuleFailureModel> referenceViolations = referenceAnalysis.getViolations(resource);
 
-    // SONAR-3072 Construct blocks recognizer based on reference source
+    // SONAR-3072 Construct blocks recognizer based on reference source, which is useless if there are no reference violations
     ViolationTrackingBlocksRecognizer rec = null;
-    if (source != null && referenceSource != null) {
-      rec = new ViolationTrackingBlocksRecognizer(referenceSource, source);
+    if (source != null && !referenceViolations.isEmpty()) {
+      String referenceSource = referenceAnalysis.getSource(resource);
+      if (referenceSource != null) {
+        rec = new ViolationTrackingBlocksRecognizer(referenceSource, source);
+      }
+    }
+
+    // Checksums stored before the introduction of 64-bit line hashes are MD5 of lines
+    List<String> legacyChecksums = Collections.emptyList();
+    if (hasLegacyChecksums(referenceViolations)) {
+      legacyChecksums = SourceChecksum.lineChecksumsOfFile(source);
     }
 
     // Map new violations with old ones
-    mapViolations(newViolations, referenceViolations, rec);
+    mapViolations(newViolations, referenceViolations, legacyChecksums, rec);
+  }
+
+  private static boolean hasLegacyChecksums(List<RuleFailureModel> referenceViolations) {
+    for (RuleFailureModel referenceViolation : referenceViolations) {
+      if (SourceChecksum.isLegacyChecksum(referenceViolation.getChecksum())) {
+        return true;
+      }
+    }
+    return false;
   }
 
   private List<Violation> prepareNewViolations(DecoratorContext context, String source) {
     List<Violation> result = Lists.newArrayList();
-    List<String> checksums = SourceChecksum.lineChecksumsOfFile(source);
+    long[] hashes = SourceChecksum.lineHashesOfFile(source);
     for (Violation violation : context.getViolations()) {
-      violation.setChecksum(SourceChecksum.getChecksumForLine(checksums, violation.getLineId()));
+      violation.setChecksum(SourceChecksum.getChecksumForLine(hashes, violation.getLineId()));
       result.add(violation);
     }
     return result;
@@ -96,25 +114,28 @@ public class ViolationTrackingDecorator implements Decorator {
     return mapViolations(newViolations, pastViolations, null);
   }
 
-  private Map<Violation, RuleFailureModel> mapViolations(List<Violation> newViolations, List<RuleFailureModel> pastViolations, ViolationTrackingBlocksRecognizer rec) {
-    Multimap<Integer, RuleFailureModel> pastViolationsByRule = LinkedHashMultimap.create();
-    for (RuleFailureModel pastViolation : pastViolations) {
-      pastViolationsByRule.put(pastViolation.getRuleId(), pastViolation);
-    }
+  @VisibleForTesting
+  Map<Violation, RuleFailureModel> mapViolations(List<Violation> newViolations, List<RuleFailureModel> pastViolations, ViolationTrackingBlocksRecognizer rec) {
+    return mapViolations(newViolations, pastViolations, Collections.<String>emptyList(), rec);
+  }
+
+  /**
+   * @param legacyChecksums MD5 checksums of the lines of new source, used to match past violations, which still have such checksums
+   */
+  @VisibleForTesting
+  Map<Violation, RuleFailureModel> mapViolations(List<Violation> newViolations, List<RuleFailureModel> pastViolations,
+      List<String> legacyChecksums, ViolationTrackingBlocksRecognizer rec) {
+    PastViolations index = new PastViolations(pastViolations, legacyChecksums);
 
     // Match the permanent id of the violation. This id is for example set explicitly when injecting manual violations
     for (Violation newViolation : newViolations) {
-      mapViolation(newViolation,
-          findPastViolationWithSamePermanentId(newViolation, pastViolationsByRule.get(newViolation.getRule().getId())),
-          pastViolationsByRule, referenceViolationsMap);
+      mapViolation(newViolation, index.findWithSamePermanentId(newViolation), index, referenceViolationsMap);
     }
 
     // Try first to match violations on same rule with same line and with same checkum (but not necessarily with same message)
     for (Violation newViolation : newViolations) {
       if (isNotAlreadyMapped(newViolation, referenceViolationsMap)) {
-        mapViolation(newViolation,
-            findPastViolationWithSameLineAndChecksum(newViolation, pastViolationsByRule.get(newViolation.getRule().getId())),
-            pastViolationsByRule, referenceViolationsMap);
+        mapViolation(newViolation, index.findWithSameLineAndChecksum(newViolation), index, referenceViolationsMap);
       }
     }
 
@@ -123,43 +144,20 @@ public class ViolationTrackingDecorator implements Decorator {
       // FIXME Godin: this condition just in order to bypass test
       if (rec != null) {
         // SONAR-3072
-
-        List<ViolationPair> possiblePairs = Lists.newArrayList();
-        for (Violation newViolation : newViolations) {
-          for (RuleFailureModel pastViolation : pastViolationsByRule.get(newViolation.getRule().getId())) {
-            int weight = rec.computeLengthOfMaximalBlock(pastViolation.getLine() - 1, newViolation.getLineId() - 1);
-            possiblePairs.add(new ViolationPair(pastViolation, newViolation, weight));
-          }
-        }
-        Collections.sort(possiblePairs, ViolationPair.COMPARATOR);
-
-        Set<RuleFailureModel> pp = Sets.newHashSet(pastViolations);
-        for (ViolationPair pair : possiblePairs) {
-          Violation newViolation = pair.getNewViolation();
-          RuleFailureModel pastViolation = pair.getPastViolation();
-          if (isNotAlreadyMapped(newViolation, referenceViolationsMap) && pp.contains(pastViolation)) {
-            pp.remove(pastViolation);
-            mapViolation(newViolation, pastViolation, pastViolationsByRule, referenceViolationsMap);
-          }
-        }
-
+        mapViolationsInSameBlocks(newViolations, index, rec);
       }
 
       // Try then to match violations on same rule with same message and with same checksum
       for (Violation newViolation : newViolations) {
         if (isNotAlreadyMapped(newViolation, referenceViolationsMap)) {
-          mapViolation(newViolation,
-              findPastViolationWithSameChecksumAndMessage(newViolation, pastViolationsByRule.get(newViolation.getRule().getId())),
-              pastViolationsByRule, referenceViolationsMap);
+          mapViolation(newViolation, index.findWithSameChecksumAndMessage(newViolation), index, referenceViolationsMap);
         }
       }
 
       // Try then to match violations on same rule with same line and with same message
       for (Violation newViolation : newViolations) {
         if (isNotAlreadyMapped(newViolation, referenceViolationsMap)) {
-          mapViolation(newViolation,
-              findPastViolationWithSameLineAndMessage(newViolation, pastViolationsByRule.get(newViolation.getRule().getId())),
-              pastViolationsByRule, referenceViolationsMap);
+          mapViolation(newViolation, index.findWithSameLineAndMessage(newViolation), index, referenceViolationsMap);
         }
       }
 
@@ -167,89 +165,91 @@ public class ViolationTrackingDecorator implements Decorator {
       // See SONAR-2812
       for (Violation newViolation : newViolations) {
         if (isNotAlreadyMapped(newViolation, referenceViolationsMap)) {
-          mapViolation(newViolation,
-              findPastViolationWithSameChecksum(newViolation, pastViolationsByRule.get(newViolation.getRule().getId())),
-              pastViolationsByRule, referenceViolationsMap);
+          mapViolation(newViolation, index.findWithSameChecksum(newViolation), index, referenceViolationsMap);
         }
       }
     }
     return referenceViolationsMap;
   }
 
-  private boolean isNotAlreadyMapped(Violation newViolation, Map<Violation, RuleFailureModel> violationMap) {
-    return !violationMap.containsKey(newViolation);
-  }
-
-  private RuleFailureModel findPastViolationWithSameChecksum(Violation newViolation, Collection<RuleFailureModel> pastViolations) {
-    for (RuleFailureModel pastViolation : pastViolations) {
-      if (isSameChecksum(newViolation, pastViolation)) {
-        return pastViolation;
+  /**
+   * Pairs of violations on same rule are matched by decreasing length of the block of unchanged lines, which contains both of them.
+   * A block can only contain two lines with same content, so pairs are only built for such lines. All other pairs have weight 0 :
+   * they are matched after all others, in order of new violations and then of past violations, so each remaining
+   * new violation is simply matched with the first remaining past violation on same rule.
+   * <p>
+   * Lines, which are repeated more than {@link #MAX_CANDIDATES_IN_BLOCKS} times with a violation of the same rule, are not
+   * distinctive enough to be located in blocks : their violations are matched with weight 0, so that pathological files
+   * do not produce a quadratic number of pairs.
+   * </p>
+   * <p>
+   * Only past violations, which are not mapped yet, are candidates : those mapped by previous passes are not in index anymore,
+   * and those mapped by a pair are removed from index before next pairs are checked.
+   * </p>
+   */
+  private void mapViolationsInSameBlocks(List<Violation> newViolations, PastViolations index, ViolationTrackingBlocksRecognizer rec) {
+    Multimap<List<Object>, RuleFailureModel> pastViolationsByLineHash = LinkedHashMultimap.create();
+    for (RuleFailureModel pastViolation : index.getAll()) {
+      Integer hash = pastViolation.getLine() == null ? null : rec.getReferenceLineHash(pastViolation.getLine() - 1);
+      if (hash != null) {
+        pastViolationsByLineHash.put(Arrays.<Object>asList(pastViolation.getRuleId(), hash), pastViolation);
       }
     }
-    return null;
-  }
 
-  private RuleFailureModel findPastViolationWithSameLineAndMessage(Violation newViolation, Collection<RuleFailureModel> pastViolations) {
-    for (RuleFailureModel pastViolation : pastViolations) {
-      if (isSameLine(newViolation, pastViolation) && isSameMessage(newViolation, pastViolation)) {
-        return pastViolation;
-      }
-    }
-    return null;
-  }
-
-  private RuleFailureModel findPastViolationWithSameChecksumAndMessage(Violation newViolation, Collection<RuleFailureModel> pastViolations) {
-    for (RuleFailureModel pastViolation : pastViolations) {
-      if (isSameChecksum(newViolation, pastViolation) && isSameMessage(newViolation, pastViolation)) {
-        return pastViolation;
+    List<ViolationPair> possiblePairs = Lists.newArrayList();
+    Map<List<Integer>, Integer> weightsByLines = Maps.newHashMap();
+    for (Violation newViolation : newViolations) {
+      Integer hash = newViolation.getLineId() == null ? null : rec.getLineHash(newViolation.getLineId() - 1);
+      if (hash != null && isNotAlreadyMapped(newViolation, referenceViolationsMap)) {
+        Collection<RuleFailureModel> candidates = pastViolationsByLineHash.get(Arrays.<Object>asList(newViolation.getRule().getId(), hash));
+        if (candidates.size() > MAX_CANDIDATES_IN_BLOCKS) {
+          continue;
+        }
+        for (RuleFailureModel pastViolation : candidates) {
+          List<Integer> lines = Arrays.asList(pastViolation.getLine(), newViolation.getLineId());
+          Integer weight = weightsByLines.get(lines);
+          if (weight == null) {
+            weight = rec.computeLengthOfMaximalBlock(pastViolation.getLine() - 1, newViolation.getLineId() - 1);
+            weightsByLines.put(lines, weight);
+          }
+          if (weight > 0) {
+            possiblePairs.add(new ViolationPair(pastViolation, newViolation, weight));
+          }
+        }
       }
     }
-    return null;
-  }
+    Collections.sort(possiblePairs, ViolationPair.COMPARATOR);
 
-  private RuleFailureModel findPastViolationWithSameLineAndChecksum(Violation newViolation, Collection<RuleFailureModel> pastViolations) {
-    for (RuleFailureModel pastViolation : pastViolations) {
-      if (isSameLine(newViolation, pastViolation) && isSameChecksum(newViolation, pastViolation)) {
-        return pastViolation;
+    for (ViolationPair pair : possiblePairs) {
+      Violation newViolation = pair.getNewViolation();
+      RuleFailureModel pastViolation = pair.getPastViolation();
+      if (isNotAlreadyMapped(newViolation, referenceViolationsMap) && index.contains(pastViolation)) {
+        mapViolation(newViolation, pastViolation, index, referenceViolationsMap);
       }
     }
-    return null;
-  }
-
-  private RuleFailureModel findPastViolationWithSamePermanentId(Violation newViolation, Collection<RuleFailureModel> pastViolations) {
-    for (RuleFailureModel pastViolation : pastViolations) {
-      if (isSamePermanentId(newViolation, pastViolation)) {
-        return pastViolation;
+    for (Violation newViolation : newViolations) {
+      if (isNotAlreadyMapped(newViolation, referenceViolationsMap)) {
+        RuleFailureModel pastViolation = index.findWithSameRule(newViolation);
+        if (pastViolation != null) {
+          mapViolation(newViolation, pastViolation, index, referenceViolationsMap);
+        }
       }
     }
-    return null;
-  }
-
-  private boolean isSameChecksum(Violation newViolation, RuleFailureModel pastViolation) {
-    return StringUtils.equals(pastViolation.getChecksum(), newViolation.getChecksum());
-  }
-
-  private boolean isSameLine(Violation newViolation, RuleFailureModel pastViolation) {
-    return ObjectUtils.equals(pastViolation.getLine(), newViolation.getLineId());
   }
 
-  private boolean isSameMessage(Violation newViolation, RuleFailureModel pastViolation) {
-    return StringUtils.equals(RuleFailureModel.abbreviateMessage(newViolation.getMessage()), pastViolation.getMessage());
-  }
-
-  private boolean isSamePermanentId(Violation newViolation, RuleFailureModel pastViolation) {
-    return newViolation.getPermanentId() != null && newViolation.getPermanentId().equals(pastViolation.getPermanentId());
+  private boolean isNotAlreadyMapped(Violation newViolation, Map<Violation, RuleFailureModel> violationMap) {
+    return !violationMap.containsKey(newViolation);
   }
 
   private void mapViolation(Violation newViolation, RuleFailureModel pastViolation,
-      Multimap<Integer, RuleFailureModel> pastViolationsByRule, Map<Violation, RuleFailureModel> violationMap) {
+      PastViolations index, Map<Violation, RuleFailureModel> violationMap) {
     if (pastViolation != null) {
       newViolation.setCreatedAt(pastViolation.getCreatedAt());
       newViolation.setPermanentId(pastViolation.getPermanentId());
       newViolation.setSwitchedOff(pastViolation.isSwitchedOff());
       newViolation.setPersonId(pastViolation.getPersonId());
       newViolation.setNew(false);
-      pastViolationsByRule.remove(newViolation.getRule().getId(), pastViolation);
+      index.remove(pastViolation);
       violationMap.put(newViolation, pastViolation);
 
     } else {
@@ -263,4 +263,109 @@ public class ViolationTrackingDecorator implements Decorator {
     return getClass().getSimpleName();
   }
 
+  /**
+   * Past violations, which are not mapped yet, indexed by rule and by each combination of fields used to track violations.
+   * Each index keeps the order of past violations, so that the first matching violation is the same as the one
+   * found by a sequential scan of past violations of the rule.
+   */
+  private static final class PastViolations {
+    private final Multimap<Integer, RuleFailureModel> byRule = LinkedHashMultimap.create();
+    private final Multimap<List<Object>, RuleFailureModel> byPermanentId = LinkedHashMultimap.create();
+    private final Multimap<List<Object>, RuleFailureModel> byLineAndChecksum = LinkedHashMultimap.create();
+    private final Multimap<List<Object>, RuleFailureModel> byChecksumAndMessage = LinkedHashMultimap.create();
+    private final Multimap<List<Object>, RuleFailureModel> byLineAndMessage = LinkedHashMultimap.create();
+    private final Multimap<List<Object>, RuleFailureModel> byChecksum = LinkedHashMultimap.create();
+    private final List<String> legacyChecksums;
+
+    PastViolations(List<RuleFailureModel> pastViolations, List<String> legacyChecksums) {
+      this.legacyChecksums = legacyChecksums;
+      for (RuleFailureModel pastViolation : pastViolations) {
+        if (byRule.put(pastViolation.getRuleId(), pastViolation)) {
+          if (pastViolation.getPermanentId() != null) {
+            byPermanentId.put(key(pastViolation.getRuleId(), pastViolation.getPermanentId()), pastViolation);
+          }
+          byLineAndChecksum.put(key(pastViolation.getRuleId(), pastViolation.getLine(), pastViolation.getChecksum()), pastViolation);
+          byChecksumAndMessage.put(key(pastViolation.getRuleId(), pastViolation.getChecksum(), pastViolation.getMessage()), pastViolation);
+          byLineAndMessage.put(key(pastViolation.getRuleId(), pastViolation.getLine(), pastViolation.getMessage()), pastViolation);
+          byChecksum.put(key(pastViolation.getRuleId(), pastViolation.getChecksum()), pastViolation);
+        }
+      }
+    }
+
+    private static List<Object> key(Object... values) {
+      return Arrays.asList(values);
+    }
+
+    private static RuleFailureModel first(Collection<RuleFailureModel> pastViolations) {
+      return pastViolations.isEmpty() ? null : pastViolations.iterator().next();
+    }
+
+    Collection<RuleFailureModel> getAll() {
+      return byRule.values();
+    }
+
+    boolean contains(RuleFailureModel pastViolation) {
+      return byRule.containsEntry(pastViolation.getRuleId(), pastViolation);
+    }
+
+    RuleFailureModel findWithSameRule(Violation newViolation) {
+      return first(byRule.get(newViolation.getRule().getId()));
+    }
+
+    RuleFailureModel findWithSamePermanentId(Violation newViolation) {
+      if (newViolation.getPermanentId() == null) {
+        return null;
+      }
+      return first(byPermanentId.get(key(newViolation.getRule().getId(), newViolation.getPermanentId())));
+    }
+
+    RuleFailureModel findWithSameLineAndChecksum(Violation newViolation) {
+      RuleFailureModel pastViolation = first(byLineAndChecksum.get(key(newViolation.getRule().getId(), newViolation.getLineId(), newViolation.getChecksum())));
+      if (pastViolation == null && !legacyChecksums.isEmpty()) {
+        pastViolation = first(byLineAndChecksum.get(key(newViolation.getRule().getId(), newViolation.getLineId(), legacyChecksumOf(newViolation))));
+      }
+      return pastViolation;
+    }
+
+    RuleFailureModel findWithSameChecksumAndMessage(Violation newViolation) {
+      RuleFailureModel pastViolation = first(byChecksumAndMessage.get(key(newViolation.getRule().getId(), newViolation.getChecksum(), messageOf(newViolation))));
+      if (pastViolation == null && !legacyChecksums.isEmpty()) {
+        pastViolation = first(byChecksumAndMessage.get(key(newViolation.getRule().getId(), legacyChecksumOf(newViolation), messageOf(newViolation))));
+      }
+      return pastViolation;
+    }
+
+    RuleFailureModel findWithSameLineAndMessage(Violation newViolation) {
+      return first(byLineAndMessage.get(key(newViolation.getRule().getId(), newViolation.getLineId(), messageOf(newViolation))));
+    }
+
+    RuleFailureModel findWithSameChecksum(Violation newViolation) {
+      RuleFailureModel pastViolation = first(byChecksum.get(key(newViolation.getRule().getId(), newViolation.getChecksum())));
+      if (pastViolation == null && !legacyChecksums.isEmpty()) {
+        pastViolation = first(byChecksum.get(key(newViolation.getRule().getId(), legacyChecksumOf(newViolation))));
+      }
+      return pastViolation;
+    }
+
+    private String legacyChecksumOf(Violation newViolation) {
+      return SourceChecksum.getChecksumForLine(legacyChecksums, newViolation.getLineId());
+    }
+
+    /**
+     * Messages are compared using database format
+     */
+    private static String messageOf(Violation newViolation) {
+      return RuleFailureModel.abbreviateMessage(newViolation.getMessage());
+    }
+
+    void remove(RuleFailureModel pastViolation) {
+      byRule.remove(pastViolation.getRuleId(), pastViolation);
+      byPermanentId.remove(key(pastViolation.getRuleId(), pastViolation.getPermanentId()), pastViolation);
+      byLineAndChecksum.remove(key(pastViolation.getRuleId(), pastViolation.getLine(), pastViolation.getChecksum()), pastViolation);
+      byChecksumAndMessage.remove(key(pastViolation.getRuleId(), pastViolation.getChecksum(), pastViolation.getMessage()), pastViolation);
+      byLineAndMessage.remove(key(pastViolation.getRuleId(), pastViolation.getLine(), pastViolation.getMessage()), pastViolation);
+      byChecksum.remove(key(pastViolation.getRuleId(), pastViolation.getChecksum()), pastViolation);
+    }
+  }
+
 }
@@ -21,6 +21,7 @@ package org.sonar.plugins.core.timemachine;
 
 import org.junit.Test;
 import org.sonar.api.resources.JavaFile;
+import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
@@ -46,4 +47,31 @@ public class ReferenceAnalysisTest extends AbstractDbUnitTestCase {
     assertThat(referenceAnalysis.getSource(resource), is(""));
   }
 
+  @Test
+  public void shouldLoadResourcesOfModuleAtOnce() {
+    setupData("shared");
+
+    Project module = new Project("project");
+    module.setId(100);
+    ReferenceAnalysis referenceAnalysis = new ReferenceAnalysis(getSession(), module);
+
+    Resource resource = new JavaFile("");
+    resource.setEffectiveKey("project:org.foo.Bar");
+    assertThat(referenceAnalysis.getViolations(resource).size(), is(1));
+    assertThat(referenceAnalysis.getSource(resource), is("this is the file content"));
+
+    // evicted once read
+    assertThat(referenceAnalysis.getViolations(resource).size(), is(0));
+    assertThat(referenceAnalysis.getSource(resource), is(""));
+
+    // sources are loaded only for resources with violations
+    resource.setEffectiveKey("project:org.foo.Clean");
+    assertThat(referenceAnalysis.getViolations(resource).size(), is(0));
+    assertThat(referenceAnalysis.getSource(resource), is(""));
+
+    resource.setEffectiveKey("project:no-such-resource");
+    assertThat(referenceAnalysis.getViolations(resource).size(), is(0));
+    assertThat(referenceAnalysis.getSource(resource), is(""));
+  }
+
 }
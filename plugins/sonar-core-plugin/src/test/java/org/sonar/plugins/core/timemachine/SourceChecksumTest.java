@@ -59,4 +59,46 @@ public class SourceChecksumTest {
     assertThat(SourceChecksum.lineChecksum("\tvoid  method()  {\n"),
         equalTo(SourceChecksum.lineChecksum("  void method() {")));
   }
+
+  @Test
+  public void shouldGetHashForLine() {
+    long[] hashes = SourceChecksum.lineHashesOfFile("line");
+    assertThat(SourceChecksum.getChecksumForLine(hashes, null), nullValue());
+    assertThat(SourceChecksum.getChecksumForLine(hashes, 0), nullValue());
+    assertThat(SourceChecksum.getChecksumForLine(hashes, 1), is(SourceChecksum.toChecksum(hashes[0])));
+    assertThat(SourceChecksum.getChecksumForLine(hashes, 2), nullValue());
+    assertThat(SourceChecksum.lineHashesOfFile(null).length, is(0));
+  }
+
+  @Test
+  public void shouldSplitLinesAndIgnoreSpacesWhenHashing() {
+    long[] crlf = SourceChecksum.lineHashesOfFile("Hello\r\nWorld\n");
+    long[] lf = SourceChecksum.lineHashesOfFile("Hello\nWorld\n");
+    long[] cr = SourceChecksum.lineHashesOfFile("Hello\rWorld\r");
+    assertThat(crlf.length, is(3));
+    assertThat(crlf[0], not(equalTo(crlf[1])));
+    assertThat(lf, equalTo(crlf));
+    assertThat(cr, equalTo(crlf));
+
+    assertThat(SourceChecksum.lineHashesOfFile("\tvoid  method()  {"),
+        equalTo(SourceChecksum.lineHashesOfFile("  void method() {")));
+    assertThat(SourceChecksum.lineHashesOfFile(""), equalTo(SourceChecksum.lineHashesOfFile("  ")));
+  }
+
+  @Test
+  public void shouldHaveSameLinesThanLegacyChecksums() {
+    String source = "a\r\n\r\nb\rc\n\n";
+    List<String> legacyChecksums = SourceChecksum.lineChecksumsOfFile(source);
+    assertThat(legacyChecksums.size(), is(SourceChecksum.lineHashesOfFile(source).length));
+    assertThat(legacyChecksums.get(2), is(SourceChecksum.lineChecksum("b")));
+  }
+
+  @Test
+  public void shouldFormatChecksumsOnFixedLength() {
+    assertThat(SourceChecksum.toChecksum(1L), is("0000000000000001"));
+    assertThat(SourceChecksum.toChecksum(-1L), is("ffffffffffffffff"));
+    assertThat(SourceChecksum.isLegacyChecksum(SourceChecksum.toChecksum(-1L)), is(false));
+    assertThat(SourceChecksum.isLegacyChecksum(SourceChecksum.lineChecksum("line")), is(true));
+    assertThat(SourceChecksum.isLegacyChecksum(null), is(false));
+  }
 }
@@ -59,6 +59,15 @@ public class TendencyAnalyserTest {
     assertEquals(TendencyAnalyser.TENDENCY_NEUTRAL, slopeData.getLevel());
   }
 
+  @Test
+  public void shouldIgnoreMissingValuesOfPrimitiveArrays() {
+    TendencyAnalyser.SlopeData slopeData = analyser.analyse(new double[]{10.0, Double.NaN, 9.9});
+    TendencyAnalyser.SlopeData expected = analyser.analyse(getValues(new Double[]{10.0, null, 9.9}));
+    assertEquals(expected.getSlope(), slopeData.getSlope());
+    assertEquals(expected.getCorrelationRate(), slopeData.getCorrelationRate());
+    assertThat(analyser.analyseLevel(new double[]{Double.NaN, 10.0}), nullValue());
+  }
+
   @Test
   public void testTendencyOnTwoZeroDays() {
     Double[] doubles = new Double[]{0.0, 0.0};
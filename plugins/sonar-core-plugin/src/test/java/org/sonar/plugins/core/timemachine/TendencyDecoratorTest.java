@@ -19,21 +19,26 @@
  */
 package org.sonar.plugins.core.timemachine;
 
+import com.google.common.collect.Maps;
 import org.junit.Test;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.TimeMachine;
 import org.sonar.api.batch.TimeMachineQuery;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.JavaPackage;
 import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+import org.sonar.batch.components.PastMeasuresLoader;
 import org.sonar.batch.components.TimeMachineConfiguration;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -108,6 +113,38 @@ public class TendencyDecoratorTest {
     verify(analyser, never()).analyseLevel(anyList());
   }
 
+  @Test
+  public void shouldLoadValuesOfModuleAtOnce() throws ParseException {
+    Project project = new Project("foo");
+    project.setId(1);
+    project.setAnalysisDate(date("2009-12-25"));
+    Resource javaPackage = new JavaPackage("org.foo").setId(2);
+
+    Metric lines = new Metric("lines").setId(1);
+    Metric coverage = new Metric("coverage").setId(2);
+    Map<Integer, double[]> valuesOfPackage = Maps.newHashMap();
+    valuesOfPackage.put(lines.getId(), new double[]{1200.0, Double.NaN, 1150.0});
+    Map<Integer, Map<Integer, double[]>> valuesOfModule = Maps.newHashMap();
+    valuesOfModule.put(2, valuesOfPackage);
+    PastMeasuresLoader pastMeasuresLoader = mock(PastMeasuresLoader.class);
+    when(pastMeasuresLoader.getMeasuresOfModule(1, date("2009-11-25"), date("2009-12-25"))).thenReturn(valuesOfModule);
+
+    TendencyAnalyser analyser = mock(TendencyAnalyser.class);
+    TendencyDecorator decorator = new TendencyDecorator(pastMeasuresLoader, project, Arrays.asList(lines, coverage), analyser, newConf());
+
+    DecoratorContext packageContext = mock(DecoratorContext.class);
+    when(packageContext.getMeasure(lines)).thenReturn(new Measure(lines, 1400.0));
+    decorator.decorate(javaPackage, packageContext);
+
+    DecoratorContext projectContext = mock(DecoratorContext.class);
+    when(projectContext.getMeasure(coverage)).thenReturn(new Measure(coverage, 80.0));
+    decorator.decorate(project, projectContext);
+
+    verify(analyser).analyseLevel(aryEq(new double[]{1200.0, Double.NaN, 1150.0, 1400.0}));
+    verify(analyser).analyseLevel(aryEq(new double[]{80.0}));
+    verify(pastMeasuresLoader, times(1)).getMeasuresOfModule(anyInt(), any(Date.class), any(Date.class));
+  }
+
   private Date date(String date) throws ParseException {
     return new SimpleDateFormat("yyyy-MM-dd").parse(date);
   }
@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.core.timemachine;
 
+import com.google.common.collect.Maps;
 import org.junit.Test;
 import org.mockito.Matchers;
 import org.sonar.api.CoreProperties;
@@ -26,6 +27,7 @@ import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.measures.*;
 import org.sonar.api.resources.*;
 import org.sonar.api.rules.Rule;
+import org.sonar.batch.components.PastMeasureTable;
 import org.sonar.batch.components.PastMeasuresLoader;
 import org.sonar.batch.components.PastSnapshot;
 import org.sonar.batch.components.TimeMachineConfiguration;
@@ -33,6 +35,7 @@ import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -160,6 +163,37 @@ public class VariationDecoratorTest extends AbstractDbUnitTestCase {
     assertThat(violations.getVariation1(), is(20.0));
   }
 
+  @Test
+  public void shouldLoadPastMeasuresOfModuleAtOnce() {
+    Project project = new Project("foo");
+    project.setId(1);
+    Resource javaPackage = new JavaPackage("org.foo").setId(2);
+    PastSnapshot pastSnapshot1 = new PastSnapshot("days", new Date()).setIndex(1);
+
+    PastMeasuresLoader pastMeasuresLoader = mock(PastMeasuresLoader.class);
+    Map<Integer, PastMeasureTable> pastMeasures = Maps.newHashMap();
+    pastMeasures.put(1, new PastMeasureTable().put(NCLOC_ID, null, null, null, 1000.0));
+    pastMeasures.put(2, new PastMeasureTable().put(NCLOC_ID, null, null, null, 180.0));
+    when(pastMeasuresLoader.getPastMeasuresOfModule(1, pastSnapshot1)).thenReturn(pastMeasures);
+
+    VariationDecorator decorator = new VariationDecorator(pastMeasuresLoader, mock(MetricFinder.class), Arrays.asList(pastSnapshot1), false, project);
+
+    DecoratorContext packageContext = mock(DecoratorContext.class);
+    Measure packageNcloc = newMeasure(NCLOC, 200.0);
+    when(packageContext.getMeasures(Matchers.<MeasuresFilter>anyObject())).thenReturn(Arrays.asList(packageNcloc));
+    decorator.decorate(javaPackage, packageContext);
+
+    DecoratorContext projectContext = mock(DecoratorContext.class);
+    Measure projectNcloc = newMeasure(NCLOC, 1200.0);
+    when(projectContext.getMeasures(Matchers.<MeasuresFilter>anyObject())).thenReturn(Arrays.asList(projectNcloc));
+    decorator.decorate(project, projectContext);
+
+    assertThat(packageNcloc.getVariation1(), is(20.0));
+    assertThat(projectNcloc.getVariation1(), is(200.0));
+    verify(pastMeasuresLoader, times(1)).getPastMeasuresOfModule(1, pastSnapshot1);
+    verify(pastMeasuresLoader, never()).getPastMeasures(Matchers.<Resource>anyObject(), Matchers.<PastSnapshot>anyObject());
+  }
+
   private Measure newMeasure(Metric metric, double value) {
     return new Measure(metric, value);
   }
@@ -21,6 +21,8 @@ package org.sonar.plugins.core.timemachine;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.config.Settings;
 import org.sonar.api.database.model.RuleFailureModel;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.resources.JavaFile;
@@ -31,10 +33,13 @@ import org.sonar.api.rules.Violation;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.batch.index.ResourcePersister;
 import org.sonar.core.rule.DefaultRuleFinder;
+import org.sonar.core.violation.ViolationDao;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
 import java.util.Arrays;
 
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -48,6 +53,7 @@ public class ViolationPersisterDecoratorTest extends AbstractDbUnitTestCase {
   private JavaFile javaFile = new JavaFile("org.foo.Bar");
   Project project = new Project("project");
   private ViolationTrackingDecorator tracker;
+  private Settings settings = new Settings();
 
   @Before
   public void before() {
@@ -57,7 +63,8 @@ public class ViolationPersisterDecoratorTest extends AbstractDbUnitTestCase {
     when(resourcePersister.saveResource((Project) anyObject(), eq(javaFile))).thenReturn(snapshot);
     when(resourcePersister.getSnapshot(javaFile)).thenReturn(snapshot);
     tracker = mock(ViolationTrackingDecorator.class);
-    decorator = new ViolationPersisterDecorator(tracker, resourcePersister, new DefaultRuleFinder(getSessionFactory()), getSession());
+    decorator = new ViolationPersisterDecorator(tracker, resourcePersister, new DefaultRuleFinder(getSessionFactory()),
+        new ViolationDao(getMyBatis()), settings);
   }
 
   @Test
@@ -71,6 +78,7 @@ public class ViolationPersisterDecoratorTest extends AbstractDbUnitTestCase {
         .setSeverity(RulePriority.MINOR).setSwitchedOff(true);
 
     decorator.saveViolations(project, Arrays.asList(violation1a, violation1b, violation2));
+    decorator.flush();
 
     checkTables("shouldSaveViolations", "rule_failures");
   }
@@ -82,7 +90,26 @@ public class ViolationPersisterDecoratorTest extends AbstractDbUnitTestCase {
     when(tracker.getReferenceViolation(violation)).thenReturn(referenceViolation);
 
     decorator.saveViolations(project, Arrays.asList(violation));
+    decorator.flush();
 
     checkTables("shouldCopyPermanentIdFromReferenceViolation", "rule_failures");
   }
+
+  @Test
+  public void shouldSaveViolationsWhenBatchIsFull() {
+    settings.setProperty(CoreProperties.VIOLATIONS_BATCH_SIZE, 3);
+    Violation violation1a = Violation.create(rule1, javaFile)
+        .setSeverity(RulePriority.CRITICAL).setLineId(20).setCost(55.6).setMessage("the message")
+        .setChecksum("checksum").setCreatedAt(DateUtils.parseDate("2010-12-25"));
+    Violation violation1b = Violation.create(rule1, javaFile)
+        .setSeverity(RulePriority.CRITICAL).setLineId(50).setCost(80.0);
+    Violation violation2 = Violation.create(rule2, javaFile)
+        .setSeverity(RulePriority.MINOR).setSwitchedOff(true);
+
+    decorator.saveViolations(project, Arrays.asList(violation1a, violation1b));
+    assertThat(getSession().getResults(RuleFailureModel.class).size(), is(2));
+
+    decorator.saveViolations(project, Arrays.asList(violation2));
+    checkTables("shouldSaveViolations", "rule_failures");
+  }
 }
@@ -22,6 +22,7 @@ package org.sonar.plugins.core.timemachine;
 import org.junit.Test;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class ViolationTrackingBlocksRecognizerTest {
@@ -34,6 +35,14 @@ public class ViolationTrackingBlocksRecognizerTest {
     assertThat(compute(t("bcde"), t("abcde"), 2, 3), is(4));
   }
 
+  @Test
+  public void shouldHashLinesIgnoringWhitespaces() {
+    ViolationTrackingBlocksRecognizer rec = new ViolationTrackingBlocksRecognizer("a\n b\n", "b \nc\n");
+    assertThat(rec.getReferenceLineHash(1), is(rec.getLineHash(0)));
+    assertThat(rec.getReferenceLineHash(2), nullValue());
+    assertThat(rec.getLineHash(-1), nullValue());
+  }
+
   private static int compute(String a, String b, int ai, int bi) {
     ViolationTrackingBlocksRecognizer rec = new ViolationTrackingBlocksRecognizer(a, b);
     return rec.computeLengthOfMaximalBlock(ai, bi);
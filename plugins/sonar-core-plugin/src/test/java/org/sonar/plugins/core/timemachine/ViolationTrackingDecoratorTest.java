@@ -31,6 +31,7 @@ import org.sonar.api.utils.DateUtils;
 import java.text.ParseException;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import static org.hamcrest.Matchers.*;
@@ -203,6 +204,100 @@ public class ViolationTrackingDecoratorTest {
     assertThat(newViolation.isNew(), is(false));
   }
 
+  /**
+   * See SONAR-3072
+   */
+  @Test
+  public void shouldMatchViolationsInSameBlockOfLines() {
+    ViolationTrackingBlocksRecognizer rec = new ViolationTrackingBlocksRecognizer("a\nb\nc\nd\n", "x\ny\na\nb\nc\nd\n");
+    RuleFailureModel referenceViolation1 = newReferenceViolation("message", 1, 50, "checksum1");
+    RuleFailureModel referenceViolation2 = newReferenceViolation("message", 3, 50, "checksum2");
+    // lines were moved by two lines and checksums were changed
+    Violation newViolation1 = newViolation("message", 5, 50, "checksum3");
+    Violation newViolation2 = newViolation("message", 3, 50, "checksum4");
+
+    Map<Violation, RuleFailureModel> mapping = decorator.mapViolations(Lists.newArrayList(newViolation1, newViolation2),
+        Lists.newArrayList(referenceViolation1, referenceViolation2), rec);
+    assertThat(mapping.get(newViolation1), equalTo(referenceViolation2));
+    assertThat(mapping.get(newViolation2), equalTo(referenceViolation1));
+  }
+
+  /**
+   * A past violation, which is already mapped by a previous pass, is not mapped a second time in blocks,
+   * even if it is in the longest block, so its permanent id and its date are carried over only once.
+   */
+  @Test
+  public void shouldNotMapInBlocksPastViolationAlreadyMapped() {
+    ViolationTrackingBlocksRecognizer rec = new ViolationTrackingBlocksRecognizer("a\nb\nc\n", "x\na\nb\nc\n");
+    Date date1 = DateUtils.parseDate("2009-05-18");
+    Date date2 = DateUtils.parseDate("2009-06-18");
+    RuleFailureModel referenceViolation1 = newReferenceViolation("message", 2, 50, "checksum1").setPermanentId(100);
+    referenceViolation1.setCreatedAt(date1);
+    RuleFailureModel referenceViolation2 = newReferenceViolation("message", 1, 50, "checksum2").setPermanentId(200);
+    referenceViolation2.setCreatedAt(date2);
+    // same line and checksum as referenceViolation1
+    Violation newViolation1 = newViolation("message", 2, 50, "checksum1");
+    // in the same block as referenceViolation1
+    Violation newViolation2 = newViolation("other message", 3, 50, "checksum3");
+
+    Map<Violation, RuleFailureModel> mapping = decorator.mapViolations(Lists.newArrayList(newViolation1, newViolation2),
+        Lists.newArrayList(referenceViolation1, referenceViolation2), rec);
+    assertThat(mapping.get(newViolation1), equalTo(referenceViolation1));
+    assertThat(newViolation1.getPermanentId(), is(100));
+    assertThat(newViolation1.getCreatedAt(), is(date1));
+    assertThat(mapping.get(newViolation2), equalTo(referenceViolation2));
+    assertThat(newViolation2.getPermanentId(), is(200));
+    assertThat(newViolation2.getCreatedAt(), is(date2));
+  }
+
+  @Test
+  public void shouldMatchViolationsOutOfBlocksWithFirstPastViolationOfSameRule() {
+    ViolationTrackingBlocksRecognizer rec = new ViolationTrackingBlocksRecognizer("a\nb\n", "c\nd\n");
+    RuleFailureModel referenceViolation1 = newReferenceViolation("message", 1, 50, "checksum1");
+    RuleFailureModel referenceViolation2 = newReferenceViolation("message", 2, 50, "checksum2");
+    Violation newViolation = newViolation("other message", 2, 50, "checksum3");
+
+    Map<Violation, RuleFailureModel> mapping = decorator.mapViolations(Lists.newArrayList(newViolation),
+        Lists.newArrayList(referenceViolation1, referenceViolation2), rec);
+    assertThat(mapping.get(newViolation), equalTo(referenceViolation1));
+  }
+
+  @Test
+  public void shouldMatchLegacyChecksums() {
+    String source = "foo();\nbar();";
+    List<String> legacyChecksums = SourceChecksum.lineChecksumsOfFile(source);
+    long[] hashes = SourceChecksum.lineHashesOfFile(source);
+    RuleFailureModel referenceViolation = newReferenceViolation("old message", 1, 50, legacyChecksums.get(1));
+    Violation newViolation = newViolation("new message", 5, 50, SourceChecksum.getChecksumForLine(hashes, 2));
+
+    Map<Violation, RuleFailureModel> mapping = decorator.mapViolations(Lists.newArrayList(newViolation),
+        Lists.newArrayList(referenceViolation), legacyChecksums, null);
+    assertThat(mapping.get(newViolation), equalTo(referenceViolation));
+    // checksum of the new violation is not replaced by the legacy one
+    assertThat(newViolation.getChecksum(), is(SourceChecksum.toChecksum(hashes[1])));
+  }
+
+  @Test
+  public void shouldTrackManyViolationsOfSameRuleOnSameLines() {
+    int count = 5000;
+    StringBuilder source = new StringBuilder();
+    List<Violation> newViolations = Lists.newArrayList();
+    List<RuleFailureModel> referenceViolations = Lists.newArrayList();
+    for (int i = 1; i <= count; i++) {
+      source.append("foo();\n");
+      // checksums differ, so that violations are tracked by blocks
+      newViolations.add(newViolation("message", i, 50, "new checksum"));
+      referenceViolations.add(newReferenceViolation("message", i, 50, "old checksum"));
+    }
+    ViolationTrackingBlocksRecognizer rec = new ViolationTrackingBlocksRecognizer(source.toString(), source.toString());
+
+    Map<Violation, RuleFailureModel> mapping = decorator.mapViolations(newViolations, referenceViolations, rec);
+    assertThat(mapping.size(), is(count));
+    for (int i = 0; i < count; i++) {
+      assertThat(mapping.get(newViolations.get(i)), equalTo(referenceViolations.get(i)));
+    }
+  }
+
   private Violation newViolation(String message, Integer lineId, int ruleId) {
     Rule rule = Rule.create().setKey("rule");
     rule.setId(ruleId);
@@ -24,6 +24,7 @@ import org.sonar.api.PropertyType;
 import org.sonar.plugins.cpd.decorators.DuplicationDensityDecorator;
 import org.sonar.plugins.cpd.decorators.SumDuplicationsDecorator;
 import org.sonar.plugins.cpd.index.IndexFactory;
+import org.sonar.plugins.cpd.index.MappedIndexStore;
 
 import java.util.Arrays;
 import java.util.List;
@@ -55,6 +56,28 @@ import java.util.List;
     global = true,
     category = CoreProperties.CATEGORY_DUPLICATIONS,
     type = PropertyType.BOOLEAN),
+  @Property(
+    key = CoreProperties.CPD_THREADS,
+    defaultValue = CoreProperties.CPD_THREADS_DEFAULT_VALUE + "",
+    name = "Number of threads",
+    description = "Number of threads used by the Sonar CPD engine to chunk files and to detect duplications." +
+      " Increasing this value can reduce analysis time of big projects on multi-core machines.",
+    project = true,
+    module = true,
+    global = true,
+    category = CoreProperties.CATEGORY_DUPLICATIONS,
+    type = PropertyType.INTEGER),
+  @Property(
+    key = CoreProperties.CPD_MEMORY_MAPPED_INDEX,
+    defaultValue = CoreProperties.CPD_MEMORY_MAPPED_INDEX_DEFAULT_VALUE + "",
+    name = "Memory-mapped index",
+    description = "If true, the Sonar CPD engine stores blocks of the analysed project in memory-mapped files instead of the Java heap." +
+      " This keeps heap consumption low for very large projects.",
+    project = true,
+    module = true,
+    global = true,
+    category = CoreProperties.CATEGORY_DUPLICATIONS,
+    type = PropertyType.BOOLEAN),
   @Property(
     key = CoreProperties.CPD_MINIMUM_TOKENS_PROPERTY,
     defaultValue = CoreProperties.CPD_MINIMUM_TOKENS_DEFAULT_VALUE + "",
@@ -95,6 +118,7 @@ public final class CpdPlugin extends SonarPlugin {
   public List getExtensions() {
     return Arrays.asList(CpdSensor.class, SumDuplicationsDecorator.class, DuplicationDensityDecorator.class,
       IndexFactory.class,
+      MappedIndexStore.class,
       SonarEngine.class,
       PmdEngine.class,
       SonarBridgeEngine.class);
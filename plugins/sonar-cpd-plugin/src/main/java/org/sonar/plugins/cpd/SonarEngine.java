@@ -19,11 +19,17 @@
  */
 package org.sonar.plugins.cpd;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
 import com.google.common.collect.Iterables;
-import org.apache.commons.io.IOUtils;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
 import org.sonar.api.database.model.ResourceModel;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
@@ -46,13 +52,19 @@ import org.sonar.plugins.cpd.index.SonarDuplicationsIndex;
 
 import javax.annotation.Nullable;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.*;
 
@@ -67,10 +79,21 @@ public class SonarEngine extends CpdEngine {
    */
   private static final int TIMEOUT = 5 * 60;
 
+  /**
+   * Number of files, for which candidates or blocks from previous analysis are loaded from database by one query.
+   */
+  private static final int GROUP_SIZE = 100;
+
   private final IndexFactory indexFactory;
+  private final Settings settings;
 
   public SonarEngine(IndexFactory indexFactory) {
+    this(indexFactory, new Settings());
+  }
+
+  public SonarEngine(IndexFactory indexFactory, Settings settings) {
     this.indexFactory = indexFactory;
+    this.settings = settings;
   }
 
   @Override
@@ -96,78 +119,296 @@ public class SonarEngine extends CpdEngine {
     detect(index, context, project, inputFiles);
   }
 
+  /**
+   * Files are read and chunked concurrently, whereas blocks are inserted into index by a single thread in the order of files.
+   * Number of files, which were chunked, but not yet inserted, is bounded to keep memory consumption flat.
+   * <p>
+   * When blocks are stored in database, each file is stored along with fingerprint of its content, so that blocks of files,
+   * which were not changed since previous analysis, are loaded from database instead of chunking. They are loaded by one query
+   * for all unchanged files, which are already fingerprinted, but not yet inserted.
+   * </p>
+   */
   private SonarDuplicationsIndex createIndex(Project project, List<InputFile> inputFiles) {
     final SonarDuplicationsIndex index = indexFactory.create(project);
 
-    TokenChunker tokenChunker = JavaTokenProducer.build();
-    StatementChunker statementChunker = JavaStatementBuilder.build();
-    BlockChunker blockChunker = new BlockChunker(BLOCK_SIZE);
+    int threads = getThreads();
+    BlockingQueue<FileChunker> chunkers = new ArrayBlockingQueue<FileChunker>(threads);
+    for (int i = 0; i < threads; i++) {
+      chunkers.add(new FileChunker(project.getFileSystem().getSourceCharset()));
+    }
+    // unchanged files do not hold blocks, so more files can be fingerprinted ahead in order to load their blocks by less queries
+    int maxPending = index.isIncremental() ? Math.max(threads * 2, GROUP_SIZE) : threads * 2;
 
-    for (InputFile inputFile : inputFiles) {
-      LOG.debug("Populating index from {}", inputFile.getFile());
-      Resource resource = getResource(inputFile);
-      String resourceKey = getFullKey(project, resource);
+    int reused = 0;
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    try {
+      Queue<Future<ChunkResult>> pending = new ArrayDeque<Future<ChunkResult>>(maxPending);
+      Map<String, List<Block>> previousBlocks = Maps.newHashMap();
+      int submitted = 0;
+      for (InputFile inputFile : inputFiles) {
+        while (submitted < inputFiles.size() && pending.size() < maxPending) {
+          InputFile fileToChunk = inputFiles.get(submitted);
+          String resourceKey = getFullKey(project, getResource(fileToChunk));
+          pending.add(executorService.submit(new ChunkTask(chunkers, index, fileToChunk, resourceKey)));
+          submitted++;
+        }
+
+        ChunkResult result = getResult(pending.remove());
+        List<Block> blocks = result.blocks;
+        if (blocks == null) {
+          if (!previousBlocks.containsKey(result.resourceKey)) {
+            previousBlocks.putAll(index.getPreviousBlocks(getUnchangedKeys(result, pending, previousBlocks)));
+          }
+          blocks = previousBlocks.remove(result.resourceKey);
+          reused++;
+        }
+        index.insert(getResource(inputFile), blocks, result.fileHash);
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    if (index.isIncremental()) {
+      LOG.info("Blocks of {} unchanged file(s) reused from previous analysis", reused);
+    }
+    return index;
+  }
 
-      List<Statement> statements;
+  /**
+   * @return key of specified unchanged file, followed by keys of pending unchanged files, which are already fingerprinted
+   *         and for which blocks were not yet loaded
+   */
+  private static List<String> getUnchangedKeys(ChunkResult unchanged, Collection<Future<ChunkResult>> pending, Map<String, List<Block>> loaded) {
+    List<String> keys = Lists.newArrayList(unchanged.resourceKey);
+    for (Future<ChunkResult> future : pending) {
+      if (future.isDone()) {
+        ChunkResult result = getResult(future);
+        if (result.blocks == null && !loaded.containsKey(result.resourceKey)) {
+          keys.add(result.resourceKey);
+        }
+      }
+    }
+    return keys;
+  }
+
+  private static <T> T getResult(Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      throw new SonarException(e);
+    } catch (ExecutionException e) {
+      throw new SonarException(e);
+    }
+  }
+
+  /**
+   * Not thread-safe, so each instance should be used by one thread at a time.
+   */
+  private static class FileChunker {
+    private final TokenChunker tokenChunker = JavaTokenProducer.build();
+    private final StatementChunker statementChunker = JavaStatementBuilder.build();
+    private final BlockChunker blockChunker = new BlockChunker(BLOCK_SIZE);
+    private final Charset charset;
+    private final MessageDigest digest;
 
-      Reader reader = null;
+    public FileChunker(Charset charset) {
+      this.charset = charset;
       try {
-        reader = new InputStreamReader(new FileInputStream(inputFile.getFile()), project.getFileSystem().getSourceCharset());
-        statements = statementChunker.chunk(tokenChunker.chunk(reader));
-      } catch (FileNotFoundException e) {
+        this.digest = MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e) {
         throw new SonarException(e);
-      } finally {
-        IOUtils.closeQuietly(reader);
       }
+    }
 
-      List<Block> blocks = blockChunker.chunk(resourceKey, statements);
-      index.insert(resource, blocks);
+    public byte[] read(InputFile inputFile) {
+      try {
+        return FileUtils.readFileToByteArray(inputFile.getFile());
+      } catch (IOException e) {
+        throw new SonarException(e);
+      }
     }
 
-    return index;
+    /**
+     * Fingerprint depends on everything, which affects blocks: content of file, charset and size of block.
+     */
+    public long fingerprint(byte[] content) {
+      digest.reset();
+      digest.update(charset.name().getBytes(Charsets.UTF_8));
+      digest.update((byte) BLOCK_SIZE);
+      byte[] md5 = digest.digest(content);
+      long result = 0;
+      for (int i = 0; i < 8; i++) {
+        result = (result << 8) | (md5[i] & 0xFF);
+      }
+      return result;
+    }
+
+    public List<Block> chunk(InputFile inputFile, byte[] content, String resourceKey) {
+      LOG.debug("Populating index from {}", inputFile.getFile());
+
+      Reader reader = new InputStreamReader(new ByteArrayInputStream(content), charset);
+      List<Statement> statements = statementChunker.chunk(tokenChunker.chunk(reader));
+      return blockChunker.chunk(resourceKey, statements);
+    }
+  }
+
+  private static class ChunkResult {
+    private final String resourceKey;
+    private final Long fileHash;
+
+    /**
+     * Null, if blocks should be loaded from previous analysis.
+     */
+    private final List<Block> blocks;
+
+    public ChunkResult(String resourceKey, @Nullable Long fileHash, @Nullable List<Block> blocks) {
+      this.resourceKey = resourceKey;
+      this.fileHash = fileHash;
+      this.blocks = blocks;
+    }
+  }
+
+  private static class ChunkTask implements Callable<ChunkResult> {
+    private final BlockingQueue<FileChunker> chunkers;
+    private final SonarDuplicationsIndex index;
+    private final InputFile inputFile;
+    private final String resourceKey;
+
+    public ChunkTask(BlockingQueue<FileChunker> chunkers, SonarDuplicationsIndex index, InputFile inputFile, String resourceKey) {
+      this.chunkers = chunkers;
+      this.index = index;
+      this.inputFile = inputFile;
+      this.resourceKey = resourceKey;
+    }
+
+    public ChunkResult call() throws InterruptedException {
+      FileChunker chunker = chunkers.take();
+      try {
+        byte[] content = chunker.read(inputFile);
+        if (!index.isIncremental()) {
+          return new ChunkResult(resourceKey, null, chunker.chunk(inputFile, content, resourceKey));
+        }
+        long fileHash = chunker.fingerprint(content);
+        if (index.isUnchanged(resourceKey, fileHash)) {
+          return new ChunkResult(resourceKey, fileHash, null);
+        }
+        return new ChunkResult(resourceKey, fileHash, chunker.chunk(inputFile, content, resourceKey));
+      } finally {
+        chunkers.add(chunker);
+      }
+    }
   }
 
+  /**
+   * Files are processed in groups, so that candidates from database are loaded by one query for the whole group.
+   * Files of a group are submitted before results of previous group are saved, so that threads do not wait for the slowest
+   * file of each group.
+   */
   private void detect(SonarDuplicationsIndex index, SensorContext context, Project project, List<InputFile> inputFiles) {
-    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    index.freeze();
+
+    int threads = getThreads();
+    LOG.debug("Detection of duplications using {} thread(s)", threads);
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
     try {
-      for (InputFile inputFile : inputFiles) {
-        LOG.debug("Detection of duplications for {}", inputFile.getFile());
-        Resource resource = getResource(inputFile);
-        String resourceKey = getFullKey(project, resource);
-
-        Collection<Block> fileBlocks = index.getByResource(resource, resourceKey);
-
-        List<CloneGroup> clones;
-        try {
-          clones = executorService.submit(new Task(index, fileBlocks)).get(TIMEOUT, TimeUnit.SECONDS);
-        } catch (TimeoutException e) {
-          clones = null;
-          LOG.warn("Timeout during detection of duplications for " + inputFile.getFile(), e);
-        } catch (InterruptedException e) {
-          throw new SonarException(e);
-        } catch (ExecutionException e) {
-          throw new SonarException(e);
+      // results are saved in the same order as files, so that measures do not depend on number of threads
+      Queue<Task> pending = new ArrayDeque<Task>();
+      for (List<InputFile> group : Lists.partition(inputFiles, GROUP_SIZE)) {
+        List<Resource> resources = Lists.newArrayListWithCapacity(group.size());
+        for (InputFile inputFile : group) {
+          resources.add(getResource(inputFile));
+        }
+        CloneIndex groupIndex = index.forResources(resources);
+
+        for (int i = 0; i < group.size(); i++) {
+          Resource resource = resources.get(i);
+          String resourceKey = getFullKey(project, resource);
+          Task task = new Task(groupIndex, index.getByResource(resource, resourceKey), group.get(i), resource);
+          task.future = executorService.submit(task);
+          pending.add(task);
         }
 
-        save(context, resource, clones);
+        while (pending.size() > group.size()) {
+          save(context, pending.remove());
+        }
+      }
+      while (!pending.isEmpty()) {
+        save(context, pending.remove());
       }
     } finally {
-      executorService.shutdown();
+      executorService.shutdownNow();
+    }
+  }
+
+  private static void save(SensorContext context, Task task) {
+    LOG.debug("Detection of duplications for {}", task.inputFile.getFile());
+    List<CloneGroup> clones;
+    try {
+      clones = getClones(task);
+    } catch (TimeoutException e) {
+      clones = null;
+      task.future.cancel(true);
+      LOG.warn("Timeout during detection of duplications for " + task.inputFile.getFile(), e);
+    } catch (InterruptedException e) {
+      throw new SonarException(e);
+    } catch (ExecutionException e) {
+      throw new SonarException(e);
+    }
+    save(context, task.resource, clones);
+  }
+
+  /**
+   * Timeout is counted from the start of detection for the file, so that time spent by the file waiting for a free thread
+   * is not taken into account.
+   */
+  private static List<CloneGroup> getClones(Task task) throws InterruptedException, ExecutionException, TimeoutException {
+    long timeout = TimeUnit.SECONDS.toMillis(TIMEOUT);
+    while (true) {
+      long remaining = timeout - task.getElapsedMillis();
+      if (remaining <= 0 && !task.future.isDone()) {
+        throw new TimeoutException();
+      }
+      try {
+        return task.future.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        // detection could have been started after the beginning of waiting, so elapsed time must be checked again
+      }
     }
   }
 
+  @VisibleForTesting
+  int getThreads() {
+    int threads = settings.getInt(CoreProperties.CPD_THREADS);
+    return threads > 0 ? threads : CoreProperties.CPD_THREADS_DEFAULT_VALUE;
+  }
+
   private static class Task implements Callable<List<CloneGroup>> {
     private final CloneIndex index;
     private final Collection<Block> fileBlocks;
+    private final InputFile inputFile;
+    private final Resource resource;
+    private volatile long startTime;
+    private Future<List<CloneGroup>> future;
 
-    public Task(CloneIndex index, Collection<Block> fileBlocks) {
+    public Task(CloneIndex index, Collection<Block> fileBlocks, InputFile inputFile, Resource resource) {
       this.index = index;
       this.fileBlocks = fileBlocks;
+      this.inputFile = inputFile;
+      this.resource = resource;
     }
 
     public List<CloneGroup> call() {
+      startTime = System.currentTimeMillis();
       return SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks);
     }
+
+    /**
+     * @return 0, if detection was not yet started
+     */
+    public long getElapsedMillis() {
+      long start = startTime;
+      return start == 0 ? 0 : System.currentTimeMillis() - start;
+    }
   }
 
   private Resource getResource(InputFile inputFile) {
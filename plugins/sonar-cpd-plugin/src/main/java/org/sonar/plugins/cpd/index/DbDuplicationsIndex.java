@@ -29,15 +29,19 @@ import org.sonar.core.duplication.DuplicationDao;
 import org.sonar.core.duplication.DuplicationUnitDto;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.AbstractCloneIndex;
+import org.sonar.duplications.index.PackedMemoryCloneIndex;
 
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 public class DbDuplicationsIndex {
 
-  private final Map<ByteArray, Collection<Block>> cache = Maps.newHashMap();
+  private static final int HASH_BYTES = 8;
 
   private final ResourcePersister resourcePersister;
   private final int currentProjectSnapshotId;
@@ -46,6 +50,11 @@ public class DbDuplicationsIndex {
 
   private DuplicationDao dao;
 
+  /**
+   * Files from previous analysis of project, which were stored with fingerprints, by resource key. Lazily loaded.
+   */
+  private Map<String, DuplicationUnitDto> previousFiles;
+
   public DbDuplicationsIndex(ResourcePersister resourcePersister, Project currentProject, DuplicationDao dao) {
     this.dao = dao;
     this.resourcePersister = resourcePersister;
@@ -60,46 +69,93 @@ public class DbDuplicationsIndex {
     return resourcePersister.getSnapshotOrFail(resource).getId();
   }
 
-  public void prepareCache(Resource resource) {
-    int resourceSnapshotId = getSnapshotIdFor(resource);
-    List<DuplicationUnitDto> units = dao.selectCandidates(resourceSnapshotId, lastSnapshotId, languageKey);
-    cache.clear();
-    // TODO Godin: maybe remove conversion of units to blocks?
-    for (DuplicationUnitDto unit : units) {
-      String hash = unit.getHash();
-      String resourceKey = unit.getResourceKey();
-      int indexInFile = unit.getIndexInFile();
-      int startLine = unit.getStartLine();
-      int endLine = unit.getEndLine();
+  /**
+   * Loads from database in one query blocks, which have same hashes as blocks of specified resources.
+   * Can be invoked concurrently.
+   *
+   * @return candidates packed into index, which can be queried concurrently
+   */
+  public AbstractCloneIndex getCandidates(Collection<Resource> resources) {
+    List<Integer> resourceSnapshotIds = Lists.newArrayListWithCapacity(resources.size());
+    for (Resource resource : resources) {
+      resourceSnapshotIds.add(getSnapshotIdFor(resource));
+    }
+    List<DuplicationUnitDto> units = dao.selectCandidates(resourceSnapshotIds, lastSnapshotId, languageKey);
 
+    PackedMemoryCloneIndex candidates = new PackedMemoryCloneIndex(HASH_BYTES, units.size());
+    Block.Builder blockBuilder = Block.builder();
+    for (DuplicationUnitDto unit : units) {
       // TODO Godin: in fact we could work directly with id instead of key - this will allow to decrease memory consumption
-      Block block = Block.builder()
-          .setResourceId(resourceKey)
-          .setBlockHash(new ByteArray(hash))
-          .setIndexInFile(indexInFile)
-          .setLines(startLine, endLine)
+      Block block = blockBuilder
+          .setResourceId(unit.getResourceKey())
+          .setBlockHash(new ByteArray(unit.getHashValue()))
+          .setIndexInFile(unit.getIndexInFile())
+          .setLines(unit.getStartLine(), unit.getEndLine())
           .build();
+      candidates.insert(block);
+    }
+    candidates.freeze();
+    return candidates;
+  }
 
-      // Group blocks by hash
-      Collection<Block> sameHash = cache.get(block.getBlockHash());
-      if (sameHash == null) {
-        sameHash = Lists.newArrayList();
-        cache.put(block.getBlockHash(), sameHash);
+  /**
+   * Can be invoked concurrently.
+   *
+   * @return true, if file with specified key had same fingerprint during previous analysis of project
+   */
+  public boolean isUnchanged(String resourceKey, long fileHash) {
+    DuplicationUnitDto previousFile = getPreviousFiles().get(resourceKey);
+    return previousFile != null && previousFile.getFileHash() == fileHash;
+  }
+
+  private synchronized Map<String, DuplicationUnitDto> getPreviousFiles() {
+    if (previousFiles == null) {
+      previousFiles = Maps.newHashMap();
+      if (lastSnapshotId != null) {
+        for (DuplicationUnitDto file : dao.selectFileHashes(lastSnapshotId)) {
+          previousFiles.put(file.getResourceKey(), file);
+        }
       }
-      sameHash.add(block);
     }
+    return previousFiles;
   }
 
-  public Collection<Block> getByHash(ByteArray hash) {
-    Collection<Block> result = cache.get(hash);
-    if (result != null) {
-      return result;
-    } else {
-      return Collections.emptyList();
+  /**
+   * Loads from database in one query blocks of specified files, which were stored during previous analysis of project.
+   * Should be invoked only for files, for which {@link #isUnchanged(String, long)} returned true.
+   *
+   * @return blocks ordered by index in file, by resource key
+   */
+  public Map<String, List<Block>> getPreviousBlocks(Collection<String> resourceKeys) {
+    Map<Integer, String> resourceKeysBySnapshotId = Maps.newHashMap();
+    Map<String, List<Block>> result = Maps.newHashMap();
+    for (String resourceKey : resourceKeys) {
+      resourceKeysBySnapshotId.put(getPreviousFiles().get(resourceKey).getSnapshotId(), resourceKey);
+      result.put(resourceKey, new ArrayList<Block>());
+    }
+
+    Block.Builder blockBuilder = Block.builder();
+    for (DuplicationUnitDto unit : dao.selectUnits(resourceKeysBySnapshotId.keySet())) {
+      String resourceKey = resourceKeysBySnapshotId.get(unit.getSnapshotId());
+      Block block = blockBuilder
+          .setResourceId(resourceKey)
+          .setBlockHash(new ByteArray(unit.getHashValue()))
+          .setIndexInFile(unit.getIndexInFile())
+          .setLines(unit.getStartLine(), unit.getEndLine())
+          .build();
+      result.get(resourceKey).add(block);
     }
+    return result;
   }
 
   public void insert(Resource resource, Collection<Block> blocks) {
+    insert(resource, blocks, null);
+  }
+
+  /**
+   * @param fileHash fingerprint of content of file, which allows to reuse blocks during next analysis, can be null
+   */
+  public void insert(Resource resource, Collection<Block> blocks, @Nullable Long fileHash) {
     int resourceSnapshotId = getSnapshotIdFor(resource);
 
     // TODO Godin: maybe remove conversion of blocks to units?
@@ -112,10 +168,17 @@ public class DbDuplicationsIndex {
           block.getIndexInFile(),
           block.getStartLine(),
           block.getEndLine());
+      unit.setHashValue(toLong(block.getBlockHash()));
+      unit.setFileHash(fileHash);
       units.add(unit);
     }
 
     dao.insert(units);
   }
 
+  static long toLong(ByteArray hash) {
+    int[] ints = hash.toIntArray();
+    return ((long) ints[0] << 32) | (ints[1] & 0xFFFFFFFFL);
+  }
+
 }
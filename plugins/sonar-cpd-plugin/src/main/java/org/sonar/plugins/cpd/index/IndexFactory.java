@@ -29,6 +29,8 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.batch.index.ResourcePersister;
 import org.sonar.core.duplication.DuplicationDao;
+import org.sonar.duplications.index.AbstractCloneIndex;
+import org.sonar.duplications.index.PackedMemoryCloneIndex;
 
 public class IndexFactory implements BatchExtension {
 
@@ -37,32 +39,60 @@ public class IndexFactory implements BatchExtension {
   private final Settings settings;
   private final ResourcePersister resourcePersister;
   private final DuplicationDao dao;
+  private final MappedIndexStore mappedIndexStore;
 
   /**
    * For dry run, where is no access to database.
    */
   public IndexFactory(Settings settings) {
-    this.settings = settings;
-    this.resourcePersister = null;
-    this.dao = null;
+    this(settings, (MappedIndexStore) null);
+  }
+
+  /**
+   * For dry run, where is no access to database.
+   */
+  public IndexFactory(Settings settings, MappedIndexStore mappedIndexStore) {
+    this(settings, null, null, mappedIndexStore);
   }
 
   public IndexFactory(Settings settings, ResourcePersister resourcePersister, DuplicationDao dao) {
+    this(settings, resourcePersister, dao, null);
+  }
+
+  public IndexFactory(Settings settings, ResourcePersister resourcePersister, DuplicationDao dao, MappedIndexStore mappedIndexStore) {
     this.settings = settings;
     this.resourcePersister = resourcePersister;
     this.dao = dao;
+    this.mappedIndexStore = mappedIndexStore;
   }
 
   public SonarDuplicationsIndex create(Project project) {
+    AbstractCloneIndex mem = createMemoryIndex();
     if (isCrossProject(project)) {
       LOG.info("Cross-project analysis enabled");
-      return new SonarDuplicationsIndex(new DbDuplicationsIndex(resourcePersister, project, dao));
+      return new SonarDuplicationsIndex(mem, new DbDuplicationsIndex(resourcePersister, project, dao));
     } else {
       LOG.info("Cross-project analysis disabled");
-      return new SonarDuplicationsIndex();
+      return new SonarDuplicationsIndex(mem, null);
     }
   }
 
+  private AbstractCloneIndex createMemoryIndex() {
+    if (isMemoryMapped()) {
+      LOG.info("Memory-mapped index enabled");
+      return mappedIndexStore.getEmptyIndex();
+    }
+    return new PackedMemoryCloneIndex();
+  }
+
+  /**
+   * @return true, if was enabled by user and store is available
+   */
+  @VisibleForTesting
+  boolean isMemoryMapped() {
+    return settings.getBoolean(CoreProperties.CPD_MEMORY_MAPPED_INDEX) && mappedIndexStore != null;
+  }
+
   /**
    * @return true, if was enabled by user and database is available
    */
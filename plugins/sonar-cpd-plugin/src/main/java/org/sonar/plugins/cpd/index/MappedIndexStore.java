@@ -0,0 +1,64 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cpd.index;
+
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.batch.bootstrap.TempDirectories;
+import org.sonar.duplications.index.MappedCloneIndex;
+
+/**
+ * Keeps memory-mapped index during the whole analysis, so that its files are reused by all modules.
+ *
+ * @since 2.15
+ */
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class MappedIndexStore implements BatchExtension {
+
+  private final TempDirectories tempDirectories;
+  private MappedCloneIndex index;
+
+  public MappedIndexStore(TempDirectories tempDirectories) {
+    this.tempDirectories = tempDirectories;
+  }
+
+  /**
+   * @return empty index, blocks inserted during analysis of previous module are discarded
+   */
+  public synchronized MappedCloneIndex getEmptyIndex() {
+    if (index == null) {
+      index = new MappedCloneIndex(tempDirectories.getDir("cpd"));
+    } else {
+      index.clear();
+    }
+    return index;
+  }
+
+  /**
+   * This method is executed by picocontainer during shutdown.
+   */
+  public synchronized void stop() {
+    if (index != null) {
+      index.close();
+      index = null;
+    }
+  }
+
+}
@@ -24,49 +24,108 @@ import org.sonar.api.resources.Resource;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.AbstractCloneIndex;
+import org.sonar.duplications.index.BlockCursor;
 import org.sonar.duplications.index.CloneIndex;
 import org.sonar.duplications.index.PackedMemoryCloneIndex;
 
+import javax.annotation.Nullable;
+
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public class SonarDuplicationsIndex extends AbstractCloneIndex {
 
-  private final CloneIndex mem = new PackedMemoryCloneIndex();
+  private final AbstractCloneIndex mem;
   private final DbDuplicationsIndex db;
 
   public SonarDuplicationsIndex() {
-    this.db = null;
+    this(new PackedMemoryCloneIndex(), null);
   }
 
   public SonarDuplicationsIndex(DbDuplicationsIndex db) {
+    this(new PackedMemoryCloneIndex(), db);
+  }
+
+  /**
+   * @param mem index for blocks of current project
+   * @param db index for blocks of other projects, can be null
+   */
+  public SonarDuplicationsIndex(AbstractCloneIndex mem, @Nullable DbDuplicationsIndex db) {
+    this.mem = mem;
     this.db = db;
   }
 
   public void insert(Resource resource, Collection<Block> blocks) {
+    insert(resource, blocks, null);
+  }
+
+  /**
+   * @param fileHash fingerprint of content of file, can be null
+   */
+  public void insert(Resource resource, Collection<Block> blocks, @Nullable Long fileHash) {
     for (Block block : blocks) {
       mem.insert(block);
     }
     if (db != null) {
-      db.insert(resource, blocks);
+      db.insert(resource, blocks, fileHash);
     }
   }
 
-  public Collection<Block> getByResource(Resource resource, String resourceKey) {
-    if (db != null) {
-      db.prepareCache(resource);
+  /**
+   * @return true, if blocks are stored in database along with fingerprints of files, so that they can be reused by next analysis
+   */
+  public boolean isIncremental() {
+    return db != null;
+  }
+
+  /**
+   * @return true, if blocks of specified file can be loaded from previous analysis by {@link #getPreviousBlocks(Collection)}
+   */
+  public boolean isUnchanged(String resourceKey, long fileHash) {
+    return db != null && db.isUnchanged(resourceKey, fileHash);
+  }
+
+  /**
+   * @return blocks of unchanged files from previous analysis, by resource key
+   */
+  public Map<String, List<Block>> getPreviousBlocks(Collection<String> resourceKeys) {
+    if (db == null || resourceKeys.isEmpty()) {
+      return Collections.emptyMap();
     }
+    return db.getPreviousBlocks(resourceKeys);
+  }
+
+  /**
+   * Must be invoked after insertion of all blocks and before concurrent queries.
+   */
+  @Override
+  public void freeze() {
+    mem.freeze();
+  }
+
+  public Collection<Block> getByResource(Resource resource, String resourceKey) {
     return mem.getByResourceId(resourceKey);
   }
 
-  public Collection<Block> getBySequenceHash(ByteArray hash) {
+  /**
+   * @return index, which should be used for detection of duplications in specified resources
+   */
+  public CloneIndex forResources(Collection<Resource> resources) {
     if (db == null) {
-      return mem.getBySequenceHash(hash);
-    } else {
-      List<Block> result = Lists.newArrayList(mem.getBySequenceHash(hash));
-      result.addAll(db.getByHash(hash));
-      return result;
+      return this;
     }
+    return new CombinedCloneIndex(mem, db.getCandidates(resources));
+  }
+
+  public Collection<Block> getBySequenceHash(ByteArray hash) {
+    return mem.getBySequenceHash(hash);
+  }
+
+  @Override
+  public BlockCursor cursorBySequenceHash(ByteArray hash) {
+    return mem.cursorBySequenceHash(hash);
   }
 
   public Collection<Block> getByResourceId(String resourceId) {
@@ -77,4 +136,99 @@ public class SonarDuplicationsIndex extends AbstractCloneIndex {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Combines blocks from memory with candidates from database, which were loaded for a group of resources.
+   */
+  private static class CombinedCloneIndex extends AbstractCloneIndex {
+    private final AbstractCloneIndex mem;
+    private final AbstractCloneIndex candidates;
+
+    public CombinedCloneIndex(AbstractCloneIndex mem, AbstractCloneIndex candidates) {
+      this.mem = mem;
+      this.candidates = candidates;
+    }
+
+    public Collection<Block> getBySequenceHash(ByteArray hash) {
+      Collection<Block> fromDb = candidates.getBySequenceHash(hash);
+      if (fromDb.isEmpty()) {
+        return mem.getBySequenceHash(hash);
+      }
+      List<Block> result = Lists.newArrayList(mem.getBySequenceHash(hash));
+      result.addAll(fromDb);
+      return result;
+    }
+
+    @Override
+    public BlockCursor cursorBySequenceHash(ByteArray hash) {
+      return new CombinedBlockCursor(mem.cursorBySequenceHash(hash), candidates.cursorBySequenceHash(hash));
+    }
+
+    public Collection<Block> getByResourceId(String resourceId) {
+      throw new UnsupportedOperationException();
+    }
+
+    public void insert(Block block) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Iterates over blocks of first cursor, then over blocks of second cursor.
+   */
+  private static class CombinedBlockCursor implements BlockCursor {
+    private final BlockCursor first;
+    private final BlockCursor second;
+    private BlockCursor current;
+
+    public CombinedBlockCursor(BlockCursor first, BlockCursor second) {
+      this.first = first;
+      this.second = second;
+      this.current = first;
+    }
+
+    public boolean next() {
+      if (current == first && first.next()) {
+        return true;
+      }
+      current = second;
+      return second.next();
+    }
+
+    public String getResourceId() {
+      return current.getResourceId();
+    }
+
+    public int getHashWords() {
+      return current.getHashWords();
+    }
+
+    public int getHashWord(int index) {
+      return current.getHashWord(index);
+    }
+
+    public int getIndexInFile() {
+      return current.getIndexInFile();
+    }
+
+    public int getStartLine() {
+      return current.getStartLine();
+    }
+
+    public int getEndLine() {
+      return current.getEndLine();
+    }
+
+    public int getStartUnit() {
+      return current.getStartUnit();
+    }
+
+    public int getEndUnit() {
+      return current.getEndUnit();
+    }
+
+    public Block toBlock() {
+      return current.toBlock();
+    }
+  }
+
 }
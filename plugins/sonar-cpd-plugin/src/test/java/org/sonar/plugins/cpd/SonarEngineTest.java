@@ -21,7 +21,9 @@ package org.sonar.plugins.cpd;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.resources.JavaFile;
 import org.sonar.api.resources.Resource;
@@ -33,6 +35,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
@@ -129,6 +133,21 @@ public class SonarEngineTest {
             + "</duplications>")));
   }
 
+  @Test
+  public void shouldUseOneThreadByDefault() {
+    assertThat(new SonarEngine(null).getThreads(), is(1));
+    assertThat(new SonarEngine(null, new Settings()).getThreads(), is(1));
+  }
+
+  @Test
+  public void shouldConfigureNumberOfThreads() {
+    Settings settings = new Settings().setProperty(CoreProperties.CPD_THREADS, 4);
+    assertThat(new SonarEngine(null, settings).getThreads(), is(4));
+
+    settings.setProperty(CoreProperties.CPD_THREADS, 0);
+    assertThat(new SonarEngine(null, settings).getThreads(), is(1));
+  }
+
   private CloneGroup newCloneGroup(ClonePart... parts) {
     return CloneGroup.builder().setLength(0).setOrigin(parts[0]).setParts(Arrays.asList(parts)).build();
   }
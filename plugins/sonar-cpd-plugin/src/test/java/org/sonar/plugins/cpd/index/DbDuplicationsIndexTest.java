@@ -0,0 +1,102 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cpd.index;
+
+import org.junit.Test;
+import org.sonar.api.database.model.Snapshot;
+import org.sonar.api.resources.Project;
+import org.sonar.batch.index.ResourcePersister;
+import org.sonar.core.duplication.DuplicationDao;
+import org.sonar.core.duplication.DuplicationUnitDto;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+public class DbDuplicationsIndexTest {
+
+  @Test
+  public void shouldConvertHashToLong() {
+    assertThat(DbDuplicationsIndex.toLong(new ByteArray(0L)), is(0L));
+    assertThat(DbDuplicationsIndex.toLong(new ByteArray(42L)), is(42L));
+    assertThat(DbDuplicationsIndex.toLong(new ByteArray(-1L)), is(-1L));
+    assertThat(DbDuplicationsIndex.toLong(new ByteArray(Long.MIN_VALUE)), is(Long.MIN_VALUE));
+    assertThat(DbDuplicationsIndex.toLong(new ByteArray(0x12345678DEADBEEFL)), is(0x12345678DEADBEEFL));
+  }
+
+  @Test
+  public void shouldReuseBlocksOfUnchangedFiles() {
+    Project project = new Project("foo");
+    Snapshot currentSnapshot = newSnapshot(2);
+    ResourcePersister resourcePersister = mock(ResourcePersister.class);
+    when(resourcePersister.getSnapshotOrFail(project)).thenReturn(currentSnapshot);
+    when(resourcePersister.getLastSnapshot(currentSnapshot, false)).thenReturn(newSnapshot(1));
+
+    DuplicationDao dao = mock(DuplicationDao.class);
+    DuplicationUnitDto file = new DuplicationUnitDto();
+    file.setSnapshotId(10);
+    file.setResourceKey("foo:Bar");
+    file.setFileHash(42L);
+    when(dao.selectFileHashes(1)).thenReturn(Arrays.asList(file));
+    DuplicationUnitDto unit = new DuplicationUnitDto(1, 10, null, 0, 3, 7);
+    unit.setHashValue(170L);
+    when(dao.selectUnits(anyCollection())).thenReturn(Arrays.asList(unit));
+
+    DbDuplicationsIndex index = new DbDuplicationsIndex(resourcePersister, project, dao);
+    assertThat(index.isUnchanged("foo:Bar", 42L), is(true));
+    assertThat(index.isUnchanged("foo:Bar", 43L), is(false));
+    assertThat(index.isUnchanged("foo:Baz", 42L), is(false));
+
+    List<Block> blocks = index.getPreviousBlocks(Arrays.asList("foo:Bar")).get("foo:Bar");
+    assertThat(blocks.size(), is(1));
+    Block block = blocks.get(0);
+    assertThat(block.getResourceId(), is("foo:Bar"));
+    assertThat(block.getBlockHash(), is(new ByteArray(170L)));
+    assertThat(block.getStartLine(), is(3));
+    assertThat(block.getEndLine(), is(7));
+
+    verify(dao, times(1)).selectFileHashes(1);
+  }
+
+  @Test
+  public void shouldNotReuseBlocksWithoutPreviousAnalysis() {
+    Project project = new Project("foo");
+    ResourcePersister resourcePersister = mock(ResourcePersister.class);
+    when(resourcePersister.getSnapshotOrFail(project)).thenReturn(newSnapshot(2));
+    DuplicationDao dao = mock(DuplicationDao.class);
+
+    DbDuplicationsIndex index = new DbDuplicationsIndex(resourcePersister, project, dao);
+    assertThat(index.isUnchanged("foo:Bar", 42L), is(false));
+    verifyZeroInteractions(dao);
+  }
+
+  private static Snapshot newSnapshot(int id) {
+    Snapshot snapshot = new Snapshot();
+    snapshot.setId(id);
+    return snapshot;
+  }
+
+}
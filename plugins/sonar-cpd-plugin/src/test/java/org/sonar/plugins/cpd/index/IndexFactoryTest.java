@@ -71,4 +71,24 @@ public class IndexFactoryTest {
     assertThat(factory.isCrossProject(project), is(false));
   }
 
+  @Test
+  public void memoryMappedIndexEnabled() {
+    settings.setProperty(CoreProperties.CPD_MEMORY_MAPPED_INDEX, "true");
+    IndexFactory factory = new IndexFactory(settings, mock(ResourcePersister.class), mock(DuplicationDao.class), mock(MappedIndexStore.class));
+    assertThat(factory.isMemoryMapped(), is(true));
+  }
+
+  @Test
+  public void memoryMappedIndexDisabled() {
+    IndexFactory factory = new IndexFactory(settings, mock(MappedIndexStore.class));
+    assertThat(factory.isMemoryMapped(), is(false));
+  }
+
+  @Test
+  public void noMemoryMappedIndexWithoutStore() {
+    settings.setProperty(CoreProperties.CPD_MEMORY_MAPPED_INDEX, "true");
+    IndexFactory factory = new IndexFactory(settings);
+    assertThat(factory.isMemoryMapped(), is(false));
+  }
+
 }
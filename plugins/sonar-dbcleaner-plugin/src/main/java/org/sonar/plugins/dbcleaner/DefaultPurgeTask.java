@@ -42,7 +42,17 @@ import org.sonar.plugins.dbcleaner.period.DefaultPeriodCleaner;
     global = true,
     project = true,
     module = false,
-    type = PropertyType.BOOLEAN)
+    type = PropertyType.BOOLEAN),
+  @Property(
+    key = DbCleanerConstants.PROPERTY_PAUSE_BETWEEN_CHUNKS,
+    defaultValue = "100",
+    name = "Pause between chunks of purged snapshots, in milliseconds",
+    description = "Snapshots are purged by chunks, in background of the analysis of next modules. A pause between chunks "
+      + "limits the load of the database, at the cost of a longer purge. Zero to disable.",
+    global = true,
+    project = false,
+    module = false,
+    type = PropertyType.INTEGER)
 })
 public class DefaultPurgeTask implements PurgeTask {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultPurgeTask.class);
@@ -86,7 +96,7 @@ public class DefaultPurgeTask implements PurgeTask {
 
   private void doPurge(long resourceId) {
     try {
-      purgeDao.purge(resourceId, getScopesWithoutHistoricalData());
+      purgeDao.purge(resourceId, getScopesWithoutHistoricalData(), settings.getLong(DbCleanerConstants.PROPERTY_PAUSE_BETWEEN_CHUNKS));
     } catch (Exception e) {
       // purge errors must no fail the batch
       LOG.error("Fail to purge data [id=" + resourceId + "]", e);
@@ -29,12 +29,22 @@ import org.sonar.plugins.dbcleaner.api.PurgeTask;
 public class ProjectPurgePostJob implements PostJob {
 
   private PurgeTask purgeTask;
+  private PurgeExecutor purgeExecutor;
 
-  public ProjectPurgePostJob(PurgeTask purgeTask) {
+  public ProjectPurgePostJob(PurgeTask purgeTask, PurgeExecutor purgeExecutor) {
     this.purgeTask = purgeTask;
+    this.purgeExecutor = purgeExecutor;
   }
 
+  /**
+   * The purge is executed in background. Errors are logged by the purge task and do not fail the batch.
+   */
   public void executeOn(final Project project, SensorContext context) {
-    purgeTask.purge((long) project.getId());
+    final long projectId = project.getId();
+    purgeExecutor.submit(new Runnable() {
+      public void run() {
+        purgeTask.purge(projectId);
+      }
+    });
   }
 }
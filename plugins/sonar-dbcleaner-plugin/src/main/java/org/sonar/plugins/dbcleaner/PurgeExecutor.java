@@ -0,0 +1,74 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.dbcleaner;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.core.NotDryRun;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes purges in a background thread, so that the analysis of next modules does not wait for them.
+ * Purges are executed one after the other, and pending purges are completed before the end of the batch, so
+ * they still use the database connection of the batch. A purge deletes only past snapshots of the analysed project,
+ * which are not written by next modules, and it is throttled by the property sonar.dbcleaner.pauseBetweenChunks.
+ *
+ * @since 2.15
+ */
+@NotDryRun
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class PurgeExecutor implements BatchExtension {
+  private static final Logger LOG = LoggerFactory.getLogger(PurgeExecutor.class);
+
+  private ExecutorService executor;
+
+  public synchronized void submit(Runnable purge) {
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("purge-%d").build());
+    }
+    executor.submit(purge);
+  }
+
+  /**
+   * This method is executed by picocontainer during shutdown. It waits for the completion of pending purges.
+   */
+  public synchronized void stop() {
+    if (executor != null) {
+      LOG.info("Waiting for completion of purges");
+      executor.shutdown();
+      try {
+        while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+          LOG.info("Purges are still running");
+        }
+      } catch (InterruptedException e) {
+        LOG.error("Interrupted while waiting for completion of purges", e);
+        executor.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+      executor = null;
+    }
+  }
+}
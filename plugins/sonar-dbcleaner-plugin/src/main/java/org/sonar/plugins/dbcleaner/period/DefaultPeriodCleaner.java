@@ -20,17 +20,19 @@
 package org.sonar.plugins.dbcleaner.period;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.DateUtils;
 import org.sonar.core.purge.PurgeDao;
-import org.sonar.core.purge.PurgeSnapshotQuery;
 import org.sonar.core.purge.PurgeableSnapshotDto;
 import org.sonar.plugins.dbcleaner.api.PeriodCleaner;
 
 import java.util.List;
+import java.util.Set;
 
 public class DefaultPeriodCleaner implements PeriodCleaner {
 
@@ -54,17 +56,17 @@ public class DefaultPeriodCleaner implements PeriodCleaner {
   @VisibleForTesting
   void doClean(long projectId, List<Filter> filters) {
     List<PurgeableSnapshotDto> history = selectProjectSnapshots(projectId);
+    Set<Long> snapshotIds = Sets.newLinkedHashSet();
     for (Filter filter : filters) {
       filter.log();
-      delete(filter.filter(history));
+      for (PurgeableSnapshotDto snapshot : filter.filter(history)) {
+        if (snapshotIds.add(snapshot.getSnapshotId())) {
+          LOG.info("<- Delete snapshot: " + DateUtils.formatDateTime(snapshot.getDate()) + " [" + snapshot.getSnapshotId() + "]");
+        }
+      }
     }
-  }
-
-  private void delete(List<PurgeableSnapshotDto> snapshots) {
-    for (PurgeableSnapshotDto snapshot : snapshots) {
-      LOG.info("<- Delete snapshot: " + DateUtils.formatDateTime(snapshot.getDate()) + " [" + snapshot.getSnapshotId() + "]");
-      purgeDao.deleteSnapshots(PurgeSnapshotQuery.create().setRootSnapshotId(snapshot.getSnapshotId()));
-      purgeDao.deleteSnapshots(PurgeSnapshotQuery.create().setId(snapshot.getSnapshotId()));
+    if (!snapshotIds.isEmpty()) {
+      purgeDao.deleteSnapshotTrees(Lists.newArrayList(snapshotIds));
     }
   }
 
@@ -0,0 +1,50 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.dbcleaner;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.resources.Project;
+import org.sonar.plugins.dbcleaner.api.PurgeTask;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ProjectPurgePostJobTest {
+
+  @Test
+  public void shouldSubmitPurgeToExecutor() {
+    PurgeTask purgeTask = mock(PurgeTask.class);
+    PurgeExecutor purgeExecutor = mock(PurgeExecutor.class);
+    Project project = new Project("foo");
+    project.setId(123);
+
+    new ProjectPurgePostJob(purgeTask, purgeExecutor).executeOn(project, null);
+
+    verify(purgeTask, never()).purge(anyLong());
+    ArgumentCaptor<Runnable> purge = ArgumentCaptor.forClass(Runnable.class);
+    verify(purgeExecutor).submit(purge.capture());
+
+    purge.getValue().run();
+    verify(purgeTask).purge(123L);
+  }
+}
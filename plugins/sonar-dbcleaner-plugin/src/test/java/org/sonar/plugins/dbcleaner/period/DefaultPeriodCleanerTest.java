@@ -19,21 +19,17 @@
  */
 package org.sonar.plugins.dbcleaner.period;
 
-import org.apache.commons.lang.ObjectUtils;
-import org.hamcrest.BaseMatcher;
-import org.hamcrest.Description;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.config.Settings;
 import org.sonar.core.purge.PurgeDao;
-import org.sonar.core.purge.PurgeSnapshotQuery;
 import org.sonar.core.purge.PurgeableSnapshotDto;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 
-import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.*;
 
 public class DefaultPeriodCleanerTest {
@@ -52,32 +48,21 @@ public class DefaultPeriodCleanerTest {
 
     verify(filter1).log();
     verify(filter2).log();
-    verify(dao, times(2)).deleteSnapshots(argThat(newRootSnapshotQuery()));
-    verify(dao, times(2)).deleteSnapshots(argThat(newSnapshotIdQuery()));
+    verify(dao).deleteSnapshotTrees(Arrays.asList(999L));
   }
 
-  private BaseMatcher<PurgeSnapshotQuery> newRootSnapshotQuery() {
-    return new BaseMatcher<PurgeSnapshotQuery>() {
-      public boolean matches(Object o) {
-        PurgeSnapshotQuery query = (PurgeSnapshotQuery) o;
-        return ObjectUtils.equals(query.getRootSnapshotId(), 999L);
-      }
-
-      public void describeTo(Description description) {
-      }
-    };
-  }
+  @Test
+  public void shouldNotDeleteIfNoExpiredSnapshots() {
+    PurgeDao dao = mock(PurgeDao.class);
+    when(dao.selectPurgeableSnapshots(123L)).thenReturn(Arrays.asList(
+        new PurgeableSnapshotDto().setSnapshotId(999L).setDate(new Date())));
+    Filter filter = mock(Filter.class);
+    when(filter.filter(anyListOf(PurgeableSnapshotDto.class))).thenReturn(Collections.<PurgeableSnapshotDto>emptyList());
 
-  private BaseMatcher<PurgeSnapshotQuery> newSnapshotIdQuery() {
-    return new BaseMatcher<PurgeSnapshotQuery>() {
-      public boolean matches(Object o) {
-        PurgeSnapshotQuery query = (PurgeSnapshotQuery) o;
-        return ObjectUtils.equals(query.getId(), 999L);
-      }
+    DefaultPeriodCleaner cleaner = new DefaultPeriodCleaner(dao, mock(Settings.class));
+    cleaner.doClean(123L, Arrays.asList(filter));
 
-      public void describeTo(Description description) {
-      }
-    };
+    verify(dao, never()).deleteSnapshotTrees(anyListOf(Long.class));
   }
 
   private Filter newLazyFilter() {
@@ -19,10 +19,12 @@
  */
 package org.sonar.plugins.squid.decorators;
 
+import org.sonar.api.batch.DecoratedResources;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
 import org.sonar.api.batch.DependsUpon;
+import org.sonar.api.batch.ThreadSafeExtension;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.Metric;
@@ -32,6 +34,8 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.Scopes;
 
+@DecoratedResources(scopes = Scopes.DIRECTORY)
+@ThreadSafeExtension
 public final class ChidamberKemererDistributionBuilder implements Decorator {
 
   private static final Integer[] LCOM4_LIMITS = { 2, 3, 4, 5, 10 }; // 1 is excluded
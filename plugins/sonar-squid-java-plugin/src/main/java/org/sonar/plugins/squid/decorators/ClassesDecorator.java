@@ -19,12 +19,16 @@
  */
 package org.sonar.plugins.squid.decorators;
 
+import org.sonar.api.batch.DecoratedResources;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
+import org.sonar.api.batch.ThreadSafeExtension;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.*;
 
+@DecoratedResources(scopes = Scopes.FILE)
+@ThreadSafeExtension
 public final class ClassesDecorator implements Decorator {
 
   public void decorate(Resource resource, DecoratorContext context) {
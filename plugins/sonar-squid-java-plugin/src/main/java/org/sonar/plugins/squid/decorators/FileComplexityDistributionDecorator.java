@@ -19,10 +19,12 @@
  */
 package org.sonar.plugins.squid.decorators;
 
+import org.sonar.api.batch.DecoratedResources;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
 import org.sonar.api.batch.DependsUpon;
+import org.sonar.api.batch.ThreadSafeExtension;
 import org.sonar.api.measures.*;
 import org.sonar.api.resources.Java;
 import org.sonar.api.resources.Project;
@@ -32,6 +34,8 @@ import org.sonar.api.resources.Scopes;
 /**
  * @since 2.15
  */
+@DecoratedResources(scopes = Scopes.FILE)
+@ThreadSafeExtension
 public class FileComplexityDistributionDecorator implements Decorator {
 
   private static final Number[] LIMITS = {0, 5, 10, 20, 30, 60, 90};
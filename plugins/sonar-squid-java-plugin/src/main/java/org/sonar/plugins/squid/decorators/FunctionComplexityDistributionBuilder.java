@@ -19,10 +19,12 @@
  */
 package org.sonar.plugins.squid.decorators;
 
+import org.sonar.api.batch.DecoratedResources;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.DependedUpon;
 import org.sonar.api.batch.DependsUpon;
+import org.sonar.api.batch.ThreadSafeExtension;
 import org.sonar.api.measures.*;
 import org.sonar.api.resources.Java;
 import org.sonar.api.resources.Project;
@@ -33,6 +35,8 @@ import org.sonar.java.api.JavaMethod;
 /**
  * @since 2.6
  */
+@DecoratedResources(scopes = Scopes.PROGRAM_UNIT)
+@ThreadSafeExtension
 public final class FunctionComplexityDistributionBuilder implements Decorator {
 
   private static final Number[] LIMITS = { 1, 2, 4, 6, 8, 10, 12 };
@@ -19,8 +19,10 @@
  */
 package org.sonar.plugins.squid.decorators;
 
+import org.sonar.api.batch.DecoratedResources;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
+import org.sonar.api.batch.ThreadSafeExtension;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.Java;
@@ -29,6 +31,8 @@ import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.Scopes;
 import org.sonar.java.api.JavaMethod;
 
+@DecoratedResources(scopes = Scopes.PROGRAM_UNIT)
+@ThreadSafeExtension
 public final class FunctionsDecorator implements Decorator {
 
   public void decorate(Resource resource, DecoratorContext context) {
@@ -0,0 +1,65 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.squid.decorators;
+
+import org.junit.Test;
+import org.sonar.api.batch.Decorator;
+import org.sonar.api.batch.ThreadSafeExtension;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class ThreadSafeDecoratorsTest {
+
+  private static final List<Class<? extends Decorator>> THREAD_SAFE_DECORATORS = Arrays.<Class<? extends Decorator>>asList(
+      FunctionsDecorator.class,
+      ClassesDecorator.class,
+      ChidamberKemererDistributionBuilder.class,
+      FunctionComplexityDistributionBuilder.class,
+      FileComplexityDistributionDecorator.class);
+
+  @Test
+  public void shouldBeThreadSafe() {
+    for (Class<? extends Decorator> decorator : THREAD_SAFE_DECORATORS) {
+      assertThat(decorator.getName(), decorator.isAnnotationPresent(ThreadSafeExtension.class), is(true));
+    }
+  }
+
+  /**
+   * Decorators executed concurrently must not keep state between executions.
+   */
+  @Test
+  public void shouldNotKeepState() {
+    for (Class<? extends Decorator> decorator : THREAD_SAFE_DECORATORS) {
+      for (Field field : decorator.getDeclaredFields()) {
+        // synthetic fields are added by coverage tools
+        if (!field.isSynthetic()) {
+          int modifiers = field.getModifiers();
+          assertThat(decorator.getName() + "#" + field.getName(), Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers), is(true));
+        }
+      }
+    }
+  }
+}
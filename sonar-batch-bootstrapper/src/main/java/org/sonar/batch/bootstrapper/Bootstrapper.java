@@ -30,6 +30,7 @@ public class Bootstrapper {
 
   private static final String VERSION_PATH = "/api/server/version";
   private static final String BATCH_PATH = "/batch/";
+  private static final String ETAG_FILE_SUFFIX = ".etag";
 
   public static final int CONNECT_TIMEOUT_MILLISECONDS = 30000;
   public static final int READ_TIMEOUT_MILLISECONDS = 60000;
@@ -98,22 +99,70 @@ public class Bootstrapper {
     return classLoader;
   }
 
+  /**
+   * The file is not downloaded again if it has not been modified on server since the previous download.
+   */
   private void remoteContentToFile(String path, File toFile) {
     InputStream input = null;
     FileOutputStream output = null;
     String fullUrl = serverUrl + path;
+    File etagFile = new File(toFile.getPath() + ETAG_FILE_SUFFIX);
+    HttpURLConnection connection = null;
     try {
-      HttpURLConnection connection = newHttpConnection(new URL(fullUrl));
+      connection = newHttpConnection(new URL(fullUrl));
+      String etag = (toFile.exists() ? readETag(etagFile) : null);
+      if (etag != null) {
+        connection.setRequestProperty("If-None-Match", etag);
+      }
+      if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        return;
+      }
+      // the previous ETag must not be kept if the download of the new content is interrupted
+      BootstrapperIOUtils.deleteFileQuietly(etagFile);
       output = new FileOutputStream(toFile, false);
       input = connection.getInputStream();
       BootstrapperIOUtils.copyLarge(input, output);
+      writeETag(etagFile, connection.getHeaderField("ETag"));
     } catch (IOException e) {
       BootstrapperIOUtils.closeQuietly(output);
       BootstrapperIOUtils.deleteFileQuietly(toFile);
+      BootstrapperIOUtils.deleteFileQuietly(etagFile);
       throw new BootstrapException("Fail to download the file: " + fullUrl, e);
     } finally {
       BootstrapperIOUtils.closeQuietly(input);
       BootstrapperIOUtils.closeQuietly(output);
+      if (connection != null) {
+        connection.disconnect();
+      }
+    }
+  }
+
+  static String readETag(File etagFile) {
+    if (!etagFile.exists()) {
+      return null;
+    }
+    Reader reader = null;
+    try {
+      reader = new InputStreamReader(new FileInputStream(etagFile), "UTF-8");
+      String etag = BootstrapperIOUtils.toString(reader).trim();
+      return etag.length() > 0 ? etag : null;
+    } catch (IOException e) {
+      return null;
+    } finally {
+      BootstrapperIOUtils.closeQuietly(reader);
+    }
+  }
+
+  static void writeETag(File etagFile, String etag) throws IOException {
+    if (etag == null) {
+      BootstrapperIOUtils.deleteFileQuietly(etagFile);
+      return;
+    }
+    Writer writer = new OutputStreamWriter(new FileOutputStream(etagFile, false), "UTF-8");
+    try {
+      writer.write(etag);
+    } finally {
+      BootstrapperIOUtils.closeQuietly(writer);
     }
   }
 
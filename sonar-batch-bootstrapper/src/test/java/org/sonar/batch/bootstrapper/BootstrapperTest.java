@@ -60,4 +60,17 @@ public class BootstrapperTest {
     assertThat(bootstrapper.getServerVersion(), is("2.6"));
   }
 
+  @Test
+  public void shouldKeepETagOfDownloadedFile() throws IOException {
+    File etagFile = new File("target/test-tmp/BootstrapperTest/sonar-batch.jar.etag");
+    etagFile.getParentFile().mkdirs();
+
+    Bootstrapper.writeETag(etagFile, "\"abcde\"");
+    assertThat(Bootstrapper.readETag(etagFile), is("\"abcde\""));
+
+    Bootstrapper.writeETag(etagFile, null);
+    assertThat(etagFile.exists(), is(false));
+    assertThat(Bootstrapper.readETag(etagFile), nullValue());
+  }
+
 }
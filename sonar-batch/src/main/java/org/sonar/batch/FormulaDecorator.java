@@ -35,10 +35,10 @@ import java.util.Set;
  * A pre-implementation of a decorator using a simple calculation formula
  * @since 1.11
  */
+@ThreadSafeExtension
 public final class FormulaDecorator implements Decorator {
 
   private Metric metric;
-  private DefaultFormulaContext formulaContext;
   private Set<Decorator> executeAfterDecorators;
 
   /**
@@ -53,7 +53,6 @@ public final class FormulaDecorator implements Decorator {
       throw new IllegalArgumentException("No formula defined on metric");
     }
     this.metric = metric;
-    this.formulaContext = new DefaultFormulaContext(metric);
     this.executeAfterDecorators = executeAfterDecorators;
   }
 
@@ -97,6 +96,8 @@ public final class FormulaDecorator implements Decorator {
       return;
     }
 
+    // new instance of context for each execution, so that resources can be decorated concurrently
+    DefaultFormulaContext formulaContext = new DefaultFormulaContext(metric);
     formulaContext.setDecoratorContext(context);
     FormulaData data = new DefaultFormulaData(context);
     Measure measure = metric.getFormula().calculate(data, formulaContext);
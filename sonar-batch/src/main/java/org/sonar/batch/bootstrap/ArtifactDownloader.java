@@ -19,19 +19,28 @@
  */
 package org.sonar.batch.bootstrap;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.CharUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.HttpDownloader;
 import org.sonar.api.utils.SonarException;
 import org.sonar.batch.ServerMetadata;
+import org.sonar.core.plugins.PluginFileExtractor;
 import org.sonar.core.plugins.RemotePlugin;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
@@ -39,15 +48,44 @@ import java.util.List;
 public class ArtifactDownloader implements BatchComponent {
 
   private static final Logger LOG = LoggerFactory.getLogger(ArtifactDownloader.class);
+  private static final long DAY_IN_MILLISECONDS = 24L * 60 * 60 * 1000;
+  static final long UNUSED_VERSION_MAX_AGE_MILLISECONDS = 30 * DAY_IN_MILLISECONDS;
+  static final long TEMP_DIR_MAX_AGE_MILLISECONDS = DAY_IN_MILLISECONDS;
 
   private HttpDownloader httpDownloader;
   private TempDirectories workingDirectories;
   private String baseUrl;
+  private File pluginsCacheDir;
 
+  /**
+   * Plugins are not cached
+   */
   public ArtifactDownloader(HttpDownloader httpDownloader, TempDirectories workingDirectories, ServerMetadata server) {
+    this(httpDownloader, workingDirectories, server, (File) null);
+  }
+
+  /**
+   * Plugins are cached in the directory cache/plugins of the user home of Sonar. See {@link CoreProperties#BATCH_USER_HOME}.
+   * @since 2.15
+   */
+  public ArtifactDownloader(HttpDownloader httpDownloader, TempDirectories workingDirectories, ServerMetadata server, Settings settings) {
+    this(httpDownloader, workingDirectories, server, new File(getUserHome(settings), "cache/plugins"));
+  }
+
+  @VisibleForTesting
+  ArtifactDownloader(HttpDownloader httpDownloader, TempDirectories workingDirectories, ServerMetadata server, File pluginsCacheDir) {
     this.httpDownloader = httpDownloader;
     this.workingDirectories = workingDirectories;
     this.baseUrl = server.getURL();
+    this.pluginsCacheDir = pluginsCacheDir;
+  }
+
+  private static File getUserHome(Settings settings) {
+    String path = settings.getString(CoreProperties.BATCH_USER_HOME);
+    if (StringUtils.isBlank(path)) {
+      return new File(System.getProperty("user.home"), ".sonar");
+    }
+    return new File(path);
   }
 
   public File downloadJdbcDriver() {
@@ -63,9 +101,38 @@ public class ArtifactDownloader implements BatchComponent {
     }
   }
 
+  /**
+   * Thread-safe. When the checksums of plugins are known, plugins are downloaded once and kept in a cache, where
+   * their dependencies are extracted once too. Cached plugins must not be modified.
+   * <p>
+   * The cache can be shared by batches of several servers, so a version of plugin is removed from the cache only when
+   * it has not been used for 30 days. The last modification date of its directory records its last use.
+   * </p>
+   */
   public List<File> downloadPlugin(RemotePlugin remote) {
+    String checksum = remote.getChecksum();
+    if (pluginsCacheDir == null || checksum == null) {
+      return downloadPlugin(remote, workingDirectories.getDir("plugins/" + remote.getKey()));
+    }
+    File cachedDir = new File(pluginsCacheDir, remote.getKey() + "/" + checksum);
+    if (cachedDir.isDirectory()) {
+      LOG.debug("Plugin " + remote.getKey() + " found in cache " + cachedDir);
+      if (!cachedDir.setLastModified(System.currentTimeMillis())) {
+        LOG.debug("Fail to mark the cached plugin as used: " + cachedDir);
+      }
+    } else {
+      cachePlugin(remote, cachedDir);
+    }
+    deleteOutdatedEntries(cachedDir);
+    List<File> files = Lists.newArrayList();
+    for (String filename : remote.getFilenames()) {
+      files.add(new File(cachedDir, filename));
+    }
+    return files;
+  }
+
+  private List<File> downloadPlugin(RemotePlugin remote, File targetDir) {
     try {
-      File targetDir = workingDirectories.getDir("plugins/" + remote.getKey());
       FileUtils.forceMkdir(targetDir);
       LOG.debug("Downloading plugin " + remote.getKey() + " into " + targetDir);
 
@@ -74,10 +141,9 @@ public class ArtifactDownloader implements BatchComponent {
         String url = baseUrl + "/deploy/plugins/" + remote.getKey() + "/" + filename;
         File toFile = new File(targetDir, filename);
         httpDownloader.download(new URI(url), toFile);
+        checkChecksum(toFile, remote.getChecksum(filename));
         files.add(toFile);
       }
-
-
       return files;
 
     } catch (Exception e) {
@@ -85,6 +151,56 @@ public class ArtifactDownloader implements BatchComponent {
     }
   }
 
+  private static void checkChecksum(File file, String expectedChecksum) throws IOException {
+    if (expectedChecksum != null) {
+      InputStream input = null;
+      try {
+        input = new FileInputStream(file);
+        String checksum = DigestUtils.md5Hex(input);
+        if (!expectedChecksum.equals(checksum)) {
+          throw new SonarException("Bad checksum of the file " + file.getName() + ": expected " + expectedChecksum + " but was " + checksum);
+        }
+      } finally {
+        IOUtils.closeQuietly(input);
+      }
+    }
+  }
+
+  /**
+   * The plugin is downloaded and extracted into a temporary directory of the cache, which is then renamed. Several
+   * batches can fill the cache at the same time. The directory is not renamed if a file does not match its checksum.
+   */
+  private void cachePlugin(RemotePlugin remote, File cachedDir) {
+    File tempDir = new File(cachedDir.getParentFile(), cachedDir.getName() + "_" + System.nanoTime() + ".tmp");
+    try {
+      List<File> files = downloadPlugin(remote, tempDir);
+      new PluginFileExtractor().installInSameLocation(files.get(0), remote.isCore(), files.subList(1, files.size()));
+      if (!tempDir.renameTo(cachedDir) && !cachedDir.isDirectory()) {
+        throw new SonarException("Fail to move plugin " + remote.getKey() + " to the cache " + cachedDir);
+      }
+    } finally {
+      FileUtils.deleteQuietly(tempDir);
+    }
+  }
+
+  /**
+   * Removes the other versions of the plugin, which have not been used for a long time, as well as the temporary
+   * directories left by killed batches.
+   */
+  private static void deleteOutdatedEntries(File cachedDir) {
+    File[] dirs = cachedDir.getParentFile().listFiles();
+    if (dirs != null) {
+      long now = System.currentTimeMillis();
+      for (File dir : dirs) {
+        long maxAge = dir.getName().endsWith(".tmp") ? TEMP_DIR_MAX_AGE_MILLISECONDS : UNUSED_VERSION_MAX_AGE_MILLISECONDS;
+        if (dir.isDirectory() && !dir.equals(cachedDir) && now - dir.lastModified() > maxAge) {
+          LOG.debug("Deleting outdated entry of cache: " + dir);
+          FileUtils.deleteQuietly(dir);
+        }
+      }
+    }
+  }
+
   public List<RemotePlugin> downloadPluginIndex() {
     String url = baseUrl + "/deploy/plugins/index.txt";
     try {
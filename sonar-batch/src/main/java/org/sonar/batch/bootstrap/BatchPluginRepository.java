@@ -20,6 +20,7 @@
 package org.sonar.batch.bootstrap;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.apache.commons.lang.StringUtils;
@@ -32,17 +33,24 @@ import org.sonar.api.Property;
 import org.sonar.api.config.Settings;
 import org.sonar.api.platform.PluginMetadata;
 import org.sonar.api.platform.PluginRepository;
+import org.sonar.api.utils.SonarException;
 import org.sonar.core.plugins.PluginClassloaders;
 import org.sonar.core.plugins.PluginFileExtractor;
 import org.sonar.core.plugins.RemotePlugin;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class BatchPluginRepository implements PluginRepository {
 
   private static final Logger LOG = LoggerFactory.getLogger(BatchPluginRepository.class);
   private static final String CORE_PLUGIN = "core";
+  private static final int DOWNLOAD_THREADS = 4;
 
   private ArtifactDownloader artifactDownloader;
   private Map<String, Plugin> pluginsByKey;
@@ -68,23 +76,67 @@ public class BatchPluginRepository implements PluginRepository {
   }
 
   void doStart(List<RemotePlugin> remotePlugins) {
-    PluginFileExtractor extractor = new PluginFileExtractor();
-    metadataByKey = Maps.newHashMap();
+    List<RemotePlugin> acceptedPlugins = Lists.newArrayList();
     for (RemotePlugin remote : remotePlugins) {
       if (isAccepted(remote.getKey())) {
-        List<File> pluginFiles = artifactDownloader.downloadPlugin(remote);
-        List<File> extensionFiles = pluginFiles.subList(1, pluginFiles.size());
-        PluginMetadata metadata = extractor.installInSameLocation(pluginFiles.get(0), remote.isCore(), extensionFiles);
-        if (StringUtils.isBlank(metadata.getBasePlugin()) || isAccepted(metadata.getBasePlugin())) {
-          LOG.debug("Excluded plugin: " + metadata.getKey());
-          metadataByKey.put(metadata.getKey(), metadata);
-        }
+        acceptedPlugins.add(remote);
+      }
+    }
+    Map<RemotePlugin, List<File>> filesByPlugin = downloadPlugins(acceptedPlugins);
+
+    PluginFileExtractor extractor = new PluginFileExtractor();
+    metadataByKey = Maps.newHashMap();
+    for (RemotePlugin remote : acceptedPlugins) {
+      List<File> pluginFiles = filesByPlugin.get(remote);
+      List<File> extensionFiles = pluginFiles.subList(1, pluginFiles.size());
+      PluginMetadata metadata = extractor.installInSameLocation(pluginFiles.get(0), remote.isCore(), extensionFiles);
+      if (StringUtils.isBlank(metadata.getBasePlugin()) || isAccepted(metadata.getBasePlugin())) {
+        LOG.debug("Excluded plugin: " + metadata.getKey());
+        metadataByKey.put(metadata.getKey(), metadata);
       }
     }
     classLoaders = new PluginClassloaders(Thread.currentThread().getContextClassLoader());
     pluginsByKey = classLoaders.init(metadataByKey.values());
   }
 
+  /**
+   * Plugins are downloaded in parallel. Plugins that are already cached are not downloaded.
+   */
+  private Map<RemotePlugin, List<File>> downloadPlugins(List<RemotePlugin> remotePlugins) {
+    Map<RemotePlugin, List<File>> filesByPlugin = Maps.newHashMap();
+    if (remotePlugins.isEmpty()) {
+      return filesByPlugin;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(DOWNLOAD_THREADS, remotePlugins.size()));
+    try {
+      Map<RemotePlugin, Future<List<File>>> futures = Maps.newLinkedHashMap();
+      for (final RemotePlugin remote : remotePlugins) {
+        futures.put(remote, executor.submit(new Callable<List<File>>() {
+          public List<File> call() {
+            return artifactDownloader.downloadPlugin(remote);
+          }
+        }));
+      }
+      for (Map.Entry<RemotePlugin, Future<List<File>>> entry : futures.entrySet()) {
+        filesByPlugin.put(entry.getKey(), entry.getValue().get());
+      }
+      return filesByPlugin;
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException("Interrupted while downloading plugins", e);
+
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new SonarException("Fail to download plugins", e.getCause());
+
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   public void stop() {
     if (classLoaders != null) {
       classLoaders.clean();
@@ -21,6 +21,7 @@ package org.sonar.batch.bootstrap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.BatchExtensionDictionnary;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.profiles.RulesProfile;
@@ -37,6 +38,7 @@ import org.sonar.batch.config.ProjectSettings;
 import org.sonar.batch.events.EventBus;
 import org.sonar.batch.index.DefaultIndex;
 import org.sonar.batch.index.DefaultResourcePersister;
+import org.sonar.batch.phases.ExtensionsProfiler;
 import org.sonar.batch.phases.Phases;
 import org.sonar.batch.phases.PhasesTimeProfiler;
 import org.sonar.core.qualitymodel.DefaultModelFinder;
@@ -69,6 +71,9 @@ public class ProjectModule extends Module {
     addCoreSingleton(project);
     addCoreSingleton(project.getConfiguration());
     addCoreSingleton(ProjectSettings.class);
+    if (getComponentByType(ProjectSettings.class).getBoolean(CoreProperties.PROFILING_REPORT)) {
+      addCoreSingleton(ExtensionsProfiler.class);
+    }
     addCoreSingleton(IocContainer.class);
 
     for (Object component : projectDefinition.getContainerExtensions()) {
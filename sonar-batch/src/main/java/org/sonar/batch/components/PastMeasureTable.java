@@ -0,0 +1,121 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.components;
+
+/**
+ * Values of the past measures of a resource, indexed by metric, characteristic, person and rule. Keys and values are
+ * stored in arrays of primitives, so that past measures of all the resources of a module can be kept in memory.
+ *
+ * @since 2.15
+ */
+public final class PastMeasureTable {
+
+  private static final int KEY_LENGTH = 4;
+  private static final int INITIAL_CAPACITY = 16;
+
+  // ids of metrics, characteristics, persons and rules are positive, so 0 is used for null. A metric id 0 is a free slot.
+  private int[] keys;
+  private double[] values;
+  private int size = 0;
+
+  public PastMeasureTable() {
+    keys = new int[INITIAL_CAPACITY * KEY_LENGTH];
+    values = new double[INITIAL_CAPACITY];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public PastMeasureTable put(int metricId, Integer characteristicId, Integer personId, Integer ruleId, double value) {
+    if ((size + 1) * 2 > values.length) {
+      resize(values.length * 2);
+    }
+    int slot = slotOf(metricId, id(characteristicId), id(personId), id(ruleId));
+    if (keys[slot * KEY_LENGTH] == 0) {
+      keys[slot * KEY_LENGTH] = metricId;
+      keys[slot * KEY_LENGTH + 1] = id(characteristicId);
+      keys[slot * KEY_LENGTH + 2] = id(personId);
+      keys[slot * KEY_LENGTH + 3] = id(ruleId);
+      size++;
+    }
+    values[slot] = value;
+    return this;
+  }
+
+  /**
+   * @return the past value, or {@link Double#NaN} if there is no such past measure
+   */
+  public double get(int metricId, Integer characteristicId, Integer personId, Integer ruleId) {
+    int slot = slotOf(metricId, id(characteristicId), id(personId), id(ruleId));
+    return keys[slot * KEY_LENGTH] == 0 ? Double.NaN : values[slot];
+  }
+
+  /**
+   * Adds the rows returned by {@link PastMeasuresLoader#getPastMeasures(String, org.sonar.api.database.model.Snapshot)}
+   */
+  public static PastMeasureTable of(Iterable<Object[]> pastMeasures) {
+    PastMeasureTable table = new PastMeasureTable();
+    for (Object[] pastMeasure : pastMeasures) {
+      if (PastMeasuresLoader.hasValue(pastMeasure)) {
+        table.put(PastMeasuresLoader.getMetricId(pastMeasure), PastMeasuresLoader.getCharacteristicId(pastMeasure),
+            PastMeasuresLoader.getPersonId(pastMeasure), PastMeasuresLoader.getRuleId(pastMeasure), PastMeasuresLoader.getValue(pastMeasure));
+      }
+    }
+    return table;
+  }
+
+  private static int id(Integer id) {
+    return id == null ? 0 : id;
+  }
+
+  /**
+   * Open addressing with linear probing : returns the slot of the key, or the free slot where it should be added.
+   */
+  private int slotOf(int metricId, int characteristicId, int personId, int ruleId) {
+    int capacity = values.length;
+    int hash = ((metricId * 31 + characteristicId) * 31 + personId) * 31 + ruleId;
+    hash ^= (hash >>> 16);
+    int slot = (hash & 0x7fffffff) % capacity;
+    while (true) {
+      int offset = slot * KEY_LENGTH;
+      if (keys[offset] == 0 || (keys[offset] == metricId && keys[offset + 1] == characteristicId
+          && keys[offset + 2] == personId && keys[offset + 3] == ruleId)) {
+        return slot;
+      }
+      slot = (slot + 1) % capacity;
+    }
+  }
+
+  private void resize(int capacity) {
+    int[] oldKeys = keys;
+    double[] oldValues = values;
+    keys = new int[capacity * KEY_LENGTH];
+    values = new double[capacity];
+    for (int oldSlot = 0; oldSlot < oldValues.length; oldSlot++) {
+      int offset = oldSlot * KEY_LENGTH;
+      if (oldKeys[offset] != 0) {
+        int slot = slotOf(oldKeys[offset], oldKeys[offset + 1], oldKeys[offset + 2], oldKeys[offset + 3]);
+        System.arraycopy(oldKeys, offset, keys, slot * KEY_LENGTH, KEY_LENGTH);
+        values[slot] = oldValues[oldSlot];
+      }
+    }
+  }
+}
@@ -28,9 +28,12 @@ import org.sonar.api.measures.Metric;
 import org.sonar.api.measures.MetricFinder;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.Scopes;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -78,6 +81,100 @@ public class PastMeasuresLoader implements BatchExtension {
       .getResultList();
   }
 
+  /**
+   * Loads in a single query the past measures of the module and of its directories.
+   *
+   * @return past measures indexed by resource id
+   * @since 2.15
+   */
+  public Map<Integer, PastMeasureTable> getPastMeasuresOfModule(int moduleId, PastSnapshot projectPastSnapshot) {
+    Map<Integer, PastMeasureTable> result = Maps.newHashMap();
+    if (projectPastSnapshot == null || projectPastSnapshot.getProjectSnapshot() == null) {
+      return result;
+    }
+    Snapshot snapshot = projectPastSnapshot.getProjectSnapshot();
+    String sql = "select s.project_id, m.metric_id, m.characteristic_id, m.person_id, m.rule_id, m.value from project_measures m, snapshots s, projects p" +
+      " where m.snapshot_id=s.id and m.metric_id in (:metricIds) and m.value is not null " +
+      "       and (s.root_snapshot_id=:rootSnapshotId or s.id=:rootSnapshotId) " +
+      "       and s.status=:status and s.project_id=p.id and (p.id=:moduleId or (p.root_id=:moduleId and p.scope=:dirScope))";
+    List<Object[]> rows = session.createNativeQuery(sql)
+      .setParameter("metricIds", metricByIds.keySet())
+      .setParameter("rootSnapshotId", ObjectUtils.defaultIfNull(snapshot.getRootId(), snapshot.getId()))
+      .setParameter("moduleId", moduleId)
+      .setParameter("dirScope", Scopes.DIRECTORY)
+      .setParameter("status", Snapshot.STATUS_PROCESSED)
+      .getResultList();
+    for (Object[] row : rows) {
+      // can be BigDecimal on Oracle
+      int resourceId = ((Number) row[0]).intValue();
+      PastMeasureTable pastMeasures = result.get(resourceId);
+      if (pastMeasures == null) {
+        pastMeasures = new PastMeasureTable();
+        result.put(resourceId, pastMeasures);
+      }
+      pastMeasures.put(((Number) row[1]).intValue(), toInteger(row[2]), toInteger(row[3]), toInteger(row[4]), ((Number) row[5]).doubleValue());
+    }
+    return result;
+  }
+
+  /**
+   * Loads in a single query the values of the measures of the module and of its directories, in the given period of time.
+   * Measures on characteristics, persons and rules are excluded.
+   *
+   * @return for each resource id, the chronological values of each metric. Missing values are {@link Double#NaN}.
+   * @since 2.15
+   */
+  public Map<Integer, Map<Integer, double[]>> getMeasuresOfModule(int moduleId, Date from, Date to) {
+    String sql = "select s.project_id, m.metric_id, m.value from project_measures m, snapshots s, projects p" +
+      " where m.snapshot_id=s.id and m.metric_id in (:metricIds) " +
+      "       and m.characteristic_id is null and m.person_id is null and m.rule_id is null and m.rule_priority is null " +
+      "       and s.status=:status and s.created_at>=:from and s.created_at<=:to " +
+      "       and s.project_id=p.id and (p.id=:moduleId or (p.root_id=:moduleId and p.scope=:dirScope))" +
+      " order by s.project_id, m.metric_id, s.created_at";
+    List<Object[]> rows = session.createNativeQuery(sql)
+      .setParameter("metricIds", metricByIds.keySet())
+      .setParameter("status", Snapshot.STATUS_PROCESSED)
+      .setParameter("from", from)
+      .setParameter("to", to)
+      .setParameter("moduleId", moduleId)
+      .setParameter("dirScope", Scopes.DIRECTORY)
+      .getResultList();
+
+    // rows are sorted by resource and metric, so each series of values is contiguous
+    Map<Integer, Map<Integer, double[]>> result = Maps.newHashMap();
+    double[] buffer = new double[16];
+    int size = 0;
+    for (int i = 0; i < rows.size(); i++) {
+      Object[] row = rows.get(i);
+      if (size == buffer.length) {
+        buffer = Arrays.copyOf(buffer, size * 2);
+      }
+      buffer[size++] = row[2] != null ? ((Number) row[2]).doubleValue() : Double.NaN;
+
+      Object[] next = i + 1 < rows.size() ? rows.get(i + 1) : null;
+      if (next == null || !sameSeries(row, next)) {
+        // can be BigDecimal on Oracle
+        int resourceId = ((Number) row[0]).intValue();
+        Map<Integer, double[]> valuesByMetric = result.get(resourceId);
+        if (valuesByMetric == null) {
+          valuesByMetric = Maps.newHashMap();
+          result.put(resourceId, valuesByMetric);
+        }
+        valuesByMetric.put(((Number) row[1]).intValue(), Arrays.copyOf(buffer, size));
+        size = 0;
+      }
+    }
+    return result;
+  }
+
+  private static boolean sameSeries(Object[] row, Object[] other) {
+    return ((Number) row[0]).intValue() == ((Number) other[0]).intValue() && ((Number) row[1]).intValue() == ((Number) other[1]).intValue();
+  }
+
+  private static Integer toInteger(Object value) {
+    return value != null ? ((Number) value).intValue() : null;
+  }
+
   public static int getMetricId(Object[] row) {
     // can be BigDecimal on Oracle
     return ((Number) row[0]).intValue();
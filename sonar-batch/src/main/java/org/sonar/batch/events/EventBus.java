@@ -20,9 +20,12 @@
 package org.sonar.batch.events;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.api.batch.ThreadSafeExtension;
 import org.sonar.api.batch.events.EventHandler;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Dispatches {@link BatchEvent}s. Eases decoupling by allowing objects to interact without having direct dependencies upon one another, and
@@ -32,6 +35,12 @@ public class EventBus {
 
   private EventHandler[] registeredHandlers;
 
+  /**
+   * Handlers are registered once for all, so the handlers of each type of event are computed only once.
+   */
+  private final ConcurrentMap<Class, EventHandler[]> dispatchTables = Maps.newConcurrentMap();
+  private final ConcurrentMap<Class, Boolean> threadSafeHandlers = Maps.newConcurrentMap();
+
   public EventBus(EventHandler[] handlers) {
     this.registeredHandlers = handlers;
   }
@@ -43,19 +52,53 @@ public class EventBus {
     doFireEvent(event);
   }
 
+  /**
+   * Allows event sources to not create events, which would not be handled.
+   *
+   * @since 2.15
+   */
+  public boolean hasHandlers(Class<? extends EventHandler> handlerType) {
+    return getDispatchList(handlerType).length > 0;
+  }
+
+  /**
+   * Allows event sources, which are executed concurrently, to fire events without lock, when all handlers of events
+   * are annotated with {@link ThreadSafeExtension}.
+   *
+   * @since 2.15
+   */
+  public boolean areHandlersThreadSafe(Class<? extends EventHandler> handlerType) {
+    Boolean result = threadSafeHandlers.get(handlerType);
+    if (result == null) {
+      result = true;
+      for (EventHandler handler : getDispatchList(handlerType)) {
+        if (!handler.getClass().isAnnotationPresent(ThreadSafeExtension.class)) {
+          result = false;
+        }
+      }
+      threadSafeHandlers.put(handlerType, result);
+    }
+    return result;
+  }
+
   private void doFireEvent(BatchEvent event) {
-    List<EventHandler> handlers = getDispatchList(event.getType());
+    EventHandler[] handlers = getDispatchList(event.getType());
     for (EventHandler handler : handlers) {
       event.dispatch(handler);
     }
   }
 
-  private List<EventHandler> getDispatchList(Class<? extends EventHandler> handlerType) {
-    List<EventHandler> result = Lists.newArrayList();
-    for (EventHandler handler : registeredHandlers) {
-      if (handlerType.isAssignableFrom(handler.getClass())) {
-        result.add(handler);
+  private EventHandler[] getDispatchList(Class<? extends EventHandler> handlerType) {
+    EventHandler[] result = dispatchTables.get(handlerType);
+    if (result == null) {
+      List<EventHandler> handlers = Lists.newArrayList();
+      for (EventHandler handler : registeredHandlers) {
+        if (handlerType.isAssignableFrom(handler.getClass())) {
+          handlers.add(handler);
+        }
       }
+      result = handlers.toArray(new EventHandler[handlers.size()]);
+      dispatchTables.put(handlerType, result);
     }
     return result;
   }
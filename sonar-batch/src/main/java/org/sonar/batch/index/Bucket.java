@@ -19,8 +19,6 @@
  */
 package org.sonar.batch.index;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MeasuresFilter;
@@ -33,10 +31,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Not thread-safe. Buckets are accessed only under the lock of {@link DefaultIndex}.
+ */
 public final class Bucket {
 
   private Resource resource;
-  private ListMultimap<String, Measure> measuresByMetric = ArrayListMultimap.create();
+  private MeasureTable measuresByMetric = new MeasureTable();
   private List<Violation> violations = Lists.newLinkedList();
 
   private Bucket parent;
@@ -89,21 +90,9 @@ public final class Bucket {
   }
 
   public void addMeasure(Measure measure) {
-    List<Measure> metricMeasures = measuresByMetric.get(measure.getMetric().getKey());
-
-    boolean add = true;
-    if (metricMeasures != null) {
-      int index = metricMeasures.indexOf(measure);
-      if (index > -1) {
-        if (metricMeasures.get(index) == measure) {
-          add = false;
-        } else {
-          throw new SonarException("Can not add twice the same measure on " + resource + ": " + measure);
-        }
-      }
-    }
-    if (add) {
-      measuresByMetric.put(measure.getMetric().getKey(), measure);
+    Measure existing = measuresByMetric.putIfAbsent(measure);
+    if (existing != null && existing != measure) {
+      throw new SonarException("Can not add twice the same measure on " + resource + ": " + measure);
     }
   }
 
@@ -44,6 +44,11 @@ import org.sonar.batch.ViolationFilters;
 
 import java.util.*;
 
+/**
+ * Methods are synchronized, so that decorators of independent resources can be executed concurrently.
+ * Buckets and persistence are accessed only through this class, so they are guarded by the same lock.
+ * Returned collections are copies, so that they can be iterated without holding the lock.
+ */
 public class DefaultIndex extends SonarIndex {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultIndex.class);
@@ -72,7 +77,7 @@ public class DefaultIndex extends SonarIndex {
     this.metricFinder = metricFinder;
   }
 
-  public void start() {
+  public synchronized void start() {
     Project rootProject = projectTree.getRootProject();
     doStart(rootProject);
   }
@@ -95,11 +100,11 @@ public class DefaultIndex extends SonarIndex {
     }
   }
 
-  public Project getProject() {
+  public synchronized Project getProject() {
     return currentProject;
   }
 
-  public void setCurrentProject(Project project, ResourceFilters resourceFilters, ViolationFilters violationFilters, RulesProfile profile) {
+  public synchronized void setCurrentProject(Project project, ResourceFilters resourceFilters, ViolationFilters violationFilters, RulesProfile profile) {
     this.currentProject = project;
 
     // the following components depend on the current project, so they need to be reloaded.
@@ -111,7 +116,7 @@ public class DefaultIndex extends SonarIndex {
   /**
    * Keep only project stuff
    */
-  public void clear() {
+  public synchronized void clear() {
     Iterator<Map.Entry<Resource, Bucket>> it = buckets.entrySet().iterator();
     while (it.hasNext()) {
       Map.Entry<Resource, Bucket> entry = it.next();
@@ -134,7 +139,7 @@ public class DefaultIndex extends SonarIndex {
     lock.unlock();
   }
 
-  public Measure getMeasure(Resource resource, Metric metric) {
+  public synchronized Measure getMeasure(Resource resource, Metric metric) {
     Bucket bucket = buckets.get(resource);
     if (bucket != null) {
       Measure measure = bucket.getMeasures(MeasuresFilters.metric(metric));
@@ -145,7 +150,7 @@ public class DefaultIndex extends SonarIndex {
     return null;
   }
 
-  public <M> M getMeasures(Resource resource, MeasuresFilter<M> filter) {
+  public synchronized <M> M getMeasures(Resource resource, MeasuresFilter<M> filter) {
     Bucket bucket = buckets.get(resource);
     if (bucket != null) {
       // TODO the data measures which are not kept in memory are not reloaded yet. Use getMeasure().
@@ -157,7 +162,7 @@ public class DefaultIndex extends SonarIndex {
   /**
    * the measure is updated if it's already registered.
    */
-  public Measure addMeasure(Resource resource, Measure measure) {
+  public synchronized Measure addMeasure(Resource resource, Measure measure) {
     Bucket bucket = checkIndexed(resource);
     if (bucket != null && !bucket.isExcluded()) {
       Metric metric = metricFinder.findByKey(measure.getMetricKey());
@@ -182,7 +187,7 @@ public class DefaultIndex extends SonarIndex {
   //
   //
 
-  public Dependency addDependency(Dependency dependency) {
+  public synchronized Dependency addDependency(Dependency dependency) {
     Dependency existingDep = getEdge(dependency.getFrom(), dependency.getTo());
     if (existingDep != null) {
       return existingDep;
@@ -230,11 +235,11 @@ public class DefaultIndex extends SonarIndex {
     incomingDeps.put(dependency.getFrom(), dependency);
   }
 
-  public Set<Dependency> getDependencies() {
-    return dependencies;
+  public synchronized Set<Dependency> getDependencies() {
+    return Sets.newHashSet(dependencies);
   }
 
-  public Dependency getEdge(Resource from, Resource to) {
+  public synchronized Dependency getEdge(Resource from, Resource to) {
     Map<Resource, Dependency> map = outgoingDependenciesByResource.get(from);
     if (map != null) {
       return map.get(to);
@@ -242,31 +247,31 @@ public class DefaultIndex extends SonarIndex {
     return null;
   }
 
-  public boolean hasEdge(Resource from, Resource to) {
+  public synchronized boolean hasEdge(Resource from, Resource to) {
     return getEdge(from, to) != null;
   }
 
-  public Set<Resource> getVertices() {
-    return buckets.keySet();
+  public synchronized Set<Resource> getVertices() {
+    return Sets.newHashSet(buckets.keySet());
   }
 
-  public Collection<Dependency> getOutgoingEdges(Resource from) {
+  public synchronized Collection<Dependency> getOutgoingEdges(Resource from) {
     Map<Resource, Dependency> deps = outgoingDependenciesByResource.get(from);
     if (deps != null) {
-      return deps.values();
+      return Lists.newArrayList(deps.values());
     }
     return Collections.emptyList();
   }
 
-  public Collection<Dependency> getIncomingEdges(Resource to) {
+  public synchronized Collection<Dependency> getIncomingEdges(Resource to) {
     Map<Resource, Dependency> deps = incomingDependenciesByResource.get(to);
     if (deps != null) {
-      return deps.values();
+      return Lists.newArrayList(deps.values());
     }
     return Collections.emptyList();
   }
 
-  Set<Dependency> getDependenciesBetweenProjects() {
+  synchronized Set<Dependency> getDependenciesBetweenProjects() {
     Set<Dependency> result = Sets.newLinkedHashSet();
     for (Dependency dependency : dependencies) {
       if (ResourceUtils.isSet(dependency.getFrom()) || ResourceUtils.isSet(dependency.getTo())) {
@@ -287,7 +292,7 @@ public class DefaultIndex extends SonarIndex {
   /**
    * {@inheritDoc}
    */
-  public List<Violation> getViolations(ViolationQuery violationQuery) {
+  public synchronized List<Violation> getViolations(ViolationQuery violationQuery) {
     Resource resource = violationQuery.getResource();
     if (resource == null) {
       throw new IllegalArgumentException("A resource must be set on the ViolationQuery in order to search for violations.");
@@ -308,7 +313,7 @@ public class DefaultIndex extends SonarIndex {
     return filteredViolations;
   }
 
-  public void addViolation(Violation violation, boolean force) {
+  public synchronized void addViolation(Violation violation, boolean force) {
     Resource resource = violation.getResource();
     if (resource == null) {
       violation.setResource(currentProject);
@@ -362,11 +367,11 @@ public class DefaultIndex extends SonarIndex {
   //
   //
 
-  public void addLink(ProjectLink link) {
+  public synchronized void addLink(ProjectLink link) {
     persistence.saveLink(currentProject, link);
   }
 
-  public void deleteLink(String key) {
+  public synchronized void deleteLink(String key) {
     persistence.deleteLink(currentProject, key);
   }
 
@@ -378,16 +383,16 @@ public class DefaultIndex extends SonarIndex {
   //
   //
 
-  public List<Event> getEvents(Resource resource) {
+  public synchronized List<Event> getEvents(Resource resource) {
     // currently events are not cached in memory
     return persistence.getEvents(resource);
   }
 
-  public void deleteEvent(Event event) {
+  public synchronized void deleteEvent(Event event) {
     persistence.deleteEvent(event);
   }
 
-  public Event addEvent(Resource resource, String name, String description, String category, Date date) {
+  public synchronized Event addEvent(Resource resource, String name, String description, String category, Date date) {
     Event event = new Event(name, description, category);
     event.setDate(date);
     event.setCreatedAt(new Date());
@@ -396,26 +401,26 @@ public class DefaultIndex extends SonarIndex {
     return null;
   }
 
-  public void setSource(Resource reference, String source) {
+  public synchronized void setSource(Resource reference, String source) {
     Bucket bucket = checkIndexed(reference);
     if (bucket != null && !bucket.isExcluded()) {
       persistence.setSource(reference, source);
     }
   }
 
-  public String getSource(Resource resource) {
+  public synchronized String getSource(Resource resource) {
     return persistence.getSource(resource);
   }
 
   /**
    * Does nothing if the resource is already registered.
    */
-  public Resource addResource(Resource resource) {
+  public synchronized Resource addResource(Resource resource) {
     Bucket bucket = doIndex(resource);
     return bucket != null ? bucket.getResource() : null;
   }
 
-  public <R extends Resource> R getResource(R reference) {
+  public synchronized <R extends Resource> R getResource(R reference) {
     Bucket bucket = buckets.get(reference);
     if (bucket != null) {
       return (R) bucket.getResource();
@@ -442,11 +447,11 @@ public class DefaultIndex extends SonarIndex {
     return excluded;
   }
 
-  public List<Resource> getChildren(Resource resource) {
+  public synchronized List<Resource> getChildren(Resource resource) {
     return getChildren(resource, false);
   }
 
-  public List<Resource> getChildren(Resource resource, boolean acceptExcluded) {
+  public synchronized List<Resource> getChildren(Resource resource, boolean acceptExcluded) {
     List<Resource> children = Lists.newLinkedList();
     Bucket bucket = getBucket(resource, acceptExcluded);
     if (bucket != null) {
@@ -459,7 +464,7 @@ public class DefaultIndex extends SonarIndex {
     return children;
   }
 
-  public Resource getParent(Resource resource) {
+  public synchronized Resource getParent(Resource resource) {
     Bucket bucket = getBucket(resource, false);
     if (bucket != null && bucket.getParent() != null) {
       return bucket.getParent().getResource();
@@ -467,7 +472,7 @@ public class DefaultIndex extends SonarIndex {
     return null;
   }
 
-  public boolean index(Resource resource) {
+  public synchronized boolean index(Resource resource) {
     Bucket bucket = doIndex(resource);
     return bucket != null && !bucket.isExcluded();
   }
@@ -479,7 +484,7 @@ public class DefaultIndex extends SonarIndex {
     return doIndex(resource, resource.getParent());
   }
 
-  public boolean index(Resource resource, Resource parentReference) {
+  public synchronized boolean index(Resource resource, Resource parentReference) {
     Bucket bucket = doIndex(resource, parentReference);
     return bucket != null && !bucket.isExcluded();
   }
@@ -541,12 +546,12 @@ public class DefaultIndex extends SonarIndex {
     return bucket;
   }
 
-  public boolean isExcluded(Resource reference) {
+  public synchronized boolean isExcluded(Resource reference) {
     Bucket bucket = getBucket(reference, true);
     return bucket != null && bucket.isExcluded();
   }
 
-  public boolean isIndexed(Resource reference, boolean acceptExcluded) {
+  public synchronized boolean isIndexed(Resource reference, boolean acceptExcluded) {
     return getBucket(reference, acceptExcluded) != null;
   }
 
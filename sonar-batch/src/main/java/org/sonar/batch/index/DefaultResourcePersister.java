@@ -20,6 +20,7 @@
 package org.sonar.batch.index;
 
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.database.DatabaseSession;
@@ -34,6 +35,7 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public final class DefaultResourcePersister implements ResourcePersister {
 
@@ -41,6 +43,13 @@ public final class DefaultResourcePersister implements ResourcePersister {
 
   private Map<Resource, Snapshot> snapshotsByResource = Maps.newHashMap();
 
+  /**
+   * Resources of the modules being analysed, loaded with a single query per module, so that
+   * unchanged resources are neither selected nor updated one by one.
+   */
+  private Map<String, ResourceModel> modelsByKey = Maps.newHashMap();
+  private Set<Integer> loadedModuleIds = Sets.newHashSet();
+
   public DefaultResourcePersister(DatabaseSession session) {
     this.session = session;
   }
@@ -87,6 +96,21 @@ public final class DefaultResourcePersister implements ResourcePersister {
     return snapshot;
   }
 
+  private void loadModelsOfModule(Integer moduleId) {
+    if (!loadedModuleIds.add(moduleId)) {
+      return;
+    }
+    Query query = session.createQuery("SELECT r FROM " + ResourceModel.class.getSimpleName() + " r WHERE r.rootId=:rootId AND r.scope<>:scope");
+    query.setParameter("rootId", moduleId);
+    query.setParameter("scope", Scopes.PROJECT);
+    List<ResourceModel> models = query.getResultList();
+    for (ResourceModel model : models) {
+      modelsByKey.put(model.getKey(), model);
+    }
+    // the session is cleared on commit, so that loaded models are detached and never flushed
+    session.commit();
+  }
+
   public Snapshot getSnapshot(Resource reference) {
     return snapshotsByResource.get(reference);
   }
@@ -180,18 +204,21 @@ public final class DefaultResourcePersister implements ResourcePersister {
    * Everything except project and library
    */
   private Snapshot persistFileOrDirectory(Project project, Resource resource, Resource parentReference) {
-    ResourceModel model = findOrCreateModel(resource);
     Snapshot projectSnapshot = snapshotsByResource.get(project);
-    model.setRootId(projectSnapshot.getResourceId());
-    model = session.save(model);
+    loadModelsOfModule(projectSnapshot.getResourceId());
+    ResourceModel model = modelsByKey.remove(resource.getEffectiveKey());
+    if (model == null || !isUpToDate(model, resource, projectSnapshot.getResourceId())) {
+      model = findOrCreateModel(resource);
+      model.setRootId(projectSnapshot.getResourceId());
+      model = session.save(model);
+    }
     resource.setId(model.getId());
 
     Snapshot parentSnapshot = (Snapshot) ObjectUtils.defaultIfNull(getSnapshot(parentReference), projectSnapshot);
     Snapshot snapshot = new Snapshot(model, parentSnapshot);
     snapshot.setBuildDate(new Date());
-    snapshot = session.save(snapshot);
-    session.commit();
-    return snapshot;
+    // no commit here, so that inserts of snapshots can be sent to database in JDBC batches
+    return session.save(snapshot);
   }
 
   public Snapshot getLastSnapshot(Snapshot snapshot, boolean onlyOlder) {
@@ -216,6 +243,7 @@ public final class DefaultResourcePersister implements ResourcePersister {
         it.remove();
       }
     }
+    modelsByKey.clear();
   }
 
   private ResourceModel findOrCreateModel(Resource resource) {
@@ -254,6 +282,24 @@ public final class DefaultResourcePersister implements ResourcePersister {
     return model;
   }
 
+  /**
+   * @return true if {@link #mergeModel(ResourceModel, Resource)} would not change the model
+   */
+  static boolean isUpToDate(ResourceModel model, Resource resource, Integer rootId) {
+    return Boolean.TRUE.equals(model.getEnabled())
+      && ObjectUtils.equals(rootId, model.getRootId())
+      && isUpToDate(model.getName(), resource.getName())
+      && isUpToDate(model.getLongName(), resource.getLongName())
+      && isUpToDate(model.getDescription(), resource.getDescription())
+      && StringUtils.equals(model.getScope(), resource.getScope())
+      && StringUtils.equals(model.getQualifier(), resource.getQualifier())
+      && (resource.getLanguage() == null || StringUtils.equals(model.getLanguageKey(), resource.getLanguage().getKey()));
+  }
+
+  private static boolean isUpToDate(String value, String newValue) {
+    return StringUtils.isBlank(newValue) || StringUtils.equals(value, newValue);
+  }
+
   static void mergeModel(ResourceModel model, Resource resource) {
     model.setEnabled(true);
     if (StringUtils.isNotBlank(resource.getName())) {
@@ -20,9 +20,12 @@
 package org.sonar.batch.index;
 
 import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.SetMultimap;
 import org.apache.commons.lang.math.NumberUtils;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.config.Settings;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.model.MeasureModel;
 import org.sonar.api.database.model.Snapshot;
@@ -34,10 +37,17 @@ import org.sonar.api.resources.ResourceUtils;
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.utils.SonarException;
+import org.sonar.core.measure.MeasureDao;
+import org.sonar.core.measure.MeasureDto;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Thread-safe, however database session is not, so it must not be used concurrently by other components.
+ * Measures are saved by {@link DefaultIndex} while it holds its own lock, which is not shared with this class.
+ */
 public final class MeasurePersister {
 
   private boolean delayedMode = false;
@@ -46,20 +56,24 @@ public final class MeasurePersister {
   private ResourcePersister resourcePersister;
   private RuleFinder ruleFinder;
   private MemoryOptimizer memoryOptimizer;
+  private MeasureDao measureDao;
+  private Settings settings;
 
-
-  public MeasurePersister(DatabaseSession session, ResourcePersister resourcePersister, RuleFinder ruleFinder, MemoryOptimizer memoryOptimizer) {
+  public MeasurePersister(DatabaseSession session, ResourcePersister resourcePersister, RuleFinder ruleFinder, MemoryOptimizer memoryOptimizer,
+      MeasureDao measureDao, Settings settings) {
     this.session = session;
     this.resourcePersister = resourcePersister;
     this.ruleFinder = ruleFinder;
     this.memoryOptimizer = memoryOptimizer;
+    this.measureDao = measureDao;
+    this.settings = settings;
   }
 
-  public void setDelayedMode(boolean delayedMode) {
+  public synchronized void setDelayedMode(boolean delayedMode) {
     this.delayedMode = delayedMode;
   }
 
-  public void saveMeasure(Resource resource, Measure measure) {
+  public synchronized void saveMeasure(Resource resource, Measure measure) {
     boolean saveLater = (measure.getPersistenceMode().useMemory() && delayedMode);
     if (saveLater) {
       unsavedMeasuresByResource.put(resource, measure);
@@ -86,7 +100,7 @@ public final class MeasurePersister {
     }
   }
 
-  public Measure reloadMeasure(Measure measure) {
+  public synchronized Measure reloadMeasure(Measure measure) {
     return memoryOptimizer.reloadMeasure(measure);
   }
 
@@ -113,25 +127,78 @@ public final class MeasurePersister {
         (measure.getVariation5() == null || NumberUtils.compare(measure.getVariation5().doubleValue(), 0.0) == 0);
   }
 
-  public void dump() {
+  /**
+   * Delayed measures are inserted with JDBC batches, without going through Hibernate.
+   */
+  public synchronized void dump() {
     LoggerFactory.getLogger(getClass()).debug("{} measures to dump", unsavedMeasuresByResource.size());
+    // measures and snapshots saved through the Hibernate session must be visible from the other connection
+    session.commit();
+
+    List<MeasureDto> dtos = Lists.newArrayListWithCapacity(unsavedMeasuresByResource.size());
     Map<Resource, Collection<Measure>> map = unsavedMeasuresByResource.asMap();
     for (Map.Entry<Resource, Collection<Measure>> entry : map.entrySet()) {
       Resource resource = entry.getKey();
       Snapshot snapshot = resourcePersister.getSnapshot(entry.getKey());
       for (Measure measure : entry.getValue()) {
         if (shouldPersistMeasure(resource, measure)) {
-          MeasureModel model = createModel(measure);
-          model.setSnapshotId(snapshot.getId());
-          model.save(session);
+          dtos.add(createDto(measure, snapshot.getId()));
         }
       }
     }
-
-    session.commit();
+    measureDao.insert(dtos, getBatchSize());
     unsavedMeasuresByResource.clear();
   }
 
+  private int getBatchSize() {
+    int size = settings.getInt(CoreProperties.MEASURES_BATCH_SIZE);
+    return size > 0 ? size : CoreProperties.MEASURES_BATCH_SIZE_DEFAULT_VALUE;
+  }
+
+  MeasureDto createDto(Measure measure, Integer snapshotId) {
+    MeasureDto dto = new MeasureDto()
+        .setSnapshotId(snapshotId)
+        .setMetricId(measure.getMetric().getId())
+        .setDescription(measure.getDescription())
+        .setAlertStatus(measure.getAlertStatus() != null ? measure.getAlertStatus().name() : null)
+        .setAlertText(measure.getAlertText())
+        .setTendency(measure.getTendency())
+        .setVariation1(measure.getVariation1())
+        .setVariation2(measure.getVariation2())
+        .setVariation3(measure.getVariation3())
+        .setVariation4(measure.getVariation4())
+        .setVariation5(measure.getVariation5())
+        .setUrl(measure.getUrl())
+        .setCharacteristicId(measure.getCharacteristic() != null ? measure.getCharacteristic().getId() : null)
+        .setPersonId(measure.getPersonId())
+        .setValue(measure.getValue());
+
+    // same split than MeasureModel#setData()
+    String data = measure.getData();
+    if (data != null && data.length() > MeasureModel.TEXT_VALUE_LENGTH) {
+      dto.setData(data.getBytes());
+    } else {
+      dto.setTextValue(data);
+    }
+
+    if (measure instanceof RuleMeasure) {
+      RuleMeasure ruleMeasure = (RuleMeasure) measure;
+      dto.setRulePriority(ruleMeasure.getSeverity() != null ? ruleMeasure.getSeverity().ordinal() : null);
+      if (ruleMeasure.getRule() != null) {
+        dto.setRuleId(getRuleId(ruleMeasure));
+      }
+    }
+    return dto;
+  }
+
+  private Integer getRuleId(RuleMeasure ruleMeasure) {
+    Rule ruleWithId = ruleFinder.findByKey(ruleMeasure.getRule().getRepositoryKey(), ruleMeasure.getRule().getKey());
+    if (ruleWithId == null) {
+      throw new SonarException("Can not save a measure with unknown rule " + ruleMeasure);
+    }
+    return ruleWithId.getId();
+  }
+
   MeasureModel createModel(Measure measure) {
     return mergeModel(measure, new MeasureModel());
   }
@@ -160,12 +227,7 @@ public final class MeasurePersister {
       RuleMeasure ruleMeasure = (RuleMeasure) measure;
       merge.setRulePriority(ruleMeasure.getSeverity());
       if (ruleMeasure.getRule() != null) {
-        Rule ruleWithId = ruleFinder.findByKey(ruleMeasure.getRule().getRepositoryKey(), ruleMeasure.getRule().getKey());
-        if (ruleWithId != null) {
-          merge.setRuleId(ruleWithId.getId());
-        } else {
-          throw new SonarException("Can not save a measure with unknown rule " + ruleMeasure);
-        }
+        merge.setRuleId(getRuleId(ruleMeasure));
       }
     }
     return merge;
@@ -0,0 +1,161 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.api.measures.Measure;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures of a {@link Bucket}, indexed by metric. Metric keys are interned to dense int ids shared by all the buckets,
+ * and measures are stored in open-addressed arrays. A metric usually has a single measure per resource, which is then
+ * stored without any wrapping list.
+ * <p/>
+ * Not thread-safe, except the interning of metric keys.
+ *
+ * @since 2.15
+ */
+final class MeasureTable {
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private static final ConcurrentMap<String, Integer> METRIC_IDS = Maps.newConcurrentMap();
+  private static final AtomicInteger LAST_METRIC_ID = new AtomicInteger(0);
+
+  // metric ids are positive, so 0 is a free slot
+  private int[] keys;
+  // a Measure, or a List<Measure> when the metric has several measures (rule measures, characteristic measures...)
+  private Object[] values;
+  private int size = 0;
+
+  MeasureTable() {
+    keys = new int[INITIAL_CAPACITY];
+    values = new Object[INITIAL_CAPACITY];
+  }
+
+  static int metricId(String metricKey) {
+    Integer id = METRIC_IDS.get(metricKey);
+    if (id == null) {
+      Integer newId = LAST_METRIC_ID.incrementAndGet();
+      id = METRIC_IDS.putIfAbsent(metricKey, newId);
+      if (id == null) {
+        id = newId;
+      }
+    }
+    return id;
+  }
+
+  /**
+   * Adds the measure, unless an equal measure is already stored.
+   *
+   * @return the stored measure that equals the given one, or null if the measure has been added
+   */
+  Measure putIfAbsent(Measure measure) {
+    int metricId = metricId(measure.getMetric().getKey());
+    int slot = slotOf(metricId);
+    Object current = values[slot];
+    if (current == null) {
+      if ((size + 1) * 2 > keys.length) {
+        resize(keys.length * 2);
+        slot = slotOf(metricId);
+      }
+      keys[slot] = metricId;
+      values[slot] = measure;
+      size++;
+
+    } else if (current instanceof Measure) {
+      if (current == measure || current.equals(measure)) {
+        return (Measure) current;
+      }
+      List<Measure> measures = Lists.newArrayListWithCapacity(4);
+      measures.add((Measure) current);
+      measures.add(measure);
+      values[slot] = measures;
+
+    } else {
+      List<Measure> measures = (List<Measure>) current;
+      int index = measures.indexOf(measure);
+      if (index > -1) {
+        return measures.get(index);
+      }
+      measures.add(measure);
+    }
+    return null;
+  }
+
+  Collection<Measure> get(String metricKey) {
+    Integer metricId = METRIC_IDS.get(metricKey);
+    if (metricId == null) {
+      return Collections.emptyList();
+    }
+    return toCollection(values[slotOf(metricId)]);
+  }
+
+  Collection<Measure> values() {
+    List<Measure> result = Lists.newArrayListWithCapacity(size);
+    for (Object value : values) {
+      if (value instanceof Measure) {
+        result.add((Measure) value);
+      } else if (value != null) {
+        result.addAll((List<Measure>) value);
+      }
+    }
+    return result;
+  }
+
+  private static Collection<Measure> toCollection(Object value) {
+    if (value == null) {
+      return Collections.emptyList();
+    }
+    if (value instanceof Measure) {
+      return Collections.singletonList((Measure) value);
+    }
+    return (List<Measure>) value;
+  }
+
+  private int slotOf(int metricId) {
+    int mask = keys.length - 1;
+    int slot = (metricId * 0x9E3779B9) >>> 16 & mask;
+    while (keys[slot] != 0 && keys[slot] != metricId) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void resize(int capacity) {
+    int[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new int[capacity];
+    values = new Object[capacity];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != 0) {
+        int slot = slotOf(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
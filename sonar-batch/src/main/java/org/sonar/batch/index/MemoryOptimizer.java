@@ -23,6 +23,7 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.ThreadSafeExtension;
 import org.sonar.api.batch.events.DecoratorExecutionHandler;
 import org.sonar.api.batch.events.DecoratorsPhaseHandler;
 import org.sonar.api.batch.events.SensorExecutionHandler;
@@ -36,14 +37,25 @@ import java.util.List;
 import java.util.Map;
 
 /**
+ * Measures, which were reloaded by a thread, are flushed at the end of execution of decorator or sensor by the same thread,
+ * so that decorators can be executed concurrently. Events of decorators are handled without lock, as they only touch
+ * the measures of the current thread. Events of sensors and phases, which commit the database session, are still fired
+ * under the lock of index.
+ *
  * @since 2.7
  */
+@ThreadSafeExtension
 public class MemoryOptimizer implements SensorExecutionHandler, DecoratorExecutionHandler, DecoratorsPhaseHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(MemoryOptimizer.class);
 
-  private List<Measure> loadedMeasures = Lists.newArrayList();
-  private Map<Long, Integer> dataIdByMeasureId = Maps.newHashMap();
+  private final ThreadLocal<List<Measure>> loadedMeasures = new ThreadLocal<List<Measure>>() {
+    @Override
+    protected List<Measure> initialValue() {
+      return Lists.newArrayList();
+    }
+  };
+  private Map<Long, Integer> dataIdByMeasureId = Maps.newConcurrentMap();
   private DatabaseSession session;
 
   public MemoryOptimizer(DatabaseSession session) {
@@ -66,7 +78,7 @@ public class MemoryOptimizer implements SensorExecutionHandler, DecoratorExecuti
     }
   }
 
-  public Measure reloadMeasure(Measure measure) {
+  public synchronized Measure reloadMeasure(Measure measure) {
     if (measure.getId() != null && dataIdByMeasureId.containsKey(measure.getId()) && !measure.hasData()) {
       Integer dataId = dataIdByMeasureId.get(measure.getId());
       MeasureData data = session.getSingleResult(MeasureData.class, "id", dataId);
@@ -78,20 +90,24 @@ public class MemoryOptimizer implements SensorExecutionHandler, DecoratorExecuti
           LOG.debug("Reload the data measure: " + measure.getMetricKey() + ", id=" + measure.getId());
         }
         measure.setData(data.getText());
-        loadedMeasures.add(measure);
+        loadedMeasures.get().add(measure);
       }
     }
     return measure;
   }
 
+  /**
+   * Removes from memory data of measures, which were reloaded by current thread.
+   */
   public void flushMemory() {
-    if (LOG.isDebugEnabled() && !loadedMeasures.isEmpty()) {
-      LOG.debug("Flush " + loadedMeasures.size() + " data measures from memory: ");
+    List<Measure> measures = loadedMeasures.get();
+    if (LOG.isDebugEnabled() && !measures.isEmpty()) {
+      LOG.debug("Flush " + measures.size() + " data measures from memory: ");
     }
-    for (Measure measure : loadedMeasures) {
+    for (Measure measure : measures) {
       measure.unsetData();
     }
-    loadedMeasures.clear();
+    measures.clear();
   }
 
   boolean isTracked(Long measureId) {
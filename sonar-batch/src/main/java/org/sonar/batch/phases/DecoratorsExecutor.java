@@ -19,12 +19,22 @@
  */
 package org.sonar.batch.phases;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang.ArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.BatchExtensionDictionnary;
+import org.sonar.api.batch.DecoratedResources;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafeExtension;
+import org.sonar.api.batch.events.DecoratorExecutionHandler;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.utils.SonarException;
@@ -32,30 +42,63 @@ import org.sonar.batch.DecoratorsSelector;
 import org.sonar.batch.DefaultDecoratorContext;
 import org.sonar.batch.events.EventBus;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class DecoratorsExecutor implements BatchComponent {
 
+  private static final Logger LOG = LoggerFactory.getLogger(DecoratorsExecutor.class);
+
   private DecoratorsSelector decoratorsSelector;
   private SonarIndex index;
   private EventBus eventBus;
   private Project project;
+  private Settings settings;
+
+  /**
+   * Decorators to execute on each pair of scope and qualifier of resources
+   */
+  private final ConcurrentMap<List<String>, List<Decorator>> decoratorsByResourceType = Maps.newConcurrentMap();
 
   public DecoratorsExecutor(BatchExtensionDictionnary extensionDictionnary, Project project, SonarIndex index, EventBus eventBus) {
+    this(extensionDictionnary, project, index, eventBus, new Settings());
+  }
+
+  public DecoratorsExecutor(BatchExtensionDictionnary extensionDictionnary, Project project, SonarIndex index, EventBus eventBus, Settings settings) {
     this.decoratorsSelector = new DecoratorsSelector(extensionDictionnary);
     this.index = index;
     this.eventBus = eventBus;
     this.project = project;
+    this.settings = settings;
   }
 
   public void execute() {
     Collection<Decorator> decorators = decoratorsSelector.select(project);
+    decoratorsByResourceType.clear();
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), true));
-    decorateResource(project, decorators, true);
+    int threads = getThreads();
+    if (threads > 1) {
+      LOG.info("Execute decorators using {} threads", threads);
+      new ConcurrentDecoration(decorators, threads).execute(project);
+    } else {
+      decorateResource(project, decorators, true);
+    }
     eventBus.fireEvent(new DecoratorsPhaseEvent(Lists.newArrayList(decorators), false));
   }
 
+  @VisibleForTesting
+  int getThreads() {
+    int threads = settings.getInt(CoreProperties.DECORATORS_THREADS);
+    return threads > 0 ? threads : CoreProperties.DECORATORS_THREADS_DEFAULT_VALUE;
+  }
+
   DecoratorContext decorateResource(Resource resource, Collection<Decorator> decorators, boolean executeDecorators) {
     List<DecoratorContext> childrenContexts = Lists.newArrayList();
     for (Resource child : index.getChildren(resource)) {
@@ -66,7 +109,7 @@ public class DecoratorsExecutor implements BatchComponent {
 
     DefaultDecoratorContext context = new DefaultDecoratorContext(resource, index, childrenContexts);
     if (executeDecorators) {
-      for (Decorator decorator : decorators) {
+      for (Decorator decorator : getDecorators(resource, decorators)) {
         executeDecorator(decorator, context, resource);
       }
     }
@@ -75,14 +118,216 @@ public class DecoratorsExecutor implements BatchComponent {
 
   void executeDecorator(Decorator decorator, DefaultDecoratorContext context, Resource resource) {
     try {
-      eventBus.fireEvent(new DecoratorExecutionEvent(decorator, true));
+      fireDecoratorExecution(decorator, resource, true);
       decorator.decorate(resource, context);
-      eventBus.fireEvent(new DecoratorExecutionEvent(decorator, false));
-      
+      fireDecoratorExecution(decorator, resource, false);
+
     } catch (Exception e) {
       // SONAR-2278 the resource should not be lost in exception stacktrace.
       throw new SonarException("Fail to decorate '" + resource + "'", e);
     }
   }
 
+  /**
+   * Decorators, which do not apply to the type of resource, are excluded once for all resources of this type.
+   */
+  @VisibleForTesting
+  List<Decorator> getDecorators(Resource resource, Collection<Decorator> decorators) {
+    List<String> resourceType = Arrays.asList(resource.getScope(), resource.getQualifier());
+    List<Decorator> result = decoratorsByResourceType.get(resourceType);
+    if (result == null) {
+      result = Lists.newArrayList();
+      for (Decorator decorator : decorators) {
+        if (appliesTo(decorator, resource)) {
+          result.add(decorator);
+        }
+      }
+      decoratorsByResourceType.put(resourceType, result);
+    }
+    return result;
+  }
+
+  static boolean appliesTo(Decorator decorator, Resource resource) {
+    DecoratedResources decoratedResources = decorator.getClass().getAnnotation(DecoratedResources.class);
+    return decoratedResources == null
+      || ((decoratedResources.scopes().length == 0 || ArrayUtils.contains(decoratedResources.scopes(), resource.getScope()))
+      && (decoratedResources.qualifiers().length == 0 || ArrayUtils.contains(decoratedResources.qualifiers(), resource.getQualifier())));
+  }
+
+  /**
+   * Two events are fired for each decorator on each resource, so they are not even created if nobody listens to them.
+   */
+  private void fireDecoratorExecution(Decorator decorator, Resource resource, boolean start) {
+    if (eventBus.hasHandlers(DecoratorExecutionHandler.class)) {
+      eventBus.fireEvent(new DecoratorExecutionEvent(decorator, resource, start));
+    }
+  }
+
+  static boolean isThreadSafe(Decorator decorator) {
+    return decorator.getClass().isAnnotationPresent(ThreadSafeExtension.class);
+  }
+
+  /**
+   * Resources are decorated bottom-up: resource is submitted to the pool as soon as all its children were decorated,
+   * so that sibling subtrees are decorated concurrently and no thread waits for another one.
+   * <p>
+   * Decorators, which are not {@link ThreadSafeExtension thread-safe}, as well as events handled by handlers, which are not thread-safe,
+   * are executed under the lock of index, which also guards measures and persistence. So at most one of them is executed at a time.
+   * </p>
+   */
+  private class ConcurrentDecoration {
+    private final Collection<Decorator> decorators;
+    private final ExecutorService executorService;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile Throwable failure;
+
+    ConcurrentDecoration(Collection<Decorator> decorators, int threads) {
+      this.decorators = decorators;
+      this.executorService = Executors.newFixedThreadPool(threads);
+    }
+
+    void execute(Project root) {
+      try {
+        Node rootNode = new Node(root, null, 0, true);
+        List<Node> leaves = Lists.newArrayList();
+        createChildren(rootNode, leaves);
+        for (Node leaf : leaves) {
+          submit(leaf);
+        }
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SonarException("Decoration has been interrupted", e);
+      } finally {
+        executorService.shutdownNow();
+      }
+
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+    }
+
+    /**
+     * Tree of resources is created before decoration, so that index is not traversed by several threads.
+     */
+    private void createChildren(Node node, List<Node> leaves) {
+      List<Resource> children = Lists.newArrayList(index.getChildren(node.resource));
+      node.setChildren(children.size());
+      if (children.isEmpty()) {
+        leaves.add(node);
+      }
+      for (int i = 0; i < children.size(); i++) {
+        Resource child = children.get(i);
+        Node childNode = new Node(child, node, i, !(child instanceof Project));
+        createChildren(childNode, leaves);
+      }
+    }
+
+    private void submit(final Node node) {
+      executorService.execute(new Runnable() {
+        public void run() {
+          if (failure != null) {
+            return;
+          }
+          try {
+            decorate(node);
+          } catch (Throwable e) {
+            failure = e;
+            done.countDown();
+          }
+        }
+      });
+    }
+
+    private void decorate(Node node) {
+      DefaultDecoratorContext context = new DefaultDecoratorContext(node.resource, index, node.getChildrenContexts());
+      if (node.executeDecorators) {
+        for (Decorator decorator : getDecorators(node.resource, decorators)) {
+          if (isThreadSafe(decorator)) {
+            executeThreadSafeDecorator(decorator, context, node.resource);
+          } else {
+            synchronized (index) {
+              executeDecorator(decorator, context, node.resource);
+            }
+          }
+        }
+      }
+
+      Node parent = node.parent;
+      if (parent == null) {
+        done.countDown();
+      } else if (parent.childDecorated(node.indexInParent, context.setReadOnly(true))) {
+        submit(parent);
+      }
+    }
+
+    private void executeThreadSafeDecorator(Decorator decorator, DefaultDecoratorContext context, Resource resource) {
+      try {
+        fireThreadSafeDecoratorExecution(decorator, resource, true);
+        decorator.decorate(resource, context);
+        fireThreadSafeDecoratorExecution(decorator, resource, false);
+
+      } catch (Exception e) {
+        // SONAR-2278 the resource should not be lost in exception stacktrace.
+        throw new SonarException("Fail to decorate '" + resource + "'", e);
+      }
+    }
+
+    /**
+     * Events are fired under the lock of index, unless all handlers are thread-safe.
+     */
+    private void fireThreadSafeDecoratorExecution(Decorator decorator, Resource resource, boolean start) {
+      if (!eventBus.hasHandlers(DecoratorExecutionHandler.class)) {
+        return;
+      }
+      DecoratorExecutionEvent event = new DecoratorExecutionEvent(decorator, resource, start);
+      if (eventBus.areHandlersThreadSafe(DecoratorExecutionHandler.class)) {
+        eventBus.fireEvent(event);
+      } else {
+        synchronized (index) {
+          eventBus.fireEvent(event);
+        }
+      }
+    }
+  }
+
+  private static final class Node {
+    private final Resource resource;
+    private final Node parent;
+    private final int indexInParent;
+    private final boolean executeDecorators;
+    private AtomicReferenceArray<DecoratorContext> childrenContexts;
+    private AtomicInteger remainingChildren;
+
+    Node(Resource resource, Node parent, int indexInParent, boolean executeDecorators) {
+      this.resource = resource;
+      this.parent = parent;
+      this.indexInParent = indexInParent;
+      this.executeDecorators = executeDecorators;
+    }
+
+    void setChildren(int count) {
+      childrenContexts = new AtomicReferenceArray<DecoratorContext>(count);
+      remainingChildren = new AtomicInteger(count);
+    }
+
+    /**
+     * @return true, if all children were decorated
+     */
+    boolean childDecorated(int index, DecoratorContext context) {
+      childrenContexts.set(index, context);
+      return remainingChildren.decrementAndGet() == 0;
+    }
+
+    List<DecoratorContext> getChildrenContexts() {
+      List<DecoratorContext> result = Lists.newArrayListWithCapacity(childrenContexts.length());
+      for (int i = 0; i < childrenContexts.length(); i++) {
+        result.add(childrenContexts.get(i));
+      }
+      return result;
+    }
+  }
+
 }
@@ -0,0 +1,227 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.phases;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.ThreadSafeExtension;
+import org.sonar.api.batch.events.DecoratorExecutionHandler;
+import org.sonar.api.batch.events.PostJobExecutionHandler;
+import org.sonar.api.batch.events.ProjectAnalysisHandler;
+import org.sonar.api.batch.events.SensorExecutionHandler;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.utils.SonarException;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Measures wall time, CPU time, allocated memory and number of executions of each sensor, decorator and post-job, by qualifier
+ * of resources, and writes them in the file profiling.json of the working directory at the end of the analysis of the module.
+ * Registered only when the property {@link CoreProperties#PROFILING_REPORT} is true.
+ *
+ * @since 2.15
+ */
+@ThreadSafeExtension
+public class ExtensionsProfiler implements SensorExecutionHandler, DecoratorExecutionHandler, PostJobExecutionHandler, ProjectAnalysisHandler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ExtensionsProfiler.class);
+
+  static final String REPORT_FILENAME = "profiling.json";
+
+  private final Project project;
+  private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+  private final Method allocatedBytesMethod = getAllocatedBytesMethod(threadMXBean);
+  private final ConcurrentMap<List<String>, Stats> statsByExtension = Maps.newConcurrentMap();
+
+  // sensors and decorators can be executed concurrently
+  private final ThreadLocal<Execution> execution = new ThreadLocal<Execution>() {
+    @Override
+    protected Execution initialValue() {
+      return new Execution();
+    }
+  };
+
+  public ExtensionsProfiler(Project project) {
+    this.project = project;
+  }
+
+  public void onSensorExecution(SensorExecutionEvent event) {
+    onExecution("sensor", event.getSensor(), project, event.isStart());
+  }
+
+  public void onDecoratorExecution(DecoratorExecutionEvent event) {
+    onExecution("decorator", event.getDecorator(), event.getResource(), event.isStart());
+  }
+
+  public void onPostJobExecution(PostJobExecutionEvent event) {
+    onExecution("postjob", event.getPostJob(), project, event.isStart());
+  }
+
+  public void onProjectAnalysis(ProjectAnalysisEvent event) {
+    if (event.isEnd()) {
+      File report = new File(event.getProject().getFileSystem().getSonarWorkingDirectory(), REPORT_FILENAME);
+      try {
+        FileUtils.writeStringToFile(report, toJson(), "UTF-8");
+      } catch (IOException e) {
+        throw new SonarException("Fail to write profiling report: " + report, e);
+      }
+      LOG.info("Profiling report: {}", report.getAbsolutePath());
+    }
+  }
+
+  private void onExecution(String type, Object extension, Resource resource, boolean start) {
+    Execution current = execution.get();
+    if (start) {
+      current.wallTime = System.nanoTime();
+      current.cpuTime = cpuTime();
+      current.allocatedBytes = allocatedBytes();
+    } else {
+      List<String> key = Lists.newArrayList(type, extension.getClass().getName(), resource != null ? resource.getQualifier() : null);
+      Stats stats = statsByExtension.get(key);
+      if (stats == null) {
+        Stats newStats = new Stats(type, extension.getClass().getName(), key.get(2));
+        stats = statsByExtension.putIfAbsent(key, newStats);
+        if (stats == null) {
+          stats = newStats;
+        }
+      }
+      stats.add(System.nanoTime() - current.wallTime, cpuTime() - current.cpuTime, allocatedBytes() - current.allocatedBytes);
+    }
+  }
+
+  private long cpuTime() {
+    return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : 0L;
+  }
+
+  /**
+   * Allocated memory is only available on HotSpot JVM, through com.sun.management.ThreadMXBean
+   */
+  private static Method getAllocatedBytesMethod(ThreadMXBean threadMXBean) {
+    try {
+      Class hotspotThreadMXBean = Class.forName("com.sun.management.ThreadMXBean");
+      if (hotspotThreadMXBean.isInstance(threadMXBean)) {
+        return hotspotThreadMXBean.getMethod("getThreadAllocatedBytes", long.class);
+      }
+    } catch (Exception e) {
+      LOG.debug("Allocated memory is not available on this JVM", e);
+    }
+    return null;
+  }
+
+  private long allocatedBytes() {
+    if (allocatedBytesMethod != null) {
+      try {
+        return (Long) allocatedBytesMethod.invoke(threadMXBean, Thread.currentThread().getId());
+      } catch (Exception e) {
+        return 0L;
+      }
+    }
+    return 0L;
+  }
+
+  String toJson() {
+    List<Stats> stats = Lists.newArrayList(statsByExtension.values());
+    Collections.sort(stats, new Comparator<Stats>() {
+      public int compare(Stats left, Stats right) {
+        return left.wallTime > right.wallTime ? -1 : (left.wallTime < right.wallTime ? 1 : 0);
+      }
+    });
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"project\":").append(quote(project.getKey())).append(",\"extensions\":[");
+    for (int i = 0; i < stats.size(); i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      stats.get(i).appendJson(sb);
+    }
+    return sb.append("]}").toString();
+  }
+
+  static String quote(String s) {
+    if (s == null) {
+      return "null";
+    }
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < ' ') {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.append('"').toString();
+  }
+
+  private static final class Execution {
+    private long wallTime;
+    private long cpuTime;
+    private long allocatedBytes;
+  }
+
+  private static final class Stats {
+    private final String type;
+    private final String extension;
+    private final String qualifier;
+    private long executions;
+    private long wallTime;
+    private long cpuTime;
+    private long allocatedBytes;
+
+    Stats(String type, String extension, String qualifier) {
+      this.type = type;
+      this.extension = extension;
+      this.qualifier = qualifier;
+    }
+
+    synchronized void add(long wallTime, long cpuTime, long allocatedBytes) {
+      this.executions++;
+      this.wallTime += wallTime;
+      this.cpuTime += cpuTime;
+      this.allocatedBytes += allocatedBytes;
+    }
+
+    synchronized void appendJson(StringBuilder sb) {
+      sb.append("{\"type\":").append(quote(type))
+          .append(",\"extension\":").append(quote(extension))
+          .append(",\"qualifier\":").append(quote(qualifier))
+          .append(",\"executions\":").append(executions)
+          .append(",\"wallTimeMs\":").append(wallTime / 1000000L)
+          .append(",\"cpuTimeMs\":").append(cpuTime / 1000000L)
+          .append(",\"allocatedBytes\":").append(allocatedBytes)
+          .append('}');
+    }
+  }
+}
@@ -25,6 +25,8 @@ import org.apache.commons.lang.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.Decorator;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.ThreadSafeExtension;
 import org.sonar.api.batch.events.DecoratorExecutionHandler;
 import org.sonar.api.batch.events.DecoratorsPhaseHandler;
 import org.sonar.api.batch.events.SensorExecutionHandler;
@@ -34,12 +36,16 @@ import org.sonar.api.utils.TimeProfiler;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+@ThreadSafeExtension
 public class PhasesTimeProfiler implements SensorExecutionHandler, DecoratorExecutionHandler, DecoratorsPhaseHandler, SensorsPhaseHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(PhasesTimeProfiler.class);
 
-  private TimeProfiler profiler = new TimeProfiler(LOG);
+  // sensors can be executed concurrently
+  private Map<Sensor, TimeProfiler> sensorProfilers = new IdentityHashMap<Sensor, TimeProfiler>();
   private DecoratorsProfiler decoratorsProfiler = new DecoratorsProfiler();
 
   public void onSensorsPhase(SensorsPhaseEvent event) {
@@ -48,11 +54,14 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, DecoratorExec
     }
   }
 
-  public void onSensorExecution(SensorExecutionEvent event) {
+  public synchronized void onSensorExecution(SensorExecutionEvent event) {
     if (event.isStart()) {
-      profiler.start("Sensor " + event.getSensor());
+      sensorProfilers.put(event.getSensor(), new TimeProfiler(LOG).start("Sensor " + event.getSensor()));
     } else {
-      profiler.stop();
+      TimeProfiler profiler = sensorProfilers.remove(event.getSensor());
+      if (profiler != null) {
+        profiler.stop();
+      }
     }
   }
 
@@ -66,6 +75,7 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, DecoratorExec
 
   public void onDecoratorsPhase(DecoratorsPhaseEvent event) {
     if (event.isStart()) {
+      decoratorsProfiler.init(event.getDecorators());
       LOG.info("Execute decorators...");
       if (LOG.isDebugEnabled()) {
         LOG.debug("Decorators: {}", StringUtils.join(event.getDecorators(), " -> "));
@@ -75,43 +85,76 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, DecoratorExec
     }
   }
 
+  /**
+   * Decorators can be executed concurrently, so execution in progress is tracked by thread and durations are cumulated by all threads.
+   * Two events are handled for each decorator on each resource, so durations are cumulated without lock. Counters are created
+   * when decorators phase starts.
+   */
   static class DecoratorsProfiler {
     List<Decorator> decorators = Lists.newArrayList();
-    Map<Decorator, Long> durations = new IdentityHashMap<Decorator, Long>();
-    long startTime;
-    Decorator currentDecorator;
+    volatile Map<Decorator, AtomicLong> durations = new IdentityHashMap<Decorator, AtomicLong>();
+    ThreadLocal<Execution> execution = new ThreadLocal<Execution>() {
+      @Override
+      protected Execution initialValue() {
+        return new Execution();
+      }
+    };
 
     DecoratorsProfiler() {
     }
 
+    synchronized void init(List<Decorator> phaseDecorators) {
+      for (Decorator decorator : phaseDecorators) {
+        getDuration(decorator);
+      }
+    }
+
     void start(Decorator decorator) {
-      this.startTime = System.currentTimeMillis();
-      this.currentDecorator = decorator;
+      Execution current = execution.get();
+      current.decorator = decorator;
+      current.startNanos = System.nanoTime();
     }
 
     void stop() {
-      final Long cumulatedDuration;
-      if (durations.containsKey(currentDecorator)) {
-        cumulatedDuration = durations.get(currentDecorator);
-      } else {
-        decorators.add(currentDecorator);
-        cumulatedDuration = 0L;
+      Execution current = execution.get();
+      long duration = System.nanoTime() - current.startNanos;
+      AtomicLong cumulatedDuration = durations.get(current.decorator);
+      if (cumulatedDuration == null) {
+        cumulatedDuration = getDuration(current.decorator);
       }
-      durations.put(currentDecorator, cumulatedDuration + (System.currentTimeMillis() - startTime));
+      cumulatedDuration.addAndGet(duration);
+    }
+
+    private synchronized AtomicLong getDuration(Decorator decorator) {
+      AtomicLong duration = durations.get(decorator);
+      if (duration == null) {
+        // copy on write, so that durations are read without lock
+        Map<Decorator, AtomicLong> copy = new IdentityHashMap<Decorator, AtomicLong>(durations);
+        duration = new AtomicLong();
+        copy.put(decorator, duration);
+        decorators.add(decorator);
+        durations = copy;
+      }
+      return duration;
     }
 
     void log() {
       LOG.debug(getMessage());
     }
 
-    String getMessage() {
+    synchronized String getMessage() {
       StringBuilder sb = new StringBuilder("Decorator time:").append(SystemUtils.LINE_SEPARATOR);
       for (Decorator decorator : decorators) {
-        sb.append("\t").append(decorator.toString()).append(": ").append(durations.get(decorator)).append("ms")
+        sb.append("\t").append(decorator.toString()).append(": ").append(TimeUnit.NANOSECONDS.toMillis(durations.get(decorator).get())).append("ms")
             .append(SystemUtils.LINE_SEPARATOR);
       }
       return sb.toString();
     }
   }
 
+  private static final class Execution {
+    private Decorator decorator;
+    private long startNanos;
+  }
+
 }
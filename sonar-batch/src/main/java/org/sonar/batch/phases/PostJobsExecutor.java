@@ -31,6 +31,7 @@ import org.sonar.api.batch.maven.DependsUponMavenPlugin;
 import org.sonar.api.batch.maven.MavenPluginHandler;
 import org.sonar.api.resources.Project;
 import org.sonar.batch.MavenPluginExecutor;
+import org.sonar.batch.events.EventBus;
 
 import java.util.Collection;
 
@@ -41,12 +42,15 @@ public class PostJobsExecutor implements BatchComponent {
   private ProjectDefinition projectDefinition;
   private Project project;
   private BatchExtensionDictionnary selector;
+  private EventBus eventBus;
 
-  public PostJobsExecutor(BatchExtensionDictionnary selector, Project project, ProjectDefinition projectDefinition, MavenPluginExecutor mavenExecutor) {
+  public PostJobsExecutor(BatchExtensionDictionnary selector, Project project, ProjectDefinition projectDefinition, MavenPluginExecutor mavenExecutor,
+      EventBus eventBus) {
     this.selector = selector;
     this.mavenExecutor = mavenExecutor;
     this.project = project;
     this.projectDefinition = projectDefinition;
+    this.eventBus = eventBus;
   }
 
   public void execute(SensorContext context) {
@@ -60,7 +64,9 @@ public class PostJobsExecutor implements BatchComponent {
     for (PostJob postJob : postJobs) {
       LOG.info("Executing post-job {}", postJob.getClass());
       executeMavenPlugin(postJob);
+      eventBus.fireEvent(new PostJobExecutionEvent(postJob, true));
       postJob.executeOn(project, context);
+      eventBus.fireEvent(new PostJobExecutionEvent(postJob, false));
     }
   }
 
@@ -19,22 +19,36 @@
  */
 package org.sonar.batch.phases;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.BatchExtensionDictionnary;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafeExtension;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.maven.DependsUponMavenPlugin;
 import org.sonar.api.batch.maven.MavenPluginHandler;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
+import org.sonar.api.utils.SonarException;
 import org.sonar.api.utils.TimeProfiler;
 import org.sonar.batch.MavenPluginExecutor;
 import org.sonar.batch.events.EventBus;
 
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SensorsExecutor implements BatchComponent {
   private static final Logger LOG = LoggerFactory.getLogger(SensorsExecutor.class);
@@ -44,30 +58,58 @@ public class SensorsExecutor implements BatchComponent {
   private Project project;
   private ProjectDefinition projectDefinition;
   private BatchExtensionDictionnary selector;
+  private SonarIndex index;
+  private Settings settings;
 
   public SensorsExecutor(BatchExtensionDictionnary selector, Project project, ProjectDefinition projectDefinition, MavenPluginExecutor mavenExecutor, EventBus eventBus) {
+    this(selector, project, projectDefinition, mavenExecutor, eventBus, null, new Settings());
+  }
+
+  public SensorsExecutor(BatchExtensionDictionnary selector, Project project, ProjectDefinition projectDefinition, MavenPluginExecutor mavenExecutor, EventBus eventBus,
+      SonarIndex index, Settings settings) {
     this.selector = selector;
     this.mavenExecutor = mavenExecutor;
     this.eventBus = eventBus;
     this.project = project;
     this.projectDefinition = projectDefinition;
+    this.index = index;
+    this.settings = settings;
   }
 
   public void execute(SensorContext context) {
     Collection<Sensor> sensors = selector.select(Sensor.class, project, true);
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), true));
 
-    for (Sensor sensor : sensors) {
-      executeMavenPlugin(sensor);
-
-      eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
-      sensor.analyse(project, context);
-      eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
+    int threads = getThreads();
+    if (threads > 1 && sensors.size() > 1) {
+      LOG.info("Execute sensors using {} threads", threads);
+      new ConcurrentSensors(sensors, threads).execute(context);
+    } else {
+      for (Sensor sensor : sensors) {
+        executeSensor(sensor, context);
+      }
     }
 
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), false));
   }
 
+  @VisibleForTesting
+  int getThreads() {
+    if (index == null) {
+      return 1;
+    }
+    int threads = settings.getInt(CoreProperties.SENSORS_THREADS);
+    return threads > 0 ? threads : CoreProperties.SENSORS_THREADS_DEFAULT_VALUE;
+  }
+
+  private void executeSensor(Sensor sensor, SensorContext context) {
+    executeMavenPlugin(sensor);
+
+    eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
+    sensor.analyse(project, context);
+    eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
+  }
+
   private void executeMavenPlugin(Sensor sensor) {
     if (sensor instanceof DependsUponMavenPlugin) {
       MavenPluginHandler handler = ((DependsUponMavenPlugin) sensor).getMavenPluginHandler(project);
@@ -78,4 +120,111 @@ public class SensorsExecutor implements BatchComponent {
       }
     }
   }
+
+  static boolean isThreadSafe(Sensor sensor) {
+    return sensor.getClass().isAnnotationPresent(ThreadSafeExtension.class);
+  }
+
+  /**
+   * Sensors are scheduled according to the graph of their dependencies : sensor is submitted to the pool as soon as all its
+   * prerequisites were executed, so that the duration of the phase is the duration of the longest path in this graph.
+   * <p>
+   * Sensors, which are not {@link ThreadSafeExtension thread-safe}, as well as events, are executed under the lock of index,
+   * which also guards measures and persistence. Maven plugins are executed one at a time.
+   * </p>
+   */
+  private class ConcurrentSensors {
+    private final Map<Sensor, AtomicInteger> remainingPrerequisites = Maps.newLinkedHashMap();
+    private final Multimap<Sensor, Sensor> dependents = ArrayListMultimap.create();
+    private final AtomicInteger remainingSensors;
+    private final ExecutorService executorService;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile Throwable failure;
+
+    ConcurrentSensors(Collection<Sensor> sensors, int threads) {
+      for (Map.Entry<Sensor, Collection<Sensor>> entry : selector.getPrerequisites(sensors).entrySet()) {
+        remainingPrerequisites.put(entry.getKey(), new AtomicInteger(entry.getValue().size()));
+        for (Sensor prerequisite : entry.getValue()) {
+          dependents.put(prerequisite, entry.getKey());
+        }
+      }
+      this.remainingSensors = new AtomicInteger(sensors.size());
+      this.executorService = Executors.newFixedThreadPool(threads);
+    }
+
+    void execute(SensorContext context) {
+      try {
+        for (Map.Entry<Sensor, AtomicInteger> entry : remainingPrerequisites.entrySet()) {
+          if (entry.getValue().get() == 0) {
+            submit(entry.getKey(), context);
+          }
+        }
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SonarException("Execution of sensors has been interrupted", e);
+      } finally {
+        executorService.shutdownNow();
+      }
+
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      } else if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+    }
+
+    private void submit(final Sensor sensor, final SensorContext context) {
+      executorService.execute(new Runnable() {
+        public void run() {
+          if (failure != null) {
+            return;
+          }
+          try {
+            analyse(sensor, context);
+          } catch (Throwable e) {
+            failure = e;
+            done.countDown();
+            return;
+          }
+          executed(sensor, context);
+        }
+      });
+    }
+
+    private void analyse(Sensor sensor, SensorContext context) {
+      if (isThreadSafe(sensor)) {
+        synchronized (mavenExecutor) {
+          executeMavenPlugin(sensor);
+        }
+        synchronized (index) {
+          eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
+        }
+        sensor.analyse(project, context);
+        synchronized (index) {
+          eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
+        }
+      } else {
+        synchronized (index) {
+          synchronized (mavenExecutor) {
+            executeMavenPlugin(sensor);
+          }
+          eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
+          sensor.analyse(project, context);
+          eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
+        }
+      }
+    }
+
+    private void executed(Sensor sensor, SensorContext context) {
+      for (Sensor dependent : dependents.get(sensor)) {
+        if (remainingPrerequisites.get(dependent).decrementAndGet() == 0) {
+          submit(dependent, context);
+        }
+      }
+      if (remainingSensors.decrementAndGet() == 0) {
+        done.countDown();
+      }
+    }
+  }
 }
@@ -19,20 +19,37 @@
  */
 package org.sonar.batch.bootstrap;
 
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.utils.HttpDownloader;
+import org.sonar.api.utils.SonarException;
 import org.sonar.batch.ServerMetadata;
+import org.sonar.core.plugins.RemotePlugin;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.List;
 
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class ArtifactDownloaderTest {
 
+  private static final String CHECKSTYLE_CHECKSUM = "1d16c4c71e6c013fbae8bfd254fc8bc7";
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   @Test
   public void shouldDownloadJdbcDriver() throws IOException, URISyntaxException {
     ServerMetadata server = mock(ServerMetadata.class);
@@ -48,6 +65,122 @@ public class ArtifactDownloaderTest {
     verify(httpDownloader).download(new URI("http://sonar:8000/deploy/jdbc-driver.jar"), jdbcDriver);
   }
 
+  @Test
+  public void shouldCachePlugin() throws Exception {
+    ServerMetadata server = mock(ServerMetadata.class);
+    when(server.getURL()).thenReturn("http://sonar:8000");
+    HttpDownloader httpDownloader = mockHttpDownloader();
+    File cacheDir = temp.newFolder("cache");
+    RemotePlugin checkstyle = new RemotePlugin("checkstyle", true).addFilename("sonar-checkstyle-plugin-2.8.jar", CHECKSTYLE_CHECKSUM);
+
+    ArtifactDownloader downloader = new ArtifactDownloader(httpDownloader, new TempDirectories(), server, cacheDir);
+    List<File> files = downloader.downloadPlugin(checkstyle);
+    List<File> cachedFiles = downloader.downloadPlugin(checkstyle);
+
+    File cachedDir = new File(cacheDir, "checkstyle/" + CHECKSTYLE_CHECKSUM);
+    assertThat(files, is(Arrays.asList(new File(cachedDir, "sonar-checkstyle-plugin-2.8.jar"))));
+    assertThat(cachedFiles, is(files));
+    assertThat(files.get(0).exists(), is(true));
+    // dependencies are extracted into the cache
+    assertThat(new File(cachedDir, "META-INF/lib").isDirectory(), is(true));
+    // no temporary directories
+    assertThat(cachedDir.getParentFile().list().length, is(1));
+    verify(httpDownloader, times(1)).download(eq(new URI("http://sonar:8000/deploy/plugins/checkstyle/sonar-checkstyle-plugin-2.8.jar")), any(File.class));
+  }
+
+  @Test
+  public void shouldNotCachePluginIfUnknownChecksum() throws Exception {
+    ServerMetadata server = mock(ServerMetadata.class);
+    when(server.getURL()).thenReturn("http://sonar:8000");
+    HttpDownloader httpDownloader = mockHttpDownloader();
+    File cacheDir = temp.newFolder("cache");
+    RemotePlugin checkstyle = new RemotePlugin("checkstyle", true).addFilename("sonar-checkstyle-plugin-2.8.jar");
+
+    TempDirectories workingDirectories = new TempDirectories();
+    ArtifactDownloader downloader = new ArtifactDownloader(httpDownloader, workingDirectories, server, cacheDir);
+    List<File> files = downloader.downloadPlugin(checkstyle);
+
+    assertThat(files.get(0).getParentFile(), is(workingDirectories.getDir("plugins/checkstyle")));
+    assertThat(cacheDir.list().length, is(0));
+  }
+
+  @Test
+  public void shouldNotCachePluginIfBadChecksum() throws Exception {
+    ServerMetadata server = mock(ServerMetadata.class);
+    when(server.getURL()).thenReturn("http://sonar:8000");
+    HttpDownloader httpDownloader = mockHttpDownloader();
+    File cacheDir = temp.newFolder("cache");
+    RemotePlugin checkstyle = new RemotePlugin("checkstyle", true).addFilename("sonar-checkstyle-plugin-2.8.jar", "abcde");
+
+    ArtifactDownloader downloader = new ArtifactDownloader(httpDownloader, new TempDirectories(), server, cacheDir);
+    try {
+      downloader.downloadPlugin(checkstyle);
+      fail();
+    } catch (SonarException e) {
+      // the temporary directory is deleted
+      assertThat(new File(cacheDir, "checkstyle").list().length, is(0));
+    }
+  }
+
+  @Test
+  public void shouldDeleteOnlyEntriesOfCacheUnusedForLongTime() throws Exception {
+    ServerMetadata server = mock(ServerMetadata.class);
+    when(server.getURL()).thenReturn("http://sonar:8000");
+    HttpDownloader httpDownloader = mockHttpDownloader();
+    File cacheDir = temp.newFolder("cache");
+    long now = System.currentTimeMillis();
+    File unusedVersionDir = newDir(cacheDir, "checkstyle/abcde", now - ArtifactDownloader.UNUSED_VERSION_MAX_AGE_MILLISECONDS - 60000L);
+    File usedVersionDir = newDir(cacheDir, "checkstyle/fghij", now - 60000L);
+    File tempDirOfKilledBatch = newDir(cacheDir, "checkstyle/abcde_123.tmp", now - ArtifactDownloader.TEMP_DIR_MAX_AGE_MILLISECONDS - 60000L);
+    File tempDirOfRunningBatch = newDir(cacheDir, "checkstyle/abcde_456.tmp", now - 60000L);
+    RemotePlugin checkstyle = new RemotePlugin("checkstyle", true).addFilename("sonar-checkstyle-plugin-2.8.jar", CHECKSTYLE_CHECKSUM);
+
+    ArtifactDownloader downloader = new ArtifactDownloader(httpDownloader, new TempDirectories(), server, cacheDir);
+    downloader.downloadPlugin(checkstyle);
+
+    assertThat(new File(cacheDir, "checkstyle/" + CHECKSTYLE_CHECKSUM).isDirectory(), is(true));
+    assertThat(unusedVersionDir.exists(), is(false));
+    assertThat(usedVersionDir.exists(), is(true));
+    assertThat(tempDirOfKilledBatch.exists(), is(false));
+    assertThat(tempDirOfRunningBatch.exists(), is(true));
+  }
+
+  @Test
+  public void shouldMarkCachedPluginAsUsed() throws Exception {
+    ServerMetadata server = mock(ServerMetadata.class);
+    when(server.getURL()).thenReturn("http://sonar:8000");
+    File cacheDir = temp.newFolder("cache");
+    RemotePlugin checkstyle = new RemotePlugin("checkstyle", true).addFilename("sonar-checkstyle-plugin-2.8.jar", CHECKSTYLE_CHECKSUM);
+    ArtifactDownloader downloader = new ArtifactDownloader(mockHttpDownloader(), new TempDirectories(), server, cacheDir);
+    downloader.downloadPlugin(checkstyle);
+    File cachedDir = new File(cacheDir, "checkstyle/" + CHECKSTYLE_CHECKSUM);
+    long longTimeAgo = System.currentTimeMillis() - ArtifactDownloader.UNUSED_VERSION_MAX_AGE_MILLISECONDS;
+    cachedDir.setLastModified(longTimeAgo);
+
+    downloader.downloadPlugin(checkstyle);
+
+    assertThat(cachedDir.lastModified() > longTimeAgo, is(true));
+  }
+
+  private static File newDir(File parent, String path, long lastModified) throws IOException {
+    File dir = new File(parent, path);
+    FileUtils.forceMkdir(dir);
+    dir.setLastModified(lastModified);
+    return dir;
+  }
+
+  private HttpDownloader mockHttpDownloader() {
+    HttpDownloader httpDownloader = mock(HttpDownloader.class);
+    doAnswer(new Answer() {
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        File toFile = (File) invocation.getArguments()[1];
+        FileUtils.copyURLToFile(getClass().getResource("/org/sonar/batch/bootstrap/BatchPluginRepositoryTest/" + toFile.getName()), toFile);
+        return null;
+      }
+    }).when(httpDownloader).download(any(URI.class), any(File.class));
+    return httpDownloader;
+  }
+
 //  @Test
 //  public void shouldDownloadExtension() throws IOException, URISyntaxException {
 //    ServerMetadata server = mock(ServerMetadata.class);
@@ -0,0 +1,77 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.components;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class PastMeasureTableTest {
+
+  @Test
+  public void shouldDistinguishKeys() {
+    PastMeasureTable table = new PastMeasureTable()
+      .put(1, null, null, null, 10.0)
+      .put(1, 2, null, null, 20.0)
+      .put(1, null, 2, null, 30.0)
+      .put(1, null, null, 2, 40.0);
+
+    assertThat(table.size(), is(4));
+    assertThat(table.get(1, null, null, null), is(10.0));
+    assertThat(table.get(1, 2, null, null), is(20.0));
+    assertThat(table.get(1, null, 2, null), is(30.0));
+    assertThat(table.get(1, null, null, 2), is(40.0));
+    assertThat(Double.isNaN(table.get(2, null, null, null)), is(true));
+  }
+
+  @Test
+  public void shouldReplaceValue() {
+    PastMeasureTable table = new PastMeasureTable().put(1, null, null, null, 10.0).put(1, null, null, null, 15.0);
+
+    assertThat(table.size(), is(1));
+    assertThat(table.get(1, null, null, null), is(15.0));
+  }
+
+  @Test
+  public void shouldGrow() {
+    PastMeasureTable table = new PastMeasureTable();
+    for (int ruleId = 1; ruleId <= 1000; ruleId++) {
+      table.put(1, null, null, ruleId, ruleId);
+    }
+
+    assertThat(table.size(), is(1000));
+    for (int ruleId = 1; ruleId <= 1000; ruleId++) {
+      assertThat(table.get(1, null, null, ruleId), is((double) ruleId));
+    }
+  }
+
+  @Test
+  public void shouldIgnoreRowsWithoutValue() {
+    PastMeasureTable table = PastMeasureTable.of(Arrays.asList(
+        new Object[] {1, null, null, null, 5.0},
+        new Object[] {2, null, null, null, null}));
+
+    assertThat(table.size(), is(1));
+    assertThat(table.get(1, null, null, null), is(5.0));
+  }
+}
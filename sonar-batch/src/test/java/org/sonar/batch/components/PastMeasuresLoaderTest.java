@@ -22,10 +22,13 @@ package org.sonar.batch.components;
 import org.junit.Test;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.measures.Metric;
+import org.sonar.api.utils.DateUtils;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -86,6 +89,56 @@ public class PastMeasuresLoaderTest extends AbstractDbUnitTestCase {
     assertThat(PastMeasuresLoader.getValue(pastMeasure), is(80.0));
   }
 
+  @Test
+  public void shouldGetPastMeasuresOfModuleAndDirectories() {
+    setupData("shared");
+
+    List<Metric> metrics = selectMetrics();
+    Snapshot projectSnapshot = getSession().getSingleResult(Snapshot.class, "id", PROJECT_SNAPSHOT_ID);
+    PastSnapshot pastSnapshot = new PastSnapshot("days", new Date(), projectSnapshot);
+
+    PastMeasuresLoader loader = new PastMeasuresLoader(getSession(), metrics);
+    Map<Integer, PastMeasureTable> measures = loader.getPastMeasuresOfModule(1, pastSnapshot);
+
+    // project and package, but not file
+    assertThat(measures.size(), is(2));
+    assertThat(measures.get(1).get(1, null, null, null), is(60.0));
+    assertThat(measures.get(1).get(2, null, null, null), is(80.0));
+    assertThat(measures.get(2).get(1, null, null, null), is(20.0));
+    assertThat(measures.get(2).get(2, null, null, null), is(70.0));
+  }
+
+  @Test
+  public void shouldNotGetPastMeasuresOfModuleIfNoPastSnapshot() {
+    PastMeasuresLoader loader = new PastMeasuresLoader(getSession(), selectMetrics());
+    assertThat(loader.getPastMeasuresOfModule(1, new PastSnapshot("days", new Date())).isEmpty(), is(true));
+  }
+
+  @Test
+  public void shouldGetValuesOfModuleAndDirectories() {
+    setupData("shared");
+
+    PastMeasuresLoader loader = new PastMeasuresLoader(getSession(), selectMetrics());
+    Map<Integer, Map<Integer, double[]>> values = loader.getMeasuresOfModule(1, DateUtils.parseDate("2008-10-01"), DateUtils.parseDate("2008-12-01"));
+
+    // project and package, but not file
+    assertThat(values.size(), is(2));
+    assertThat(values.get(1).get(1), is(new double[]{60.0}));
+    assertThat(values.get(1).get(2), is(new double[]{80.0}));
+    assertThat(values.get(2).get(1), is(new double[]{20.0}));
+    assertThat(values.get(2).get(2), is(new double[]{70.0}));
+  }
+
+  @Test
+  public void shouldGetOnlyValuesOfPeriod() {
+    setupData("shared");
+
+    PastMeasuresLoader loader = new PastMeasuresLoader(getSession(), selectMetrics());
+    Map<Integer, Map<Integer, double[]>> values = loader.getMeasuresOfModule(1, DateUtils.parseDate("2008-12-01"), DateUtils.parseDate("2009-01-01"));
+
+    assertThat(values.isEmpty(), is(true));
+  }
+
   @Test
   public void shouldKeepOnlyNumericalMetrics() {
     Metric ncloc = new Metric("ncloc", Metric.ValueType.INT);
@@ -19,9 +19,13 @@
  */
 package org.sonar.batch.events;
 
+import org.sonar.api.batch.ThreadSafeExtension;
 import org.sonar.api.batch.events.EventHandler;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import org.junit.Test;
@@ -43,6 +47,40 @@ public class EventBusTest {
     verify(secondHandler).onEvent(secondEvent);
   }
 
+  @Test
+  public void shouldNotifyAllHandlersOfType() {
+    FirstHandler firstHandler = mock(FirstHandler.class);
+    FirstHandler otherFirstHandler = mock(FirstHandler.class);
+    EventBus eventBus = new EventBus(new EventHandler[] { firstHandler, otherFirstHandler });
+
+    FirstEvent event = new FirstEvent();
+    eventBus.fireEvent(event);
+    eventBus.fireEvent(event);
+
+    verify(firstHandler, times(2)).onEvent(event);
+    verify(otherFirstHandler, times(2)).onEvent(event);
+  }
+
+  @Test
+  public void shouldKnowIfEventsAreHandled() {
+    EventBus eventBus = new EventBus(new EventHandler[] { mock(FirstHandler.class) });
+
+    assertThat(eventBus.hasHandlers(FirstHandler.class), is(true));
+    assertThat(eventBus.hasHandlers(SecondHandler.class), is(false));
+    assertThat(new EventBus(new EventHandler[0]).hasHandlers(FirstHandler.class), is(false));
+  }
+
+  @Test
+  public void shouldKnowIfHandlersAreThreadSafe() {
+    EventBus eventBus = new EventBus(new EventHandler[] { new ThreadSafeFirstHandler(), mock(SecondHandler.class) });
+
+    assertThat(eventBus.areHandlersThreadSafe(FirstHandler.class), is(true));
+    assertThat(eventBus.areHandlersThreadSafe(SecondHandler.class), is(false));
+
+    eventBus = new EventBus(new EventHandler[] { new ThreadSafeFirstHandler(), mock(FirstHandler.class) });
+    assertThat(eventBus.areHandlersThreadSafe(FirstHandler.class), is(false));
+  }
+
   interface FirstHandler extends EventHandler {
     void onEvent(FirstEvent event);
   }
@@ -59,6 +97,12 @@ public class EventBusTest {
     }
   }
 
+  @ThreadSafeExtension
+  static class ThreadSafeFirstHandler implements FirstHandler {
+    public void onEvent(FirstEvent event) {
+    }
+  }
+
   interface SecondHandler extends EventHandler {
     void onEvent(SecondEvent event);
   }
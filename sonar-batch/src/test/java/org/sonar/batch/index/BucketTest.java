@@ -23,6 +23,7 @@ import org.junit.Test;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.MeasuresFilters;
 import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.RuleMeasure;
 import org.sonar.api.resources.JavaFile;
 import org.sonar.api.resources.JavaPackage;
 import org.sonar.api.rules.Rule;
@@ -30,6 +31,7 @@ import org.sonar.api.rules.Violation;
 import org.sonar.api.utils.SonarException;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.core.IsNot.not;
 import static org.junit.Assert.*;
 import static org.junit.internal.matchers.IsCollectionContaining.hasItem;
@@ -96,6 +98,45 @@ public class BucketTest {
     fileBucket.addMeasure(measure);
   }
 
+  @Test
+  public void shouldAddSeveralMeasuresOfSameMetric() {
+    Bucket fileBucket = new Bucket(javaFile);
+    Rule rule1 = Rule.create("checkstyle", "rule1", "Rule one");
+    Rule rule2 = Rule.create("checkstyle", "rule2", "Rule two");
+    Metric violations = new Metric("violations");
+    Measure measure = new Measure(violations).setValue(3.0);
+    RuleMeasure ruleMeasure1 = RuleMeasure.createForRule(violations, rule1, 1.0);
+    RuleMeasure ruleMeasure2 = RuleMeasure.createForRule(violations, rule2, 2.0);
+    fileBucket.addMeasure(measure);
+    fileBucket.addMeasure(ruleMeasure1);
+    fileBucket.addMeasure(ruleMeasure2);
+    fileBucket.addMeasure(ruleMeasure1);
+    fileBucket.addMeasure(new Measure(ncloc).setValue(1200.0));
+
+    assertThat(fileBucket.getMeasures(MeasuresFilters.all()).size(), is(4));
+    assertThat(fileBucket.getMeasures(MeasuresFilters.metric(violations)), is(measure));
+    assertThat(fileBucket.getMeasures(MeasuresFilters.rules(violations)).size(), is(2));
+    assertThat(fileBucket.getMeasures(MeasuresFilters.rule(violations, rule2)).getValue(), is(2.0));
+  }
+
+  @Test(expected = SonarException.class)
+  public void shouldFailIfAddingSameRuleMeasures() {
+    Bucket fileBucket = new Bucket(javaFile);
+    Rule rule = Rule.create("checkstyle", "rule1", "Rule one");
+    Metric violations = new Metric("violations");
+    fileBucket.addMeasure(new Measure(violations).setValue(3.0));
+    fileBucket.addMeasure(RuleMeasure.createForRule(violations, rule, 1.0));
+    fileBucket.addMeasure(RuleMeasure.createForRule(violations, rule, 2.0));
+  }
+
+  @Test
+  public void shouldNotFindMeasureOfUnknownMetric() {
+    Bucket fileBucket = new Bucket(javaFile);
+    fileBucket.addMeasure(new Measure(ncloc).setValue(1200.0));
+
+    assertThat(fileBucket.getMeasures(MeasuresFilters.metric("unknown_metric_of_bucket_test")), nullValue());
+  }
+
   @Test
   public void shouldBeEquals() {
     assertEquals(new Bucket(javaPackage), new Bucket(javaPackage));
@@ -21,6 +21,7 @@ package org.sonar.batch.index;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.api.database.model.ResourceModel;
 import org.sonar.api.resources.JavaFile;
 import org.sonar.api.resources.JavaPackage;
 import org.sonar.api.resources.Library;
@@ -91,6 +92,7 @@ public class DefaultResourcePersisterTest extends AbstractDbUnitTestCase {
     ResourcePersister persister = new DefaultResourcePersister(getSession());
     persister.saveProject(singleProject, null);
     persister.saveResource(singleProject, new JavaPackage("org.foo").setEffectiveKey("foo:org.foo"));
+    getSession().commit();
 
     // check that the directory is attached to the project
     checkTablesWithExcludedColumns("shouldSaveNewDirectory", new String[]{"build_date"}, "projects", "snapshots");
@@ -109,6 +111,33 @@ public class DefaultResourcePersisterTest extends AbstractDbUnitTestCase {
     checkTablesWithExcludedColumns("shouldSaveNewLibrary", new String[]{"build_date"}, "projects", "snapshots");
   }
 
+  @Test
+  public void shouldNotUpdateUnchangedResources() {
+    setupData("shouldNotUpdateUnchangedResources");
+
+    ResourcePersister persister = new DefaultResourcePersister(getSession());
+    persister.saveProject(singleProject, null);
+    JavaPackage javaPackage = new JavaPackage("org.foo");
+    persister.saveResource(singleProject, javaPackage.setEffectiveKey("foo:org.foo"));
+    getSession().commit();
+
+    assertThat(javaPackage.getId(), is(1002));
+    checkTablesWithExcludedColumns("shouldNotUpdateUnchangedResources", new String[]{"build_date"}, "projects", "snapshots");
+  }
+
+  @Test
+  public void shouldDetectChangesOfResources() {
+    ResourceModel model = DefaultResourcePersister.createModel(new JavaPackage("org.foo").setEffectiveKey("foo:org.foo"));
+    model.setRootId(1001);
+
+    assertThat(DefaultResourcePersister.isUpToDate(model, new JavaPackage("org.foo"), 1001), is(true));
+    assertThat(DefaultResourcePersister.isUpToDate(model, new JavaPackage("org.foo"), 2000), is(false));
+    assertThat(DefaultResourcePersister.isUpToDate(model, new JavaFile("org.foo"), 1001), is(false));
+
+    model.setEnabled(false);
+    assertThat(DefaultResourcePersister.isUpToDate(model, new JavaPackage("org.foo"), 1001), is(false));
+  }
+
   @Test
   public void shouldClearResourcesExceptProjects() {
     setupData("shared");
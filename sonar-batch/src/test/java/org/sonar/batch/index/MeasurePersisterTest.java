@@ -19,8 +19,11 @@
  */
 package org.sonar.batch.index;
 
+import org.apache.commons.lang.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
+import org.sonar.api.config.Settings;
+import org.sonar.api.database.model.MeasureData;
 import org.sonar.api.database.model.MeasureModel;
 import org.sonar.api.database.model.Snapshot;
 import org.sonar.api.measures.CoreMetrics;
@@ -30,6 +33,7 @@ import org.sonar.api.measures.PersistenceMode;
 import org.sonar.api.resources.JavaFile;
 import org.sonar.api.resources.JavaPackage;
 import org.sonar.api.resources.Project;
+import org.sonar.core.measure.MeasureDao;
 import org.sonar.core.rule.DefaultRuleFinder;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
@@ -73,7 +77,8 @@ public class MeasurePersisterTest extends AbstractDbUnitTestCase {
     when(resourcePersister.getSnapshot(aPackage)).thenReturn(packageSnapshot);
     when(resourcePersister.getSnapshot(aFile)).thenReturn(fileSnapshot);
     memoryOptimizer = mock(MemoryOptimizer.class);
-    measurePersister = new MeasurePersister(getSession(), resourcePersister, new DefaultRuleFinder(getSessionFactory()), memoryOptimizer);
+    measurePersister = new MeasurePersister(getSession(), resourcePersister, new DefaultRuleFinder(getSessionFactory()), memoryOptimizer,
+        new MeasureDao(getMyBatis()), new Settings());
   }
 
   @Test
@@ -134,6 +139,27 @@ public class MeasurePersisterTest extends AbstractDbUnitTestCase {
     checkTables("shouldDelaySaving", "project_measures");
   }
 
+  @Test
+  public void shouldDumpLongDataInSeparateTable() {
+    measurePersister.setDelayedMode(true);
+    String data = StringUtils.repeat("0=1;", 100);
+    measurePersister.saveMeasure(aFile, new Measure(ncloc).setData(data));
+    measurePersister.saveMeasure(aPackage, new Measure(ncloc).setData("short"));
+
+    measurePersister.dump();
+
+    List<MeasureModel> fileMeasures = getSession().getResults(MeasureModel.class, "snapshotId", FILE_SNAPSHOT_ID);
+    assertThat(fileMeasures.size(), is(1));
+    assertThat(fileMeasures.get(0).getTextValue(), is((String) null));
+    List<MeasureData> fileData = getSession().getResults(MeasureData.class, "snapshotId", FILE_SNAPSHOT_ID);
+    assertThat(fileData.size(), is(1));
+    assertThat(fileData.get(0).getText(), is(data));
+    assertThat(fileData.get(0).getMeasure().getId(), is(fileMeasures.get(0).getId()));
+
+    List<MeasureModel> packageMeasures = getSession().getResults(MeasureModel.class, "snapshotId", PACKAGE_SNAPSHOT_ID);
+    assertThat(packageMeasures.get(0).getTextValue(), is("short"));
+  }
+
   @Test
   public void shouldNotDelaySavingWithDatabaseOnlyMeasure() {
     measurePersister.setDelayedMode(true);
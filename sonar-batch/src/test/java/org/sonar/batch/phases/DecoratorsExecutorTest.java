@@ -19,18 +19,37 @@
  */
 package org.sonar.batch.phases;
 
+import com.google.common.collect.Lists;
 import org.junit.Test;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.BatchExtensionDictionnary;
+import org.sonar.api.batch.DecoratedResources;
 import org.sonar.api.batch.Decorator;
 import org.sonar.api.batch.DecoratorContext;
 import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafeExtension;
+import org.sonar.api.batch.events.DecoratorExecutionHandler;
+import org.sonar.api.batch.events.EventHandler;
+import org.sonar.api.config.Settings;
+import org.sonar.api.database.DatabaseSession;
+import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Qualifiers;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.resources.Scopes;
 import org.sonar.api.utils.SonarException;
 import org.sonar.batch.DefaultDecoratorContext;
+import org.sonar.batch.events.BatchEvent;
 import org.sonar.batch.events.EventBus;
+import org.sonar.batch.index.MemoryOptimizer;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.number.OrderingComparisons.greaterThanOrEqualTo;
 import static org.hamcrest.number.OrderingComparisons.lessThan;
 import static org.junit.Assert.assertThat;
@@ -40,6 +59,10 @@ import static org.mockito.Matchers.any;
 
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class DecoratorsExecutorTest {
 
@@ -76,6 +99,157 @@ public class DecoratorsExecutorTest {
     }
   }
 
+  @Test
+  public void shouldFireDecoratorExecutionEventsOnlyIfHandled() {
+    Decorator decorator = mock(Decorator.class);
+    EventBus eventBus = mock(EventBus.class);
+    DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), new Project("key"), mock(SonarIndex.class), eventBus);
+
+    executor.executeDecorator(decorator, mock(DefaultDecoratorContext.class), new File("org/foo/Bar.java"));
+    verify(eventBus, never()).fireEvent(any(BatchEvent.class));
+
+    when(eventBus.hasHandlers(DecoratorExecutionHandler.class)).thenReturn(true);
+    executor.executeDecorator(decorator, mock(DefaultDecoratorContext.class), new File("org/foo/Bar.java"));
+    verify(eventBus, times(2)).fireEvent(any(DecoratorExecutionEvent.class));
+  }
+
+  @Test
+  public void shouldDecorateInCurrentThreadByDefault() {
+    DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), new Project("key"), mock(SonarIndex.class), mock(EventBus.class));
+    assertThat(executor.getThreads(), is(1));
+
+    Settings settings = new Settings().setProperty(CoreProperties.DECORATORS_THREADS, 4);
+    executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), new Project("key"), mock(SonarIndex.class), mock(EventBus.class), settings);
+    assertThat(executor.getThreads(), is(4));
+  }
+
+  @Test
+  public void shouldDetectThreadSafeDecorators() {
+    assertThat(DecoratorsExecutor.isThreadSafe(new Decorator1()), is(false));
+    assertThat(DecoratorsExecutor.isThreadSafe(new RecordingDecorator()), is(true));
+  }
+
+  @Test
+  public void shouldDecorateChildrenBeforeParentsUsingSeveralThreads() {
+    Project project = new Project("key");
+    Directory dir1 = new Directory("org/foo");
+    Directory dir2 = new Directory("org/bar");
+    File file1 = new File("org/foo/One.java");
+    File file2 = new File("org/foo/Two.java");
+    File file3 = new File("org/bar/Three.java");
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(project)).thenReturn(Arrays.<Resource>asList(dir1, dir2));
+    when(index.getChildren(dir1)).thenReturn(Arrays.<Resource>asList(file1, file2));
+    when(index.getChildren(dir2)).thenReturn(Arrays.<Resource>asList(file3));
+
+    RecordingDecorator decorator = new RecordingDecorator();
+    List<Decorator> decorators = Arrays.<Decorator>asList(decorator);
+    BatchExtensionDictionnary dictionnary = mock(BatchExtensionDictionnary.class);
+    when(dictionnary.select(Decorator.class, project, false)).thenReturn(decorators);
+    when(dictionnary.sort(any(Collection.class))).thenReturn(decorators);
+
+    Settings settings = new Settings().setProperty(CoreProperties.DECORATORS_THREADS, 4);
+    new DecoratorsExecutor(dictionnary, project, index, mock(EventBus.class), settings).execute();
+
+    List<Resource> decorated = decorator.resources;
+    assertThat(decorated.size(), is(6));
+    assertThat(decorated.indexOf(file1), lessThan(decorated.indexOf(dir1)));
+    assertThat(decorated.indexOf(file2), lessThan(decorated.indexOf(dir1)));
+    assertThat(decorated.indexOf(file3), lessThan(decorated.indexOf(dir2)));
+    assertThat(decorated.indexOf(dir1), lessThan(decorated.indexOf(project)));
+    assertThat(decorated.indexOf(dir2), lessThan(decorated.indexOf(project)));
+  }
+
+  @Test
+  public void concurrentExceptionShouldIncludeResource() {
+    Project project = new Project("key");
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(project)).thenReturn(Arrays.<Resource>asList(new File("org/foo/Bar.java")));
+
+    Decorator decorator = mock(Decorator.class);
+    doThrow(new SonarException()).when(decorator).decorate(any(Resource.class), any(DecoratorContext.class));
+    List<Decorator> decorators = Arrays.asList(decorator);
+    BatchExtensionDictionnary dictionnary = mock(BatchExtensionDictionnary.class);
+    when(dictionnary.select(Decorator.class, project, false)).thenReturn(decorators);
+    when(dictionnary.sort(any(Collection.class))).thenReturn(decorators);
+
+    Settings settings = new Settings().setProperty(CoreProperties.DECORATORS_THREADS, 2);
+    try {
+      new DecoratorsExecutor(dictionnary, project, index, mock(EventBus.class), settings).execute();
+      fail("Exception has not been thrown");
+
+    } catch (SonarException e) {
+      assertThat(e.getMessage(), containsString("org/foo/Bar.java"));
+    }
+  }
+
+  @Test
+  public void shouldFireEventsOfThreadSafeDecoratorsWithoutLock() {
+    Project project = new Project("key");
+    SonarIndex index = mock(SonarIndex.class);
+    when(index.getChildren(project)).thenReturn(Arrays.<Resource>asList(new File("org/foo/One.java"), new File("org/foo/Two.java")));
+    List<Decorator> decorators = Arrays.<Decorator>asList(new RecordingDecorator());
+    BatchExtensionDictionnary dictionnary = mock(BatchExtensionDictionnary.class);
+    when(dictionnary.select(Decorator.class, project, false)).thenReturn(decorators);
+    when(dictionnary.sort(any(Collection.class))).thenReturn(decorators);
+    LockRecordingHandler lockRecorder = new LockRecordingHandler(index);
+    // handlers registered during a real analysis
+    EventBus eventBus = new EventBus(new EventHandler[] {new MemoryOptimizer(mock(DatabaseSession.class)), lockRecorder});
+
+    Settings settings = new Settings().setProperty(CoreProperties.DECORATORS_THREADS, 2);
+    new DecoratorsExecutor(dictionnary, project, index, eventBus, settings).execute();
+
+    assertThat(eventBus.areHandlersThreadSafe(DecoratorExecutionHandler.class), is(true));
+    assertThat(lockRecorder.events.size(), is(6));
+    assertThat(lockRecorder.events.contains(Boolean.TRUE), is(false));
+  }
+
+  @Test
+  public void shouldExecuteDecoratorsOnlyOnDeclaredResources() {
+    Decorator anyResourceDecorator = new Decorator1();
+    Decorator directoryDecorator = new DirectoryDecorator();
+    Decorator projectDecorator = new ProjectDecorator();
+    List<Decorator> decorators = Arrays.asList(anyResourceDecorator, directoryDecorator, projectDecorator);
+    DecoratorsExecutor executor = new DecoratorsExecutor(mock(BatchExtensionDictionnary.class), new Project("key"), mock(SonarIndex.class), mock(EventBus.class));
+
+    assertThat(executor.getDecorators(new File("org/foo/Bar.java"), decorators), is(Arrays.asList(anyResourceDecorator)));
+    assertThat(executor.getDecorators(new Directory("org/foo"), decorators), is(Arrays.asList(anyResourceDecorator, directoryDecorator)));
+    assertThat(executor.getDecorators(new Project("key"), decorators), is(Arrays.asList(anyResourceDecorator, projectDecorator)));
+    Project module = new Project("module");
+    module.setParent(new Project("key"));
+    assertThat(executor.getDecorators(module, decorators), is(Arrays.asList(anyResourceDecorator)));
+  }
+
+  @ThreadSafeExtension
+  static class RecordingDecorator implements Decorator {
+    final List<Resource> resources = Collections.synchronizedList(Lists.<Resource>newArrayList());
+
+    public void decorate(Resource resource, DecoratorContext context) {
+      resources.add(resource);
+    }
+
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+  }
+
+  /**
+   * Records, for each event, if the lock of index is held.
+   */
+  @ThreadSafeExtension
+  static class LockRecordingHandler implements DecoratorExecutionHandler {
+    final List<Boolean> events = Collections.synchronizedList(Lists.<Boolean>newArrayList());
+    private final Object index;
+
+    LockRecordingHandler(Object index) {
+      this.index = index;
+    }
+
+    public void onDecoratorExecution(DecoratorExecutionEvent event) {
+      events.add(Thread.holdsLock(index));
+    }
+  }
+
   static class Decorator1 implements Decorator {
     public void decorate(Resource resource, DecoratorContext context) {
     }
@@ -93,4 +267,12 @@ public class DecoratorsExecutorTest {
       return true;
     }
   }
+
+  @DecoratedResources(scopes = Scopes.DIRECTORY)
+  static class DirectoryDecorator extends Decorator1 {
+  }
+
+  @DecoratedResources(scopes = Scopes.PROJECT, qualifiers = Qualifiers.PROJECT)
+  static class ProjectDecorator extends Decorator1 {
+  }
 }
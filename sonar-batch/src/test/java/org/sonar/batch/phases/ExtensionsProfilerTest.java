@@ -0,0 +1,90 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.phases;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.Decorator;
+import org.sonar.api.batch.PostJob;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.resources.JavaFile;
+import org.sonar.api.resources.JavaPackage;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.ProjectFileSystem;
+
+import java.io.File;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ExtensionsProfilerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Project project;
+
+  @Before
+  public void setUp() {
+    ProjectFileSystem fileSystem = mock(ProjectFileSystem.class);
+    when(fileSystem.getSonarWorkingDirectory()).thenReturn(temp.getRoot());
+    project = new Project("foo");
+    project.setFileSystem(fileSystem);
+  }
+
+  @Test
+  public void shouldWriteReport() throws Exception {
+    ExtensionsProfiler profiler = new ExtensionsProfiler(project);
+    Sensor sensor = mock(Sensor.class);
+    Decorator decorator = mock(Decorator.class);
+    PostJob postJob = mock(PostJob.class);
+
+    profiler.onSensorExecution(new SensorExecutionEvent(sensor, true));
+    profiler.onSensorExecution(new SensorExecutionEvent(sensor, false));
+    for (int i = 0; i < 3; i++) {
+      profiler.onDecoratorExecution(new DecoratorExecutionEvent(decorator, new JavaFile("org.foo.Bar"), true));
+      profiler.onDecoratorExecution(new DecoratorExecutionEvent(decorator, new JavaFile("org.foo.Bar"), false));
+    }
+    profiler.onDecoratorExecution(new DecoratorExecutionEvent(decorator, new JavaPackage("org.foo"), true));
+    profiler.onDecoratorExecution(new DecoratorExecutionEvent(decorator, new JavaPackage("org.foo"), false));
+    profiler.onPostJobExecution(new PostJobExecutionEvent(postJob, true));
+    profiler.onPostJobExecution(new PostJobExecutionEvent(postJob, false));
+    profiler.onProjectAnalysis(new ProjectAnalysisEvent(project, false));
+
+    String json = FileUtils.readFileToString(new File(temp.getRoot(), ExtensionsProfiler.REPORT_FILENAME));
+    assertThat(json, containsString("\"project\":\"foo\""));
+    assertThat(json, containsString("{\"type\":\"sensor\",\"extension\":\"" + sensor.getClass().getName() + "\",\"qualifier\":\"TRK\",\"executions\":1,"));
+    assertThat(json, containsString("{\"type\":\"decorator\",\"extension\":\"" + decorator.getClass().getName() + "\",\"qualifier\":\"CLA\",\"executions\":3,"));
+    assertThat(json, containsString("{\"type\":\"decorator\",\"extension\":\"" + decorator.getClass().getName() + "\",\"qualifier\":\"PAC\",\"executions\":1,"));
+    assertThat(json, containsString("{\"type\":\"postjob\",\"extension\":\"" + postJob.getClass().getName() + "\",\"qualifier\":\"TRK\",\"executions\":1,"));
+  }
+
+  @Test
+  public void shouldEscapeJsonStrings() {
+    assertThat(ExtensionsProfiler.quote("a\"b\\c\n"), is("\"a\\\"b\\\\c\\u000a\""));
+    assertThat(ExtensionsProfiler.quote(null), is("null"));
+  }
+}
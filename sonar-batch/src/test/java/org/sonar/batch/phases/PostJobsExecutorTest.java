@@ -25,6 +25,7 @@ import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.resources.Project;
 import org.sonar.batch.MavenPluginExecutor;
+import org.sonar.batch.events.EventBus;
 
 import java.util.Arrays;
 import java.util.List;
@@ -42,7 +43,7 @@ public class PostJobsExecutorTest {
 
     Project project = new Project("project");
     ProjectDefinition projectDefinition = ProjectDefinition.create();
-    PostJobsExecutor executor = new PostJobsExecutor(null, project, projectDefinition, mock(MavenPluginExecutor.class));
+    PostJobsExecutor executor = new PostJobsExecutor(null, project, projectDefinition, mock(MavenPluginExecutor.class), mock(EventBus.class));
     SensorContext context = mock(SensorContext.class);
     executor.execute(context, jobs);
 
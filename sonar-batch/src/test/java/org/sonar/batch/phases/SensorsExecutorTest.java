@@ -0,0 +1,143 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.batch.phases;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.batch.BatchExtensionDictionnary;
+import org.sonar.api.batch.DependedUpon;
+import org.sonar.api.batch.DependsUpon;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.SonarIndex;
+import org.sonar.api.batch.ThreadSafeExtension;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.config.Settings;
+import org.sonar.api.platform.ComponentContainer;
+import org.sonar.api.resources.Project;
+import org.sonar.api.utils.SonarException;
+import org.sonar.batch.MavenPluginExecutor;
+import org.sonar.batch.events.EventBus;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.number.OrderingComparisons.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class SensorsExecutorTest {
+
+  private List<Sensor> executed = Collections.synchronizedList(Lists.<Sensor>newArrayList());
+
+  @Test
+  public void shouldExecuteSensorsInCurrentThreadByDefault() {
+    assertThat(newExecutor(new Settings()).getThreads(), is(1));
+    assertThat(newExecutor(new Settings().setProperty(CoreProperties.SENSORS_THREADS, 4)).getThreads(), is(4));
+  }
+
+  @Test
+  public void shouldExecuteSensorsAfterTheirDependencies() {
+    Sensor generator = new Generator("foo");
+    Sensor consumer = new Consumer("foo");
+    Sensor independent = new Generator("bar");
+    Sensor notThreadSafe = new NotThreadSafe();
+
+    Settings settings = new Settings().setProperty(CoreProperties.SENSORS_THREADS, 3);
+    newExecutor(settings, consumer, independent, notThreadSafe, generator).execute(mock(SensorContext.class));
+
+    assertThat(executed.size(), is(4));
+    assertThat(executed.indexOf(generator), lessThan(executed.indexOf(consumer)));
+  }
+
+  @Test
+  public void shouldPropagateFailureOfSensor() {
+    Sensor failing = new Generator("foo") {
+      @Override
+      public void analyse(Project project, SensorContext context) {
+        throw new SonarException("failure");
+      }
+    };
+    Sensor consumer = new Consumer("foo");
+
+    Settings settings = new Settings().setProperty(CoreProperties.SENSORS_THREADS, 2);
+    try {
+      newExecutor(settings, failing, consumer, new Generator("bar")).execute(mock(SensorContext.class));
+      fail("Exception has not been thrown");
+
+    } catch (SonarException e) {
+      assertThat(e.getMessage(), is("failure"));
+      assertThat(executed.contains(consumer), is(false));
+    }
+  }
+
+  private SensorsExecutor newExecutor(Settings settings, Sensor... sensors) {
+    ComponentContainer container = new ComponentContainer();
+    for (Sensor sensor : sensors) {
+      container.addSingleton(sensor);
+    }
+    return new SensorsExecutor(new BatchExtensionDictionnary(container), new Project("key"), ProjectDefinition.create(), mock(MavenPluginExecutor.class),
+        mock(EventBus.class), mock(SonarIndex.class), settings);
+  }
+
+  abstract class RecordingSensor implements Sensor {
+    public boolean shouldExecuteOnProject(Project project) {
+      return true;
+    }
+
+    public void analyse(Project project, SensorContext context) {
+      executed.add(this);
+    }
+  }
+
+  @ThreadSafeExtension
+  class Generator extends RecordingSensor {
+    private final String generates;
+
+    Generator(String generates) {
+      this.generates = generates;
+    }
+
+    @DependedUpon
+    public String generates() {
+      return generates;
+    }
+  }
+
+  @ThreadSafeExtension
+  class Consumer extends RecordingSensor {
+    private final String dependsUpon;
+
+    Consumer(String dependsUpon) {
+      this.dependsUpon = dependsUpon;
+    }
+
+    @DependsUpon
+    public String dependsUpon() {
+      return dependsUpon;
+    }
+  }
+
+  class NotThreadSafe extends RecordingSensor {
+  }
+}
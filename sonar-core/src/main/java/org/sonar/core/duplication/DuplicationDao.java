@@ -25,6 +25,7 @@ import org.sonar.api.ServerComponent;
 import org.sonar.core.persistence.MyBatis;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 public class DuplicationDao implements BatchComponent, ServerComponent {
@@ -35,11 +36,54 @@ public class DuplicationDao implements BatchComponent, ServerComponent {
     this.mybatis = mybatis;
   }
 
-  public List<DuplicationUnitDto> selectCandidates(int resourceSnapshotId, Integer lastSnapshotId, String language) {
+  /**
+   * Selects in one query candidates for all specified resources. Blocks are matched by numeric hash and returned
+   * without hexadecimal hash. Blocks stored before Sonar 2.15 have no numeric hash, so they are matched by hexadecimal hash.
+   *
+   * @since 2.15
+   */
+  public List<DuplicationUnitDto> selectCandidates(Collection<Integer> resourceSnapshotIds, Integer lastSnapshotId, String language) {
+    if (resourceSnapshotIds.isEmpty()) {
+      return Collections.emptyList();
+    }
+    SqlSession session = mybatis.openSession();
+    try {
+      DuplicationMapper mapper = session.getMapper(DuplicationMapper.class);
+      return mapper.selectCandidatesByHashValue(resourceSnapshotIds, lastSnapshotId, language);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  /**
+   * Selects fingerprints of files, which were stored during analysis of project with specified snapshot.
+   * Only snapshot id, resource key and file hash are filled in returned units - one unit for each file.
+   *
+   * @since 2.15
+   */
+  public List<DuplicationUnitDto> selectFileHashes(int projectSnapshotId) {
+    SqlSession session = mybatis.openSession();
+    try {
+      DuplicationMapper mapper = session.getMapper(DuplicationMapper.class);
+      return mapper.selectFileHashes(projectSnapshotId);
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
+  /**
+   * Selects in one query all blocks of specified snapshots of files, ordered by snapshot and index in file.
+   *
+   * @since 2.15
+   */
+  public List<DuplicationUnitDto> selectUnits(Collection<Integer> snapshotIds) {
+    if (snapshotIds.isEmpty()) {
+      return Collections.emptyList();
+    }
     SqlSession session = mybatis.openSession();
     try {
       DuplicationMapper mapper = session.getMapper(DuplicationMapper.class);
-      return mapper.selectCandidates(resourceSnapshotId, lastSnapshotId, language);
+      return mapper.selectUnits(snapshotIds);
     } finally {
       MyBatis.closeQuietly(session);
     }
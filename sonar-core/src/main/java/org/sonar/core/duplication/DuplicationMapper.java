@@ -21,15 +21,29 @@ package org.sonar.core.duplication;
 
 import org.apache.ibatis.annotations.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface DuplicationMapper {
 
-  List<DuplicationUnitDto> selectCandidates(
-      @Param("resource_snapshot_id") int resourceSnapshotId,
+  /**
+   * @since 2.15
+   */
+  List<DuplicationUnitDto> selectCandidatesByHashValue(
+      @Param("resource_snapshot_ids") Collection<Integer> resourceSnapshotIds,
       @Param("last_project_snapshot_id") Integer lastSnapshotId,
       @Param("language") String language);
 
+  /**
+   * @since 2.15
+   */
+  List<DuplicationUnitDto> selectFileHashes(@Param("project_snapshot_id") int projectSnapshotId);
+
+  /**
+   * @since 2.15
+   */
+  List<DuplicationUnitDto> selectUnits(@Param("snapshot_ids") Collection<Integer> snapshotIds);
+
   void batchInsert(DuplicationUnitDto unit);
 
 }
@@ -28,6 +28,8 @@ public final class DuplicationUnitDto {
   private Integer projectSnapshotId;
 
   private String hash;
+  private Long hashValue;
+  private Long fileHash;
   private int indexInFile;
   private int startLine;
   private int endLine;
@@ -70,6 +72,35 @@ public final class DuplicationUnitDto {
     this.hash = hash;
   }
 
+  /**
+   * @since 2.15
+   */
+  public Long getHashValue() {
+    return hashValue;
+  }
+
+  /**
+   * @since 2.15
+   */
+  public void setHashValue(Long hashValue) {
+    this.hashValue = hashValue;
+  }
+
+  /**
+   * @return fingerprint of content of file, which contains this block
+   * @since 2.15
+   */
+  public Long getFileHash() {
+    return fileHash;
+  }
+
+  /**
+   * @since 2.15
+   */
+  public void setFileHash(Long fileHash) {
+    this.fileHash = fileHash;
+  }
+
   public int getIndexInFile() {
     return indexInFile;
   }
@@ -0,0 +1,95 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.measure;
+
+import com.google.common.collect.Lists;
+import org.apache.ibatis.session.SqlSession;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.ServerComponent;
+import org.sonar.core.persistence.MyBatis;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @since 2.15
+ */
+public class MeasureDao implements BatchComponent, ServerComponent {
+
+  private final MyBatis mybatis;
+
+  public MeasureDao(MyBatis mybatis) {
+    this.mybatis = mybatis;
+  }
+
+  /**
+   * Inserts measures in batch mode : statements are sent and committed by chunks of <code>batchSize</code> rows.
+   * Note that generated ids are not returned, except for measures with {@link MeasureDto#getData() data}, which are
+   * inserted one by one, because the id is required to insert data.
+   */
+  public void insert(Collection<MeasureDto> measures, int batchSize) {
+    List<MeasureDto> measuresWithData = Lists.newArrayList();
+    SqlSession session = mybatis.openBatchSession(batchSize);
+    try {
+      MeasureMapper mapper = session.getMapper(MeasureMapper.class);
+      for (MeasureDto measure : measures) {
+        if (measure.getData() == null) {
+          mapper.batchInsert(measure);
+        } else {
+          measuresWithData.add(measure);
+        }
+      }
+      session.commit();
+
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+
+    if (!measuresWithData.isEmpty()) {
+      insertWithData(measuresWithData, batchSize);
+    }
+  }
+
+  private void insertWithData(List<MeasureDto> measures, int batchSize) {
+    SqlSession session = mybatis.openSession();
+    try {
+      MeasureMapper mapper = session.getMapper(MeasureMapper.class);
+      for (MeasureDto measure : measures) {
+        mapper.insert(measure);
+      }
+      session.commit();
+
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+
+    session = mybatis.openBatchSession(batchSize);
+    try {
+      MeasureMapper mapper = session.getMapper(MeasureMapper.class);
+      for (MeasureDto measure : measures) {
+        mapper.batchInsertData(measure);
+      }
+      session.commit();
+
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+}
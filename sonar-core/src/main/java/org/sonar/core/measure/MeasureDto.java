@@ -0,0 +1,228 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.measure;
+
+/**
+ * Row of the table PROJECT_MEASURES. Data which does not fit in the column TEXT_VALUE is stored in the table MEASURE_DATA.
+ *
+ * @since 2.15
+ */
+public final class MeasureDto {
+  private Long id;
+  private Integer snapshotId;
+  private Integer metricId;
+  private Double value;
+  private String textValue;
+  private Integer tendency;
+  private Integer ruleId;
+  private Integer rulePriority;
+  private String alertStatus;
+  private String alertText;
+  private String url;
+  private String description;
+  private Integer characteristicId;
+  private Integer personId;
+  private Double variation1;
+  private Double variation2;
+  private Double variation3;
+  private Double variation4;
+  private Double variation5;
+  private byte[] data;
+
+  public Long getId() {
+    return id;
+  }
+
+  public MeasureDto setId(Long id) {
+    this.id = id;
+    return this;
+  }
+
+  public Integer getSnapshotId() {
+    return snapshotId;
+  }
+
+  public MeasureDto setSnapshotId(Integer snapshotId) {
+    this.snapshotId = snapshotId;
+    return this;
+  }
+
+  public Integer getMetricId() {
+    return metricId;
+  }
+
+  public MeasureDto setMetricId(Integer metricId) {
+    this.metricId = metricId;
+    return this;
+  }
+
+  public Double getValue() {
+    return value;
+  }
+
+  public MeasureDto setValue(Double value) {
+    this.value = value;
+    return this;
+  }
+
+  public String getTextValue() {
+    return textValue;
+  }
+
+  public MeasureDto setTextValue(String textValue) {
+    this.textValue = textValue;
+    return this;
+  }
+
+  public Integer getTendency() {
+    return tendency;
+  }
+
+  public MeasureDto setTendency(Integer tendency) {
+    this.tendency = tendency;
+    return this;
+  }
+
+  public Integer getRuleId() {
+    return ruleId;
+  }
+
+  public MeasureDto setRuleId(Integer ruleId) {
+    this.ruleId = ruleId;
+    return this;
+  }
+
+  public Integer getRulePriority() {
+    return rulePriority;
+  }
+
+  public MeasureDto setRulePriority(Integer rulePriority) {
+    this.rulePriority = rulePriority;
+    return this;
+  }
+
+  public String getAlertStatus() {
+    return alertStatus;
+  }
+
+  public MeasureDto setAlertStatus(String alertStatus) {
+    this.alertStatus = alertStatus;
+    return this;
+  }
+
+  public String getAlertText() {
+    return alertText;
+  }
+
+  public MeasureDto setAlertText(String alertText) {
+    this.alertText = alertText;
+    return this;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public MeasureDto setUrl(String url) {
+    this.url = url;
+    return this;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public MeasureDto setDescription(String description) {
+    this.description = description;
+    return this;
+  }
+
+  public Integer getCharacteristicId() {
+    return characteristicId;
+  }
+
+  public MeasureDto setCharacteristicId(Integer characteristicId) {
+    this.characteristicId = characteristicId;
+    return this;
+  }
+
+  public Integer getPersonId() {
+    return personId;
+  }
+
+  public MeasureDto setPersonId(Integer personId) {
+    this.personId = personId;
+    return this;
+  }
+
+  public Double getVariation1() {
+    return variation1;
+  }
+
+  public MeasureDto setVariation1(Double variation1) {
+    this.variation1 = variation1;
+    return this;
+  }
+
+  public Double getVariation2() {
+    return variation2;
+  }
+
+  public MeasureDto setVariation2(Double variation2) {
+    this.variation2 = variation2;
+    return this;
+  }
+
+  public Double getVariation3() {
+    return variation3;
+  }
+
+  public MeasureDto setVariation3(Double variation3) {
+    this.variation3 = variation3;
+    return this;
+  }
+
+  public Double getVariation4() {
+    return variation4;
+  }
+
+  public MeasureDto setVariation4(Double variation4) {
+    this.variation4 = variation4;
+    return this;
+  }
+
+  public Double getVariation5() {
+    return variation5;
+  }
+
+  public MeasureDto setVariation5(Double variation5) {
+    this.variation5 = variation5;
+    return this;
+  }
+
+  public byte[] getData() {
+    return data;//NOSONAR May expose internal representation by returning reference to mutable object
+  }
+
+  public MeasureDto setData(byte[] data) {
+    this.data = data;//NOSONAR May expose internal representation by incorporating reference to mutable object
+    return this;
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.measure;
+
+/**
+ * @since 2.15
+ */
+public interface MeasureMapper {
+
+  /**
+   * Inserts measure and sets its generated id
+   */
+  void insert(MeasureDto measure);
+
+  /**
+   * Generated id is not set, so that statements can be executed in batch mode
+   */
+  void batchInsert(MeasureDto measure);
+
+  /**
+   * Inserts data of measure, which must have been inserted before
+   */
+  void batchInsertData(MeasureDto measure);
+
+}
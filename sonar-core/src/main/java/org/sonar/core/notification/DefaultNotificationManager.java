@@ -19,6 +19,8 @@
  */
 package org.sonar.core.notification;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.sonar.api.database.DatabaseSession;
 import org.sonar.api.database.configuration.Property;
 import org.sonar.api.database.model.User;
@@ -26,6 +28,8 @@ import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationManager;
 import org.sonar.jpa.session.DatabaseSessionFactory;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -34,6 +38,8 @@ import java.util.List;
  */
 public class DefaultNotificationManager implements NotificationManager {
 
+  private static final int MAX_USERS_PER_QUERY = 500;
+
   private DatabaseSessionFactory sessionFactory;
 
   public DefaultNotificationManager(DatabaseSessionFactory sessionFactory) {
@@ -50,30 +56,68 @@ public class DefaultNotificationManager implements NotificationManager {
   }
 
   public NotificationQueueElement getFromQueue() {
+    List<NotificationQueueElement> notifications = getFromQueue(1);
+    return notifications.isEmpty() ? null : notifications.get(0);
+  }
+
+  /**
+   * Removes the oldest notifications from the queue, in a single transaction.
+   *
+   * @return at most maxElements notifications, ordered by creation date. Empty if the queue is empty.
+   * @since 2.15
+   */
+  public List<NotificationQueueElement> getFromQueue(int maxElements) {
     DatabaseSession session = sessionFactory.getSession();
     String hql = "FROM " + NotificationQueueElement.class.getSimpleName() + " ORDER BY createdAt ASC";
-    List<NotificationQueueElement> notifications = session.createQuery(hql).setMaxResults(1).getResultList();
+    List<NotificationQueueElement> notifications = session.createQuery(hql).setMaxResults(maxElements).getResultList();
     if (notifications.isEmpty()) {
       // UGLY - waiting for a clean way to manage JDBC connections without Hibernate - myBatis is coming soon
       // This code is highly coupled to org.sonar.server.notifications.NotificationService, which periodically executes
-      // several times the methods getFromQueue() and isEnabled(). The session is closed only at the end of the task -
+      // several times the methods getFromQueue() and getPreferences(). The session is closed only at the end of the task -
       // when there are no more notifications to process - to ensure "better" performances.
       sessionFactory.clear();
-      return null;
+      return Collections.emptyList();
+    }
+    for (NotificationQueueElement notification : notifications) {
+      session.removeWithoutFlush(notification);
     }
-    NotificationQueueElement notification = notifications.get(0);
-    session.removeWithoutFlush(notification);
     session.commit();
-    return notification;
-
+    return notifications;
   }
 
   public boolean isEnabled(String username, String channelKey, String dispatcherKey) {
     DatabaseSession session = sessionFactory.getSession();
     User user = session.getSingleResult(User.class, "login", username);
-    String notificationKey = "notification." + dispatcherKey + "." + channelKey;
+    String notificationKey = NotificationPreferences.propertyKey(channelKey, dispatcherKey);
     Property property = session.getSingleResult(Property.class, "userId", user.getId(), "key", notificationKey);
     return property != null && "true".equals(property.getValue());
   }
 
+  /**
+   * Loads the notifications enabled by the given users. Unlike {@link #isEnabled(String, String, String)},
+   * only one request is executed for up to 500 users.
+   *
+   * @since 2.15
+   */
+  public NotificationPreferences getPreferences(Collection<String> usernames) {
+    NotificationPreferences preferences = new NotificationPreferences();
+    DatabaseSession session = sessionFactory.getSession();
+    String hql = "SELECT u.login, p FROM " + User.class.getSimpleName() + " u, " + Property.class.getSimpleName() + " p"
+      + " WHERE p.userId=u.id AND p.key LIKE :prefix AND u.login IN (:logins)";
+    for (List<String> logins : Iterables.partition(usernames, MAX_USERS_PER_QUERY)) {
+      List<Object[]> rows = session.createQuery(hql)
+          .setParameter("prefix", "notification.%")
+          .setParameter("logins", Lists.newArrayList(logins))
+          .getResultList();
+      for (Object[] row : rows) {
+        Property property = (Property) row[1];
+        // text_value is a LOB, which can't be compared in the WHERE clause on all databases
+        if ("true".equals(property.getValue())) {
+          preferences.enable((String) row[0], property.getKey());
+        }
+      }
+    }
+    return preferences;
+  }
+
 }
@@ -0,0 +1,51 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.notification;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * Notifications enabled by a set of users, loaded at once by {@link DefaultNotificationManager#getPreferences(java.util.Collection)}
+ * in order to avoid requesting the database for each user, channel and dispatcher.
+ *
+ * @since 2.15
+ */
+public class NotificationPreferences {
+
+  private final SetMultimap<String, String> keysByUsername = HashMultimap.create();
+
+  public NotificationPreferences enable(String username, String channelKey, String dispatcherKey) {
+    keysByUsername.put(username, propertyKey(channelKey, dispatcherKey));
+    return this;
+  }
+
+  public boolean isEnabled(String username, String channelKey, String dispatcherKey) {
+    return keysByUsername.containsEntry(username, propertyKey(channelKey, dispatcherKey));
+  }
+
+  void enable(String username, String propertyKey) {
+    keysByUsername.put(username, propertyKey);
+  }
+
+  static String propertyKey(String channelKey, String dispatcherKey) {
+    return "notification." + dispatcherKey + "." + channelKey;
+  }
+}
@@ -22,6 +22,7 @@ package org.sonar.core.persistence;
 import org.sonar.core.dashboard.ActiveDashboardDao;
 import org.sonar.core.dashboard.DashboardDao;
 import org.sonar.core.duplication.DuplicationDao;
+import org.sonar.core.measure.MeasureDao;
 import org.sonar.core.properties.PropertiesDao;
 import org.sonar.core.purge.PurgeDao;
 import org.sonar.core.resource.ResourceDao;
@@ -29,6 +30,7 @@ import org.sonar.core.resource.ResourceIndexerDao;
 import org.sonar.core.review.ReviewDao;
 import org.sonar.core.rule.RuleDao;
 import org.sonar.core.template.LoadedTemplateDao;
+import org.sonar.core.violation.ViolationDao;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -45,11 +47,13 @@ public final class DaoUtils {
       DashboardDao.class,
       DuplicationDao.class,
       LoadedTemplateDao.class,
+      MeasureDao.class,
       PropertiesDao.class,
       PurgeDao.class,
       ResourceIndexerDao.class,
       ResourceDao.class,
       ReviewDao.class,
-      RuleDao.class));
+      RuleDao.class,
+      ViolationDao.class));
   }
 }
@@ -32,6 +32,8 @@ import org.sonar.api.ServerComponent;
 import org.sonar.core.dashboard.*;
 import org.sonar.core.duplication.DuplicationMapper;
 import org.sonar.core.duplication.DuplicationUnitDto;
+import org.sonar.core.measure.MeasureDto;
+import org.sonar.core.measure.MeasureMapper;
 import org.sonar.core.properties.PropertiesMapper;
 import org.sonar.core.properties.PropertyDto;
 import org.sonar.core.purge.PurgeMapper;
@@ -44,6 +46,8 @@ import org.sonar.core.rule.RuleDto;
 import org.sonar.core.rule.RuleMapper;
 import org.sonar.core.template.LoadedTemplateDto;
 import org.sonar.core.template.LoadedTemplateMapper;
+import org.sonar.core.violation.ViolationDto;
+import org.sonar.core.violation.ViolationMapper;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -70,6 +74,7 @@ public class MyBatis implements BatchComponent, ServerComponent {
     loadAlias(conf, "Dashboard", DashboardDto.class);
     loadAlias(conf, "DuplicationUnit", DuplicationUnitDto.class);
     loadAlias(conf, "LoadedTemplate", LoadedTemplateDto.class);
+    loadAlias(conf, "Measure", MeasureDto.class);
     loadAlias(conf, "Property", PropertyDto.class);
     loadAlias(conf, "PurgeableSnapshot", PurgeableSnapshotDto.class);
     loadAlias(conf, "Review", ReviewDto.class);
@@ -78,6 +83,7 @@ public class MyBatis implements BatchComponent, ServerComponent {
     loadAlias(conf, "Rule", RuleDto.class);
     loadAlias(conf, "Snapshot", SnapshotDto.class);
     loadAlias(conf, "SchemaMigration", SchemaMigrationDto.class);
+    loadAlias(conf, "Violation", ViolationDto.class);
     loadAlias(conf, "Widget", WidgetDto.class);
     loadAlias(conf, "WidgetProperty", WidgetPropertyDto.class);
 
@@ -85,6 +91,7 @@ public class MyBatis implements BatchComponent, ServerComponent {
     loadMapper(conf, DashboardMapper.class);
     loadMapper(conf, DuplicationMapper.class);
     loadMapper(conf, LoadedTemplateMapper.class);
+    loadMapper(conf, MeasureMapper.class);
     loadMapper(conf, PropertiesMapper.class);
     loadMapper(conf, PurgeMapper.class);
     loadMapper(conf, PurgeVendorMapper.class);
@@ -93,6 +100,7 @@ public class MyBatis implements BatchComponent, ServerComponent {
     loadMapper(conf, ResourceIndexerMapper.class);
     loadMapper(conf, RuleMapper.class);
     loadMapper(conf, SchemaMigrationMapper.class);
+    loadMapper(conf, ViolationMapper.class);
     loadMapper(conf, WidgetMapper.class);
     loadMapper(conf, WidgetPropertyMapper.class);
 
@@ -113,6 +121,15 @@ public class MyBatis implements BatchComponent, ServerComponent {
     return new BatchSession(session);
   }
 
+  /**
+   * @param batchSize number of statements executed in a single round trip
+   * @since 2.15
+   */
+  public BatchSession openBatchSession(int batchSize) {
+    SqlSession session = sessionFactory.openSession(ExecutorType.BATCH);
+    return new BatchSession(session, batchSize);
+  }
+
   public static void closeQuietly(SqlSession session) {
     if (session != null) {
       try {
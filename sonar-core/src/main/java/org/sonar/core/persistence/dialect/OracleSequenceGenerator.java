@@ -22,7 +22,6 @@ package org.sonar.core.persistence.dialect;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.dialect.Dialect;
 import org.hibernate.id.PersistentIdentifierGenerator;
-import org.hibernate.id.SequenceGenerator;
 import org.hibernate.type.Type;
 
 import java.util.Properties;
@@ -30,7 +29,7 @@ import java.util.Properties;
 /**
  * @since 1.10
  */
-public class OracleSequenceGenerator extends SequenceGenerator {
+public class OracleSequenceGenerator extends PreallocatedSequenceGenerator {
 
   public static final String SEQUENCE_NAME_SUFFIX = "_SEQ";
 
@@ -46,4 +45,9 @@ public class OracleSequenceGenerator extends SequenceGenerator {
     super.configure(type, params, dialect);
   }
 
+  @Override
+  protected String getPreallocationSql(String sequenceName, int size) {
+    return "SELECT " + sequenceName + ".NEXTVAL FROM DUAL CONNECT BY LEVEL <= " + size;
+  }
+
 }
@@ -21,7 +21,6 @@ package org.sonar.core.persistence.dialect;
 
 import org.hibernate.dialect.Dialect;
 import org.hibernate.id.PersistentIdentifierGenerator;
-import org.hibernate.id.SequenceGenerator;
 import org.hibernate.type.Type;
 
 import java.util.Properties;
@@ -33,7 +32,7 @@ import java.util.Properties;
  *
  * @since 1.10
  */
-public class PostgreSQLSequenceGenerator extends SequenceGenerator {
+public class PostgreSQLSequenceGenerator extends PreallocatedSequenceGenerator {
 
   public static final String SEQUENCE_NAME_SEPARATOR = "_";
   public static final String SEQUENCE_NAME_SUFFIX = "seq";
@@ -59,4 +58,9 @@ public class PostgreSQLSequenceGenerator extends SequenceGenerator {
     super.configure(type, params, dialect);
   }
 
+  @Override
+  protected String getPreallocationSql(String sequenceName, int size) {
+    return "SELECT nextval('" + sequenceName + "') FROM generate_series(1, " + size + ")";
+  }
+
 }
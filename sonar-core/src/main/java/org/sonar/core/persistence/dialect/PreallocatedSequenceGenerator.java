@@ -0,0 +1,98 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.persistence.dialect;
+
+import org.hibernate.HibernateException;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.SessionImplementor;
+import org.hibernate.exception.JDBCExceptionHelper;
+import org.hibernate.id.IdentifierGeneratorFactory;
+import org.hibernate.id.SequenceGenerator;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.Properties;
+
+/**
+ * Sequence generator, which fetches several values of sequence in a single query. It avoids a roundtrip to database
+ * on each insert, so that inserts can be sent in JDBC batches. Values, which are not used, only produce gaps in ids.
+ *
+ * @since 2.15
+ */
+public abstract class PreallocatedSequenceGenerator extends SequenceGenerator {
+
+  public static final int ALLOCATION_SIZE = 50;
+
+  private final LinkedList<Serializable> values = new LinkedList<Serializable>();
+  private Type identifierType;
+  private String preallocationSql;
+
+  @Override
+  public void configure(Type type, Properties params, Dialect dialect) {
+    super.configure(type, params, dialect);
+    this.identifierType = type;
+    this.preallocationSql = getPreallocationSql(getSequenceName(), ALLOCATION_SIZE);
+  }
+
+  /**
+   * @return SQL query, which returns next {@code size} values of sequence - one per row
+   */
+  protected abstract String getPreallocationSql(String sequenceName, int size);
+
+  String getPreallocationSql() {
+    return preallocationSql;
+  }
+
+  @Override
+  public synchronized Serializable generate(SessionImplementor session, Object obj) {
+    if (values.isEmpty()) {
+      preallocate(session);
+    }
+    return values.removeFirst();
+  }
+
+  private void preallocate(SessionImplementor session) {
+    try {
+      PreparedStatement st = session.getBatcher().prepareSelectStatement(preallocationSql);
+      try {
+        ResultSet rs = st.executeQuery();
+        try {
+          while (rs.next()) {
+            values.add(IdentifierGeneratorFactory.get(rs, identifierType));
+          }
+        } finally {
+          rs.close();
+        }
+      } finally {
+        session.getBatcher().closeStatement(st);
+      }
+    } catch (SQLException e) {
+      throw JDBCExceptionHelper.convert(session.getFactory().getSQLExceptionConverter(), e, "could not get next sequence values", preallocationSql);
+    }
+    if (values.isEmpty()) {
+      throw new HibernateException("No values returned by sequence " + getSequenceName());
+    }
+  }
+
+}
@@ -61,12 +61,14 @@ public class PluginFileExtractor {
       }
 
       if (metadata.getPathsToInternalDeps().length > 0) {
-        // needs to unzip the jar
-        ZipUtils.unzip(pluginFile, pluginBasedir, new ZipUtils.ZipEntryFilter() {
-          public boolean accept(ZipEntry entry) {
-            return entry.getName().startsWith("META-INF/lib");
-          }
-        });
+        // needs to unzip the jar, unless it has already been done, for example in a cache of plugins
+        if (!areDependenciesExtracted(metadata, pluginBasedir)) {
+          ZipUtils.unzip(pluginFile, pluginBasedir, new ZipUtils.ZipEntryFilter() {
+            public boolean accept(ZipEntry entry) {
+              return entry.getName().startsWith("META-INF/lib");
+            }
+          });
+        }
         for (String depPath : metadata.getPathsToInternalDeps()) {
           File dependency = new File(pluginBasedir, depPath);
           if (!dependency.isFile() || !dependency.exists()) {
@@ -91,6 +93,15 @@ public class PluginFileExtractor {
     }
   }
 
+  private static boolean areDependenciesExtracted(DefaultPluginMetadata metadata, File pluginBasedir) {
+    for (String depPath : metadata.getPathsToInternalDeps()) {
+      if (!new File(pluginBasedir, depPath).isFile()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public DefaultPluginMetadata extractMetadata(File file, boolean isCore) {
     try {
       PluginManifest manifest = new PluginManifest(file);
@@ -20,14 +20,24 @@
 package org.sonar.core.plugins;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 public class RemotePlugin {
+  private static final String CHECKSUM_SEPARATOR = "|";
+
   private String pluginKey;
   private List<String> filenames = Lists.newArrayList();
+  private Map<String, String> checksumsByFilename = Maps.newHashMap();
   private boolean core;
 
   public RemotePlugin(String pluginKey, boolean core) {
@@ -37,19 +47,33 @@ public class RemotePlugin {
 
   public static RemotePlugin create(DefaultPluginMetadata metadata) {
     RemotePlugin result = new RemotePlugin(metadata.getKey(), metadata.isCore());
-    result.addFilename(metadata.getFile().getName());
+    result.addFilename(metadata.getFile().getName(), checksum(metadata.getFile()));
     for (File file : metadata.getDeprecatedExtensions()) {
-      result.addFilename(file.getName());
+      result.addFilename(file.getName(), checksum(file));
     }
     return result;
   }
 
+  private static String checksum(File file) {
+    InputStream input = null;
+    try {
+      input = new FileInputStream(file);
+      return DigestUtils.md5Hex(input);
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to compute the checksum of the file: " + file, e);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
   public static RemotePlugin unmarshal(String row) {
     String[] fields = StringUtils.split(row, ",");
     RemotePlugin result = new RemotePlugin(fields[0], Boolean.parseBoolean(fields[1]));
     if (fields.length > 2) {
       for (int index = 2; index < fields.length; index++) {
-        result.addFilename(fields[index]);
+        String filename = StringUtils.substringBefore(fields[index], CHECKSUM_SEPARATOR);
+        String checksum = StringUtils.substringAfter(fields[index], CHECKSUM_SEPARATOR);
+        result.addFilename(filename, StringUtils.isEmpty(checksum) ? null : checksum);
       }
     }
     return result;
@@ -61,6 +85,10 @@ public class RemotePlugin {
     sb.append(String.valueOf(core));
     for (String filename : filenames) {
       sb.append(",").append(filename);
+      String checksum = checksumsByFilename.get(filename);
+      if (checksum != null) {
+        sb.append(CHECKSUM_SEPARATOR).append(checksum);
+      }
     }
     return sb.toString();
   }
@@ -75,10 +103,50 @@ public class RemotePlugin {
   }
 
   public RemotePlugin addFilename(String s) {
-    filenames.add(s);
+    return addFilename(s, null);
+  }
+
+  /**
+   * @param checksum MD5 of the file, null if unknown
+   * @since 2.15
+   */
+  public RemotePlugin addFilename(String filename, String checksum) {
+    filenames.add(filename);
+    if (checksum != null) {
+      checksumsByFilename.put(filename, checksum);
+    }
     return this;
   }
 
+  /**
+   * @return MD5 of the file, or null if unknown
+   * @since 2.15
+   */
+  public String getChecksum(String filename) {
+    return checksumsByFilename.get(filename);
+  }
+
+  /**
+   * Identifies the content of all the files of the plugin, for example to cache them.
+   *
+   * @return null if the checksum of a file is unknown
+   * @since 2.15
+   */
+  public String getChecksum() {
+    if (filenames.isEmpty()) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    for (String filename : filenames) {
+      String checksum = checksumsByFilename.get(filename);
+      if (checksum == null) {
+        return null;
+      }
+      sb.append(checksum);
+    }
+    return filenames.size() == 1 ? sb.toString() : DigestUtils.md5Hex(sb.toString());
+  }
+
   public List<String> getFilenames() {
     return filenames;
   }
@@ -20,11 +20,21 @@
 package org.sonar.core.purge;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.ibatis.session.SqlSession;
 
 import java.util.List;
+import java.util.Map;
 
 final class PurgeCommands {
+
+  /**
+   * Maximum number of snapshot ids in a request. The dependencies request uses the ids three times, so it must
+   * stay below the limit of 2100 parameters of SQL Server and below the limit of 1000 elements in a list of Oracle.
+   */
+  static final int MAX_SNAPSHOTS_PER_QUERY = 500;
+
   private PurgeCommands() {
   }
 
@@ -34,9 +44,11 @@ final class PurgeCommands {
     // voluntarily grouped by tables in order to benefit from JDBC batch mode.
     // Batch requests can only relate to the same PreparedStatement.
 
+    List<Long> snapshotIds = Lists.newArrayList();
     for (Long resourceId : resourceIds) {
-      deleteSnapshots(PurgeSnapshotQuery.create().setResourceId(resourceId), session, mapper);
+      snapshotIds.addAll(mapper.selectSnapshotIds(PurgeSnapshotQuery.create().setResourceId(resourceId)));
     }
+    deleteSnapshots(snapshotIds, session, mapper, 0L);
 
     // possible missing optimization: filter requests according to resource scope
 
@@ -103,93 +115,163 @@ final class PurgeCommands {
 
   @VisibleForTesting
   static void deleteSnapshots(final PurgeSnapshotQuery query, final SqlSession session, final PurgeMapper mapper) {
-    deleteSnapshots(mapper.selectSnapshotIds(query), session, mapper);
+    deleteSnapshots(query, session, mapper, 0L);
   }
 
-  private static void deleteSnapshots(final List<Long> snapshotIds, final SqlSession session, final PurgeMapper mapper) {
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshotDependencies(snapshotId);
-    }
-    session.commit();
-
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshotDuplications(snapshotId);
-    }
-    session.commit();
-
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshotEvents(snapshotId);
-    }
-    session.commit();
-
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshotMeasureData(snapshotId);
-    }
-    session.commit();
-
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshotMeasures(snapshotId);
-    }
-    session.commit();
+  static void deleteSnapshots(final PurgeSnapshotQuery query, final SqlSession session, final PurgeMapper mapper, long pauseBetweenChunks) {
+    deleteSnapshots(mapper.selectSnapshotIds(query), session, mapper, pauseBetweenChunks);
+  }
 
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshotSource(snapshotId);
+  private static void deleteSnapshots(final List<Long> snapshotIds, final SqlSession session, final PurgeMapper mapper, long pauseBetweenChunks) {
+    // Each chunk is deleted in a single transaction, snapshots being deleted at the end. If the purge is interrupted,
+    // the remaining snapshots are selected again by the next purge.
+    List<List<Long>> chunks = Lists.partition(snapshotIds, MAX_SNAPSHOTS_PER_QUERY);
+    for (int i = 0; i < chunks.size(); i++) {
+      List<Long> chunk = chunks.get(i);
+      for (SnapshotTable table : SnapshotTable.values()) {
+        table.delete(mapper, chunk);
+      }
+      session.commit();
+      pause(i, chunks.size(), pauseBetweenChunks);
     }
-    session.commit();
+  }
 
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshotViolations(snapshotId);
+  /**
+   * Deletes the snapshots table by table, the snapshots table being the last one. Contrary to
+   * {@link #deleteSnapshots(PurgeSnapshotQuery, SqlSession, PurgeMapper)}, the session must not be a batch session,
+   * so that the numbers of deleted rows are known.
+   *
+   * @return the number of deleted rows, by table
+   */
+  static Map<String, Integer> deleteSnapshotsByTable(final List<Long> snapshotIds, final SqlSession session, final PurgeMapper mapper) {
+    Map<String, Integer> deletedRows = Maps.newLinkedHashMap();
+    List<List<Long>> chunks = Lists.partition(snapshotIds, MAX_SNAPSHOTS_PER_QUERY);
+    for (SnapshotTable table : SnapshotTable.values()) {
+      deletedRows.put(table.getName(), deleteByChunks(table, chunks, session, mapper));
     }
-    session.commit();
+    return deletedRows;
+  }
 
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshot(snapshotId);
+  /**
+   * Deletes the rows of the table in all chunks, then commits.
+   *
+   * @return the number of deleted rows
+   */
+  private static int deleteByChunks(SnapshotTable table, List<List<Long>> chunks, SqlSession session, PurgeMapper mapper) {
+    int rows = 0;
+    for (List<Long> chunk : chunks) {
+      rows += table.delete(mapper, chunk);
     }
-
     session.commit();
+    return rows;
   }
 
   @VisibleForTesting
   static void purgeSnapshots(final PurgeSnapshotQuery query, final SqlSession session, final PurgeMapper mapper) {
-    purgeSnapshots(mapper.selectSnapshotIds(query), session, mapper);
+    purgeSnapshots(query, session, mapper, 0L);
   }
 
-  private static void purgeSnapshots(final List<Long> snapshotIds, final SqlSession session, final PurgeMapper mapper) {
-    // note that events are not deleted
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshotDependencies(snapshotId);
-    }
-    session.commit();
-
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshotDuplications(snapshotId);
-    }
-    session.commit();
+  static void purgeSnapshots(final PurgeSnapshotQuery query, final SqlSession session, final PurgeMapper mapper, long pauseBetweenChunks) {
+    purgeSnapshots(mapper.selectSnapshotIds(query), session, mapper, pauseBetweenChunks);
+  }
 
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshotSource(snapshotId);
+  private static void purgeSnapshots(final List<Long> snapshotIds, final SqlSession session, final PurgeMapper mapper, long pauseBetweenChunks) {
+    // note that events are not deleted. The purge status is updated at the end of each chunk for reentrance.
+    List<List<Long>> chunks = Lists.partition(snapshotIds, MAX_SNAPSHOTS_PER_QUERY);
+    for (int i = 0; i < chunks.size(); i++) {
+      List<Long> chunk = chunks.get(i);
+      mapper.deleteSnapshotDependencies(chunk);
+      mapper.deleteSnapshotDuplications(chunk);
+      mapper.deleteSnapshotSource(chunk);
+      mapper.deleteSnapshotViolations(chunk);
+      mapper.deleteSnapshotWastedMeasures(chunk);
+      mapper.deleteSnapshotMeasuresOnQualityModelRequirements(chunk);
+      mapper.updatePurgeStatusToOne(chunk);
+      session.commit();
+      pause(i, chunks.size(), pauseBetweenChunks);
     }
-    session.commit();
+  }
 
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshotViolations(snapshotId);
+  /**
+   * Tables of snapshots, in order of deletion. The snapshots table must be the last one for reentrance.
+   */
+  private enum SnapshotTable {
+    DEPENDENCIES("dependencies") {
+      @Override
+      int delete(PurgeMapper mapper, List<Long> snapshotIds) {
+        return mapper.deleteSnapshotDependencies(snapshotIds);
+      }
+    },
+    DUPLICATIONS("duplications_index") {
+      @Override
+      int delete(PurgeMapper mapper, List<Long> snapshotIds) {
+        return mapper.deleteSnapshotDuplications(snapshotIds);
+      }
+    },
+    EVENTS("events") {
+      @Override
+      int delete(PurgeMapper mapper, List<Long> snapshotIds) {
+        return mapper.deleteSnapshotEvents(snapshotIds);
+      }
+    },
+    MEASURE_DATA("measure_data") {
+      @Override
+      int delete(PurgeMapper mapper, List<Long> snapshotIds) {
+        return mapper.deleteSnapshotMeasureData(snapshotIds);
+      }
+    },
+    MEASURES("project_measures") {
+      @Override
+      int delete(PurgeMapper mapper, List<Long> snapshotIds) {
+        return mapper.deleteSnapshotMeasures(snapshotIds);
+      }
+    },
+    SOURCES("snapshot_sources") {
+      @Override
+      int delete(PurgeMapper mapper, List<Long> snapshotIds) {
+        return mapper.deleteSnapshotSource(snapshotIds);
+      }
+    },
+    VIOLATIONS("rule_failures") {
+      @Override
+      int delete(PurgeMapper mapper, List<Long> snapshotIds) {
+        return mapper.deleteSnapshotViolations(snapshotIds);
+      }
+    },
+    SNAPSHOTS("snapshots") {
+      @Override
+      int delete(PurgeMapper mapper, List<Long> snapshotIds) {
+        return mapper.deleteSnapshot(snapshotIds);
+      }
+    };
+
+    private final String name;
+
+    SnapshotTable(String name) {
+      this.name = name;
     }
-    session.commit();
 
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshotWastedMeasures(snapshotId);
+    String getName() {
+      return name;
     }
-    session.commit();
 
-    for (Long snapshotId : snapshotIds) {
-      mapper.deleteSnapshotMeasuresOnQualityModelRequirements(snapshotId);
-    }
-    session.commit();
+    /**
+     * @return the number of deleted rows, unknown in batch sessions
+     */
+    abstract int delete(PurgeMapper mapper, List<Long> snapshotIds);
+  }
 
-    for (Long snapshotId : snapshotIds) {
-      mapper.updatePurgeStatusToOne(snapshotId);
+  /**
+   * Throttles the purge in order to limit the load of the database.
+   */
+  private static void pause(int chunkIndex, int chunks, long pauseBetweenChunks) {
+    if (pauseBetweenChunks > 0 && chunkIndex < chunks - 1) {
+      try {
+        Thread.sleep(pauseBetweenChunks);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
     }
-    session.commit();
   }
 
 }
@@ -33,6 +33,7 @@ import org.sonar.core.resource.ResourceDto;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @since 2.14
@@ -48,14 +49,23 @@ public class PurgeDao {
   }
 
   public PurgeDao purge(long rootResourceId, String[] scopesWithoutHistoricalData) {
+    return purge(rootResourceId, scopesWithoutHistoricalData, 0L);
+  }
+
+  /**
+   * @param pauseBetweenChunks pause in milliseconds between two chunks of snapshots, in order to limit the load of
+   *                           the database. Zero to disable.
+   * @since 2.15
+   */
+  public PurgeDao purge(long rootResourceId, String[] scopesWithoutHistoricalData, long pauseBetweenChunks) {
     SqlSession session = mybatis.openBatchSession();
     PurgeMapper purgeMapper = session.getMapper(PurgeMapper.class);
     try {
       List<ResourceDto> projects = getProjects(rootResourceId, session);
       for (ResourceDto project : projects) {
         LOG.info("-> Clean " + project.getLongName() + " [id=" + project.getId() + "]");
-        deleteAbortedBuilds(project, session, purgeMapper);
-        purge(project, scopesWithoutHistoricalData, session, purgeMapper);
+        deleteAbortedBuilds(project, session, purgeMapper, pauseBetweenChunks);
+        purge(project, scopesWithoutHistoricalData, session, purgeMapper, pauseBetweenChunks);
       }
       for (ResourceDto project : projects) {
         disableOrphanResources(project, session, purgeMapper);
@@ -66,15 +76,14 @@ public class PurgeDao {
     return this;
   }
 
-  private void deleteAbortedBuilds(ResourceDto project, SqlSession session, PurgeMapper purgeMapper) {
+  private void deleteAbortedBuilds(ResourceDto project, SqlSession session, PurgeMapper purgeMapper, long pauseBetweenChunks) {
     if (hasAbortedBuilds(project.getId(), purgeMapper)) {
       LOG.info("<- Delete aborted builds");
       PurgeSnapshotQuery query = PurgeSnapshotQuery.create()
           .setIslast(false)
           .setStatus(new String[]{"U"})
           .setRootProjectId(project.getId());
-      PurgeCommands.deleteSnapshots(query, session, purgeMapper);
-      session.commit();
+      PurgeCommands.deleteSnapshots(query, session, purgeMapper, pauseBetweenChunks);
     }
   }
 
@@ -86,7 +95,8 @@ public class PurgeDao {
     return !purgeMapper.selectSnapshotIds(query).isEmpty();
   }
 
-  private void purge(final ResourceDto project, final String[] scopesWithoutHistoricalData, final SqlSession session, final PurgeMapper purgeMapper) {
+  private void purge(final ResourceDto project, final String[] scopesWithoutHistoricalData, final SqlSession session, final PurgeMapper purgeMapper,
+                     long pauseBetweenChunks) {
     List<Long> projectSnapshotIds = purgeMapper.selectSnapshotIds(
         PurgeSnapshotQuery.create().setResourceId(project.getId()).setIslast(false).setNotPurged(true)
     );
@@ -97,17 +107,14 @@ public class PurgeDao {
             .setIslast(false)
             .setScopes(scopesWithoutHistoricalData)
             .setRootSnapshotId(projectSnapshotId);
-        PurgeCommands.deleteSnapshots(query, session, purgeMapper);
-        session.commit();
+        PurgeCommands.deleteSnapshots(query, session, purgeMapper, pauseBetweenChunks);
       }
 
       PurgeSnapshotQuery query = PurgeSnapshotQuery.create().setRootSnapshotId(projectSnapshotId).setNotPurged(true);
-      PurgeCommands.purgeSnapshots(query, session, purgeMapper);
-      session.commit();
+      PurgeCommands.purgeSnapshots(query, session, purgeMapper, pauseBetweenChunks);
 
       // must be executed at the end for reentrance
-      PurgeCommands.purgeSnapshots(PurgeSnapshotQuery.create().setId(projectSnapshotId).setNotPurged(true), session, purgeMapper);
-      session.commit();
+      PurgeCommands.purgeSnapshots(PurgeSnapshotQuery.create().setId(projectSnapshotId).setNotPurged(true), session, purgeMapper, pauseBetweenChunks);
     }
   }
 
@@ -181,6 +188,33 @@ public class PurgeDao {
     }
   }
 
+  /**
+   * Deletes the given snapshots and all the snapshots they are the root of. The rows are deleted table by table,
+   * in a single session.
+   *
+   * @since 2.15
+   */
+  public PurgeDao deleteSnapshotTrees(List<Long> rootSnapshotIds) {
+    SqlSession session = mybatis.openSession();
+    try {
+      PurgeMapper mapper = session.getMapper(PurgeMapper.class);
+      List<Long> snapshotIds = Lists.newArrayList();
+      for (List<Long> chunk : Lists.partition(rootSnapshotIds, PurgeCommands.MAX_SNAPSHOTS_PER_QUERY)) {
+        snapshotIds.addAll(mapper.selectSnapshotIdsByRootSnapshotIds(chunk));
+      }
+      snapshotIds.addAll(rootSnapshotIds);
+
+      Map<String, Integer> deletedRows = PurgeCommands.deleteSnapshotsByTable(snapshotIds, session, mapper);
+      for (Map.Entry<String, Integer> entry : deletedRows.entrySet()) {
+        LOG.info("<- Deleted " + entry.getValue() + " rows from " + entry.getKey());
+      }
+      return this;
+
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+
   /**
    * Load the whole tree of projects, including the project given in parameter.
    */
@@ -19,35 +19,39 @@
  */
 package org.sonar.core.purge;
 
+import org.apache.ibatis.annotations.Param;
+
 import java.util.List;
 
 public interface PurgeMapper {
 
   List<Long> selectSnapshotIds(PurgeSnapshotQuery query);
 
+  List<Long> selectSnapshotIdsByRootSnapshotIds(@Param("rootSnapshotIds") List<Long> rootSnapshotIds);
+
   List<Long> selectProjectIdsByRootId(long rootResourceId);
 
-  void deleteSnapshot(long snapshotId);
+  int deleteSnapshot(@Param("snapshotIds") List<Long> snapshotIds);
 
-  void deleteSnapshotDependencies(long snapshotId);
+  int deleteSnapshotDependencies(@Param("snapshotIds") List<Long> snapshotIds);
 
-  void deleteSnapshotDuplications(long snapshotId);
+  int deleteSnapshotDuplications(@Param("snapshotIds") List<Long> snapshotIds);
 
-  void deleteSnapshotEvents(long snapshotId);
+  int deleteSnapshotEvents(@Param("snapshotIds") List<Long> snapshotIds);
 
-  void deleteSnapshotMeasures(long snapshotId);
+  int deleteSnapshotMeasures(@Param("snapshotIds") List<Long> snapshotIds);
 
-  void deleteSnapshotMeasureData(long snapshotId);
+  int deleteSnapshotMeasureData(@Param("snapshotIds") List<Long> snapshotIds);
 
-  void deleteSnapshotSource(long snapshotId);
+  int deleteSnapshotSource(@Param("snapshotIds") List<Long> snapshotIds);
 
-  void deleteSnapshotViolations(long snapshotId);
+  int deleteSnapshotViolations(@Param("snapshotIds") List<Long> snapshotIds);
 
-  void deleteSnapshotWastedMeasures(long snapshotId);
+  void deleteSnapshotWastedMeasures(@Param("snapshotIds") List<Long> snapshotIds);
 
-  void deleteSnapshotMeasuresOnQualityModelRequirements(long snapshotId);
+  void deleteSnapshotMeasuresOnQualityModelRequirements(@Param("snapshotIds") List<Long> snapshotIds);
 
-  void updatePurgeStatusToOne(long snapshotId);
+  void updatePurgeStatusToOne(@Param("snapshotIds") List<Long> snapshotIds);
 
   void disableResource(long resourceId);
 
@@ -0,0 +1,67 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.violation;
+
+import com.google.common.collect.Sets;
+import org.apache.ibatis.session.SqlSession;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.ServerComponent;
+import org.sonar.core.persistence.MyBatis;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * @since 2.15
+ */
+public class ViolationDao implements BatchComponent, ServerComponent {
+
+  private final MyBatis mybatis;
+
+  public ViolationDao(MyBatis mybatis) {
+    this.mybatis = mybatis;
+  }
+
+  /**
+   * Inserts violations in batch mode : statements are sent and committed by chunks of <code>batchSize</code> rows.
+   * Generated ids are not returned. Violations without permanent id get their own id as permanent id,
+   * which is set by a single update per snapshot instead of a second statement per violation.
+   */
+  public void insert(Collection<ViolationDto> violations, int batchSize) {
+    Set<Integer> snapshotIdsOfNewViolations = Sets.newLinkedHashSet();
+    SqlSession session = mybatis.openBatchSession(batchSize);
+    try {
+      ViolationMapper mapper = session.getMapper(ViolationMapper.class);
+      for (ViolationDto violation : violations) {
+        mapper.batchInsert(violation);
+        if (violation.getPermanentId() == null) {
+          snapshotIdsOfNewViolations.add(violation.getSnapshotId());
+        }
+      }
+      for (Integer snapshotId : snapshotIdsOfNewViolations) {
+        mapper.updateNewPermanentIds(snapshotId);
+      }
+      session.commit();
+
+    } finally {
+      MyBatis.closeQuietly(session);
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.violation;
+
+import java.util.Date;
+
+/**
+ * Row of the table RULE_FAILURES.
+ *
+ * @since 2.15
+ */
+public final class ViolationDto {
+  private Long id;
+  private Integer snapshotId;
+  private Integer ruleId;
+  private Integer priority;
+  private String message;
+  private Integer line;
+  private Double cost;
+  private Date createdAt;
+  private String checksum;
+  private Integer permanentId;
+  private Boolean switchedOff;
+  private Integer personId;
+
+  public Long getId() {
+    return id;
+  }
+
+  public ViolationDto setId(Long id) {
+    this.id = id;
+    return this;
+  }
+
+  public Integer getSnapshotId() {
+    return snapshotId;
+  }
+
+  public ViolationDto setSnapshotId(Integer snapshotId) {
+    this.snapshotId = snapshotId;
+    return this;
+  }
+
+  public Integer getRuleId() {
+    return ruleId;
+  }
+
+  public ViolationDto setRuleId(Integer ruleId) {
+    this.ruleId = ruleId;
+    return this;
+  }
+
+  public Integer getPriority() {
+    return priority;
+  }
+
+  public ViolationDto setPriority(Integer priority) {
+    this.priority = priority;
+    return this;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public ViolationDto setMessage(String message) {
+    this.message = message;
+    return this;
+  }
+
+  public Integer getLine() {
+    return line;
+  }
+
+  public ViolationDto setLine(Integer line) {
+    this.line = line;
+    return this;
+  }
+
+  public Double getCost() {
+    return cost;
+  }
+
+  public ViolationDto setCost(Double cost) {
+    this.cost = cost;
+    return this;
+  }
+
+  public Date getCreatedAt() {
+    return createdAt;
+  }
+
+  public ViolationDto setCreatedAt(Date createdAt) {
+    this.createdAt = createdAt;
+    return this;
+  }
+
+  public String getChecksum() {
+    return checksum;
+  }
+
+  public ViolationDto setChecksum(String checksum) {
+    this.checksum = checksum;
+    return this;
+  }
+
+  public Integer getPermanentId() {
+    return permanentId;
+  }
+
+  public ViolationDto setPermanentId(Integer permanentId) {
+    this.permanentId = permanentId;
+    return this;
+  }
+
+  public Boolean getSwitchedOff() {
+    return switchedOff;
+  }
+
+  public ViolationDto setSwitchedOff(Boolean switchedOff) {
+    this.switchedOff = switchedOff;
+    return this;
+  }
+
+  public Integer getPersonId() {
+    return personId;
+  }
+
+  public ViolationDto setPersonId(Integer personId) {
+    this.personId = personId;
+    return this;
+  }
+}
@@ -19,12 +19,15 @@
  */
 package org.sonar.core.duplication;
 
+import com.google.common.collect.Maps;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.core.persistence.DaoTestCase;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
@@ -39,24 +42,45 @@ public class DuplicationDaoTest extends DaoTestCase {
   }
 
   @Test
-  public void shouldGetByHash() throws Exception {
-    setupData("shouldGetByHash");
+  public void shouldGetByHashWhenHashValueIsMissing() throws Exception {
+    setupData("shouldGetByHashWhenHashValueIsMissing");
 
-    List<DuplicationUnitDto> blocks = dao.selectCandidates(10, 7, "java");
+    List<DuplicationUnitDto> blocks = dao.selectCandidates(Arrays.asList(10), 7, "java");
     assertThat(blocks.size(), is(1));
 
     DuplicationUnitDto block = blocks.get(0);
     assertThat("block resourceId", block.getResourceKey(), is("bar-last"));
-    assertThat("block hash", block.getHash(), is("aa"));
+    assertThat("block hash", block.getHashValue(), is(170L));
     assertThat("block index in file", block.getIndexInFile(), is(0));
     assertThat("block start line", block.getStartLine(), is(1));
     assertThat("block end line", block.getEndLine(), is(2));
 
     // check null for lastSnapshotId
-    blocks = dao.selectCandidates(10, null, "java");
+    blocks = dao.selectCandidates(Arrays.asList(10), null, "java");
     assertThat(blocks.size(), is(2));
   }
 
+  @Test
+  public void shouldGetByHashValueForSeveralResources() throws Exception {
+    setupData("shouldGetByHashValue");
+
+    List<DuplicationUnitDto> blocks = dao.selectCandidates(Arrays.asList(10), 7, "java");
+    assertThat(blocks.size(), is(1));
+
+    DuplicationUnitDto block = blocks.get(0);
+    assertThat("block resourceId", block.getResourceKey(), is("bar-last"));
+    assertThat("block hash", block.getHashValue(), is(170L));
+    assertThat("block index in file", block.getIndexInFile(), is(0));
+    assertThat("block start line", block.getStartLine(), is(1));
+    assertThat("block end line", block.getEndLine(), is(2));
+
+    blocks = dao.selectCandidates(Arrays.asList(10, 12), 7, "java");
+    assertThat(blocks.size(), is(2));
+
+    blocks = dao.selectCandidates(Collections.<Integer>emptyList(), 7, "java");
+    assertThat(blocks.size(), is(0));
+  }
+
   @Test
   public void shouldInsert() throws Exception {
     setupData("shouldInsert");
@@ -66,4 +90,63 @@ public class DuplicationDaoTest extends DaoTestCase {
     checkTables("shouldInsert", "duplications_index");
   }
 
+  @Test
+  public void shouldInsertHashValue() throws Exception {
+    setupData("shouldInsert");
+
+    DuplicationUnitDto unit = new DuplicationUnitDto(1, 2, "bb", 0, 1, 2);
+    unit.setHashValue(187L);
+    dao.insert(Arrays.asList(unit));
+
+    checkTables("shouldInsertHashValue", "duplications_index");
+  }
+
+  @Test
+  public void shouldInsertFileHash() throws Exception {
+    setupData("shouldInsert");
+
+    DuplicationUnitDto unit = new DuplicationUnitDto(1, 2, "bb", 0, 1, 2);
+    unit.setHashValue(187L);
+    unit.setFileHash(1000L);
+    dao.insert(Arrays.asList(unit));
+
+    checkTables("shouldInsertFileHash", "duplications_index");
+  }
+
+  @Test
+  public void shouldSelectFileHashes() throws Exception {
+    setupData("shouldSelectFileHashes");
+
+    List<DuplicationUnitDto> files = dao.selectFileHashes(7);
+    assertThat(files.size(), is(2));
+
+    Map<String, DuplicationUnitDto> filesByKey = Maps.newHashMap();
+    for (DuplicationUnitDto file : files) {
+      filesByKey.put(file.getResourceKey(), file);
+    }
+    assertThat(filesByKey.get("foo-last").getSnapshotId(), is(8));
+    assertThat(filesByKey.get("foo-last").getFileHash(), is(1000L));
+    assertThat(filesByKey.get("bar-last").getSnapshotId(), is(9));
+    assertThat(filesByKey.get("bar-last").getFileHash(), is(2000L));
+  }
+
+  @Test
+  public void shouldSelectUnitsOfSeveralSnapshots() throws Exception {
+    setupData("shouldSelectFileHashes");
+
+    List<DuplicationUnitDto> blocks = dao.selectUnits(Arrays.asList(8, 9));
+    assertThat(blocks.size(), is(3));
+
+    DuplicationUnitDto block = blocks.get(0);
+    assertThat("block snapshot", block.getSnapshotId(), is(8));
+    assertThat("block hash", block.getHashValue(), is(187L));
+    assertThat("block index in file", block.getIndexInFile(), is(0));
+    assertThat("block start line", block.getStartLine(), is(1));
+    assertThat("block end line", block.getEndLine(), is(2));
+    assertThat(blocks.get(1).getIndexInFile(), is(1));
+    assertThat(blocks.get(2).getSnapshotId(), is(9));
+
+    assertThat(dao.selectUnits(Collections.<Integer>emptyList()).size(), is(0));
+  }
+
 }
@@ -0,0 +1,75 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.measure;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.core.persistence.DaoTestCase;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class MeasureDaoTest extends DaoTestCase {
+
+  private MeasureDao dao;
+
+  @Before
+  public void createDao() {
+    dao = new MeasureDao(getMyBatis());
+  }
+
+  @Test
+  public void shouldInsertInBatchMode() {
+    setupData("empty");
+
+    MeasureDto ncloc = new MeasureDto().setSnapshotId(10).setMetricId(1).setValue(1234.0);
+    MeasureDto alert = new MeasureDto().setSnapshotId(11).setMetricId(2).setValue(50.0).setTextValue("short").setAlertStatus("WARN")
+        .setAlertText("too low").setRuleId(5).setRulePriority(2).setVariation1(3.0).setVariation5(-1.5);
+    MeasureDto other = new MeasureDto().setSnapshotId(11).setMetricId(1).setValue(30.0);
+    // batch is flushed twice
+    dao.insert(Arrays.asList(ncloc, alert, other), 2);
+
+    checkTables("shouldInsertInBatchMode", new String[]{"id"}, "project_measures");
+    assertThat(ncloc.getId(), nullValue());
+  }
+
+  @Test
+  public void shouldInsertData() {
+    setupData("empty");
+
+    MeasureDto measure = new MeasureDto().setSnapshotId(10).setMetricId(3).setData("long data".getBytes());
+    dao.insert(Arrays.asList(measure), 10);
+
+    assertThat(measure.getId(), notNullValue());
+    checkTables("shouldInsertData", new String[]{"id", "measure_id", "data"}, "project_measures", "measure_data");
+  }
+
+  @Test
+  public void shouldNotFailIfNoMeasures() {
+    setupData("empty");
+
+    dao.insert(Arrays.<MeasureDto>asList(), 10);
+
+    assertEmptyTables("project_measures", "measure_data");
+  }
+}
@@ -19,11 +19,16 @@
  */
 package org.sonar.core.notification;
 
+import com.google.common.collect.Sets;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.notifications.Notification;
 import org.sonar.jpa.test.AbstractDbUnitTestCase;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
@@ -48,6 +53,44 @@ public class DefaultNotificationManagerTest extends AbstractDbUnitTestCase {
     assertThat(manager.getFromQueue(), nullValue());
   }
 
+  @Test
+  public void shouldGetFromQueueByBatches() {
+    Notification first = new Notification("first");
+    Notification second = new Notification("second");
+    Notification third = new Notification("third");
+    manager.scheduleForSending(first);
+    manager.scheduleForSending(second);
+    manager.scheduleForSending(third);
+
+    // notifications may be created in the same millisecond, so their order is not checked
+    Set<Notification> notifications = Sets.newHashSet();
+    List<NotificationQueueElement> batch = manager.getFromQueue(2);
+    assertThat(batch.size(), is(2));
+    notifications.add(batch.get(0).getNotification());
+    notifications.add(batch.get(1).getNotification());
+
+    batch = manager.getFromQueue(2);
+    assertThat(batch.size(), is(1));
+    notifications.add(batch.get(0).getNotification());
+    assertThat(notifications, is((Set<Notification>) Sets.newHashSet(first, second, third)));
+
+    assertThat(manager.getFromQueue(2).isEmpty(), is(true));
+  }
+
+  @Test
+  public void shouldLoadPreferencesOfSeveralUsers() {
+    setupData("fixture");
+    NotificationPreferences preferences = manager.getPreferences(Arrays.asList("simon", "godin", "unknown"));
+
+    assertThat(preferences.isEnabled("simon", "email", "CommentOnReviewAssignedToMe"), is(true));
+    assertThat(preferences.isEnabled("simon", "gtalk", "CommentOnReviewCreatedByMe"), is(true));
+    assertThat(preferences.isEnabled("simon", "email", "CommentOnReviewCreatedByMe"), is(false));
+    assertThat(preferences.isEnabled("godin", "email", "CommentOnReviewAssignedToMe"), is(false));
+    assertThat(preferences.isEnabled("unknown", "email", "CommentOnReviewAssignedToMe"), is(false));
+    // not requested
+    assertThat(preferences.isEnabled("freddy", "email", "CommentOnReviewAssignedToMe"), is(false));
+  }
+
   @Test
   public void shouldCheckEnablement() {
     setupData("fixture");
@@ -40,4 +40,15 @@ public class OracleSequenceGeneratorTest {
     assertThat(generator.getSequenceName(), is("MY_TABLE_SEQ"));
   }
 
+  @Test
+  public void shouldPreallocateSeveralValuesInSingleQuery() {
+    Properties props = new Properties();
+    props.setProperty(PersistentIdentifierGenerator.TABLE, "my_table");
+    props.setProperty(PersistentIdentifierGenerator.PK, "id");
+
+    OracleSequenceGenerator generator = new OracleSequenceGenerator();
+    generator.configure(null, props, new Oracle.Oracle10gWithDecimalDialect());
+    assertThat(generator.getPreallocationSql(), is("SELECT MY_TABLE_SEQ.NEXTVAL FROM DUAL CONNECT BY LEVEL <= 50"));
+  }
+
 }
@@ -40,4 +40,15 @@ public class PostgreSQLSequenceGeneratorTest {
     assertThat(generator.getSequenceName(), is("my_table_id_seq"));
   }
 
+  @Test
+  public void shouldPreallocateSeveralValuesInSingleQuery() {
+    Properties props = new Properties();
+    props.setProperty(PersistentIdentifierGenerator.TABLE, "my_table");
+    props.setProperty(PersistentIdentifierGenerator.PK, "id");
+
+    PostgreSQLSequenceGenerator generator = new PostgreSQLSequenceGenerator();
+    generator.configure(null, props, new PostgreSql.PostgreSQLWithDecimalDialect());
+    assertThat(generator.getPreallocationSql(), is("SELECT nextval('my_table_id_seq') FROM generate_series(1, 50)"));
+  }
+
 }
@@ -22,6 +22,8 @@ package org.sonar.core.plugins;
 import org.junit.Test;
 
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
 import static org.junit.matchers.JUnitMatchers.hasItems;
 
@@ -72,4 +74,38 @@ public class RemotePluginTest {
     assertThat(checkstyle.getFilenames().size(), is(3));
     assertThat(checkstyle.getFilenames(), hasItems("checkstyle-2.8.jar", "ext.xml", "ext.jar"));
   }
+
+  @Test
+  public void shouldMarshalChecksums() {
+    RemotePlugin checkstyle = new RemotePlugin("checkstyle", true);
+    checkstyle.addFilename("checkstyle-2.8.jar", "abcde");
+    checkstyle.addFilename("ext.xml", "fghij");
+
+    String text = checkstyle.marshal();
+    assertThat(text, is("checkstyle,true,checkstyle-2.8.jar|abcde,ext.xml|fghij"));
+  }
+
+  @Test
+  public void shouldUnmarshalChecksums() {
+    RemotePlugin checkstyle = RemotePlugin.unmarshal("checkstyle,true,checkstyle-2.8.jar|abcde,ext.xml|fghij");
+    assertThat(checkstyle.getFilenames().size(), is(2));
+    assertThat(checkstyle.getFilenames(), hasItems("checkstyle-2.8.jar", "ext.xml"));
+    assertThat(checkstyle.getChecksum("checkstyle-2.8.jar"), is("abcde"));
+    assertThat(checkstyle.getChecksum("ext.xml"), is("fghij"));
+  }
+
+  @Test
+  public void shouldComputeChecksumOfPlugin() {
+    assertThat(RemotePlugin.unmarshal("clirr,false,clirr-1.1.jar|abcde").getChecksum(), is("abcde"));
+
+    String checksum = RemotePlugin.unmarshal("checkstyle,true,checkstyle-2.8.jar|abcde,ext.xml|fghij").getChecksum();
+    assertThat(checksum.length(), is(32));
+    assertThat(checksum, not(is(RemotePlugin.unmarshal("checkstyle,true,checkstyle-2.8.jar|abcde,ext.xml|fghik").getChecksum())));
+  }
+
+  @Test
+  public void shouldNotHaveChecksumIfUnknownFileChecksum() {
+    assertThat(RemotePlugin.unmarshal("clirr,false,clirr-1.1.jar").getChecksum(), nullValue());
+    assertThat(RemotePlugin.unmarshal("checkstyle,true,checkstyle-2.8.jar|abcde,ext.xml").getChecksum(), nullValue());
+  }
 }
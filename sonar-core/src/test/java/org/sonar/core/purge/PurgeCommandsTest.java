@@ -19,12 +19,16 @@
  */
 package org.sonar.core.purge;
 
+import com.google.common.collect.Lists;
 import org.apache.ibatis.session.SqlSession;
 import org.junit.Test;
 import org.sonar.core.persistence.DaoTestCase;
 import org.sonar.core.persistence.MyBatis;
 
 import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
 
 public class PurgeCommandsTest extends DaoTestCase {
   /**
@@ -74,6 +78,25 @@ public class PurgeCommandsTest extends DaoTestCase {
     checkTables("shouldDeleteWastedMeasuresWhenPurgingSnapshot", "project_measures");
   }
 
+  @Test
+  public void shouldDeleteSnapshotsByChunks() {
+    PurgeMapper mapper = mock(PurgeMapper.class);
+    SqlSession session = mock(SqlSession.class);
+    List<Long> snapshotIds = Lists.newArrayList();
+    for (long id = 1; id <= PurgeCommands.MAX_SNAPSHOTS_PER_QUERY + 10; id++) {
+      snapshotIds.add(id);
+    }
+    PurgeSnapshotQuery query = PurgeSnapshotQuery.create().setRootSnapshotId(1L);
+    when(mapper.selectSnapshotIds(query)).thenReturn(snapshotIds);
+
+    PurgeCommands.deleteSnapshots(query, session, mapper);
+
+    verify(mapper).deleteSnapshot(snapshotIds.subList(0, PurgeCommands.MAX_SNAPSHOTS_PER_QUERY));
+    verify(mapper).deleteSnapshot(snapshotIds.subList(PurgeCommands.MAX_SNAPSHOTS_PER_QUERY, snapshotIds.size()));
+    verify(mapper, times(2)).deleteSnapshotMeasures(anyListOf(Long.class));
+    verify(session, times(2)).commit();
+  }
+
   @Test
   public void shouldDeleteResource() {
     setupData("shouldDeleteResource");
@@ -29,6 +29,7 @@ import org.sonar.core.persistence.DaoTestCase;
 import org.sonar.core.persistence.MyBatis;
 import org.sonar.core.resource.ResourceDao;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.Matchers.is;
@@ -97,6 +98,13 @@ public class PurgeDaoTest extends DaoTestCase {
     checkTables("shouldDeleteSnapshots", "snapshots");
   }
 
+  @Test
+  public void shouldDeleteSnapshotTrees() {
+    setupData("shouldDeleteSnapshotTrees");
+    dao.deleteSnapshotTrees(Arrays.asList(1L));
+    checkTables("shouldDeleteSnapshotTrees", "snapshots", "project_measures");
+  }
+
   @Test
   public void shouldSelectPurgeableSnapshots() {
     setupData("shouldSelectPurgeableSnapshots");
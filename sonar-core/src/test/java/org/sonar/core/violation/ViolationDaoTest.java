@@ -0,0 +1,61 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.core.violation;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.utils.DateUtils;
+import org.sonar.core.persistence.DaoTestCase;
+
+import java.util.Arrays;
+
+public class ViolationDaoTest extends DaoTestCase {
+
+  private ViolationDao dao;
+
+  @Before
+  public void createDao() {
+    dao = new ViolationDao(getMyBatis());
+  }
+
+  @Test
+  public void shouldInsertInBatchMode() {
+    setupData("shared");
+
+    ViolationDto tracked = new ViolationDto().setSnapshotId(1001).setRuleId(30).setPriority(3).setMessage("old message").setLine(12)
+        .setChecksum("abc").setCreatedAt(DateUtils.parseDate("2008-11-01")).setPermanentId(1).setSwitchedOff(false);
+    ViolationDto created = new ViolationDto().setSnapshotId(1001).setRuleId(31).setPriority(1).setMessage("new message").setLine(20)
+        .setCost(5.5).setCreatedAt(DateUtils.parseDate("2010-12-25")).setSwitchedOff(false);
+    ViolationDto switchedOff = new ViolationDto().setSnapshotId(1002).setRuleId(31).setPriority(1).setSwitchedOff(true).setPersonId(7);
+    // batch is flushed twice
+    dao.insert(Arrays.asList(tracked, created, switchedOff), 2);
+
+    checkTables("shouldInsertInBatchMode", "rule_failures");
+  }
+
+  @Test
+  public void shouldNotFailIfNoViolations() {
+    setupData("shared");
+
+    dao.insert(Arrays.<ViolationDto>asList(), 10);
+
+    checkTables("shouldNotFailIfNoViolations", "rule_failures");
+  }
+}
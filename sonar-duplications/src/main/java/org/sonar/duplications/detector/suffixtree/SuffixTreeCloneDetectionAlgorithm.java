@@ -20,9 +20,12 @@
 package org.sonar.duplications.detector.suffixtree;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
+import org.sonar.duplications.index.AbstractCloneIndex;
+import org.sonar.duplications.index.BlockCursor;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.CloneIndex;
 
@@ -46,6 +49,17 @@ public final class SuffixTreeCloneDetectionAlgorithm {
   private SuffixTreeCloneDetectionAlgorithm() {
   }
 
+  /**
+   * Allows to stop detection for a file, which was cancelled by interruption of thread - for example after timeout.
+   *
+   * @throws CancellationException if current thread was interrupted
+   */
+  static void checkInterrupted() {
+    if (Thread.interrupted()) {
+      throw new CancellationException("Detection of duplications was interrupted");
+    }
+  }
+
   private static TextSet createTextSet(CloneIndex index, Collection<Block> fileBlocks) {
     Set<ByteArray> hashes = Sets.newHashSet();
     for (Block fileBlock : fileBlocks) {
@@ -89,17 +103,18 @@ public final class SuffixTreeCloneDetectionAlgorithm {
   private static Map<String, List<Block>> retrieveFromIndex(CloneIndex index, String originResourceId, Set<ByteArray> hashes) {
     Map<String, List<Block>> collection = Maps.newHashMap();
     for (ByteArray hash : hashes) {
-      Collection<Block> blocks = index.getBySequenceHash(hash);
-      for (Block blockFromIndex : blocks) {
-        // Godin: skip blocks for this file if they come from index
-        String resourceId = blockFromIndex.getResourceId();
+      checkInterrupted();
+      BlockCursor cursor = AbstractCloneIndex.cursorBySequenceHash(index, hash);
+      while (cursor.next()) {
+        // Godin: skip blocks for this file if they come from index, without creation of objects for them
+        String resourceId = cursor.getResourceId();
         if (!originResourceId.equals(resourceId)) {
           List<Block> list = collection.get(resourceId);
           if (list == null) {
             list = Lists.newArrayList();
             collection.put(resourceId, list);
           }
-          list.add(blockFromIndex);
+          list.add(cursor.toBlock());
         }
       }
     }
@@ -19,6 +19,66 @@
  */
 package org.sonar.duplications.index;
 
+import com.google.common.collect.Lists;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+
+import java.util.List;
+
 public abstract class AbstractCloneIndex implements CloneIndex {
 
+  /**
+   * Same as {@link #getByResourceId(String)}, but without creation of blocks.
+   * Default implementation iterates over result of {@link #getByResourceId(String)}.
+   *
+   * @since 2.15
+   */
+  public BlockCursor cursorByResourceId(String resourceId) {
+    return new CollectionBlockCursor(getByResourceId(resourceId));
+  }
+
+  /**
+   * Same as {@link #getBySequenceHash(ByteArray)}, but without creation of blocks.
+   * Default implementation iterates over result of {@link #getBySequenceHash(ByteArray)}.
+   *
+   * @since 2.15
+   */
+  public BlockCursor cursorBySequenceHash(ByteArray hash) {
+    return new CollectionBlockCursor(getBySequenceHash(hash));
+  }
+
+  /**
+   * Allows to use cursors with any implementation of {@link CloneIndex}.
+   *
+   * @return cursor of specified index, if it extends this class, otherwise cursor over result of {@link CloneIndex#getBySequenceHash(ByteArray)}
+   * @since 2.15
+   */
+  public static BlockCursor cursorBySequenceHash(CloneIndex index, ByteArray hash) {
+    if (index instanceof AbstractCloneIndex) {
+      return ((AbstractCloneIndex) index).cursorBySequenceHash(hash);
+    }
+    return new CollectionBlockCursor(index.getBySequenceHash(hash));
+  }
+
+  /**
+   * @return new list with blocks from specified cursor
+   * @since 2.15
+   */
+  protected static List<Block> toList(BlockCursor cursor) {
+    List<Block> result = Lists.newArrayList();
+    while (cursor.next()) {
+      result.add(cursor.toBlock());
+    }
+    return result;
+  }
+
+  /**
+   * Prepares index for queries. After invocation of this method queries can be performed concurrently,
+   * as long as no more blocks are inserted. Default implementation does nothing.
+   *
+   * @since 2.15
+   */
+  public void freeze() {
+  }
+
 }
@@ -0,0 +1,78 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.duplications.index;
+
+import org.sonar.duplications.block.Block;
+
+/**
+ * Cursor over blocks found in {@link AbstractCloneIndex}. Allows to inspect blocks without creation of objects,
+ * so that {@link #toBlock()} can be invoked only for blocks, which should be kept.
+ * <p>
+ * Typical usage:
+ * <pre>
+ * BlockCursor cursor = index.cursorBySequenceHash(hash);
+ * while (cursor.next()) {
+ *   if (!resourceId.equals(cursor.getResourceId())) {
+ *     result.add(cursor.toBlock());
+ *   }
+ * }
+ * </pre>
+ * Values are available only after {@link #next()} returned true. Cursor is not thread-safe.
+ * </p>
+ *
+ * @since 2.15
+ */
+public interface BlockCursor {
+
+  /**
+   * Moves cursor to the next block.
+   *
+   * @return false, if there is no more blocks
+   */
+  boolean next();
+
+  String getResourceId();
+
+  /**
+   * @return number of ints in hash of block
+   */
+  int getHashWords();
+
+  /**
+   * @return int from hash of block in specified position, where most significant int has position 0
+   */
+  int getHashWord(int index);
+
+  int getIndexInFile();
+
+  int getStartLine();
+
+  int getEndLine();
+
+  int getStartUnit();
+
+  int getEndUnit();
+
+  /**
+   * @return new block with values of current position
+   */
+  Block toBlock();
+
+}
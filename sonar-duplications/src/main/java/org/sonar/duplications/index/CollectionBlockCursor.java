@@ -0,0 +1,93 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.duplications.index;
+
+import org.sonar.duplications.block.Block;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Adapts collection of blocks to {@link BlockCursor}.
+ */
+class CollectionBlockCursor implements BlockCursor {
+
+  private final Iterator<Block> iterator;
+  private Block current;
+  private int[] hash;
+
+  CollectionBlockCursor(Collection<Block> blocks) {
+    this.iterator = blocks.iterator();
+  }
+
+  public boolean next() {
+    if (!iterator.hasNext()) {
+      current = null;
+      return false;
+    }
+    current = iterator.next();
+    hash = null;
+    return true;
+  }
+
+  public String getResourceId() {
+    return current.getResourceId();
+  }
+
+  public int getHashWords() {
+    return getHash().length;
+  }
+
+  public int getHashWord(int index) {
+    return getHash()[index];
+  }
+
+  private int[] getHash() {
+    if (hash == null) {
+      hash = current.getBlockHash().toIntArray();
+    }
+    return hash;
+  }
+
+  public int getIndexInFile() {
+    return current.getIndexInFile();
+  }
+
+  public int getStartLine() {
+    return current.getStartLine();
+  }
+
+  public int getEndLine() {
+    return current.getEndLine();
+  }
+
+  public int getStartUnit() {
+    return current.getStartUnit();
+  }
+
+  public int getEndUnit() {
+    return current.getEndUnit();
+  }
+
+  public Block toBlock() {
+    return current;
+  }
+
+}
@@ -0,0 +1,518 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.duplications.index;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.duplications.DuplicationsException;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides an index, which stores blocks outside of Java heap in memory-mapped files,
+ * so that heap consumption does not depend on number of blocks.
+ * <p>
+ * Each block is stored as a fixed-size record of ints. Records are sorted by hash in place,
+ * and position of each record is tracked by a separate mapped file, which is used to find blocks by resource.
+ * Resource ids are kept in a dictionary on heap, so its size depends only on number of resources.
+ * Note that this requires that all blocks of one resource are inserted consecutively.
+ * </p>
+ * <p>
+ * Insertions are not thread-safe, however after {@link #freeze()} queries can be performed concurrently.
+ * Index can be emptied by {@link #clear()} to be reused without remapping of files, and must be released by {@link #close()}.
+ * </p>
+ *
+ * @since 2.15
+ */
+public class MappedCloneIndex extends AbstractCloneIndex {
+
+  private static final int DEFAULT_SEGMENT_RECORDS = 64 * 1024;
+
+  /**
+   * Record contains hash followed by: ordinal of insertion, resource, index in file, start line, end line, start unit and end unit.
+   */
+  private static final int BLOCK_INTS = 7;
+
+  private final int hashInts;
+
+  private final MappedRecords records;
+
+  /**
+   * Position of record by ordinal of its insertion.
+   */
+  private final MappedRecords positions;
+
+  /**
+   * Indicates that index requires sorting to perform queries.
+   */
+  private volatile boolean sorted;
+
+  /**
+   * Current number of blocks in index.
+   */
+  private int size;
+
+  private final List<String> resourceIds = Lists.newArrayList();
+  private final Map<String, Integer> resourceIndexById = Maps.newHashMap();
+  private int[] firstOrdinals = new int[16];
+  private int[] blocksCount = new int[16];
+
+  public MappedCloneIndex(File dir) {
+    this(dir, 8, DEFAULT_SEGMENT_RECORDS);
+  }
+
+  /**
+   * @param dir directory for files of index
+   * @param hashBytes size of hash in bytes
+   * @param segmentRecords number of records, which are mapped at once
+   */
+  public MappedCloneIndex(File dir, int hashBytes, int segmentRecords) {
+    this.hashInts = hashBytes / 4;
+    this.records = new MappedRecords(new File(dir, "cpd-blocks-" + System.nanoTime()), hashInts + BLOCK_INTS, segmentRecords);
+    this.positions = new MappedRecords(new File(dir, "cpd-positions-" + System.nanoTime()), 1, segmentRecords);
+    this.sorted = false;
+    this.size = 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Blocks are sorted by index, if they were inserted in this order.</strong>
+   * </p>
+   */
+  public Collection<Block> getByResourceId(String resourceId) {
+    return toList(cursorByResourceId(resourceId));
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
+    return toList(cursorBySequenceHash(sequenceHash));
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Blocks are sorted by index, if they were inserted in this order.</strong>
+   * </p>
+   */
+  @Override
+  public BlockCursor cursorByResourceId(String resourceId) {
+    ensureSorted();
+
+    Integer resourceIndex = resourceIndexById.get(resourceId);
+    if (resourceIndex == null) {
+      return new ResourceCursor(resourceId, 0, 0);
+    }
+    int first = firstOrdinals[resourceIndex];
+    return new ResourceCursor(resourceId, first, first + blocksCount[resourceIndex]);
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * All blocks created by returned cursor share specified instance of hash.
+   * </p>
+   */
+  @Override
+  public BlockCursor cursorBySequenceHash(ByteArray sequenceHash) {
+    ensureSorted();
+
+    int[] hash = sequenceHash.toIntArray();
+    if (hash.length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
+    }
+
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return new HashCursor(sequenceHash, hash, lower);
+  }
+
+  /**
+   * Reads values of current block directly from mapped records.
+   */
+  private abstract class MappedCursor implements BlockCursor {
+    /**
+     * Position of current record.
+     */
+    protected int position;
+
+    private Block.Builder blockBuilder;
+
+    public String getResourceId() {
+      return resourceIds.get(records.get(position, hashInts + 1));
+    }
+
+    public int getHashWords() {
+      return hashInts;
+    }
+
+    public int getHashWord(int index) {
+      return records.get(position, index);
+    }
+
+    public int getIndexInFile() {
+      return records.get(position, hashInts + 2);
+    }
+
+    public int getStartLine() {
+      return records.get(position, hashInts + 3);
+    }
+
+    public int getEndLine() {
+      return records.get(position, hashInts + 4);
+    }
+
+    public int getStartUnit() {
+      return records.get(position, hashInts + 5);
+    }
+
+    public int getEndUnit() {
+      return records.get(position, hashInts + 6);
+    }
+
+    protected abstract ByteArray getBlockHash();
+
+    public Block toBlock() {
+      if (blockBuilder == null) {
+        blockBuilder = Block.builder();
+      }
+      return blockBuilder
+          .setResourceId(getResourceId())
+          .setBlockHash(getBlockHash())
+          .setIndexInFile(getIndexInFile())
+          .setLines(getStartLine(), getEndLine())
+          .setUnit(getStartUnit(), getEndUnit())
+          .build();
+    }
+  }
+
+  private final class ResourceCursor extends MappedCursor {
+    private final String resourceId;
+    private int ordinal;
+    private final int end;
+
+    ResourceCursor(String resourceId, int first, int end) {
+      this.resourceId = resourceId;
+      this.ordinal = first;
+      this.end = end;
+    }
+
+    public boolean next() {
+      if (ordinal >= end) {
+        return false;
+      }
+      position = positions.get(ordinal, 0);
+      ordinal++;
+      return true;
+    }
+
+    @Override
+    public String getResourceId() {
+      return resourceId;
+    }
+
+    @Override
+    protected ByteArray getBlockHash() {
+      int[] hash = new int[hashInts];
+      for (int j = 0; j < hashInts; j++) {
+        hash[j] = records.get(position, j);
+      }
+      return new ByteArray(hash);
+    }
+  }
+
+  private final class HashCursor extends MappedCursor {
+    private final ByteArray sequenceHash;
+    private final int[] hash;
+
+    /**
+     * Position of next record.
+     */
+    private int next;
+
+    HashCursor(ByteArray sequenceHash, int[] hash, int next) {
+      this.sequenceHash = sequenceHash;
+      this.hash = hash;
+      this.next = next;
+    }
+
+    public boolean next() {
+      if (next >= size || compareHash(next, hash) != 0) {
+        next = size;
+        return false;
+      }
+      position = next;
+      next++;
+      return true;
+    }
+
+    @Override
+    protected ByteArray getBlockHash() {
+      return sequenceHash;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Note that all blocks of one resource must be inserted consecutively.</strong>
+   * </p>
+   */
+  public void insert(Block block) {
+    int[] hash = block.getBlockHash().toIntArray();
+    if (hash.length != hashInts) {
+      throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
+    }
+    int resourceIndex = getResourceIndex(block.getResourceId());
+
+    sorted = false;
+    records.ensureCapacity(size + 1);
+    for (int i = 0; i < hashInts; i++) {
+      records.put(size, i, hash[i]);
+    }
+    records.put(size, hashInts, size);
+    records.put(size, hashInts + 1, resourceIndex);
+    records.put(size, hashInts + 2, block.getIndexInFile());
+    records.put(size, hashInts + 3, block.getStartLine());
+    records.put(size, hashInts + 4, block.getEndLine());
+    records.put(size, hashInts + 5, block.getStartUnit());
+    records.put(size, hashInts + 6, block.getEndUnit());
+
+    blocksCount[resourceIndex]++;
+    size++;
+  }
+
+  private int getResourceIndex(String resourceId) {
+    Integer resourceIndex = resourceIndexById.get(resourceId);
+    if (resourceIndex == null) {
+      resourceIndex = resourceIds.size();
+      resourceIds.add(resourceId);
+      resourceIndexById.put(resourceId, resourceIndex);
+      if (resourceIndex == firstOrdinals.length) {
+        int newCapacity = firstOrdinals.length * 2;
+        firstOrdinals = copyOf(firstOrdinals, newCapacity);
+        blocksCount = copyOf(blocksCount, newCapacity);
+      }
+      firstOrdinals[resourceIndex] = size;
+      blocksCount[resourceIndex] = 0;
+    } else if (resourceIndex != resourceIds.size() - 1) {
+      throw new IllegalStateException("Blocks of resource '" + resourceId + "' must be inserted consecutively");
+    }
+    return resourceIndex;
+  }
+
+  private static int[] copyOf(int[] array, int newLength) {
+    int[] result = new int[newLength];
+    System.arraycopy(array, 0, result, 0, array.length);
+    return result;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void freeze() {
+    ensureSorted();
+  }
+
+  /**
+   * Removes all blocks from index. Files remain mapped, so that index can be filled again without additional allocations.
+   */
+  public void clear() {
+    size = 0;
+    resourceIds.clear();
+    resourceIndexById.clear();
+    sorted = false;
+  }
+
+  /**
+   * Releases files of this index. Index can not be used after invocation of this method.
+   */
+  public void close() {
+    clear();
+    records.close();
+    positions.close();
+  }
+
+  /**
+   * @return current number of blocks in index
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Performs sorting, if necessary.
+   */
+  private void ensureSorted() {
+    if (sorted) {
+      return;
+    }
+    synchronized (this) {
+      if (sorted) {
+        return;
+      }
+
+      DataUtils.sort(byBlockHash);
+      positions.ensureCapacity(size);
+      for (int position = 0; position < size; position++) {
+        positions.put(records.get(position, hashInts), 0, position);
+      }
+
+      sorted = true;
+    }
+  }
+
+  /**
+   * Compares hash of record in specified position with specified hash as signed ints, same as {@link PackedMemoryCloneIndex}.
+   */
+  private int compareHash(int position, int[] hash) {
+    for (int k = 0; k < hashInts; k++) {
+      int value = records.get(position, k);
+      if (value < hash[k]) {
+        return -1;
+      }
+      if (value > hash[k]) {
+        return 1;
+      }
+    }
+    return 0;
+  }
+
+  private final DataUtils.Sortable byBlockHash = new DataUtils.Sortable() {
+    public void swap(int i, int j) {
+      records.swap(i, j);
+    }
+
+    public boolean isLess(int i, int j) {
+      for (int k = 0; k < hashInts; k++) {
+        int x = records.get(i, k);
+        int y = records.get(j, k);
+        if (x < y) {
+          return true;
+        }
+        if (x > y) {
+          return false;
+        }
+      }
+      return false;
+    }
+
+    public int size() {
+      return size;
+    }
+  };
+
+  /**
+   * Fixed-size records of ints, which are stored in a file mapped by segments, so that growth does not require copying.
+   */
+  private static final class MappedRecords {
+    private final File file;
+    private final int recordInts;
+    private final int segmentRecords;
+    private final List<IntBuffer> segments = Lists.newArrayList();
+    private RandomAccessFile randomAccessFile;
+
+    MappedRecords(File file, int recordInts, int segmentRecords) {
+      this.file = file;
+      this.recordInts = recordInts;
+      this.segmentRecords = segmentRecords;
+    }
+
+    int get(int record, int field) {
+      return segments.get(record / segmentRecords).get((record % segmentRecords) * recordInts + field);
+    }
+
+    void put(int record, int field, int value) {
+      segments.get(record / segmentRecords).put((record % segmentRecords) * recordInts + field, value);
+    }
+
+    void swap(int i, int j) {
+      IntBuffer first = segments.get(i / segmentRecords);
+      IntBuffer second = segments.get(j / segmentRecords);
+      int x = (i % segmentRecords) * recordInts;
+      int y = (j % segmentRecords) * recordInts;
+      for (int k = 0; k < recordInts; k++, x++, y++) {
+        int tmp = first.get(x);
+        first.put(x, second.get(y));
+        second.put(y, tmp);
+      }
+    }
+
+    void ensureCapacity(int records) {
+      while ((long) segments.size() * segmentRecords < records) {
+        map();
+      }
+    }
+
+    private void map() {
+      long segmentBytes = (long) segmentRecords * recordInts * 4;
+      try {
+        if (randomAccessFile == null) {
+          randomAccessFile = new RandomAccessFile(file, "rw");
+        }
+        FileChannel channel = randomAccessFile.getChannel();
+        IntBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, segments.size() * segmentBytes, segmentBytes)
+            .order(ByteOrder.nativeOrder())
+            .asIntBuffer();
+        segments.add(segment);
+      } catch (IOException e) {
+        throw new DuplicationsException("Unable to map file " + file, e);
+      }
+    }
+
+    void close() {
+      segments.clear();
+      if (randomAccessFile != null) {
+        try {
+          randomAccessFile.close();
+        } catch (IOException e) {
+          // ignore
+        }
+        randomAccessFile = null;
+      }
+      if (!file.delete()) {
+        // mapped regions are released only by garbage collector, so file can be locked on some platforms
+        file.deleteOnExit();
+      }
+    }
+  }
+
+}
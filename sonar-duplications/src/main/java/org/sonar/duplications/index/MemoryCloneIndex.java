@@ -26,7 +26,7 @@ import org.sonar.duplications.block.ByteArray;
 
 import java.util.Collection;
 
-public class MemoryCloneIndex implements CloneIndex {
+public class MemoryCloneIndex extends AbstractCloneIndex {
 
   private Multimap<String, Block> byResource = ArrayListMultimap.create();
   private Multimap<ByteArray, Block> byHash = ArrayListMultimap.create();
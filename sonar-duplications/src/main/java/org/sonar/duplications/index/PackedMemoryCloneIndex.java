@@ -19,13 +19,11 @@
  */
 package org.sonar.duplications.index;
 
-import com.google.common.collect.Lists;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.utils.FastStringComparator;
 
 import java.util.Collection;
-import java.util.List;
 
 /**
  * Provides an index optimized by memory.
@@ -40,6 +38,9 @@ import java.util.List;
  * <p>
  * Note that this implementation currently does not support deletion, however it's possible to implement.
  * </p>
+ * <p>
+ * Insertions are not thread-safe, however after {@link #freeze()} queries can be performed concurrently.
+ * </p>
  */
 public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
@@ -54,7 +55,7 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   /**
    * Indicates that index requires sorting to perform queries.
    */
-  private boolean sorted;
+  private volatile boolean sorted;
 
   /**
    * Current number of blocks in index.
@@ -66,8 +67,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
   private int[] resourceIdsIndex;
 
-  private final Block.Builder blockBuilder = Block.builder();
-
   public PackedMemoryCloneIndex() {
     this(8, DEFAULT_INITIAL_CAPACITY);
   }
@@ -93,84 +92,52 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
    * </p>
    */
   public Collection<Block> getByResourceId(String resourceId) {
-    ensureSorted();
-
-    // prepare resourceId for binary search
-    resourceIds[size] = resourceId;
-    resourceIdsIndex[size] = size;
-
-    int index = DataUtils.binarySearch(byResourceId);
+    return toList(cursorByResourceId(resourceId));
+  }
 
-    List<Block> result = Lists.newArrayList();
-    int realIndex = resourceIdsIndex[index];
-    while (index < size && FastStringComparator.INSTANCE.compare(resourceIds[realIndex], resourceId) == 0) {
-      // extract block (note that there is no need to extract resourceId)
-      int offset = realIndex * blockInts;
-      int[] hash = new int[hashInts];
-      for (int j = 0; j < hashInts; j++) {
-        hash[j] = blockData[offset++];
-      }
-      int indexInFile = blockData[offset++];
-      int firstLineNumber = blockData[offset++];
-      int lastLineNumber = blockData[offset++];
-      int startUnit = blockData[offset++];
-      int endUnit = blockData[offset];
-
-      Block block = blockBuilder
-          .setResourceId(resourceId)
-          .setBlockHash(new ByteArray(hash))
-          .setIndexInFile(indexInFile)
-          .setLines(firstLineNumber, lastLineNumber)
-          .setUnit(startUnit, endUnit)
-          .build();
-      result.add(block);
+  /**
+   * {@inheritDoc}
+   */
+  public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
+    return toList(cursorBySequenceHash(sequenceHash));
+  }
 
-      index++;
-      realIndex = resourceIdsIndex[index];
-    }
-    return result;
+  /**
+   * {@inheritDoc}
+   * <p>
+   * <strong>Note that this implementation does not guarantee that blocks would be sorted by index.</strong>
+   * </p>
+   */
+  @Override
+  public BlockCursor cursorByResourceId(String resourceId) {
+    ensureSorted();
+    return new ResourceCursor(resourceId, lowerBoundByResourceId(resourceId));
   }
 
   /**
    * {@inheritDoc}
+   * <p>
+   * All blocks created by returned cursor share specified instance of hash.
+   * </p>
    */
-  public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
+  @Override
+  public BlockCursor cursorBySequenceHash(ByteArray sequenceHash) {
     ensureSorted();
 
-    // prepare hash for binary search
     int[] hash = sequenceHash.toIntArray();
     if (hash.length != hashInts) {
       throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
     }
-    int offset = size * blockInts;
-    for (int i = 0; i < hashInts; i++) {
-      blockData[offset++] = hash[i];
-    }
+    return new HashCursor(sequenceHash, hash, lowerBoundByHash(hash));
+  }
 
-    int index = DataUtils.binarySearch(byBlockHash);
-
-    List<Block> result = Lists.newArrayList();
-    while (index < size && !isLessByHash(size, index)) {
-      // extract block (note that there is no need to extract hash)
-      String resourceId = resourceIds[index];
-      offset = index * blockInts + hashInts;
-      int indexInFile = blockData[offset++];
-      int firstLineNumber = blockData[offset++];
-      int lastLineNumber = blockData[offset++];
-      int startUnit = blockData[offset++];
-      int endUnit = blockData[offset];
-
-      Block block = blockBuilder
-          .setResourceId(resourceId)
-          .setBlockHash(sequenceHash)
-          .setIndexInFile(indexInFile)
-          .setLines(firstLineNumber, lastLineNumber)
-          .setUnit(startUnit, endUnit)
-          .build();
-      result.add(block);
-      index++;
-    }
-    return result;
+  /**
+   * Sorts index, so that subsequent queries do not modify its state and thus can be safely performed from several threads,
+   * as long as no more blocks are inserted.
+   */
+  @Override
+  public void freeze() {
+    ensureSorted();
   }
 
   /**
@@ -230,16 +197,204 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     if (sorted) {
       return;
     }
+    synchronized (this) {
+      if (sorted) {
+        return;
+      }
 
-    ensureCapacity();
+      DataUtils.sort(byBlockHash);
+      for (int i = 0; i < size; i++) {
+        resourceIdsIndex[i] = i;
+      }
+      DataUtils.sort(byResourceId);
+
+      sorted = true;
+    }
+  }
+
+  /**
+   * @return position of first block, which resourceId is not less than specified
+   */
+  private int lowerBoundByResourceId(String resourceId) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (FastStringComparator.INSTANCE.compare(resourceIds[resourceIdsIndex[mid]], resourceId) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  /**
+   * @return position of first block, which hash is not less than specified
+   */
+  private int lowerBoundByHash(int[] hash) {
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >>> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
+    }
+    return lower;
+  }
+
+  /**
+   * Compares hash of block in position i with specified hash using same order as {@link #isLessByHash(int, int)}.
+   */
+  private int compareHash(int i, int[] hash) {
+    i *= blockInts;
+    for (int k = 0; k < hashInts; k++, i++) {
+      if (blockData[i] < hash[k]) {
+        return -1;
+      }
+      if (blockData[i] > hash[k]) {
+        return 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Reads values of current block directly from {@link #blockData}.
+   */
+  private abstract class PackedCursor implements BlockCursor {
+    /**
+     * Offset of current block in {@link #blockData}.
+     */
+    protected int offset;
+
+    private Block.Builder blockBuilder;
+
+    public int getHashWords() {
+      return hashInts;
+    }
+
+    public int getHashWord(int index) {
+      return blockData[offset + index];
+    }
+
+    public int getIndexInFile() {
+      return blockData[offset + hashInts];
+    }
+
+    public int getStartLine() {
+      return blockData[offset + hashInts + 1];
+    }
+
+    public int getEndLine() {
+      return blockData[offset + hashInts + 2];
+    }
+
+    public int getStartUnit() {
+      return blockData[offset + hashInts + 3];
+    }
+
+    public int getEndUnit() {
+      return blockData[offset + hashInts + 4];
+    }
+
+    protected abstract ByteArray getBlockHash();
+
+    public Block toBlock() {
+      if (blockBuilder == null) {
+        blockBuilder = Block.builder();
+      }
+      return blockBuilder
+          .setResourceId(getResourceId())
+          .setBlockHash(getBlockHash())
+          .setIndexInFile(getIndexInFile())
+          .setLines(getStartLine(), getEndLine())
+          .setUnit(getStartUnit(), getEndUnit())
+          .build();
+    }
+  }
+
+  private final class ResourceCursor extends PackedCursor {
+    private final String resourceId;
 
-    DataUtils.sort(byBlockHash);
-    for (int i = 0; i < size; i++) {
-      resourceIdsIndex[i] = i;
+    /**
+     * Position of next block in {@link #resourceIdsIndex}.
+     */
+    private int index;
+
+    ResourceCursor(String resourceId, int index) {
+      this.resourceId = resourceId;
+      this.index = index;
     }
-    DataUtils.sort(byResourceId);
 
-    sorted = true;
+    public boolean next() {
+      if (index >= size) {
+        return false;
+      }
+      int realIndex = resourceIdsIndex[index];
+      if (FastStringComparator.INSTANCE.compare(resourceIds[realIndex], resourceId) != 0) {
+        index = size;
+        return false;
+      }
+      offset = realIndex * blockInts;
+      index++;
+      return true;
+    }
+
+    public String getResourceId() {
+      return resourceId;
+    }
+
+    @Override
+    protected ByteArray getBlockHash() {
+      int[] hash = new int[hashInts];
+      System.arraycopy(blockData, offset, hash, 0, hashInts);
+      return new ByteArray(hash);
+    }
+  }
+
+  private final class HashCursor extends PackedCursor {
+    private final ByteArray sequenceHash;
+    private final int[] hash;
+
+    /**
+     * Position of next block.
+     */
+    private int index;
+
+    /**
+     * Position of current block.
+     */
+    private int current;
+
+    HashCursor(ByteArray sequenceHash, int[] hash, int index) {
+      this.sequenceHash = sequenceHash;
+      this.hash = hash;
+      this.index = index;
+    }
+
+    public boolean next() {
+      if (index >= size || compareHash(index, hash) != 0) {
+        index = size;
+        return false;
+      }
+      current = index;
+      offset = current * blockInts;
+      index++;
+      return true;
+    }
+
+    public String getResourceId() {
+      return resourceIds[current];
+    }
+
+    @Override
+    protected ByteArray getBlockHash() {
+      return sequenceHash;
+    }
   }
 
   private boolean isLessByHash(int i, int j) {
@@ -21,11 +21,17 @@ package org.sonar.duplications.detector.suffixtree;
 
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.junit.Assert.assertThat;
 import static org.sonar.duplications.detector.CloneGroupMatcher.hasCloneGroup;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 import org.junit.Test;
 import org.sonar.duplications.block.Block;
@@ -33,6 +39,7 @@ import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.detector.DetectorTestCase;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.CloneIndex;
+import org.sonar.duplications.index.MemoryCloneIndex;
 
 import com.google.common.collect.Lists;
 
@@ -77,6 +84,41 @@ public class SuffixTreeCloneDetectionAlgorithmTest extends DetectorTestCase {
     assertEquals(1, result.size());
   }
 
+  /**
+   * Given: file with repeated hashes
+   * Expected: only one query of index for each unique hash, by cursor
+   */
+  @Override
+  @Test
+  public void only_one_query_of_index_for_each_unique_hash() {
+    MemoryCloneIndex index = spy(new MemoryCloneIndex());
+    List<Block> fileBlocks = newBlocks("a", "1 2 1 2");
+    detect(index, fileBlocks);
+
+    verify(index).cursorBySequenceHash(new ByteArray("01"));
+    verify(index).cursorBySequenceHash(new ByteArray("02"));
+    // default implementation of cursor
+    verify(index).getBySequenceHash(new ByteArray("01"));
+    verify(index).getBySequenceHash(new ByteArray("02"));
+    verifyNoMoreInteractions(index);
+  }
+
+  @Test
+  public void shouldStopWhenThreadIsInterrupted() {
+    CloneIndex index = createIndex(newBlocks("b", "1 2 3"));
+    List<Block> fileBlocks = newBlocks("a", "1 2 3");
+    Thread.currentThread().interrupt();
+    try {
+      detect(index, fileBlocks);
+      fail();
+    } catch (CancellationException e) {
+      // status of interruption is cleared, so thread can be reused
+      assertFalse(Thread.currentThread().isInterrupted());
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
   /**
    * Given:
    * <pre>
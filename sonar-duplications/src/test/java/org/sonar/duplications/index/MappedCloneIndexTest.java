@@ -0,0 +1,162 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.duplications.index;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class MappedCloneIndexTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private MappedCloneIndex index;
+
+  @Before
+  public void setUp() {
+    // small segments to verify that blocks are stored across several of them
+    index = new MappedCloneIndex(temp.getRoot(), 8, 3);
+  }
+
+  @After
+  public void tearDown() {
+    index.close();
+  }
+
+  @Test
+  public void test() {
+    index.insert(newBlock("a", 1, 0));
+    index.insert(newBlock("a", 2, 1));
+    index.insert(newBlock("b", 1, 0));
+    index.insert(newBlock("c", 1, 0));
+    index.insert(newBlock("d", 1, 0));
+    index.insert(newBlock("e", 1, 0));
+    index.insert(newBlock("e", 2, 1));
+    index.insert(newBlock("e", 3, 2));
+
+    assertThat(index.getBySequenceHash(new ByteArray(1L)).size(), is(5));
+    assertThat(index.getBySequenceHash(new ByteArray(2L)).size(), is(2));
+    assertThat(index.getBySequenceHash(new ByteArray(3L)).size(), is(1));
+    assertThat(index.getBySequenceHash(new ByteArray(4L)).size(), is(0));
+    assertThat(index.getByResourceId("a").size(), is(2));
+    assertThat(index.getByResourceId("b").size(), is(1));
+    assertThat(index.getByResourceId("e").size(), is(3));
+    assertThat(index.getByResourceId("does not exist").size(), is(0));
+  }
+
+  @Test
+  public void should_return_blocks_of_resource_in_order_of_insertion() {
+    index.insert(newBlock("a", 3, 0));
+    index.insert(newBlock("a", 1, 1));
+    index.insert(newBlock("a", 2, 2));
+
+    List<Block> blocks = (List<Block>) index.getByResourceId("a");
+    assertThat(blocks.size(), is(3));
+    for (int i = 0; i < 3; i++) {
+      assertThat(blocks.get(i).getIndexInFile(), is(i));
+    }
+    assertThat(blocks.get(0).getBlockHash(), is(new ByteArray(3L)));
+  }
+
+  @Test
+  public void should_iterate_by_sequence_hash_without_creation_of_blocks() {
+    index.insert(newBlock("a", 1, 0));
+    index.insert(newBlock("b", 2, 0));
+    index.insert(newBlock("c", 1, 0));
+    index.insert(newBlock("c", 1, 1));
+
+    BlockCursor cursor = index.cursorBySequenceHash(new ByteArray(1L));
+    int count = 0;
+    while (cursor.next()) {
+      assertThat(cursor.getHashWord(1), is(1));
+      assertThat(cursor.getResourceId().equals("b"), is(false));
+      count++;
+    }
+    assertThat(count, is(3));
+  }
+
+  @Test
+  public void should_construct_blocks_with_normalized_hash() {
+    index.insert(newBlock("a", 1, 0));
+    index.insert(newBlock("b", 1, 0));
+    index.insert(newBlock("c", 1, 0));
+    ByteArray requestedHash = new ByteArray(1L);
+    Collection<Block> blocks = index.getBySequenceHash(requestedHash);
+    assertThat(blocks.size(), is(3));
+    for (Block block : blocks) {
+      assertThat(block.getBlockHash(), sameInstance(requestedHash));
+    }
+  }
+
+  @Test
+  public void should_be_reusable_after_clear() {
+    index.insert(newBlock("a", 1, 0));
+    index.insert(newBlock("a", 2, 1));
+    index.freeze();
+    index.clear();
+
+    assertThat(index.size(), is(0));
+    assertThat(index.getByResourceId("a").size(), is(0));
+
+    index.insert(newBlock("b", 2, 0));
+    assertThat(index.getBySequenceHash(new ByteArray(1L)).size(), is(0));
+    assertThat(index.getBySequenceHash(new ByteArray(2L)).size(), is(1));
+    assertThat(index.getByResourceId("b").size(), is(1));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void blocks_of_resource_should_be_inserted_consecutively() {
+    index.insert(newBlock("a", 1, 0));
+    index.insert(newBlock("b", 1, 0));
+    index.insert(newBlock("a", 2, 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void attempt_to_insert_hash_of_incorrect_size() {
+    MappedCloneIndex index = new MappedCloneIndex(temp.getRoot(), 4, 1);
+    try {
+      index.insert(newBlock("a", 1, 0));
+    } finally {
+      index.close();
+    }
+  }
+
+  private static Block newBlock(String resourceId, long hash, int indexInFile) {
+    return Block.builder()
+        .setResourceId(resourceId)
+        .setBlockHash(new ByteArray(hash))
+        .setIndexInFile(indexInFile)
+        .setLines(1, 2)
+        .build();
+  }
+
+}
@@ -19,13 +19,20 @@
  */
 package org.sonar.duplications.index;
 
+import com.google.common.collect.Lists;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.duplications.block.Block;
 import org.sonar.duplications.block.ByteArray;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
@@ -77,6 +84,83 @@ public class PackedMemoryCloneIndexTest {
     }
   }
 
+  /**
+   * Given: frozen index.
+   * Expected: concurrent queries return same results as sequential ones.
+   */
+  @Test
+  public void should_allow_concurrent_queries_after_freeze() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      index.insert(newBlock("r" + (i % 10), i % 100));
+    }
+    index.freeze();
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Integer>> futures = Lists.newArrayList();
+      for (int i = 0; i < 100; i++) {
+        final int hash = i;
+        futures.add(executorService.submit(new Callable<Integer>() {
+          public Integer call() {
+            return index.getBySequenceHash(new ByteArray((long) hash)).size() + index.getByResourceId("r" + (hash % 10)).size();
+          }
+        }));
+      }
+      for (Future<Integer> future : futures) {
+        assertThat(future.get(), is(10 + 100));
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  /**
+   * Given: index with blocks of several resources.
+   * Expected: cursor iterates over blocks with specified hash and provides their values without creation of blocks.
+   */
+  @Test
+  public void should_iterate_by_sequence_hash() {
+    index.insert(newBlock("a", 1));
+    index.insert(newBlock("b", 2));
+    index.insert(newBlock("c", 1));
+
+    BlockCursor cursor = index.cursorBySequenceHash(new ByteArray(1L));
+    List<String> resourceIds = Lists.newArrayList();
+    while (cursor.next()) {
+      resourceIds.add(cursor.getResourceId());
+      assertThat(cursor.getHashWords(), is(2));
+      assertThat(cursor.getHashWord(0), is(0));
+      assertThat(cursor.getHashWord(1), is(1));
+      assertThat(cursor.getIndexInFile(), is(1));
+      assertThat(cursor.getStartLine(), is(1));
+      assertThat(cursor.getEndLine(), is(2));
+    }
+    assertThat(resourceIds.size(), is(2));
+    assertThat(resourceIds, hasItems("a", "c"));
+    assertThat(cursor.next(), is(false));
+
+    assertThat(index.cursorBySequenceHash(new ByteArray(3L)).next(), is(false));
+  }
+
+  /**
+   * Given: index with blocks of several resources.
+   * Expected: blocks created by cursor are equal to inserted.
+   */
+  @Test
+  public void should_create_blocks_by_resource_id() {
+    Block block = newBlock("b", 2);
+    index.insert(newBlock("a", 1));
+    index.insert(block);
+
+    BlockCursor cursor = index.cursorByResourceId("b");
+    assertThat(cursor.next(), is(true));
+    assertThat(cursor.getResourceId(), is("b"));
+    assertThat(cursor.toBlock(), is(block));
+    assertThat(cursor.next(), is(false));
+
+    assertThat(index.cursorByResourceId("c").next(), is(false));
+  }
+
   /**
    * Given: index with initial capacity 1.
    * Expected: size and capacity should be increased after insertion of two blocks.
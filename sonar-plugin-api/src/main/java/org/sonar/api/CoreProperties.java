@@ -148,6 +148,75 @@ public interface CoreProperties {
   String BATCH_INCLUDE_PLUGINS = "sonar.includePlugins";
   String BATCH_EXCLUDE_PLUGINS = "sonar.excludePlugins";
 
+  /**
+   * Directory of the files kept by batches between analyses, for example the cache of plugins. Default value is
+   * the directory .sonar in the user home.
+   *
+   * @since 2.15
+   */
+  String BATCH_USER_HOME = "sonar.userHome";
+
+  /**
+   * @since 2.15
+   */
+  String DECORATORS_THREADS = "sonar.decorators.threads";
+
+  /**
+   * @see #DECORATORS_THREADS
+   * @since 2.15
+   */
+  int DECORATORS_THREADS_DEFAULT_VALUE = 1;
+
+  /**
+   * @since 2.15
+   */
+  String SENSORS_THREADS = "sonar.sensors.threads";
+
+  /**
+   * @see #SENSORS_THREADS
+   * @since 2.15
+   */
+  int SENSORS_THREADS_DEFAULT_VALUE = 1;
+
+  /**
+   * Number of measures sent to database in a single JDBC batch at the end of analysis.
+   *
+   * @since 2.15
+   */
+  String MEASURES_BATCH_SIZE = "sonar.measures.batchSize";
+
+  /**
+   * @see #MEASURES_BATCH_SIZE
+   * @since 2.15
+   */
+  int MEASURES_BATCH_SIZE_DEFAULT_VALUE = 250;
+
+  /**
+   * Number of violations sent to database in a single JDBC batch.
+   *
+   * @since 2.15
+   */
+  String VIOLATIONS_BATCH_SIZE = "sonar.violations.batchSize";
+
+  /**
+   * @see #VIOLATIONS_BATCH_SIZE
+   * @since 2.15
+   */
+  int VIOLATIONS_BATCH_SIZE_DEFAULT_VALUE = 500;
+
+  /**
+   * Write the time and memory spent by each sensor, decorator and post-job in the file profiling.json of the working directory.
+   *
+   * @since 2.15
+   */
+  String PROFILING_REPORT = "sonar.profiling.report";
+
+  /**
+   * @see #PROFILING_REPORT
+   * @since 2.15
+   */
+  boolean PROFILING_REPORT_DEFAULT_VALUE = false;
+
   /**
    * @since 2.10
    */
@@ -191,6 +260,28 @@ public interface CoreProperties {
    */
   boolean CPD_CROSS_RPOJECT_DEFAULT_VALUE = false;
 
+  /**
+   * @since 2.15
+   */
+  String CPD_THREADS = "sonar.cpd.threads";
+
+  /**
+   * @see #CPD_THREADS
+   * @since 2.15
+   */
+  int CPD_THREADS_DEFAULT_VALUE = 1;
+
+  /**
+   * @since 2.15
+   */
+  String CPD_MEMORY_MAPPED_INDEX = "sonar.cpd.memory_mapped_index";
+
+  /**
+   * @see #CPD_MEMORY_MAPPED_INDEX
+   * @since 2.15
+   */
+  boolean CPD_MEMORY_MAPPED_INDEX_DEFAULT_VALUE = false;
+
   /* Design */
 
   /**
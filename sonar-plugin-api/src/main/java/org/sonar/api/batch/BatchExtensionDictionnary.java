@@ -22,6 +22,8 @@ package org.sonar.api.batch;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.commons.lang.ClassUtils;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.batch.maven.DependsUponMavenPlugin;
@@ -30,6 +32,7 @@ import org.sonar.api.platform.ComponentContainer;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.AnnotationUtils;
 import org.sonar.api.utils.dag.DirectAcyclicGraph;
+import org.sonar.api.utils.dag.Node;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
@@ -37,6 +40,8 @@ import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @since 1.11
@@ -112,6 +117,38 @@ public class BatchExtensionDictionnary {
   }
 
   public <T> Collection<T> sort(Collection<T> extensions) {
+    List sortedList = createGraph(extensions).sort();
+
+    return (Collection<T>) Collections2.filter(sortedList, Predicates.in(extensions));
+  }
+
+  /**
+   * Returns, for each of the given extensions, the extensions of the same collection that must be executed before it,
+   * according to the annotations {@link DependsUpon}, {@link DependedUpon} and {@link Phase}.
+   * Extensions which do not depend on each other, even indirectly, can be executed in any order or concurrently.
+   * <p>
+   * Prerequisites are not transitively closed : if C depends upon B, which depends upon A, then A is not necessarily returned for C.
+   * </p>
+   *
+   * @throws org.sonar.api.utils.dag.CyclicDependenciesException if dependencies are cyclic
+   * @since 2.15
+   */
+  public <T> Map<T, Collection<T>> getPrerequisites(Collection<T> extensions) {
+    DirectAcyclicGraph dag = createGraph(extensions);
+    // fails on cycles
+    dag.sort();
+
+    Set<Object> extensionsSet = Sets.<Object>newHashSet(extensions);
+    Map<T, Collection<T>> result = Maps.newLinkedHashMap();
+    for (T extension : extensions) {
+      Set<T> prerequisites = Sets.newLinkedHashSet();
+      completePrerequisites(dag.add(extension), extensionsSet, prerequisites, Sets.<Node>newHashSet());
+      result.put(extension, prerequisites);
+    }
+    return result;
+  }
+
+  private <T> DirectAcyclicGraph createGraph(Collection<T> extensions) {
     DirectAcyclicGraph dag = new DirectAcyclicGraph();
 
     for (T extension : extensions) {
@@ -124,9 +161,23 @@ public class BatchExtensionDictionnary {
       }
       completePhaseDependencies(dag, extension);
     }
-    List sortedList = dag.sort();
+    return dag;
+  }
 
-    return (Collection<T>) Collections2.filter(sortedList, Predicates.in(extensions));
+  /**
+   * Walks through the intermediate nodes (metrics, phases...) up to the nearest extensions.
+   */
+  private static <T> void completePrerequisites(Node node, Set<Object> extensions, Set<T> prerequisites, Set<Node> visited) {
+    for (Node dependency : node.getDependencies()) {
+      if (visited.add(dependency)) {
+        Object object = dependency.getObject();
+        if (extensions.contains(object)) {
+          prerequisites.add((T) object);
+        } else {
+          completePrerequisites(dependency, extensions, prerequisites, visited);
+        }
+      }
+    }
   }
 
   /**
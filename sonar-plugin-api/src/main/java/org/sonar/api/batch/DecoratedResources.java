@@ -0,0 +1,49 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.api.batch;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the resources a {@link Decorator} applies to, so that it is not executed on other resources.
+ * A resource is decorated if its scope is one of {@link #scopes()} and its qualifier is one of {@link #qualifiers()}.
+ * An empty list accepts any value. For example a decorator of projects and directories is declared as following :
+ * <code>@DecoratedResources(scopes = {Scopes.PROJECT, Scopes.DIRECTORY})</code>
+ * <p>
+ * Decorators without this annotation are executed on all resources.
+ * Annotation is not inherited, so it should be declared by each concrete class.
+ * </p>
+ *
+ * @see org.sonar.api.resources.Scopes
+ * @see org.sonar.api.resources.Qualifiers
+ * @since 2.15
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE })
+public @interface DecoratedResources {
+
+  String[] scopes() default {};
+
+  String[] qualifiers() default {};
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Sonar, open source software quality management tool.
+ * Copyright (C) 2008-2012 SonarSource
+ * mailto:contact AT sonarsource DOT com
+ *
+ * Sonar is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Sonar is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Sonar; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.api.batch;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that {@link org.sonar.api.BatchExtension} can be executed by several threads at the same time.
+ * For example a {@link Decorator} annotated this way can decorate sibling resources concurrently,
+ * when parallel execution of decorators is enabled, and a {@link Sensor} can be executed along with other sensors,
+ * which it does not depend upon.
+ * <p>
+ * Such extension must not keep state between executions and must access data only through the context it receives
+ * ({@link DecoratorContext} for decorators, {@link SensorContext} for sensors), but not through database session or other batch components.
+ * Extensions without this annotation are never executed concurrently.
+ * </p>
+ * <p>
+ * Batch components, which handle {@link org.sonar.api.batch.events.EventHandler events}, can also be annotated this way,
+ * so that they receive events from several threads without lock.
+ * </p>
+ * <p>
+ * Annotation is not inherited, so it should be declared by each concrete class.
+ * </p>
+ *
+ * @since 2.15
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE })
+public @interface ThreadSafeExtension {
+}
@@ -20,6 +20,7 @@
 package org.sonar.api.batch.events;
 
 import org.sonar.api.batch.Decorator;
+import org.sonar.api.resources.Resource;
 
 /**
  * @since 2.8
@@ -33,6 +34,11 @@ public interface DecoratorExecutionHandler extends EventHandler {
 
     Decorator getDecorator();
 
+    /**
+     * @since 2.15
+     */
+    Resource getResource();
+
     boolean isStart();
 
     boolean isEnd();
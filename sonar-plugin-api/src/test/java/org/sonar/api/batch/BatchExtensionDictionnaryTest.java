@@ -29,6 +29,7 @@ import org.sonar.api.resources.Project;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
@@ -233,6 +234,42 @@ public class BatchExtensionDictionnaryTest {
     assertEquals(post, extensions.get(2));
   }
 
+  @Test
+  public void shouldGetPrerequisites() {
+    BatchExtension a = new GeneratesSomething("foo");
+    BatchExtension b = new MethodDependentOf("foo");
+    BatchExtension c = new MethodDependentOf(b);
+    BatchExtension independent = new MethodDependentOf(null);
+
+    BatchExtensionDictionnary selector = newSelector(c, independent, b, a);
+    Map<BatchExtension, Collection<BatchExtension>> prerequisites = selector.getPrerequisites(Lists.newArrayList(c, independent, b, a));
+
+    assertThat(prerequisites.size(), is(4));
+    assertThat(prerequisites.get(a).isEmpty(), is(true));
+    assertThat(prerequisites.get(independent).isEmpty(), is(true));
+    assertThat(prerequisites.get(b).size(), is(1));
+    assertThat(prerequisites.get(b), hasItem(a));
+    assertThat(prerequisites.get(c).size(), is(1));
+    assertThat(prerequisites.get(c), hasItem(b));
+  }
+
+  @Test
+  public void shouldGetPrerequisitesOfPhases() {
+    BatchExtension pre = new PreSensor();
+    BatchExtension analyze1 = new GeneratesSomething("something");
+    BatchExtension analyze2 = new GeneratesSomething("other");
+    BatchExtension post = new PostSensor();
+
+    BatchExtensionDictionnary selector = newSelector(analyze1, analyze2, post, pre);
+    Map<BatchExtension, Collection<BatchExtension>> prerequisites = selector.getPrerequisites(Lists.newArrayList(analyze1, analyze2, post, pre));
+
+    assertThat(prerequisites.get(pre).isEmpty(), is(true));
+    assertThat(prerequisites.get(analyze1).size(), is(1));
+    assertThat(prerequisites.get(analyze1), hasItem(pre));
+    assertThat(prerequisites.get(analyze2).size(), is(1));
+    assertThat(prerequisites.get(post), hasItems(analyze1, analyze2));
+  }
+
   @Test
   public void buildStatusCheckersAreExecutedAfterOtherPostJobs() {
     BuildBreaker checker = new BuildBreaker() {
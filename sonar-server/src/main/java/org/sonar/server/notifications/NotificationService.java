@@ -20,8 +20,10 @@
 package org.sonar.server.notifications;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.sonar.api.*;
 import org.sonar.api.config.Settings;
 import org.sonar.api.notifications.Notification;
@@ -30,12 +32,12 @@ import org.sonar.api.notifications.NotificationDispatcher;
 import org.sonar.api.utils.Logs;
 import org.sonar.api.utils.TimeProfiler;
 import org.sonar.core.notification.DefaultNotificationManager;
+import org.sonar.core.notification.NotificationPreferences;
 import org.sonar.core.notification.NotificationQueueElement;
+import org.sonar.jpa.session.DatabaseSessionFactory;
 
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 /**
  * @since 2.10
@@ -46,6 +48,18 @@ import java.util.concurrent.TimeUnit;
         defaultValue = "60",
         name = "Delay of notifications, in seconds",
         project = false,
+        global = false),
+    @Property(
+        key = NotificationService.PROPERTY_BATCH_SIZE,
+        defaultValue = "100",
+        name = "Number of notifications loaded at once from the queue",
+        project = false,
+        global = false),
+    @Property(
+        key = NotificationService.PROPERTY_DELIVERY_THREADS,
+        defaultValue = "4",
+        name = "Number of threads delivering notifications",
+        project = false,
         global = false)
 })
 public class NotificationService implements ServerComponent {
@@ -53,29 +67,53 @@ public class NotificationService implements ServerComponent {
   private static final TimeProfiler TIME_PROFILER = new TimeProfiler(Logs.INFO).setLevelToDebug();
 
   public static final String PROPERTY_DELAY = "sonar.notifications.delay";
+  public static final String PROPERTY_BATCH_SIZE = "sonar.notifications.batchSize";
+  public static final String PROPERTY_DELIVERY_THREADS = "sonar.notifications.deliveryThreads";
+
+  private static final long STOP_TIMEOUT_SECONDS = 30;
 
   private ScheduledExecutorService executorService;
   private long delayInSeconds;
+  private int batchSize;
+  private ThreadPoolExecutor deliveryExecutor;
 
   private DefaultNotificationManager manager;
+  private DatabaseSessionFactory sessionFactory;
   private NotificationChannel[] channels;
   private NotificationDispatcher[] dispatchers;
 
-  private boolean stopping = false;
+  private volatile boolean stopping = false;
 
   /**
    * Default constructor when no channels.
    */
-  public NotificationService(Settings settings, DefaultNotificationManager manager, NotificationDispatcher[] dispatchers) {
-    this(settings, manager, dispatchers, new NotificationChannel[0]);
+  public NotificationService(Settings settings, DefaultNotificationManager manager, DatabaseSessionFactory sessionFactory,
+      NotificationDispatcher[] dispatchers) {
+    this(settings, manager, sessionFactory, dispatchers, new NotificationChannel[0]);
     Logs.INFO.warn("There is no channels - all notifications would be ignored!");
   }
 
-  public NotificationService(Settings settings, DefaultNotificationManager manager, NotificationDispatcher[] dispatchers, NotificationChannel[] channels) {
+  public NotificationService(Settings settings, DefaultNotificationManager manager, DatabaseSessionFactory sessionFactory,
+      NotificationDispatcher[] dispatchers, NotificationChannel[] channels) {
     delayInSeconds = settings.getLong(PROPERTY_DELAY);
+    batchSize = Math.max(1, settings.getInt(PROPERTY_BATCH_SIZE));
+    int threads = Math.max(1, settings.getInt(PROPERTY_DELIVERY_THREADS));
     this.manager = manager;
+    this.sessionFactory = sessionFactory;
     this.channels = channels;
     this.dispatchers = dispatchers;
+
+    // The queue of deliveries is bounded : when it's full, the thread processing the notifications delivers by itself,
+    // so it does not load new notifications faster than they are delivered.
+    deliveryExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(threads * 10),
+        new ThreadFactoryBuilder().setNameFormat("notification-delivery-%d").setDaemon(true).build(),
+        new RejectedExecutionHandler() {
+          public void rejectedExecution(Runnable delivery, ThreadPoolExecutor executor) {
+            // also executed when the pool is shut down, so that nobody waits for a delivery which would never be done
+            delivery.run();
+          }
+        });
   }
 
   public void start() {
@@ -88,11 +126,21 @@ public class NotificationService implements ServerComponent {
     Logs.INFO.info("Notification service started (delay {} sec.)", delayInSeconds);
   }
 
+  /**
+   * Waits, at most 30 seconds, for the deliveries of the notifications already removed from the queue, so that they are not lost.
+   * Other notifications stay in the queue until next start.
+   */
   public void stop() {
     try {
       stopping = true;
-      executorService.awaitTermination(5, TimeUnit.SECONDS);
       executorService.shutdown();
+      if (!executorService.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        Logs.INFO.warn("Notifications are still being delivered - they are abandoned");
+        executorService.shutdownNow();
+        deliveryExecutor.shutdownNow();
+      }
+      deliveryExecutor.shutdown();
+      deliveryExecutor.awaitTermination(5, TimeUnit.SECONDS);
     } catch (InterruptedException e) {
       Logs.INFO.error("Error during stop of notification service", e);
     }
@@ -100,18 +148,30 @@ public class NotificationService implements ServerComponent {
   }
 
   /**
+   * Notifications are loaded by batches. Deliveries of a batch are executed while the next batch is loaded and dispatched.
+   * Notifications are removed from the queue when they are loaded, so the batches being delivered are lost if the server
+   * is killed. When the service is stopped, the processing ends after the deliveries of the current batches.
+   *
    * Visibility has been relaxed for tests.
    */
   void processQueue() {
     TIME_PROFILER.start("Processing notifications queue");
-    NotificationQueueElement queueElement = manager.getFromQueue();
-    while (queueElement != null) {
-      deliver(queueElement.getNotification());
+    List<Future<?>> pendingDeliveries = Collections.emptyList();
+    List<NotificationQueueElement> queueElements = manager.getFromQueue(batchSize);
+    while (!queueElements.isEmpty()) {
+      List<Notification> notifications = Lists.newArrayListWithCapacity(queueElements.size());
+      for (NotificationQueueElement queueElement : queueElements) {
+        notifications.add(queueElement.getNotification());
+      }
+      List<Future<?>> deliveries = deliver(notifications);
+      waitFor(pendingDeliveries);
+      pendingDeliveries = deliveries;
       if (stopping) {
         break;
       }
-      queueElement = manager.getFromQueue();
+      queueElements = manager.getFromQueue(batchSize);
     }
+    waitFor(pendingDeliveries);
     TIME_PROFILER.stop();
   }
 
@@ -119,40 +179,109 @@ public class NotificationService implements ServerComponent {
    * Visibility has been relaxed for tests.
    */
   void deliver(Notification notification) {
-    Logs.INFO.debug("Delivering notification " + notification);
-    SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
-    for (NotificationChannel channel : channels) {
-      for (NotificationDispatcher dispatcher : dispatchers) {
-        final Set<String> possibleRecipients = Sets.newHashSet();
-        NotificationDispatcher.Context context = new NotificationDispatcher.Context() {
-          public void addUser(String username) {
-            if (username != null) {
-              possibleRecipients.add(username);
-            }
-          }
-        };
-        try {
-          dispatcher.dispatch(notification, context);
-        } catch (Exception e) { // catch all exceptions in order to dispatch using other dispatchers
-          Logs.INFO.warn("Unable to dispatch notification " + notification + " using " + dispatcher, e);
-        }
-        for (String username : possibleRecipients) {
-          if (manager.isEnabled(username, channel.getKey(), dispatcher.getKey())) {
+    waitFor(deliver(Arrays.asList(notification)));
+  }
+
+  /**
+   * Dispatches the notifications and submits their deliveries to the pool of delivery threads.
+   * Preferences of all the recipients are loaded at once.
+   *
+   * Visibility has been relaxed for tests.
+   *
+   * @return the deliveries, which may still be running
+   */
+  List<Future<?>> deliver(List<Notification> notifications) {
+    List<SetMultimap<String, NotificationDispatcher>> possibleRecipientsByNotification = Lists.newArrayListWithCapacity(notifications.size());
+    Set<String> usernames = Sets.newHashSet();
+    for (Notification notification : notifications) {
+      SetMultimap<String, NotificationDispatcher> possibleRecipients = dispatch(notification);
+      possibleRecipientsByNotification.add(possibleRecipients);
+      usernames.addAll(possibleRecipients.keySet());
+    }
+    NotificationPreferences preferences = usernames.isEmpty() ? new NotificationPreferences() : manager.getPreferences(usernames);
+
+    List<Future<?>> deliveries = Lists.newArrayList();
+    for (int i = 0; i < notifications.size(); i++) {
+      Notification notification = notifications.get(i);
+      SetMultimap<String, NotificationChannel> recipients = HashMultimap.create();
+      for (Map.Entry<String, NotificationDispatcher> possibleRecipient : possibleRecipientsByNotification.get(i).entries()) {
+        String username = possibleRecipient.getKey();
+        for (NotificationChannel channel : channels) {
+          if (preferences.isEnabled(username, channel.getKey(), possibleRecipient.getValue().getKey())) {
             recipients.put(username, channel);
           }
         }
       }
+      Logs.INFO.debug("Delivering notification " + notification);
+      for (Map.Entry<String, Collection<NotificationChannel>> recipient : recipients.asMap().entrySet()) {
+        String username = recipient.getKey();
+        Collection<NotificationChannel> userChannels = recipient.getValue();
+        Logs.INFO.debug("For user {} via {}", username, userChannels);
+        for (NotificationChannel channel : userChannels) {
+          deliveries.add(deliveryExecutor.submit(new Delivery(sessionFactory, notification, username, channel)));
+        }
+      }
     }
-    for (Map.Entry<String, Collection<NotificationChannel>> entry : recipients.asMap().entrySet()) {
-      String username = entry.getKey();
-      Collection<NotificationChannel> userChannels = entry.getValue();
-      Logs.INFO.debug("For user {} via {}", username, userChannels);
-      for (NotificationChannel channel : userChannels) {
-        try {
-          channel.deliver(notification, username);
-        } catch (Exception e) { // catch all exceptions in order to deliver via other channels
-          Logs.INFO.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+    return deliveries;
+  }
+
+  private SetMultimap<String, NotificationDispatcher> dispatch(Notification notification) {
+    final SetMultimap<String, NotificationDispatcher> possibleRecipients = HashMultimap.create();
+    for (final NotificationDispatcher dispatcher : dispatchers) {
+      NotificationDispatcher.Context context = new NotificationDispatcher.Context() {
+        public void addUser(String username) {
+          if (username != null) {
+            possibleRecipients.put(username, dispatcher);
+          }
         }
+      };
+      try {
+        dispatcher.dispatch(notification, context);
+      } catch (Exception e) { // catch all exceptions in order to dispatch using other dispatchers
+        Logs.INFO.warn("Unable to dispatch notification " + notification + " using " + dispatcher, e);
+      }
+    }
+    return possibleRecipients;
+  }
+
+  private static void waitFor(List<Future<?>> deliveries) {
+    for (Future<?> delivery : deliveries) {
+      try {
+        delivery.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        // only errors, as exceptions are caught by Delivery
+        Logs.INFO.warn("Unable to deliver notification", e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Channels may use the database, for example to load the user. As deliveries are executed by several threads, the
+   * database session of the current thread is closed after each delivery.
+   */
+  private static final class Delivery implements Runnable {
+    private final DatabaseSessionFactory sessionFactory;
+    private final Notification notification;
+    private final String username;
+    private final NotificationChannel channel;
+
+    private Delivery(DatabaseSessionFactory sessionFactory, Notification notification, String username, NotificationChannel channel) {
+      this.sessionFactory = sessionFactory;
+      this.notification = notification;
+      this.username = username;
+      this.channel = channel;
+    }
+
+    public void run() {
+      try {
+        channel.deliver(notification, username);
+      } catch (Exception e) { // catch all exceptions in order to deliver via other channels
+        Logs.INFO.warn("Unable to deliver notification " + notification + " for user " + username + " via " + channel, e);
+      } finally {
+        sessionFactory.clear();
       }
     }
   }
@@ -20,17 +20,22 @@
 package org.sonar.server.plugins;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -45,6 +50,9 @@ public class BatchResourcesServlet extends HttpServlet {
 
   private static final Logger LOG = LoggerFactory.getLogger(BatchResourcesServlet.class);
   private static final long serialVersionUID = -2100128371794649028L;
+  private static final String JAR_CONTENT_TYPE = "application/java-archive";
+
+  private final transient ConcurrentMap<String, FileChecksum> checksums = Maps.newConcurrentMap();
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
@@ -61,25 +69,121 @@ public class BatchResourcesServlet extends HttpServlet {
       } finally {
         IOUtils.closeQuietly(writer);
       }
+    } else if (StringUtils.contains(resource, "/") || StringUtils.contains(resource, "..")) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND);
+
     } else {
-      InputStream in = null;
-      OutputStream out = null;
       try {
-        in = getServletContext().getResourceAsStream("/WEB-INF/lib/" + resource);
-        if (in == null) {
-          // TODO
+        String path = getServletContext().getRealPath("/WEB-INF/lib/" + resource);
+        File file = (path != null ? new File(path) : null);
+        if (file != null && file.isFile()) {
+          sendFile(request, response, file);
         } else {
-          out = response.getOutputStream();
-          IOUtils.copy(in, out);
+          sendResource(response, resource);
         }
       } catch (Exception e) {
         LOG.error("Unable to load batch resource '" + resource + "'", e);
         response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+      }
+    }
+  }
+
+  /**
+   * Files are identified by the MD5 of their content, so that the clients that already have a file
+   * get a "304 Not Modified" response.
+   */
+  private void sendFile(HttpServletRequest request, HttpServletResponse response, File file) throws IOException {
+    String etag = getETag(file);
+    response.setHeader("ETag", etag);
+    response.setDateHeader("Last-Modified", file.lastModified());
+    if (isNotModified(request, etag, file.lastModified())) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+      return;
+    }
+
+    response.setContentType(JAR_CONTENT_TYPE);
+    response.setContentLength((int) file.length());
+    FileInputStream in = null;
+    OutputStream out = null;
+    try {
+      in = new FileInputStream(file);
+      out = response.getOutputStream();
+      IOUtils.copy(in, out);
+    } finally {
+      IOUtils.closeQuietly(in);
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  /**
+   * Used when the webapp is not exploded on disk
+   */
+  private void sendResource(HttpServletResponse response, String resource) throws IOException {
+    InputStream in = null;
+    OutputStream out = null;
+    try {
+      in = getServletContext().getResourceAsStream("/WEB-INF/lib/" + resource);
+      if (in == null) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND);
+      } else {
+        response.setContentType(JAR_CONTENT_TYPE);
+        out = response.getOutputStream();
+        IOUtils.copy(in, out);
+      }
+    } finally {
+      IOUtils.closeQuietly(in);
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  static boolean isNotModified(HttpServletRequest request, String etag, long lastModified) {
+    String ifNoneMatch = request.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      for (String value : StringUtils.split(ifNoneMatch, ',')) {
+        String trimmed = StringUtils.trim(value);
+        if ("*".equals(trimmed) || etag.equals(trimmed)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+    // HTTP dates have a precision of one second
+    return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+  }
+
+  /**
+   * The checksums of files are computed once, then kept as long as files are not modified.
+   */
+  String getETag(File file) throws IOException {
+    String key = file.getAbsolutePath();
+    FileChecksum checksum = checksums.get(key);
+    if (checksum == null || !checksum.isValid(file)) {
+      checksum = new FileChecksum(file);
+      checksums.put(key, checksum);
+    }
+    return checksum.etag;
+  }
+
+  private static final class FileChecksum {
+    private final long lastModified;
+    private final long length;
+    private final String etag;
+
+    private FileChecksum(File file) throws IOException {
+      this.lastModified = file.lastModified();
+      this.length = file.length();
+      InputStream input = new FileInputStream(file);
+      try {
+        this.etag = "\"" + DigestUtils.md5Hex(input) + "\"";
       } finally {
-        IOUtils.closeQuietly(in);
-        IOUtils.closeQuietly(out);
+        IOUtils.closeQuietly(input);
       }
     }
+
+    private boolean isValid(File file) {
+      return lastModified == file.lastModified() && length == file.length();
+    }
   }
 
   List<String> getLibs() {
@@ -0,0 +1,39 @@
+#
+# Sonar, entreprise quality control tool.
+# Copyright (C) 2008-2012 SonarSource
+# mailto:contact AT sonarsource DOT com
+#
+# Sonar is free software; you can redistribute it and/or
+# modify it under the terms of the GNU Lesser General Public
+# License as published by the Free Software Foundation; either
+# version 3 of the License, or (at your option) any later version.
+#
+# Sonar is distributed in the hope that it will be useful,
+# but WITHOUT ANY WARRANTY; without even the implied warranty of
+# MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+# Lesser General Public License for more details.
+#
+# You should have received a copy of the GNU Lesser General Public
+# License along with Sonar; if not, write to the Free Software
+# Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+#
+
+#
+# Sonar 2.15
+#
+# Existing rows are not filled : they are matched by the column 'hash' until
+# their snapshots are purged (see DuplicationMapper.xml).
+#
+class AddDuplicationsIndexHashValue < ActiveRecord::Migration
+
+  def self.up
+    add_column 'duplications_index', 'hash_value', :big_integer, :null => true
+
+    begin
+      add_index 'duplications_index', 'hash_value', :name => 'duplications_index_hv'
+    rescue
+      # ignore
+    end
+  end
+
+end
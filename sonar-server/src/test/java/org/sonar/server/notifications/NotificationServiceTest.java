@@ -21,6 +21,7 @@ package org.sonar.server.notifications;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.sonar.api.config.PropertyDefinitions;
@@ -29,9 +30,22 @@ import org.sonar.api.notifications.Notification;
 import org.sonar.api.notifications.NotificationChannel;
 import org.sonar.api.notifications.NotificationDispatcher;
 import org.sonar.core.notification.DefaultNotificationManager;
+import org.sonar.core.notification.NotificationPreferences;
 import org.sonar.core.notification.NotificationQueueElement;
+import org.sonar.jpa.session.DatabaseSessionFactory;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.*;
 
 public class NotificationServiceTest {
@@ -46,6 +60,8 @@ public class NotificationServiceTest {
   private String creator;
 
   private DefaultNotificationManager manager;
+  private DatabaseSessionFactory sessionFactory;
+  private NotificationPreferences preferences;
   private NotificationService service;
 
   @Before
@@ -77,10 +93,13 @@ public class NotificationServiceTest {
     NotificationDispatcher[] dispatchers = new NotificationDispatcher[] {commentOnReviewAssignedToMe, commentOnReviewCreatedByMe};
     NotificationChannel[] channels = new NotificationChannel[] { emailChannel, gtalkChannel };
     manager = mock(DefaultNotificationManager.class);
+    sessionFactory = mock(DatabaseSessionFactory.class);
     Settings settings = new Settings(new PropertyDefinitions(NotificationService.class));
     settings.setProperty("sonar.notifications.delay", 1L); // delay 1 second
-    service = spy(new NotificationService(settings, manager, dispatchers, channels));
-    doReturn(false).when(manager).isEnabled(any(String.class), any(String.class), any(String.class));
+    settings.setProperty("sonar.notifications.batchSize", 2);
+    service = spy(new NotificationService(settings, manager, sessionFactory, dispatchers, channels));
+    preferences = new NotificationPreferences();
+    doReturn(preferences).when(manager).getPreferences(any(Collection.class));
   }
 
   @Test
@@ -88,14 +107,129 @@ public class NotificationServiceTest {
     NotificationQueueElement queueElement = mock(NotificationQueueElement.class);
     Notification notification = mock(Notification.class);
     when(queueElement.getNotification()).thenReturn(notification);
-    when(manager.getFromQueue()).thenReturn(queueElement).thenReturn(null).thenReturn(queueElement).thenReturn(null).thenReturn(queueElement).thenReturn(null);
-    doNothing().when(service).deliver(any(Notification.class));
+    List<NotificationQueueElement> batch = Arrays.asList(queueElement);
+    List<NotificationQueueElement> emptyQueue = Collections.emptyList();
+    when(manager.getFromQueue(anyInt())).thenReturn(batch).thenReturn(emptyQueue).thenReturn(batch).thenReturn(emptyQueue).thenReturn(batch).thenReturn(emptyQueue);
+    doReturn(Collections.emptyList()).when(service).deliver(any(List.class));
 
     service.start();
     Thread.sleep(1500); // sleep 1.5 second to process queue
     service.stop();
 
-    verify(service, times(3)).deliver(notification); // 3 times - 1 on start, 1 after delay, 1 on stop
+    verify(service, times(2)).deliver(Arrays.asList(notification)); // 2 times - 1 on start, 1 after delay
+  }
+
+  @Test
+  public void shouldCompleteDeliveriesOnStop() throws Exception {
+    preferences.enable(USER_SIMON, "email", "comment on review assigned to me");
+    Notification notification = mock(Notification.class);
+    List<NotificationQueueElement> emptyQueue = Collections.emptyList();
+    when(manager.getFromQueue(anyInt())).thenReturn(Arrays.asList(queueElement(notification))).thenReturn(emptyQueue);
+    assignee = USER_SIMON;
+    final AtomicBoolean delivered = new AtomicBoolean(false);
+    doAnswer(new Answer<Object>() {
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        Thread.sleep(500);
+        delivered.set(true);
+        return null;
+      }
+    }).when(emailChannel).deliver(notification, USER_SIMON);
+
+    service.start();
+    Thread.sleep(100); // delivery is in progress
+    service.stop();
+
+    assertThat(delivered.get(), is(true));
+  }
+
+  @Test
+  public void shouldStopWhileNotificationsKeepArriving() throws Exception {
+    final AtomicInteger loadedBatches = new AtomicInteger();
+    doAnswer(new Answer<Object>() {
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        loadedBatches.incrementAndGet();
+        return Arrays.asList(queueElement(mock(Notification.class)));
+      }
+    }).when(manager).getFromQueue(anyInt());
+
+    service.start();
+    Thread.sleep(100); // queue is never empty
+    long start = System.currentTimeMillis();
+    service.stop();
+    int loadedBatchesOnStop = loadedBatches.get();
+    Thread.sleep(100);
+
+    assertThat(System.currentTimeMillis() - start < 5000L, is(true));
+    assertThat(loadedBatches.get(), is(loadedBatchesOnStop));
+  }
+
+  @Test
+  public void shouldClearDatabaseSessionAfterDelivery() {
+    preferences.enable(USER_SIMON, "email", "comment on review assigned to me");
+    Notification notification = mock(Notification.class);
+    doThrow(new IllegalStateException()).when(emailChannel).deliver(notification, USER_SIMON);
+    assignee = USER_SIMON;
+
+    service.deliver(notification);
+
+    verify(emailChannel).deliver(notification, USER_SIMON);
+    verify(sessionFactory).clear();
+  }
+
+  @Test
+  public void shouldProcessQueueByBatches() {
+    preferences.enable(USER_SIMON, "email", "comment on review assigned to me");
+    Notification first = mock(Notification.class);
+    Notification second = mock(Notification.class);
+    Notification third = mock(Notification.class);
+    List<NotificationQueueElement> emptyQueue = Collections.emptyList();
+    when(manager.getFromQueue(2)).thenReturn(Arrays.asList(queueElement(first), queueElement(second)))
+        .thenReturn(Arrays.asList(queueElement(third)))
+        .thenReturn(emptyQueue);
+    creator = USER_EVGENY;
+    assignee = USER_SIMON;
+
+    service.processQueue();
+
+    verify(manager, times(3)).getFromQueue(2);
+    verify(manager, times(2)).getPreferences(any(Collection.class));
+    verify(emailChannel).deliver(first, USER_SIMON);
+    verify(emailChannel).deliver(second, USER_SIMON);
+    verify(emailChannel).deliver(third, USER_SIMON);
+    verify(gtalkChannel, never()).deliver(any(Notification.class), any(String.class));
+  }
+
+  @Test
+  public void shouldLoadPreferencesOfAllRecipientsAtOnce() throws Exception {
+    preferences.enable(USER_SIMON, "email", "comment on review assigned to me");
+    preferences.enable(USER_EVGENY, "gtalk", "comment on review created by me");
+    Notification first = mock(Notification.class);
+    Notification second = mock(Notification.class);
+    creator = USER_EVGENY;
+    assignee = USER_SIMON;
+
+    List<Future<?>> deliveries = service.deliver(Arrays.asList(first, second));
+    for (Future<?> delivery : deliveries) {
+      delivery.get();
+    }
+
+    assertThat(deliveries.size(), is(4));
+    ArgumentCaptor<Collection> usernames = ArgumentCaptor.forClass(Collection.class);
+    verify(manager).getPreferences(usernames.capture());
+    assertThat(usernames.getValue().size(), is(2));
+    assertThat(usernames.getValue().contains(USER_SIMON), is(true));
+    assertThat(usernames.getValue().contains(USER_EVGENY), is(true));
+    verify(manager, never()).isEnabled(any(String.class), any(String.class), any(String.class));
+    verify(emailChannel).deliver(first, USER_SIMON);
+    verify(emailChannel).deliver(second, USER_SIMON);
+    verify(gtalkChannel).deliver(first, USER_EVGENY);
+    verify(gtalkChannel).deliver(second, USER_EVGENY);
+  }
+
+  private static NotificationQueueElement queueElement(Notification notification) {
+    NotificationQueueElement queueElement = mock(NotificationQueueElement.class);
+    when(queueElement.getNotification()).thenReturn(notification);
+    return queueElement;
   }
 
   /**
@@ -110,8 +244,8 @@ public class NotificationServiceTest {
    */
   @Test
   public void scenario1() {
-    doReturn(true).when(manager).isEnabled(USER_SIMON, "email", "comment on review assigned to me");
-    doReturn(true).when(manager).isEnabled(USER_SIMON, "email", "comment on review created by me");
+    preferences.enable(USER_SIMON, "email", "comment on review assigned to me");
+    preferences.enable(USER_SIMON, "email", "comment on review created by me");
 
     Notification notification = mock(Notification.class);
     creator = USER_SIMON;
@@ -139,8 +273,8 @@ public class NotificationServiceTest {
    */
   @Test
   public void scenario2() {
-    doReturn(true).when(manager).isEnabled(USER_EVGENY, "gtalk", "comment on review created by me");
-    doReturn(true).when(manager).isEnabled(USER_SIMON, "email", "comment on review assigned to me");
+    preferences.enable(USER_EVGENY, "gtalk", "comment on review created by me");
+    preferences.enable(USER_SIMON, "email", "comment on review assigned to me");
 
     Notification notification = mock(Notification.class);
     creator = USER_EVGENY;
@@ -168,8 +302,8 @@ public class NotificationServiceTest {
    */
   @Test
   public void scenario3() {
-    doReturn(true).when(manager).isEnabled(USER_SIMON, "email", "comment on review assigned to me");
-    doReturn(true).when(manager).isEnabled(USER_SIMON, "gtalk", "comment on review assigned to me");
+    preferences.enable(USER_SIMON, "email", "comment on review assigned to me");
+    preferences.enable(USER_SIMON, "gtalk", "comment on review assigned to me");
 
     Notification notification = mock(Notification.class);
     creator = USER_EVGENY;
@@ -20,20 +20,27 @@
 package org.sonar.server.plugins;
 
 import com.google.common.collect.Sets;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Set;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class BatchResourcesServletTest {
@@ -91,4 +98,66 @@ public class BatchResourcesServletTest {
     assertThat(BatchResourcesServlet.isIgnored("jruby-complete-1.5.6.jar"), is(true));
     assertThat(BatchResourcesServlet.isIgnored("jruby-rack-1.0.5.jar"), is(true));
   }
+
+  @Test
+  public void shouldNotBeModifiedIfSameETag() {
+    when(request.getHeader("If-None-Match")).thenReturn("\"abc\", \"def\"");
+    assertThat(BatchResourcesServlet.isNotModified(request, "\"def\"", 1000L), is(true));
+    assertThat(BatchResourcesServlet.isNotModified(request, "\"ghi\"", 1000L), is(false));
+  }
+
+  @Test
+  public void shouldNotBeModifiedSinceDate() {
+    when(request.getDateHeader("If-Modified-Since")).thenReturn(-1L);
+    assertThat(BatchResourcesServlet.isNotModified(request, "\"abc\"", 1000L), is(false));
+
+    when(request.getDateHeader("If-Modified-Since")).thenReturn(1000L);
+    assertThat(BatchResourcesServlet.isNotModified(request, "\"abc\"", 1500L), is(true));
+    assertThat(BatchResourcesServlet.isNotModified(request, "\"abc\"", 3000L), is(false));
+  }
+
+  @Test
+  public void shouldComputeETagOnce() throws IOException {
+    File file = new File("target/test-tmp/BatchResourcesServletTest/sonar-core.jar");
+    FileUtils.writeStringToFile(file, "foo");
+
+    String etag = servlet.getETag(file);
+    assertThat(etag, is("\"" + DigestUtils.md5Hex("foo") + "\""));
+    assertThat(servlet.getETag(file), is(etag));
+
+    FileUtils.writeStringToFile(file, "foobar");
+    assertThat(servlet.getETag(file), is("\"" + DigestUtils.md5Hex("foobar") + "\""));
+  }
+
+  @Test
+  public void shouldReplyNotModified() throws Exception {
+    File file = new File("target/test-tmp/BatchResourcesServletTest/sonar-squid.jar");
+    FileUtils.writeStringToFile(file, "foo");
+    ServletContext servletContext = mock(ServletContext.class);
+    servlet = spy(servlet);
+    doReturn(servletContext).when(servlet).getServletContext();
+    when(servletContext.getRealPath("/WEB-INF/lib/sonar-squid.jar")).thenReturn(file.getAbsolutePath());
+    when(request.getContextPath()).thenReturn("sonar");
+    when(request.getServletPath()).thenReturn("/batch");
+    when(request.getRequestURI()).thenReturn("/sonar/batch/sonar-squid.jar");
+    when(request.getHeader("If-None-Match")).thenReturn("\"" + DigestUtils.md5Hex("foo") + "\"");
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    servlet.doGet(request, response);
+
+    verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    verify(response, never()).getOutputStream();
+  }
+
+  @Test
+  public void shouldNotServeFilesOutsideLibDirectory() throws Exception {
+    when(request.getContextPath()).thenReturn("sonar");
+    when(request.getServletPath()).thenReturn("/batch");
+    when(request.getRequestURI()).thenReturn("/sonar/batch/../web.xml");
+    HttpServletResponse response = mock(HttpServletResponse.class);
+
+    servlet.doGet(request, response);
+
+    verify(response).sendError(HttpServletResponse.SC_NOT_FOUND);
+  }
 }
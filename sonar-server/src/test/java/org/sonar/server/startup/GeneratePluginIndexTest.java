@@ -19,6 +19,7 @@
  */
 package org.sonar.server.startup;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.hamcrest.core.Is;
 import org.junit.Before;
@@ -80,10 +81,24 @@ public class GeneratePluginIndexTest {
     assertThat(lines.get(0), containsString("sqale"));
   }
 
-  private PluginMetadata newMetadata(String pluginKey) {
+  @Test
+  public void shouldWriteChecksumsOfFiles() throws IOException {
+    DefaultServerPluginRepository repository = mock(DefaultServerPluginRepository.class);
+    PluginMetadata sqale = newMetadata("sqale");
+    when(repository.getMetadata()).thenReturn(Arrays.asList(sqale));
+
+    new GeneratePluginIndex(fileSystem, repository).start();
+
+    List<String> lines = FileUtils.readLines(index);
+    assertThat(lines.get(0), Is.is("sqale,false,sqale.jar|" + DigestUtils.md5Hex("sqale")));
+  }
+
+  private PluginMetadata newMetadata(String pluginKey) throws IOException {
+    File file = new File("target/test-tmp/GeneratePluginIndexTest/" + pluginKey + ".jar");
+    FileUtils.writeStringToFile(file, pluginKey);
     PluginMetadata plugin = mock(DefaultPluginMetadata.class);
     when(plugin.getKey()).thenReturn(pluginKey);
-    when(plugin.getFile()).thenReturn(new File(pluginKey + ".jar"));
+    when(plugin.getFile()).thenReturn(file);
     return plugin;
   }
 }